@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+
+package com.goterl.lazysodium.benchmarks;
+
+import com.goterl.lazysodium.interfaces.AEAD;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Encrypting a batch of small records, one call per record
+ * against one call for the whole batch. Scores are per record.
+ */
+public class AEADBatchBenchmark extends BaseBenchmark {
+
+    private static final int BATCH = 64;
+
+    private static final AEAD.Method METHOD = AEAD.Method.CHACHA20_POLY1305_IETF;
+
+    @Param({"16", "256", "1024"})
+    public int size;
+
+    private byte[] key;
+    private byte[][] messages;
+    private byte[][] ciphers;
+    private byte[][] decrypted;
+    private byte[][] nPubs;
+
+    @Override
+    protected void setUp() {
+        key = lazySodium.keygen(METHOD).getAsBytes();
+        messages = new byte[BATCH][];
+        ciphers = new byte[BATCH][];
+        decrypted = new byte[BATCH][];
+        nPubs = new byte[BATCH][];
+        for (int i = 0; i < BATCH; i++) {
+            messages[i] = lazySodium.randomBytesBuf(size);
+            ciphers[i] = new byte[size + AEAD.CHACHA20POLY1305_IETF_ABYTES];
+            decrypted[i] = new byte[size];
+            nPubs[i] = lazySodium.nonce(AEAD.CHACHA20POLY1305_IETF_NPUBBYTES);
+        }
+        encryptEach();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public boolean encryptEach() {
+        boolean ok = true;
+        for (int i = 0; i < BATCH; i++) {
+            ok &= lazySodium.cryptoAeadChaCha20Poly1305IetfEncrypt(ciphers[i], null, messages[i], size,
+                    null, 0, null, nPubs[i], key);
+        }
+        return ok;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public boolean[] encryptBatch() {
+        return lazySodium.cryptoAeadEncryptBatch(ciphers, messages, null, nPubs, key, METHOD);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public boolean decryptEach() {
+        boolean ok = true;
+        for (int i = 0; i < BATCH; i++) {
+            ok &= lazySodium.cryptoAeadChaCha20Poly1305IetfDecrypt(decrypted[i], null, null, ciphers[i], ciphers[i].length,
+                    null, 0, nPubs[i], key);
+        }
+        return ok;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public boolean[] decryptBatch() {
+        return lazySodium.cryptoAeadDecryptBatch(decrypted, ciphers, null, nPubs, key, METHOD);
+    }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+
+package com.goterl.lazysodium.benchmarks;
+
+import com.goterl.lazysodium.interfaces.AEAD;
+import com.goterl.lazysodium.utils.AeadContext;
+import com.goterl.lazysodium.utils.Key;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.TearDown;
+
+import javax.crypto.AEADBadTagException;
+import java.nio.ByteBuffer;
+
+public class AEADBenchmark extends MessageBenchmark {
+
+    @Param({"CHACHA20_POLY1305", "CHACHA20_POLY1305_IETF", "XCHACHA20_POLY1305_IETF", "AES256GCM"})
+    public AEAD.Method method;
+
+    private Key key;
+    private byte[] keyBytes;
+    private byte[] nonce;
+    private byte[] additionalData;
+    private byte[] cipher;
+    private byte[] decrypted;
+    private String cipherString;
+    private ByteBuffer keyBuffer;
+    private ByteBuffer nonceBuffer;
+    private ByteBuffer messageBuffer;
+    private ByteBuffer cipherBuffer;
+    private ByteBuffer decryptedBuffer;
+    private AeadContext context;
+
+    @Override
+    protected void setUpMessage() throws Exception {
+        if (method == AEAD.Method.AES256GCM && !lazySodium.cryptoAeadAES256GCMIsAvailable()) {
+            throw new IllegalStateException("AES256-GCM is not available on this CPU.");
+        }
+        key = lazySodium.keygen(method);
+        keyBytes = key.getAsBytes();
+        nonce = lazySodium.nonce(nonceBytes(method));
+        additionalData = new byte[0];
+        cipher = new byte[size + AEAD.CHACHA20POLY1305_ABYTES];
+        decrypted = new byte[size];
+        if (!encryptRaw()) {
+            throw new IllegalStateException("Could not encrypt the benchmark message.");
+        }
+        cipherString = lazySodium.encrypt(messageString, null, nonce, key, method);
+
+        keyBuffer = direct(keyBytes);
+        nonceBuffer = direct(nonce);
+        messageBuffer = direct(message);
+        cipherBuffer = direct(cipher);
+        decryptedBuffer = ByteBuffer.allocateDirect(size);
+        context = new AeadContext(lazySodium, key, method);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public boolean encryptRaw() {
+        switch (method) {
+            case CHACHA20_POLY1305:
+                return lazySodium.cryptoAeadChaCha20Poly1305Encrypt(cipher, null, message, size,
+                        additionalData, 0, null, nonce, keyBytes);
+            case CHACHA20_POLY1305_IETF:
+                return lazySodium.cryptoAeadChaCha20Poly1305IetfEncrypt(cipher, null, message, size,
+                        additionalData, 0, null, nonce, keyBytes);
+            case XCHACHA20_POLY1305_IETF:
+                return lazySodium.cryptoAeadXChaCha20Poly1305IetfEncrypt(cipher, null, message, size,
+                        additionalData, 0, null, nonce, keyBytes);
+            default:
+                return lazySodium.cryptoAeadAES256GCMEncrypt(cipher, null, message, size,
+                        additionalData, 0, null, nonce, keyBytes);
+        }
+    }
+
+    @Benchmark
+    public boolean decryptRaw() {
+        switch (method) {
+            case CHACHA20_POLY1305:
+                return lazySodium.cryptoAeadChaCha20Poly1305Decrypt(decrypted, null, null, cipher, cipher.length,
+                        additionalData, 0, nonce, keyBytes);
+            case CHACHA20_POLY1305_IETF:
+                return lazySodium.cryptoAeadChaCha20Poly1305IetfDecrypt(decrypted, null, null, cipher, cipher.length,
+                        additionalData, 0, nonce, keyBytes);
+            case XCHACHA20_POLY1305_IETF:
+                return lazySodium.cryptoAeadXChaCha20Poly1305IetfDecrypt(decrypted, null, null, cipher, cipher.length,
+                        additionalData, 0, nonce, keyBytes);
+            default:
+                return lazySodium.cryptoAeadAES256GCMDecrypt(decrypted, null, null, cipher, cipher.length,
+                        additionalData, 0, nonce, keyBytes);
+        }
+    }
+
+    @Benchmark
+    public boolean encryptContext() {
+        return context.encrypt(cipher, message, size, additionalData, 0, nonce);
+    }
+
+    @Benchmark
+    public boolean decryptContext() {
+        return context.decrypt(decrypted, cipher, cipher.length, additionalData, 0, nonce);
+    }
+
+    @Benchmark
+    public boolean encryptDirectBuffer() {
+        messageBuffer.clear();
+        cipherBuffer.clear();
+        switch (method) {
+            case CHACHA20_POLY1305:
+                return lazySodium.cryptoAeadChaCha20Poly1305Encrypt(cipherBuffer, messageBuffer, null, nonceBuffer, keyBuffer);
+            case CHACHA20_POLY1305_IETF:
+                return lazySodium.cryptoAeadChaCha20Poly1305IetfEncrypt(cipherBuffer, messageBuffer, null, nonceBuffer, keyBuffer);
+            case XCHACHA20_POLY1305_IETF:
+                return lazySodium.cryptoAeadXChaCha20Poly1305IetfEncrypt(cipherBuffer, messageBuffer, null, nonceBuffer, keyBuffer);
+            default:
+                return lazySodium.cryptoAeadAES256GCMEncrypt(cipherBuffer, messageBuffer, null, nonceBuffer, keyBuffer);
+        }
+    }
+
+    @Benchmark
+    public boolean decryptDirectBuffer() {
+        cipherBuffer.clear();
+        decryptedBuffer.clear();
+        switch (method) {
+            case CHACHA20_POLY1305:
+                return lazySodium.cryptoAeadChaCha20Poly1305Decrypt(decryptedBuffer, cipherBuffer, null, nonceBuffer, keyBuffer);
+            case CHACHA20_POLY1305_IETF:
+                return lazySodium.cryptoAeadChaCha20Poly1305IetfDecrypt(decryptedBuffer, cipherBuffer, null, nonceBuffer, keyBuffer);
+            case XCHACHA20_POLY1305_IETF:
+                return lazySodium.cryptoAeadXChaCha20Poly1305IetfDecrypt(decryptedBuffer, cipherBuffer, null, nonceBuffer, keyBuffer);
+            default:
+                return lazySodium.cryptoAeadAES256GCMDecrypt(decryptedBuffer, cipherBuffer, null, nonceBuffer, keyBuffer);
+        }
+    }
+
+    @Benchmark
+    public String encryptLazy() {
+        return lazySodium.encrypt(messageString, null, nonce, key, method);
+    }
+
+    @Benchmark
+    public String decryptLazy() throws AEADBadTagException {
+        return lazySodium.decrypt(cipherString, null, nonce, key, method);
+    }
+
+    private static ByteBuffer direct(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes);
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int nonceBytes(AEAD.Method method) {
+        switch (method) {
+            case CHACHA20_POLY1305:
+                return AEAD.CHACHA20POLY1305_NPUBBYTES;
+            case CHACHA20_POLY1305_IETF:
+                return AEAD.CHACHA20POLY1305_IETF_NPUBBYTES;
+            case XCHACHA20_POLY1305_IETF:
+                return AEAD.XCHACHA20POLY1305_IETF_NPUBBYTES;
+            default:
+                return AEAD.AES256GCM_NPUBBYTES;
+        }
+    }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+
+package com.goterl.lazysodium.benchmarks;
+
+import com.goterl.lazysodium.interfaces.Auth;
+import com.goterl.lazysodium.utils.Key;
+import org.openjdk.jmh.annotations.Benchmark;
+
+public class AuthBenchmark extends MessageBenchmark {
+
+    private Key key;
+    private byte[] keyBytes;
+    private byte[] tag;
+    private String tagString;
+
+    @Override
+    protected void setUpMessage() throws Exception {
+        key = lazySodium.cryptoAuthKeygen();
+        keyBytes = key.getAsBytes();
+        tag = new byte[Auth.BYTES];
+        if (!authRaw()) {
+            throw new IllegalStateException("Could not authenticate the benchmark message.");
+        }
+        tagString = lazySodium.cryptoAuth(messageString, key);
+    }
+
+    @Benchmark
+    public boolean authRaw() {
+        return lazySodium.cryptoAuth(tag, message, size, keyBytes);
+    }
+
+    @Benchmark
+    public boolean verifyRaw() {
+        return lazySodium.cryptoAuthVerify(tag, message, size, keyBytes);
+    }
+
+    @Benchmark
+    public String authLazy() throws Exception {
+        return lazySodium.cryptoAuth(messageString, key);
+    }
+
+    @Benchmark
+    public boolean verifyLazy() throws Exception {
+        return lazySodium.cryptoAuthVerify(tagString, messageString, key);
+    }
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+
+package com.goterl.lazysodium.benchmarks;
+
+import com.goterl.lazysodium.LazySodiumJava;
+import com.goterl.lazysodium.SodiumJava;
+import com.goterl.lazysodium.utils.LibraryLoader;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Common JMH configuration for every benchmark in this package.
+ * Subclasses prepare their keys and inputs in {@link #setUp()}
+ * so that only the call under test is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public abstract class BaseBenchmark {
+
+    protected LazySodiumJava lazySodium;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws Exception {
+        lazySodium = new LazySodiumJava(new SodiumJava(LibraryLoader.Mode.BUNDLED_ONLY));
+        setUp();
+    }
+
+    protected abstract void setUp() throws Exception;
+
+}
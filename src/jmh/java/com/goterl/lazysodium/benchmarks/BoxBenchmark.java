@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+
+package com.goterl.lazysodium.benchmarks;
+
+import com.goterl.lazysodium.interfaces.Box;
+import com.goterl.lazysodium.utils.BoxSessionCache;
+import com.goterl.lazysodium.utils.KeyPair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.TearDown;
+
+public class BoxBenchmark extends MessageBenchmark {
+
+    private KeyPair senderToReceiver;
+    private KeyPair receiverFromSender;
+    private byte[] receiverPublicKey;
+    private byte[] senderSecretKey;
+    private byte[] senderPublicKey;
+    private byte[] receiverSecretKey;
+    private byte[] sharedKey;
+    private byte[] nonce;
+    private byte[] cipher;
+    private byte[] decrypted;
+    private String cipherString;
+    private BoxSessionCache cache;
+
+    @Override
+    protected void setUpMessage() throws Exception {
+        KeyPair sender = lazySodium.cryptoBoxKeypair();
+        KeyPair receiver = lazySodium.cryptoBoxKeypair();
+        senderToReceiver = new KeyPair(receiver.getPublicKey(), sender.getSecretKey());
+        receiverFromSender = new KeyPair(sender.getPublicKey(), receiver.getSecretKey());
+        receiverPublicKey = receiver.getPublicKey().getAsBytes();
+        senderSecretKey = sender.getSecretKey().getAsBytes();
+        senderPublicKey = sender.getPublicKey().getAsBytes();
+        receiverSecretKey = receiver.getSecretKey().getAsBytes();
+        sharedKey = new byte[Box.BEFORENMBYTES];
+        if (!lazySodium.cryptoBoxBeforeNm(sharedKey, receiverPublicKey, senderSecretKey)) {
+            throw new IllegalStateException("Could not compute the shared key.");
+        }
+        nonce = lazySodium.nonce(Box.NONCEBYTES);
+        cipher = new byte[size + Box.MACBYTES];
+        decrypted = new byte[size];
+        if (!easyRaw()) {
+            throw new IllegalStateException("Could not encrypt the benchmark message.");
+        }
+        cipherString = lazySodium.cryptoBoxEasy(messageString, nonce, senderToReceiver);
+        cache = new BoxSessionCache(lazySodium);
+    }
+
+    @TearDown
+    public void tearDown() {
+        cache.close();
+    }
+
+    @Benchmark
+    public boolean easyRaw() {
+        return lazySodium.cryptoBoxEasy(cipher, message, size, nonce, receiverPublicKey, senderSecretKey);
+    }
+
+    @Benchmark
+    public boolean openEasyRaw() {
+        return lazySodium.cryptoBoxOpenEasy(decrypted, cipher, cipher.length, nonce, senderPublicKey, receiverSecretKey);
+    }
+
+    @Benchmark
+    public boolean easyAfterNmRaw() {
+        return lazySodium.cryptoBoxEasyAfterNm(cipher, message, size, nonce, sharedKey);
+    }
+
+    @Benchmark
+    public boolean easyCachedRaw() {
+        return cache.cryptoBoxEasy(cipher, message, size, nonce, receiverPublicKey, senderSecretKey);
+    }
+
+    @Benchmark
+    public String easyLazy() throws Exception {
+        return lazySodium.cryptoBoxEasy(messageString, nonce, senderToReceiver);
+    }
+
+    @Benchmark
+    public String openEasyLazy() throws Exception {
+        return lazySodium.cryptoBoxOpenEasy(cipherString, nonce, receiverFromSender);
+    }
+
+}
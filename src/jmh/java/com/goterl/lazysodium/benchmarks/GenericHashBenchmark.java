@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+
+package com.goterl.lazysodium.benchmarks;
+
+import com.goterl.lazysodium.interfaces.GenericHash;
+import com.goterl.lazysodium.utils.Key;
+import org.openjdk.jmh.annotations.Benchmark;
+
+public class GenericHashBenchmark extends MessageBenchmark {
+
+    private Key key;
+    private byte[] keyBytes;
+    private byte[] hash;
+
+    @Override
+    protected void setUpMessage() throws Exception {
+        key = lazySodium.cryptoGenericHashKeygen();
+        keyBytes = key.getAsBytes();
+        hash = new byte[GenericHash.BYTES];
+    }
+
+    @Benchmark
+    public boolean hashRaw() {
+        return lazySodium.cryptoGenericHash(hash, hash.length, message, size);
+    }
+
+    @Benchmark
+    public boolean keyedHashRaw() {
+        return lazySodium.cryptoGenericHash(hash, hash.length, message, size, keyBytes, keyBytes.length);
+    }
+
+    @Benchmark
+    public String hashLazy() throws Exception {
+        return lazySodium.cryptoGenericHash(messageString);
+    }
+
+    @Benchmark
+    public String keyedHashLazy() throws Exception {
+        return lazySodium.cryptoGenericHash(messageString, key);
+    }
+
+}
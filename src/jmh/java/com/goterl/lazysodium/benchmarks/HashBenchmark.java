@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+
+package com.goterl.lazysodium.benchmarks;
+
+import com.goterl.lazysodium.interfaces.Hash;
+import org.openjdk.jmh.annotations.Benchmark;
+
+public class HashBenchmark extends MessageBenchmark {
+
+    private byte[] hash256;
+    private byte[] hash512;
+
+    @Override
+    protected void setUpMessage() {
+        hash256 = new byte[Hash.SHA256_BYTES];
+        hash512 = new byte[Hash.SHA512_BYTES];
+    }
+
+    @Benchmark
+    public boolean sha256Raw() {
+        return lazySodium.cryptoHashSha256(hash256, message, size);
+    }
+
+    @Benchmark
+    public boolean sha512Raw() {
+        return lazySodium.cryptoHashSha512(hash512, message, size);
+    }
+
+    @Benchmark
+    public String sha256Lazy() throws Exception {
+        return lazySodium.cryptoHashSha256(messageString);
+    }
+
+    @Benchmark
+    public String sha512Lazy() throws Exception {
+        return lazySodium.cryptoHashSha512(messageString);
+    }
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+
+package com.goterl.lazysodium.benchmarks;
+
+import com.goterl.lazysodium.interfaces.KeyDerivation;
+import com.goterl.lazysodium.utils.Key;
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.nio.charset.StandardCharsets;
+
+public class KeyDerivationBenchmark extends BaseBenchmark {
+
+    private static final String CONTEXT = "Examples";
+
+    private Key masterKey;
+    private byte[] masterKeyBytes;
+    private byte[] context;
+    private byte[] subKey;
+    private long subKeyId;
+
+    @Override
+    protected void setUp() {
+        masterKey = lazySodium.cryptoKdfKeygen();
+        masterKeyBytes = masterKey.getAsBytes();
+        context = CONTEXT.getBytes(StandardCharsets.UTF_8);
+        subKey = new byte[KeyDerivation.BYTES_MIN];
+    }
+
+    @Benchmark
+    public int deriveRaw() {
+        return lazySodium.cryptoKdfDeriveFromKey(subKey, subKey.length, subKeyId++, context, masterKeyBytes);
+    }
+
+    @Benchmark
+    public Key deriveLazy() throws Exception {
+        return lazySodium.cryptoKdfDeriveFromKey(KeyDerivation.BYTES_MIN, subKeyId++, CONTEXT, masterKey);
+    }
+
+}
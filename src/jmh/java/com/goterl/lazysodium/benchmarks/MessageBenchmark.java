@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+
+package com.goterl.lazysodium.benchmarks;
+
+import org.openjdk.jmh.annotations.Param;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * A benchmark that works on a message of {@link #size} bytes.
+ * The message is plain ASCII so that the raw and the lazy (String)
+ * variants of a primitive operate on exactly the same bytes.
+ */
+public abstract class MessageBenchmark extends BaseBenchmark {
+
+    private static final char[] ALPHABET =
+            "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789".toCharArray();
+
+    @Param({"16", "256", "4096", "65536", "1048576", "16777216"})
+    public int size;
+
+    protected String messageString;
+    protected byte[] message;
+
+    @Override
+    protected void setUp() throws Exception {
+        Random random = new Random(size);
+        char[] chars = new char[size];
+        for (int i = 0; i < size; i++) {
+            chars[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+        }
+        messageString = new String(chars);
+        message = messageString.getBytes(StandardCharsets.UTF_8);
+        setUpMessage();
+    }
+
+    protected abstract void setUpMessage() throws Exception;
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+
+package com.goterl.lazysodium.benchmarks;
+
+import com.goterl.lazysodium.interfaces.MessageEncoder;
+import com.goterl.lazysodium.utils.Base64MessageEncoder;
+import com.goterl.lazysodium.utils.HexMessageEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.util.Base64;
+
+/**
+ * Measures the encoders on their own so that their share of the
+ * lazy (String) methods in the other benchmarks can be told apart
+ * from the cost of the primitive.
+ */
+public class MessageEncoderBenchmark extends MessageBenchmark {
+
+    private final MessageEncoder hex = new HexMessageEncoder();
+    private final MessageEncoder base64 = new Base64MessageEncoder();
+
+    private String hexString;
+    private String base64String;
+    private StringBuilder builder;
+    private byte[] decoded;
+
+    @Override
+    protected void setUpMessage() {
+        hexString = hex.encode(message);
+        base64String = base64.encode(message);
+        builder = new StringBuilder(2 * size);
+        decoded = new byte[size];
+    }
+
+    @Benchmark
+    public String hexEncode() {
+        return hex.encode(message);
+    }
+
+    @Benchmark
+    public byte[] hexDecode() {
+        return hex.decode(hexString);
+    }
+
+    @Benchmark
+    public String base64Encode() {
+        return base64.encode(message);
+    }
+
+    @Benchmark
+    public byte[] base64Decode() {
+        return base64.decode(base64String);
+    }
+
+    @Benchmark
+    public StringBuilder hexEncodeTo() {
+        builder.setLength(0);
+        hex.encodeTo(message, 0, size, builder);
+        return builder;
+    }
+
+    @Benchmark
+    public int hexDecodeInto() {
+        return hex.decodeInto(hexString, decoded, 0);
+    }
+
+    @Benchmark
+    public StringBuilder base64EncodeTo() {
+        builder.setLength(0);
+        base64.encodeTo(message, 0, size, builder);
+        return builder;
+    }
+
+    @Benchmark
+    public int base64DecodeInto() {
+        return base64.decodeInto(base64String, decoded, 0);
+    }
+
+    @Benchmark
+    public String jdkBase64Encode() {
+        return Base64.getEncoder().encodeToString(message);
+    }
+
+    @Benchmark
+    public byte[] jdkBase64Decode() {
+        return Base64.getDecoder().decode(base64String);
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+
+package com.goterl.lazysodium.benchmarks;
+
+import com.goterl.lazysodium.interfaces.PwHash;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Password hashing is deliberately slow, so this benchmark uses the
+ * minimum limits and reports in milliseconds. Anything above the
+ * minimum limits scales roughly linearly with the ops and memory limits.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PwHashBenchmark extends BaseBenchmark {
+
+    private static final String PASSWORD = "Password123456!!!!@@";
+
+    private byte[] password;
+    private byte[] salt;
+    private byte[] hash;
+    private byte[] hashStr;
+    private String hashString;
+
+    @Override
+    protected void setUp() throws Exception {
+        password = PASSWORD.getBytes(StandardCharsets.UTF_8);
+        salt = lazySodium.randomBytesBuf(PwHash.SALTBYTES);
+        hash = new byte[32];
+        hashStr = new byte[PwHash.STR_BYTES];
+        hashString = lazySodium.cryptoPwHashStr(PASSWORD, PwHash.OPSLIMIT_MIN, PwHash.MEMLIMIT_MIN);
+    }
+
+    @Benchmark
+    public boolean hashRaw() {
+        return lazySodium.cryptoPwHash(hash, hash.length, password, password.length, salt,
+                PwHash.OPSLIMIT_MIN, PwHash.MEMLIMIT_MIN, PwHash.Alg.PWHASH_ALG_ARGON2ID13);
+    }
+
+    @Benchmark
+    public boolean hashStrRaw() {
+        return lazySodium.cryptoPwHashStr(hashStr, password, password.length,
+                PwHash.OPSLIMIT_MIN, PwHash.MEMLIMIT_MIN);
+    }
+
+    @Benchmark
+    public String hashStrLazy() throws Exception {
+        return lazySodium.cryptoPwHashStr(PASSWORD, PwHash.OPSLIMIT_MIN, PwHash.MEMLIMIT_MIN);
+    }
+
+    @Benchmark
+    public boolean verifyLazy() {
+        return lazySodium.cryptoPwHashStrVerify(hashString, PASSWORD);
+    }
+
+}
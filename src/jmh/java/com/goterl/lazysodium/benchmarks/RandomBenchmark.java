@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+
+package com.goterl.lazysodium.benchmarks;
+
+import com.goterl.lazysodium.utils.BufferedRandom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Nonce-sized random bytes from {@code randombytes_buf} on every
+ * call, against the same from a {@link BufferedRandom}.
+ */
+public class RandomBenchmark extends BaseBenchmark {
+
+    @Param({"12", "24", "32"})
+    public int size;
+
+    private BufferedRandom buffered;
+    private byte[] out;
+
+    @Override
+    protected void setUp() {
+        buffered = new BufferedRandom(lazySodium);
+        out = new byte[size];
+    }
+
+    @Benchmark
+    public byte[] nonceNative() {
+        return lazySodium.nonce(size);
+    }
+
+    @Benchmark
+    public byte[] nonceBuffered() {
+        return buffered.nonce(size);
+    }
+
+    @Benchmark
+    public byte[] nextBytesBuffered() {
+        buffered.nextBytes(out, 0, size);
+        return out;
+    }
+
+    @Benchmark
+    public long uniformNative() {
+        return lazySodium.randomBytesUniform(1000);
+    }
+
+    @Benchmark
+    public long uniformBuffered() {
+        return buffered.randomBytesUniform(1000);
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+
+package com.goterl.lazysodium.benchmarks;
+
+import com.goterl.lazysodium.interfaces.SecretBox;
+import com.goterl.lazysodium.utils.Key;
+import com.goterl.lazysodium.utils.NonceSequence;
+import org.openjdk.jmh.annotations.Benchmark;
+
+public class SecretBoxBenchmark extends MessageBenchmark {
+
+    private Key key;
+    private byte[] keyBytes;
+    private byte[] nonce;
+    private byte[] cipher;
+    private byte[] decrypted;
+    private String cipherString;
+    private NonceSequence nonces;
+
+    @Override
+    protected void setUpMessage() throws Exception {
+        key = lazySodium.cryptoSecretBoxKeygen();
+        keyBytes = key.getAsBytes();
+        nonce = lazySodium.nonce(SecretBox.NONCEBYTES);
+        cipher = new byte[size + SecretBox.MACBYTES];
+        decrypted = new byte[size];
+        if (!easyRaw()) {
+            throw new IllegalStateException("Could not encrypt the benchmark message.");
+        }
+        cipherString = lazySodium.cryptoSecretBoxEasy(messageString, nonce, key);
+        nonces = new NonceSequence(lazySodium, SecretBox.NONCEBYTES);
+    }
+
+    @Benchmark
+    public boolean easyRaw() {
+        return lazySodium.cryptoSecretBoxEasy(cipher, message, size, nonce, keyBytes);
+    }
+
+    @Benchmark
+    public boolean openEasyRaw() {
+        return lazySodium.cryptoSecretBoxOpenEasy(decrypted, cipher, cipher.length, nonce, keyBytes);
+    }
+
+    @Benchmark
+    public byte[] easyBytesRandomNonce() throws Exception {
+        return lazySodium.cryptoSecretBoxEasy(message, lazySodium.nonce(SecretBox.NONCEBYTES), key);
+    }
+
+    @Benchmark
+    public byte[] easyBytesNonceSequence() throws Exception {
+        return lazySodium.cryptoSecretBoxEasy(message, nonces, key);
+    }
+
+    @Benchmark
+    public String easyLazy() throws Exception {
+        return lazySodium.cryptoSecretBoxEasy(messageString, nonce, key);
+    }
+
+    @Benchmark
+    public String openEasyLazy() throws Exception {
+        return lazySodium.cryptoSecretBoxOpenEasy(cipherString, nonce, key);
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+
+package com.goterl.lazysodium.benchmarks;
+
+import com.goterl.lazysodium.interfaces.SecretStream;
+import com.goterl.lazysodium.utils.Key;
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Pushes are measured on a long running stream. Pulls re-initialise the
+ * pull state from the header on every call (which is cheap compared to
+ * the pull itself) because a chunk can only be decrypted once per state.
+ */
+public class SecretStreamBenchmark extends MessageBenchmark {
+
+    private Key key;
+    private byte[] keyBytes;
+    private byte[] header;
+    private SecretStream.State pushState;
+    private SecretStream.State pullState;
+    private byte[] cipher;
+    private byte[] firstCipher;
+    private byte[] lazyHeader;
+    private String firstCipherString;
+    private byte[] decrypted;
+    private byte[] tag;
+
+    @Override
+    protected void setUpMessage() throws Exception {
+        key = lazySodium.cryptoSecretStreamKeygen();
+        keyBytes = key.getAsBytes();
+        header = new byte[SecretStream.HEADERBYTES];
+        pushState = lazySodium.cryptoSecretStreamInitPush(header, key);
+        cipher = new byte[size + SecretStream.ABYTES];
+        firstCipher = new byte[size + SecretStream.ABYTES];
+        if (!lazySodium.cryptoSecretStreamPush(pushState, firstCipher, message, size, SecretStream.TAG_MESSAGE)) {
+            throw new IllegalStateException("Could not push the benchmark message.");
+        }
+        lazyHeader = new byte[SecretStream.HEADERBYTES];
+        SecretStream.State lazyPushState = lazySodium.cryptoSecretStreamInitPush(lazyHeader, key);
+        firstCipherString = lazySodium.cryptoSecretStreamPush(lazyPushState, messageString, SecretStream.TAG_MESSAGE);
+        pullState = new SecretStream.State();
+        decrypted = new byte[size];
+        tag = new byte[1];
+    }
+
+    @Benchmark
+    public boolean pushRaw() {
+        return lazySodium.cryptoSecretStreamPush(pushState, cipher, message, size, SecretStream.TAG_MESSAGE);
+    }
+
+    @Benchmark
+    public boolean pullRaw() {
+        lazySodium.cryptoSecretStreamInitPull(pullState, header, keyBytes);
+        return lazySodium.cryptoSecretStreamPull(pullState, decrypted, tag, firstCipher, firstCipher.length);
+    }
+
+    @Benchmark
+    public String pushLazy() throws Exception {
+        return lazySodium.cryptoSecretStreamPush(pushState, messageString, SecretStream.TAG_MESSAGE);
+    }
+
+    @Benchmark
+    public String pullLazy() throws Exception {
+        SecretStream.State state = lazySodium.cryptoSecretStreamInitPull(lazyHeader, key);
+        return lazySodium.cryptoSecretStreamPull(state, firstCipherString, tag);
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.benchmarks;
+
+import com.goterl.lazysodium.exceptions.SodiumException;
+import com.goterl.lazysodium.utils.SecureBufferPool;
+import com.sun.jna.Pointer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Getting secure scratch memory for one request:
+ * sodium_malloc and sodium_free every time against
+ * borrowing from a pool.
+ */
+public class SecureBufferPoolBenchmark extends BaseBenchmark {
+
+    @Param({"256", "16384"})
+    public int size;
+
+    private SecureBufferPool pool;
+
+    @Override
+    protected void setUp() {
+        pool = new SecureBufferPool(lazySodium);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Benchmark
+    public byte mallocAndFree() {
+        Pointer pointer = lazySodium.sodiumMalloc(size);
+        try {
+            pointer.setByte(0, (byte) 1);
+            return pointer.getByte(0);
+        } finally {
+            lazySodium.sodiumFree(pointer);
+        }
+    }
+
+    @Benchmark
+    public byte borrowAndReturn() throws SodiumException {
+        try (SecureBufferPool.Buffer buffer = pool.borrow(size)) {
+            buffer.getPointer().setByte(0, (byte) 1);
+            return buffer.getPointer().getByte(0);
+        }
+    }
+
+}
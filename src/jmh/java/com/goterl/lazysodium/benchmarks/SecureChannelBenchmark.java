@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+
+package com.goterl.lazysodium.benchmarks;
+
+import com.goterl.lazysodium.utils.KeyPair;
+import com.goterl.lazysodium.utils.SecureChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Seals a message on one end of a channel and opens it on the other,
+ * in the same buffer every time. Compare with {@link AEADBenchmark}'s
+ * {@code encryptDirectBuffer} plus {@code decryptDirectBuffer} for
+ * XChaCha20-Poly1305-IETF.
+ */
+public class SecureChannelBenchmark extends MessageBenchmark {
+
+    private SecureChannel client;
+    private SecureChannel server;
+    private ByteBuffer direct;
+    private ByteBuffer heap;
+
+    @Override
+    protected void setUpMessage() throws Exception {
+        KeyPair clientKeys = lazySodium.cryptoKxKeypair();
+        KeyPair serverKeys = lazySodium.cryptoKxKeypair();
+        client = SecureChannel.client(lazySodium, clientKeys, serverKeys.getPublicKey());
+        server = SecureChannel.server(lazySodium, serverKeys, clientKeys.getPublicKey());
+        direct = ByteBuffer.allocateDirect(size + SecureChannel.ABYTES);
+        heap = ByteBuffer.allocate(size + SecureChannel.ABYTES);
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    public ByteBuffer sealOpenDirect() throws Exception {
+        return sealOpen(direct);
+    }
+
+    @Benchmark
+    public ByteBuffer sealOpenHeap() throws Exception {
+        return sealOpen(heap);
+    }
+
+    private ByteBuffer sealOpen(ByteBuffer buffer) throws Exception {
+        buffer.clear();
+        buffer.limit(size);
+        client.seal(buffer);
+        server.open(buffer);
+        return buffer;
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+
+package com.goterl.lazysodium.benchmarks;
+
+import com.goterl.lazysodium.interfaces.Sign;
+import com.goterl.lazysodium.utils.KeyPair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.BitSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Verifying a burst of signed events from a few signers, one call
+ * per signature against the batch API, on one thread and spread over
+ * all cores. Scores are per signature.
+ */
+public class SignBatchBenchmark extends BaseBenchmark {
+
+    private static final int BATCH = 1024;
+
+    private static final int SIGNERS = 4;
+
+    @Param({"64"})
+    public int size;
+
+    private byte[][] signatures;
+    private byte[][] messages;
+    private byte[][] publicKeys;
+    private ExecutorService executor;
+
+    @Override
+    protected void setUp() throws Exception {
+        KeyPair[] signers = new KeyPair[SIGNERS];
+        for (int i = 0; i < SIGNERS; i++) {
+            signers[i] = lazySodium.cryptoSignKeypair();
+        }
+        signatures = new byte[BATCH][];
+        messages = new byte[BATCH][];
+        publicKeys = new byte[BATCH][];
+        for (int i = 0; i < BATCH; i++) {
+            KeyPair signer = signers[i % SIGNERS];
+            messages[i] = lazySodium.randomBytesBuf(size);
+            signatures[i] = new byte[Sign.BYTES];
+            lazySodium.cryptoSignDetached(signatures[i], messages[i], size, signer.getSecretKey().getAsBytes());
+            publicKeys[i] = signer.getPublicKey().getAsBytes();
+        }
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int verifyEach() {
+        int valid = 0;
+        for (int i = 0; i < BATCH; i++) {
+            if (lazySodium.cryptoSignVerifyDetached(signatures[i], messages[i], size, publicKeys[i])) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public BitSet verifyBatch() {
+        return lazySodium.cryptoSignVerifyDetachedBatch(signatures, messages, publicKeys);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public BitSet verifyBatchParallel() {
+        return lazySodium.cryptoSignVerifyDetachedBatch(signatures, messages, publicKeys, executor);
+    }
+
+}
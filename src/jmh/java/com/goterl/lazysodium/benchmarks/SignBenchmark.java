@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+
+package com.goterl.lazysodium.benchmarks;
+
+import com.goterl.lazysodium.interfaces.Sign;
+import com.goterl.lazysodium.utils.Key;
+import com.goterl.lazysodium.utils.KeyPair;
+import org.openjdk.jmh.annotations.Benchmark;
+
+public class SignBenchmark extends MessageBenchmark {
+
+    private Key publicKey;
+    private Key secretKey;
+    private byte[] publicKeyBytes;
+    private byte[] secretKeyBytes;
+    private byte[] signature;
+    private String signatureString;
+    private String signedString;
+
+    @Override
+    protected void setUpMessage() throws Exception {
+        KeyPair keyPair = lazySodium.cryptoSignKeypair();
+        publicKey = keyPair.getPublicKey();
+        secretKey = keyPair.getSecretKey();
+        publicKeyBytes = publicKey.getAsBytes();
+        secretKeyBytes = secretKey.getAsBytes();
+        signature = new byte[Sign.BYTES];
+        if (!detachedRaw()) {
+            throw new IllegalStateException("Could not sign the benchmark message.");
+        }
+        signatureString = lazySodium.cryptoSignDetached(messageString, secretKey);
+        signedString = lazySodium.cryptoSign(messageString, secretKey);
+    }
+
+    @Benchmark
+    public boolean detachedRaw() {
+        return lazySodium.cryptoSignDetached(signature, message, size, secretKeyBytes);
+    }
+
+    @Benchmark
+    public boolean verifyDetachedRaw() {
+        return lazySodium.cryptoSignVerifyDetached(signature, message, size, publicKeyBytes);
+    }
+
+    @Benchmark
+    public String detachedLazy() throws Exception {
+        return lazySodium.cryptoSignDetached(messageString, secretKey);
+    }
+
+    @Benchmark
+    public boolean verifyDetachedLazy() {
+        return lazySodium.cryptoSignVerifyDetached(signatureString, messageString, publicKey);
+    }
+
+    @Benchmark
+    public String signLazy() throws Exception {
+        return lazySodium.cryptoSign(messageString, secretKey);
+    }
+
+    @Benchmark
+    public String openLazy() {
+        return lazySodium.cryptoSignOpen(signedString, publicKey);
+    }
+
+    /**
+     * What {@link #signLazy()} used to spend on its output
+     * buffer before signing into it, to compare with {@link #plainOutputBuffer()}.
+     */
+    @Benchmark
+    public byte[] randomOutputBuffer() {
+        return lazySodium.randomBytesBuf(Sign.BYTES + size);
+    }
+
+    @Benchmark
+    public byte[] plainOutputBuffer() {
+        return new byte[Sign.BYTES + size];
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+
+package com.goterl.lazysodium;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Heap arrays that the {@code String} methods of {@link LazySodium}
+ * reuse for their message, additional data and output bytes, so that
+ * once a thread's arrays have grown large enough a call only allocates
+ * the {@code String} it returns.
+ *
+ * <p>Every thread has its own scratch. A nested use on the same thread
+ * gets a new one instead. Arrays that grow beyond {@link #MAX_KEPT_BYTES}
+ * are dropped on release rather than kept, and the used part of every
+ * array is wiped on release because it may have held plaintext.</p>
+ */
+final class HeapScratch {
+
+    static final int MESSAGE = 0;
+    static final int ADDITIONAL_DATA = 1;
+    static final int OUTPUT = 2;
+
+    static final int MAX_KEPT_BYTES = 64 * 1024;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private static final ThreadLocal<HeapScratch> LOCAL = new ThreadLocal<HeapScratch>() {
+        @Override
+        protected HeapScratch initialValue() {
+            return new HeapScratch();
+        }
+    };
+
+    private final byte[][] arrays = {EMPTY, EMPTY, EMPTY};
+    private final int[] lengths = new int[3];
+    private final int[] used = new int[3];
+    private boolean inUse;
+
+    private HeapScratch() {
+    }
+
+    /**
+     * Gets the current thread's scratch, or a new one if it is
+     * already in use. Must be followed by {@link #release()}.
+     * @return Scratch arrays.
+     */
+    static HeapScratch acquire() {
+        HeapScratch local = LOCAL.get();
+        if (local.inUse) {
+            return new HeapScratch();
+        }
+        local.inUse = true;
+        return local;
+    }
+
+    /**
+     * Gets an array of at least {@code len} bytes for a slot.
+     * Only the first {@code len} bytes are wiped on release.
+     * @param slot {@link #MESSAGE}, {@link #ADDITIONAL_DATA} or {@link #OUTPUT}.
+     * @param len The number of bytes needed.
+     * @return An array that may be longer than {@code len}.
+     */
+    byte[] array(int slot, int len) {
+        byte[] array = ensure(slot, len);
+        used[slot] = Math.max(used[slot], len);
+        return array;
+    }
+
+    /**
+     * Encodes a string into a slot. Call {@link #length(int)}
+     * for the number of bytes it was encoded into.
+     * @param slot {@link #MESSAGE} or {@link #ADDITIONAL_DATA}.
+     * @param s The string.
+     * @param charset The charset to encode with.
+     * @return An array holding the encoded bytes at its start.
+     */
+    byte[] encode(int slot, String s, Charset charset) {
+        if (s.isEmpty()) {
+            lengths[slot] = 0;
+            return arrays[slot];
+        }
+        // Long strings would need arrays that aren't kept anyway.
+        if (!StandardCharsets.UTF_8.equals(charset) || s.length() > MAX_KEPT_BYTES / 3) {
+            byte[] bytes = s.getBytes(charset);
+            byte[] array = array(slot, bytes.length);
+            System.arraycopy(bytes, 0, array, 0, bytes.length);
+            Arrays.fill(bytes, (byte) 0);
+            lengths[slot] = bytes.length;
+            return array;
+        }
+        // Encodes the same way as String.getBytes, which replaces
+        // an unpaired surrogate with '?', but without allocating.
+        byte[] b = ensure(slot, 3 * s.length());
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                b[n++] = (byte) c;
+            } else if (c < 0x800) {
+                b[n++] = (byte) (0xC0 | c >> 6);
+                b[n++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    b[n++] = (byte) (0xF0 | cp >> 18);
+                    b[n++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                    b[n++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                    b[n++] = (byte) (0x80 | cp & 0x3F);
+                } else {
+                    b[n++] = '?';
+                }
+            } else {
+                b[n++] = (byte) (0xE0 | c >> 12);
+                b[n++] = (byte) (0x80 | c >> 6 & 0x3F);
+                b[n++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        used[slot] = Math.max(used[slot], n);
+        lengths[slot] = n;
+        return b;
+    }
+
+    /**
+     * @param slot The slot last encoded into.
+     * @return The number of bytes the last string was encoded into.
+     */
+    int length(int slot) {
+        return lengths[slot];
+    }
+
+    /**
+     * Wipes what was used and, for the thread's own
+     * scratch, makes it available again.
+     */
+    void release() {
+        for (int slot = 0; slot < arrays.length; slot++) {
+            wipe(slot);
+            if (arrays[slot].length > MAX_KEPT_BYTES) {
+                arrays[slot] = EMPTY;
+            }
+        }
+        inUse = false;
+    }
+
+    private byte[] ensure(int slot, int len) {
+        if (arrays[slot].length < len) {
+            wipe(slot);
+            arrays[slot] = new byte[Math.max(len, Math.min(2 * arrays[slot].length, MAX_KEPT_BYTES))];
+        }
+        return arrays[slot];
+    }
+
+    private void wipe(int slot) {
+        Arrays.fill(arrays[slot], 0, used[slot], (byte) 0);
+        used[slot] = 0;
+        lengths[slot] = 0;
+    }
+
+}
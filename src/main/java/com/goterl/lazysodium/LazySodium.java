@@ -14,16 +14,24 @@ import com.goterl.lazysodium.utils.*;
 import com.sun.jna.NativeLong;
 import com.sun.jna.Pointer;
 import com.sun.jna.ptr.IntByReference;
-import com.sun.jna.ptr.PointerByReference;
 
 import javax.crypto.AEADBadTagException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 public abstract class LazySodium implements
         Base,
         Random,
-        AEAD.Native, AEAD.Lazy,
+        AEAD.Native, AEAD.Lazy, AEAD.LazyBytes,
         GenericHash.Native, GenericHash.Lazy,
         ShortHash.Native, ShortHash.Lazy,
         SecureMemory.Native, SecureMemory.Lazy,
@@ -35,14 +43,18 @@ public abstract class LazySodium implements
         PwHash.Native, PwHash.Lazy,
         Hash.Native, Hash.Lazy,
         Sign.Native, Sign.Lazy,
-        Box.Native, Box.Lazy,
-        SecretBox.Native, SecretBox.Lazy,
+        Box.Native, Box.Lazy, Box.LazyBytes,
+        SecretBox.Native, SecretBox.Lazy, SecretBox.LazyBytes,
         KeyExchange.Native, KeyExchange.Lazy,
         KeyDerivation.Native, KeyDerivation.Lazy,
         DiffieHellman.Native, DiffieHellman.Lazy {
 
+    // How many signatures each task of a parallel batch verifies.
+    private static final int SIGN_BATCH_PART = 256;
+
     protected final Charset charset;
     protected final MessageEncoder messageEncoder;
+    private volatile BoxSessionCache boxSessionCache;
 
     public LazySodium(Charset charset, MessageEncoder messageEncoder) {
         this.charset = charset;
@@ -61,6 +73,22 @@ public abstract class LazySodium implements
         this(StandardCharsets.UTF_8, messageEncoder);
     }
 
+    /**
+     * Makes {@link Box.Lazy#cryptoBoxEasy(String, byte[], KeyPair)},
+     * {@link Box.Lazy#cryptoBoxOpenEasy(String, byte[], KeyPair)} and
+     * their {@link Box.LazyBytes} counterparts reuse the shared keys
+     * kept by {@code cache} instead of computing one for every message.
+     * The cache isn't closed by this instance.
+     * @param cache The cache, or null to stop using one.
+     */
+    public void setBoxSessionCache(BoxSessionCache cache) {
+        this.boxSessionCache = cache;
+    }
+
+    public BoxSessionCache getBoxSessionCache() {
+        return boxSessionCache;
+    }
+
     public static Integer longToInt(long lng) {
         if (lng < 0) {
             return 0;
@@ -80,7 +108,7 @@ public abstract class LazySodium implements
 
     @Override
     public String sodiumBin2Hex(byte[] bin) {
-        return bytesToHex(bin);
+        return bytesToHex(bin, 0, bin.length);
     }
 
     @Override
@@ -89,7 +117,7 @@ public abstract class LazySodium implements
     }
 
     public String toHexStr(byte[] bs) {
-        return bytesToHex(bs);
+        return bytesToHex(bs, 0, bs.length);
     }
 
     public byte[] toBinary(String hex) {
@@ -103,7 +131,19 @@ public abstract class LazySodium implements
      * @return Hexadecimal string.
      */
     public static String toHex(byte[] bin) {
-        return bytesToHex(bin);
+        return bytesToHex(bin, 0, bin.length);
+    }
+
+    /**
+     * Part of an array to a hexadecimal string.
+     *
+     * @param bin Byte array.
+     * @param off Where the part starts.
+     * @param len The length of the part.
+     * @return Hexadecimal string.
+     */
+    public static String toHex(byte[] bin, int off, int len) {
+        return bytesToHex(bin, off, len);
     }
 
 
@@ -118,21 +158,22 @@ public abstract class LazySodium implements
     }
 
 
-    private final static char[] hexArray = "0123456789ABCDEF".toCharArray();
+    private static String bytesToHex(byte[] bytes, int off, int len) {
+        return Hex.encode(bytes, off, len);
+    }
 
-    // The following is from https://stackoverflow.com/a/9855338/3526705
-    private static String bytesToHex(byte[] bytes) {
-        char[] hexChars = new char[bytes.length * 2];
-        for (int j = 0; j < bytes.length; j++) {
-            int v = bytes[j] & 0xFF;
-            hexChars[j * 2] = hexArray[v >>> 4];
-            hexChars[j * 2 + 1] = hexArray[v & 0x0F];
+    private static byte[] hexToBytes(String s) {
+        try {
+            return Hex.decode(s);
+        } catch (IllegalArgumentException e) {
+            // Strings that aren't hexadecimal have always been
+            // turned into some bytes rather than rejected here.
+            return lenientHexToBytes(s);
         }
-        return new String(hexChars);
     }
 
     // The following is from https://stackoverflow.com/a/140861/3526705
-    private static byte[] hexToBytes(String s) {
+    private static byte[] lenientHexToBytes(String s) {
         int len = s.length();
         byte[] data = new byte[len / 2];
         for (int i = 0; i < len; i += 2) {
@@ -284,7 +325,10 @@ public abstract class LazySodium implements
         if (!KeyDerivation.Checker.subKeyIsCorrect(lengthOfSubKey)) {
             throw new SodiumException("Subkey is not between the correct lengths.");
         }
-        if (!KeyDerivation.Checker.masterKeyIsCorrect(masterKey.getAsBytes().length)) {
+        int masterKeyLength = masterKey instanceof SecureKey
+                ? ((SecureKey) masterKey).getSize()
+                : masterKey.getAsBytes().length;
+        if (!KeyDerivation.Checker.masterKeyIsCorrect(masterKeyLength)) {
             throw new SodiumException("Master key is not the correct length.");
         }
         if (!KeyDerivation.Checker.contextIsCorrect(bytes(context).length)) {
@@ -293,14 +337,11 @@ public abstract class LazySodium implements
 
         byte[] subKey = new byte[lengthOfSubKey];
         byte[] contextAsBytes = bytes(context);
-        byte[] masterKeyAsBytes = masterKey.getAsBytes();
-        int res = getSodium().crypto_kdf_derive_from_key(
-                subKey,
-                lengthOfSubKey,
-                subKeyId,
-                contextAsBytes,
-                masterKeyAsBytes
-        );
+        int res = masterKey instanceof SecureKey
+                ? getSodium().crypto_kdf_derive_from_key(subKey, lengthOfSubKey, subKeyId, contextAsBytes,
+                        ((SecureKey) masterKey).getPointer())
+                : getSodium().crypto_kdf_derive_from_key(subKey, lengthOfSubKey, subKeyId, contextAsBytes,
+                        masterKey.getAsBytes());
 
         if (!successful(res)) {
             throw new SodiumException("Failed kdfDeriveFromKey.");
@@ -338,8 +379,8 @@ public abstract class LazySodium implements
 
     @Override
     public KeyPair cryptoKxKeypair() {
-        byte[] secretKey = randomBytesBuf(KeyExchange.SECRETKEYBYTES);
-        byte[] publicKey = randomBytesBuf(KeyExchange.PUBLICKEYBYTES);
+        byte[] secretKey = new byte[KeyExchange.SECRETKEYBYTES];
+        byte[] publicKey = new byte[KeyExchange.PUBLICKEYBYTES];
 
         getSodium().crypto_kx_keypair(publicKey, secretKey);
 
@@ -348,8 +389,8 @@ public abstract class LazySodium implements
 
     @Override
     public KeyPair cryptoKxKeypair(byte[] seed) {
-        byte[] secretKey = randomBytesBuf(KeyExchange.SECRETKEYBYTES);
-        byte[] publicKey = randomBytesBuf(KeyExchange.PUBLICKEYBYTES);
+        byte[] secretKey = new byte[KeyExchange.SECRETKEYBYTES];
+        byte[] publicKey = new byte[KeyExchange.PUBLICKEYBYTES];
 
         getSodium().crypto_kx_seed_keypair(publicKey, secretKey, seed);
 
@@ -568,6 +609,58 @@ public abstract class LazySodium implements
         return successful(getSodium().crypto_hash_sha512_final(state, out));
     }
 
+    @Override
+    public boolean cryptoHashSha256(byte[] out, int outOff, byte[] in, int inOff, int inLen) {
+        return hashSha(Hash.SHA256_BYTES, out, outOff, in, inOff, inLen);
+    }
+
+    @Override
+    public boolean cryptoHashSha512(byte[] out, int outOff, byte[] in, int inOff, int inLen) {
+        return hashSha(Hash.SHA512_BYTES, out, outOff, in, inOff, inLen);
+    }
+
+    private boolean hashSha(int outLen, byte[] out, int outOff, byte[] in, int inOff, int inLen) {
+        checkRange(in, inOff, inLen, "in");
+        checkRange(out, outOff, outLen, "out");
+        ScratchBuffer s = ScratchBuffer.acquire((long) outLen + inLen);
+        try {
+            Pointer outPointer = s.out(outLen);
+            Pointer inPointer = s.in(in, inOff, inLen);
+            int res = outLen == Hash.SHA256_BYTES
+                    ? getSodium().crypto_hash_sha256(outPointer, inPointer, inLen)
+                    : getSodium().crypto_hash_sha512(outPointer, inPointer, inLen);
+            if (!successful(res)) {
+                return false;
+            }
+            s.copyOut(outPointer, out, outOff, outLen);
+            return true;
+        } finally {
+            s.release();
+        }
+    }
+
+    @Override
+    public boolean cryptoHashSha256Update(Hash.State256 state, byte[] in, int inOff, int inLen) {
+        checkRange(in, inOff, inLen, "in");
+        ScratchBuffer s = ScratchBuffer.acquire(inLen);
+        try {
+            return successful(getSodium().crypto_hash_sha256_update(state, s.in(in, inOff, inLen), inLen));
+        } finally {
+            s.release();
+        }
+    }
+
+    @Override
+    public boolean cryptoHashSha512Update(Hash.State512 state, byte[] in, int inOff, int inLen) {
+        checkRange(in, inOff, inLen, "in");
+        ScratchBuffer s = ScratchBuffer.acquire(inLen);
+        try {
+            return successful(getSodium().crypto_hash_sha512_update(state, s.in(in, inOff, inLen), inLen));
+        } finally {
+            s.release();
+        }
+    }
+
     // -- lazy
 
 
@@ -665,6 +758,147 @@ public abstract class LazySodium implements
         return successful(getSodium().crypto_secretbox_open_detached(message, cipherText, mac, cipherTextLen, nonce, key));
     }
 
+    @Override
+    public boolean cryptoSecretBoxEasy(byte[] cipherText, int cipherTextOff, byte[] message, int messageOff, int messageLen, byte[] nonce, byte[] key) {
+        int cipherTextLen = messageLen + SecretBox.MACBYTES;
+        checkRange(message, messageOff, messageLen, "message");
+        checkRange(cipherText, cipherTextOff, cipherTextLen, "cipherText");
+        ScratchBuffer s = ScratchBuffer.acquire((long) messageLen + cipherTextLen + ScratchBuffer.arrayBytes(nonce, key));
+        try {
+            Pointer c = s.out(cipherTextLen);
+            int res = getSodium().crypto_secretbox_easy(c, s.in(message, messageOff, messageLen), messageLen, s.in(nonce), s.in(key));
+            if (!successful(res)) {
+                return false;
+            }
+            s.copyOut(c, cipherText, cipherTextOff, cipherTextLen);
+            return true;
+        } finally {
+            s.release();
+        }
+    }
+
+    @Override
+    public boolean cryptoSecretBoxOpenEasy(byte[] message, int messageOff, byte[] cipherText, int cipherTextOff, int cipherTextLen, byte[] nonce, byte[] key) {
+        checkRange(cipherText, cipherTextOff, cipherTextLen, "cipherText");
+        if (cipherTextLen < SecretBox.MACBYTES) {
+            return false;
+        }
+        int messageLen = cipherTextLen - SecretBox.MACBYTES;
+        checkRange(message, messageOff, messageLen, "message");
+        ScratchBuffer s = ScratchBuffer.acquire((long) messageLen + cipherTextLen + ScratchBuffer.arrayBytes(nonce, key));
+        try {
+            Pointer m = s.out(messageLen);
+            int res = getSodium().crypto_secretbox_open_easy(m, s.in(cipherText, cipherTextOff, cipherTextLen), cipherTextLen, s.in(nonce), s.in(key));
+            if (!successful(res)) {
+                return false;
+            }
+            s.copyOut(m, message, messageOff, messageLen);
+            return true;
+        } finally {
+            s.release();
+        }
+    }
+
+    @Override
+    public boolean cryptoSecretBoxDetached(byte[] cipherText, int cipherTextOff, byte[] mac, byte[] message, int messageOff, int messageLen, byte[] nonce, byte[] key) {
+        checkRange(message, messageOff, messageLen, "message");
+        checkRange(cipherText, cipherTextOff, messageLen, "cipherText");
+        checkRange(mac, 0, SecretBox.MACBYTES, "mac");
+        ScratchBuffer s = ScratchBuffer.acquire(2L * messageLen + ScratchBuffer.arrayBytes(mac, nonce, key));
+        try {
+            Pointer c = s.out(messageLen);
+            Pointer macPointer = s.out(mac);
+            int res = getSodium().crypto_secretbox_detached(c, macPointer, s.in(message, messageOff, messageLen), messageLen, s.in(nonce), s.in(key));
+            if (!successful(res)) {
+                return false;
+            }
+            s.copyOut(c, cipherText, cipherTextOff, messageLen);
+            s.copyOut(macPointer, mac);
+            return true;
+        } finally {
+            s.release();
+        }
+    }
+
+    @Override
+    public boolean cryptoSecretBoxOpenDetached(byte[] message, int messageOff, byte[] cipherText, int cipherTextOff, int cipherTextLen, byte[] mac, byte[] nonce, byte[] key) {
+        checkRange(cipherText, cipherTextOff, cipherTextLen, "cipherText");
+        checkRange(message, messageOff, cipherTextLen, "message");
+        ScratchBuffer s = ScratchBuffer.acquire(2L * cipherTextLen + ScratchBuffer.arrayBytes(mac, nonce, key));
+        try {
+            Pointer m = s.out(cipherTextLen);
+            int res = getSodium().crypto_secretbox_open_detached(m, s.in(cipherText, cipherTextOff, cipherTextLen), s.in(mac), cipherTextLen, s.in(nonce), s.in(key));
+            if (!successful(res)) {
+                return false;
+            }
+            s.copyOut(m, message, messageOff, cipherTextLen);
+            return true;
+        } finally {
+            s.release();
+        }
+    }
+
+    @Override
+    public boolean cryptoSecretBoxEasyInPlace(byte[] buffer, int messageOff, int messageLen, byte[] nonce, byte[] key) {
+        return cryptoSecretBoxEasyInPlace(ByteBuffer.wrap(buffer), messageOff, messageLen, nonce, key);
+    }
+
+    @Override
+    public boolean cryptoSecretBoxOpenEasyInPlace(byte[] buffer, int cipherTextOff, int cipherTextLen, byte[] nonce, byte[] key) {
+        return cryptoSecretBoxOpenEasyInPlace(ByteBuffer.wrap(buffer), cipherTextOff, cipherTextLen, nonce, key);
+    }
+
+    @Override
+    public boolean cryptoSecretBoxEasyInPlace(ByteBuffer buffer, int messageOff, int messageLen, byte[] nonce, byte[] key) {
+        if (messageOff < SecretBox.MACBYTES) {
+            throw new IllegalArgumentException("messageOff leaves no room for the mac: " + messageOff);
+        }
+        if (messageLen < 0) {
+            throw new IllegalArgumentException("messageLen out of bounds: " + messageLen);
+        }
+        int cipherTextOff = messageOff - SecretBox.MACBYTES;
+        int cipherTextLen = messageLen + SecretBox.MACBYTES;
+        checkRange(buffer, cipherTextOff, cipherTextLen, "buffer");
+        checkRange(nonce, 0, SecretBox.NONCEBYTES, "nonce");
+        checkRange(key, 0, SecretBox.KEYBYTES, "key");
+        ScratchBuffer s = ScratchBuffer.acquire(inPlaceBytes(buffer, cipherTextLen) + SecretBox.NONCEBYTES + SecretBox.KEYBYTES);
+        try {
+            Pointer c = s.inPlace(buffer, cipherTextOff, cipherTextLen);
+            int res = getSodium().crypto_secretbox_easy(c, c.share(SecretBox.MACBYTES), messageLen,
+                    s.in(nonce, 0, SecretBox.NONCEBYTES), s.in(key, 0, SecretBox.KEYBYTES));
+            if (!successful(res)) {
+                return false;
+            }
+            s.copyBack(c, buffer, cipherTextOff, cipherTextLen);
+            return true;
+        } finally {
+            s.release();
+        }
+    }
+
+    @Override
+    public boolean cryptoSecretBoxOpenEasyInPlace(ByteBuffer buffer, int cipherTextOff, int cipherTextLen, byte[] nonce, byte[] key) {
+        checkRange(buffer, cipherTextOff, cipherTextLen, "buffer");
+        checkRange(nonce, 0, SecretBox.NONCEBYTES, "nonce");
+        checkRange(key, 0, SecretBox.KEYBYTES, "key");
+        if (cipherTextLen < SecretBox.MACBYTES) {
+            return false;
+        }
+        ScratchBuffer s = ScratchBuffer.acquire(inPlaceBytes(buffer, cipherTextLen) + SecretBox.NONCEBYTES + SecretBox.KEYBYTES);
+        try {
+            Pointer c = s.inPlace(buffer, cipherTextOff, cipherTextLen);
+            int res = getSodium().crypto_secretbox_open_easy(c.share(SecretBox.MACBYTES), c, cipherTextLen,
+                    s.in(nonce, 0, SecretBox.NONCEBYTES), s.in(key, 0, SecretBox.KEYBYTES));
+            if (!successful(res)) {
+                return false;
+            }
+            s.copyBack(c.share(SecretBox.MACBYTES), buffer, cipherTextOff + SecretBox.MACBYTES, cipherTextLen - SecretBox.MACBYTES);
+            return true;
+        } finally {
+            s.release();
+        }
+    }
+
 
     /// --- Lazy
 
@@ -677,29 +911,195 @@ public abstract class LazySodium implements
 
     @Override
     public String cryptoSecretBoxEasy(String message, byte[] nonce, Key key) throws SodiumException {
-        byte[] keyBytes = key.getAsBytes();
-        byte[] messageBytes = bytes(message);
-        byte[] cipherTextBytes = new byte[SecretBox.MACBYTES + messageBytes.length];
+        HeapScratch scratch = HeapScratch.acquire();
+        try {
+            byte[] messageBytes = scratch.encode(HeapScratch.MESSAGE, message, charset);
+            int messageLen = scratch.length(HeapScratch.MESSAGE);
+            int cipherTextLen = SecretBox.MACBYTES + messageLen;
+            byte[] cipherTextBytes = scratch.array(HeapScratch.OUTPUT, cipherTextLen);
+
+            boolean res = key instanceof SecureKey
+                    ? secretBoxEasy(cipherTextBytes, cipherTextLen, messageBytes, messageLen, nonce, (SecureKey) key)
+                    : cryptoSecretBoxEasy(cipherTextBytes, messageBytes, messageLen, nonce, key.getAsBytes());
+            if (!res) {
+                throw new SodiumException("Could not encrypt message.");
+            }
 
-        if (!cryptoSecretBoxEasy(cipherTextBytes, messageBytes, messageBytes.length, nonce, keyBytes)) {
-            throw new SodiumException("Could not encrypt message.");
+            return messageEncoder.encode(cipherTextBytes, 0, cipherTextLen);
+        } finally {
+            scratch.release();
         }
-
-        return messageEncoder.encode(cipherTextBytes);
     }
 
     @Override
     public String cryptoSecretBoxOpenEasy(String cipher, byte[] nonce, Key key) throws SodiumException {
-        byte[] keyBytes = key.getAsBytes();
-        byte[] cipherBytes = messageEncoder.decode(cipher);
-        byte[] messageBytes = new byte[cipherBytes.length - SecretBox.MACBYTES];
+        HeapScratch scratch = HeapScratch.acquire();
+        try {
+            int cipherLen = messageEncoder.decodedLength(cipher);
+            if (cipherLen < SecretBox.MACBYTES) {
+                throw new SodiumException("Could not decrypt message.");
+            }
+            byte[] cipherBytes = scratch.array(HeapScratch.MESSAGE, cipherLen);
+            messageEncoder.decodeInto(cipher, cipherBytes, 0);
+            int messageLen = cipherLen - SecretBox.MACBYTES;
+            byte[] messageBytes = scratch.array(HeapScratch.OUTPUT, messageLen);
+
+            boolean res = key instanceof SecureKey
+                    ? secretBoxOpenEasy(messageBytes, messageLen, cipherBytes, cipherLen, nonce, (SecureKey) key)
+                    : cryptoSecretBoxOpenEasy(messageBytes, cipherBytes, cipherLen, nonce, key.getAsBytes());
+            if (!res) {
+                throw new SodiumException("Could not decrypt message.");
+            }
+
+            return new String(messageBytes, 0, messageLen, charset);
+        } finally {
+            scratch.release();
+        }
+    }
+
+    private boolean secretBoxEasy(byte[] cipherText, int cipherTextLen, byte[] message, int messageLen, byte[] nonce, SecureKey key) {
+        if (key.getSize() != SecretBox.KEYBYTES || nonce.length != SecretBox.NONCEBYTES) {
+            return false;
+        }
+        ScratchBuffer s = ScratchBuffer.acquire((long) cipherTextLen + messageLen + nonce.length);
+        try {
+            Pointer c = s.out(cipherTextLen);
+            int res = getSodium().crypto_secretbox_easy(c, s.in(message, 0, messageLen), messageLen, s.in(nonce), key.getPointer());
+            if (!successful(res)) {
+                return false;
+            }
+            s.copyOut(c, cipherText, 0, cipherTextLen);
+            return true;
+        } finally {
+            s.release();
+        }
+    }
+
+    private boolean secretBoxOpenEasy(byte[] message, int messageLen, byte[] cipherText, int cipherTextLen, byte[] nonce, SecureKey key) {
+        if (key.getSize() != SecretBox.KEYBYTES || nonce.length != SecretBox.NONCEBYTES) {
+            return false;
+        }
+        ScratchBuffer s = ScratchBuffer.acquire((long) messageLen + cipherTextLen + nonce.length);
+        try {
+            Pointer m = s.out(messageLen);
+            int res = getSodium().crypto_secretbox_open_easy(m, s.in(cipherText, 0, cipherTextLen), cipherTextLen, s.in(nonce), key.getPointer());
+            if (!successful(res)) {
+                return false;
+            }
+            s.copyOut(m, message, 0, messageLen);
+            return true;
+        } finally {
+            s.release();
+        }
+    }
 
+    @Override
+    public byte[] cryptoSecretBoxEasy(byte[] message, byte[] nonce, Key key) throws SodiumException {
+        byte[] cipherText = new byte[SecretBox.MACBYTES + message.length];
+        secretBoxEasy(ByteBuffer.wrap(cipherText), ByteBuffer.wrap(message), nonce, key);
+        return cipherText;
+    }
 
-        if (!cryptoSecretBoxOpenEasy(messageBytes, cipherBytes, cipherBytes.length, nonce, keyBytes)) {
+    @Override
+    public byte[] cryptoSecretBoxOpenEasy(byte[] cipher, byte[] nonce, Key key) throws SodiumException {
+        if (cipher.length < SecretBox.MACBYTES) {
             throw new SodiumException("Could not decrypt message.");
         }
+        byte[] message = new byte[cipher.length - SecretBox.MACBYTES];
+        secretBoxOpenEasy(ByteBuffer.wrap(message), ByteBuffer.wrap(cipher), nonce, key);
+        return message;
+    }
 
-        return str(messageBytes);
+    @Override
+    public ByteBuffer cryptoSecretBoxEasy(ByteBuffer message, byte[] nonce, Key key) throws SodiumException {
+        ByteBuffer cipherText = allocateLike(message, SecretBox.MACBYTES + message.remaining());
+        secretBoxEasy(cipherText, message, nonce, key);
+        cipherText.flip();
+        return cipherText;
+    }
+
+    @Override
+    public ByteBuffer cryptoSecretBoxOpenEasy(ByteBuffer cipher, byte[] nonce, Key key) throws SodiumException {
+        if (cipher.remaining() < SecretBox.MACBYTES) {
+            throw new SodiumException("Could not decrypt message.");
+        }
+        ByteBuffer message = allocateLike(cipher, cipher.remaining() - SecretBox.MACBYTES);
+        secretBoxOpenEasy(message, cipher, nonce, key);
+        message.flip();
+        return message;
+    }
+
+    @Override
+    public byte[] cryptoSecretBoxEasy(byte[] message, NonceSequence nonces, Key key) throws SodiumException {
+        byte[] nonce = nextNonce(nonces, SecretBox.NONCEBYTES);
+        byte[] nonceAndCipher = new byte[SecretBox.NONCEBYTES + SecretBox.MACBYTES + message.length];
+        System.arraycopy(nonce, 0, nonceAndCipher, 0, nonce.length);
+        secretBoxEasy(ByteBuffer.wrap(nonceAndCipher, nonce.length, nonceAndCipher.length - nonce.length),
+                ByteBuffer.wrap(message), nonce, key);
+        return nonceAndCipher;
+    }
+
+    @Override
+    public byte[] cryptoSecretBoxOpenEasy(byte[] nonceAndCipher, Key key) throws SodiumException {
+        if (nonceAndCipher.length < SecretBox.NONCEBYTES + SecretBox.MACBYTES) {
+            throw new SodiumException("Could not decrypt message.");
+        }
+        byte[] nonce = Arrays.copyOf(nonceAndCipher, SecretBox.NONCEBYTES);
+        byte[] message = new byte[nonceAndCipher.length - SecretBox.NONCEBYTES - SecretBox.MACBYTES];
+        secretBoxOpenEasy(ByteBuffer.wrap(message),
+                ByteBuffer.wrap(nonceAndCipher, nonce.length, nonceAndCipher.length - nonce.length), nonce, key);
+        return message;
+    }
+
+    private void secretBoxEasy(ByteBuffer cipherText, ByteBuffer message, byte[] nonce, Key key) throws SodiumException {
+        ByteBuffer k = checkSecretBoxKey(nonce, key);
+        int messageLen = message.remaining();
+        int cipherTextLen = SecretBox.MACBYTES + messageLen;
+        ByteBuffer c = window(cipherText, cipherTextLen, "cipherText");
+        ScratchBuffer s = ScratchBuffer.acquire(ScratchBuffer.heapBytes(c, message, k) + nonce.length);
+        try {
+            Pointer cPointer = s.out(c);
+            int res = getSodium().crypto_secretbox_easy(cPointer, s.in(message), messageLen, s.in(nonce), s.in(k));
+            if (!successful(res)) {
+                throw new SodiumException("Could not encrypt message.");
+            }
+            s.copyOut(cPointer, c, cipherTextLen);
+        } finally {
+            s.release();
+        }
+        message.position(message.position() + messageLen);
+        cipherText.position(cipherText.position() + cipherTextLen);
+    }
+
+    private void secretBoxOpenEasy(ByteBuffer message, ByteBuffer cipherText, byte[] nonce, Key key) throws SodiumException {
+        ByteBuffer k = checkSecretBoxKey(nonce, key);
+        int cipherTextLen = cipherText.remaining();
+        int messageLen = cipherTextLen - SecretBox.MACBYTES;
+        ByteBuffer m = window(message, messageLen, "message");
+        ScratchBuffer s = ScratchBuffer.acquire(ScratchBuffer.heapBytes(m, cipherText, k) + nonce.length);
+        try {
+            Pointer mPointer = s.out(m);
+            int res = getSodium().crypto_secretbox_open_easy(mPointer, s.in(cipherText), cipherTextLen, s.in(nonce), s.in(k));
+            if (!successful(res)) {
+                throw new SodiumException("Could not decrypt message.");
+            }
+            s.copyOut(mPointer, m, messageLen);
+        } finally {
+            s.release();
+        }
+        cipherText.position(cipherText.position() + cipherTextLen);
+        message.position(message.position() + messageLen);
+    }
+
+    private static ByteBuffer checkSecretBoxKey(byte[] nonce, Key key) throws SodiumException {
+        if (nonce.length != SecretBox.NONCEBYTES) {
+            throw new SodiumException("Incorrect nonce length.");
+        }
+        ByteBuffer k = keyBuffer(key);
+        if (k.remaining() != SecretBox.KEYBYTES) {
+            throw new SodiumException("Incorrect key length.");
+        }
+        return k;
     }
 
     @Override
@@ -807,6 +1207,47 @@ public abstract class LazySodium implements
         return successful(getSodium().crypto_box_open_detached(message, cipherText, mac, cipherTextLen, nonce, publicKey, secretKey));
     }
 
+    @Override
+    public boolean cryptoBoxEasy(byte[] cipherText, int cipherTextOff, byte[] message, int messageOff, int messageLen, byte[] nonce, byte[] publicKey, byte[] secretKey) {
+        int cipherTextLen = messageLen + Box.MACBYTES;
+        checkRange(message, messageOff, messageLen, "message");
+        checkRange(cipherText, cipherTextOff, cipherTextLen, "cipherText");
+        ScratchBuffer s = ScratchBuffer.acquire((long) messageLen + cipherTextLen + ScratchBuffer.arrayBytes(nonce, publicKey, secretKey));
+        try {
+            Pointer c = s.out(cipherTextLen);
+            int res = getSodium().crypto_box_easy(c, s.in(message, messageOff, messageLen), messageLen, s.in(nonce), s.in(publicKey), s.in(secretKey));
+            if (!successful(res)) {
+                return false;
+            }
+            s.copyOut(c, cipherText, cipherTextOff, cipherTextLen);
+            return true;
+        } finally {
+            s.release();
+        }
+    }
+
+    @Override
+    public boolean cryptoBoxOpenEasy(byte[] message, int messageOff, byte[] cipherText, int cipherTextOff, int cipherTextLen, byte[] nonce, byte[] publicKey, byte[] secretKey) {
+        checkRange(cipherText, cipherTextOff, cipherTextLen, "cipherText");
+        if (cipherTextLen < Box.MACBYTES) {
+            return false;
+        }
+        int messageLen = cipherTextLen - Box.MACBYTES;
+        checkRange(message, messageOff, messageLen, "message");
+        ScratchBuffer s = ScratchBuffer.acquire((long) messageLen + cipherTextLen + ScratchBuffer.arrayBytes(nonce, publicKey, secretKey));
+        try {
+            Pointer m = s.out(messageLen);
+            int res = getSodium().crypto_box_open_easy(m, s.in(cipherText, cipherTextOff, cipherTextLen), cipherTextLen, s.in(nonce), s.in(publicKey), s.in(secretKey));
+            if (!successful(res)) {
+                return false;
+            }
+            s.copyOut(m, message, messageOff, messageLen);
+            return true;
+        } finally {
+            s.release();
+        }
+    }
+
     @Override
     public boolean cryptoBoxBeforeNm(byte[] k, byte[] publicKey, byte[] secretKey) {
         return successful(getSodium().crypto_box_beforenm(k, publicKey, secretKey));
@@ -828,6 +1269,47 @@ public abstract class LazySodium implements
         return successful(getSodium().crypto_box_open_easy_afternm(message, cipher, cLen, nonce, key));
     }
 
+    @Override
+    public boolean cryptoBoxEasyAfterNm(byte[] cipherText, int cipherTextOff, byte[] message, int messageOff, int messageLen, byte[] nonce, byte[] key) {
+        int cipherTextLen = messageLen + Box.MACBYTES;
+        checkRange(message, messageOff, messageLen, "message");
+        checkRange(cipherText, cipherTextOff, cipherTextLen, "cipherText");
+        ScratchBuffer s = ScratchBuffer.acquire((long) messageLen + cipherTextLen + ScratchBuffer.arrayBytes(nonce, key));
+        try {
+            Pointer c = s.out(cipherTextLen);
+            int res = getSodium().crypto_box_easy_afternm(c, s.in(message, messageOff, messageLen), messageLen, s.in(nonce), s.in(key));
+            if (!successful(res)) {
+                return false;
+            }
+            s.copyOut(c, cipherText, cipherTextOff, cipherTextLen);
+            return true;
+        } finally {
+            s.release();
+        }
+    }
+
+    @Override
+    public boolean cryptoBoxOpenEasyAfterNm(byte[] message, int messageOff, byte[] cipherText, int cipherTextOff, int cipherTextLen, byte[] nonce, byte[] key) {
+        checkRange(cipherText, cipherTextOff, cipherTextLen, "cipherText");
+        if (cipherTextLen < Box.MACBYTES) {
+            return false;
+        }
+        int messageLen = cipherTextLen - Box.MACBYTES;
+        checkRange(message, messageOff, messageLen, "message");
+        ScratchBuffer s = ScratchBuffer.acquire((long) messageLen + cipherTextLen + ScratchBuffer.arrayBytes(nonce, key));
+        try {
+            Pointer m = s.out(messageLen);
+            int res = getSodium().crypto_box_open_easy_afternm(m, s.in(cipherText, cipherTextOff, cipherTextLen), cipherTextLen, s.in(nonce), s.in(key));
+            if (!successful(res)) {
+                return false;
+            }
+            s.copyOut(m, message, messageOff, messageLen);
+            return true;
+        } finally {
+            s.release();
+        }
+    }
+
     @Override
     public boolean cryptoBoxDetachedAfterNm(byte[] cipherText, byte[] mac, byte[] message, long messageLen, byte[] nonce, byte[] key) {
         if (messageLen < 0 || messageLen > message.length) {
@@ -864,8 +1346,8 @@ public abstract class LazySodium implements
 
     @Override
     public KeyPair cryptoBoxKeypair() throws SodiumException {
-        byte[] publicKey = randomBytesBuf(Box.PUBLICKEYBYTES);
-        byte[] secretKey = randomBytesBuf(Box.SECRETKEYBYTES);
+        byte[] publicKey = new byte[Box.PUBLICKEYBYTES];
+        byte[] secretKey = new byte[Box.SECRETKEYBYTES];
         if (!cryptoBoxKeypair(publicKey, secretKey)) {
             throw new SodiumException("Unable to create a public and private key.");
         }
@@ -874,8 +1356,8 @@ public abstract class LazySodium implements
 
     @Override
     public KeyPair cryptoBoxSeedKeypair(byte[] seed) throws SodiumException {
-        byte[] publicKey = randomBytesBuf(Box.PUBLICKEYBYTES);
-        byte[] secretKey = randomBytesBuf(Box.SECRETKEYBYTES);
+        byte[] publicKey = new byte[Box.PUBLICKEYBYTES];
+        byte[] secretKey = new byte[Box.SECRETKEYBYTES];
         if (!Box.Checker.checkSeed(seed.length)) {
             throw new SodiumException("Seed is incorrect size.");
         }
@@ -890,7 +1372,7 @@ public abstract class LazySodium implements
     public String cryptoBoxEasy(String message, byte[] nonce, KeyPair keyPair) throws SodiumException {
         byte[] messageBytes = bytes(message);
         byte[] cipherBytes = new byte[Box.MACBYTES + messageBytes.length];
-        boolean res = cryptoBoxEasy(
+        boolean res = boxEasy(
                 cipherBytes,
                 messageBytes,
                 messageBytes.length,
@@ -909,7 +1391,7 @@ public abstract class LazySodium implements
         byte[] cipher = messageEncoder.decode(cipherText);
         byte[] message = new byte[cipher.length - Box.MACBYTES];
         boolean res =
-                cryptoBoxOpenEasy(
+                boxOpenEasy(
                         message,
                         cipher,
                         cipher.length,
@@ -1068,6 +1550,186 @@ public abstract class LazySodium implements
         return str(message);
     }
 
+    @Override
+    public byte[] cryptoBoxEasy(byte[] message, byte[] nonce, KeyPair keyPair) throws SodiumException {
+        byte[] publicKey = keyPair.getPublicKey().getAsBytes();
+        byte[] secretKey = keyPair.getSecretKey().getAsBytes();
+        checkBoxKeys(nonce, publicKey, secretKey);
+        byte[] cipher = new byte[Box.MACBYTES + message.length];
+        if (!boxEasy(cipher, message, message.length, nonce, publicKey, secretKey)) {
+            throw new SodiumException("Could not encrypt your message.");
+        }
+        return cipher;
+    }
+
+    @Override
+    public byte[] cryptoBoxOpenEasy(byte[] cipherText, byte[] nonce, KeyPair keyPair) throws SodiumException {
+        byte[] publicKey = keyPair.getPublicKey().getAsBytes();
+        byte[] secretKey = keyPair.getSecretKey().getAsBytes();
+        checkBoxKeys(nonce, publicKey, secretKey);
+        if (cipherText.length < Box.MACBYTES) {
+            throw new SodiumException("Could not decrypt your message.");
+        }
+        byte[] message = new byte[cipherText.length - Box.MACBYTES];
+        if (!boxOpenEasy(message, cipherText, cipherText.length, nonce, publicKey, secretKey)) {
+            throw new SodiumException("Could not decrypt your message.");
+        }
+        return message;
+    }
+
+    @Override
+    public Key cryptoBoxBeforeNmKey(KeyPair keyPair) throws SodiumException {
+        byte[] publicKey = keyPair.getPublicKey().getAsBytes();
+        byte[] secretKey = keyPair.getSecretKey().getAsBytes();
+        checkBoxKeys(null, publicKey, secretKey);
+        byte[] sharedKey = new byte[Box.BEFORENMBYTES];
+        if (!cryptoBoxBeforeNm(sharedKey, publicKey, secretKey)) {
+            throw new SodiumException("Unable to encrypt using shared secret key.");
+        }
+        return Key.fromBytes(sharedKey);
+    }
+
+    @Override
+    public byte[] cryptoBoxEasyAfterNm(byte[] message, byte[] nonce, Key sharedSecretKey) throws SodiumException {
+        checkSharedKey(nonce, sharedSecretKey);
+        byte[] cipher = new byte[message.length + Box.MACBYTES];
+        boolean res = sharedSecretKey instanceof SecureKey
+                ? successful(getSodium().crypto_box_easy_afternm(cipher, message, message.length, nonce,
+                        ((SecureKey) sharedSecretKey).getPointer()))
+                : cryptoBoxEasyAfterNm(cipher, message, message.length, nonce, sharedSecretKey.getAsBytes());
+        if (!res) {
+            throw new SodiumException("Could not fully complete shared secret key encryption.");
+        }
+        return cipher;
+    }
+
+    @Override
+    public byte[] cryptoBoxOpenEasyAfterNm(byte[] cipher, byte[] nonce, Key sharedSecretKey) throws SodiumException {
+        checkSharedKey(nonce, sharedSecretKey);
+        if (cipher.length < Box.MACBYTES) {
+            throw new SodiumException("Could not fully complete shared secret key decryption.");
+        }
+        byte[] message = new byte[cipher.length - Box.MACBYTES];
+        boolean res = sharedSecretKey instanceof SecureKey
+                ? successful(getSodium().crypto_box_open_easy_afternm(message, cipher, cipher.length, nonce,
+                        ((SecureKey) sharedSecretKey).getPointer()))
+                : cryptoBoxOpenEasyAfterNm(message, cipher, cipher.length, nonce, sharedSecretKey.getAsBytes());
+        if (!res) {
+            throw new SodiumException("Could not fully complete shared secret key decryption.");
+        }
+        return message;
+    }
+
+    @Override
+    public byte[] cryptoBoxEasy(byte[] message, NonceSequence nonces, KeyPair keyPair) throws SodiumException {
+        byte[] nonce = nextBoxNonce(nonces);
+        return prependNonce(nonce, cryptoBoxEasy(message, nonce, keyPair));
+    }
+
+    @Override
+    public byte[] cryptoBoxOpenEasy(byte[] nonceAndCipher, KeyPair keyPair) throws SodiumException {
+        if (nonceAndCipher.length < Box.NONCEBYTES + Box.MACBYTES) {
+            throw new SodiumException("Could not decrypt your message.");
+        }
+        return cryptoBoxOpenEasy(Arrays.copyOfRange(nonceAndCipher, Box.NONCEBYTES, nonceAndCipher.length),
+                Arrays.copyOf(nonceAndCipher, Box.NONCEBYTES), keyPair);
+    }
+
+    @Override
+    public byte[] cryptoBoxEasyAfterNm(byte[] message, NonceSequence nonces, Key sharedSecretKey) throws SodiumException {
+        byte[] nonce = nextBoxNonce(nonces);
+        return prependNonce(nonce, cryptoBoxEasyAfterNm(message, nonce, sharedSecretKey));
+    }
+
+    @Override
+    public byte[] cryptoBoxOpenEasyAfterNm(byte[] nonceAndCipher, Key sharedSecretKey) throws SodiumException {
+        if (nonceAndCipher.length < Box.NONCEBYTES + Box.MACBYTES) {
+            throw new SodiumException("Could not fully complete shared secret key decryption.");
+        }
+        return cryptoBoxOpenEasyAfterNm(Arrays.copyOfRange(nonceAndCipher, Box.NONCEBYTES, nonceAndCipher.length),
+                Arrays.copyOf(nonceAndCipher, Box.NONCEBYTES), sharedSecretKey);
+    }
+
+    private static byte[] prependNonce(byte[] nonce, byte[] cipher) {
+        byte[] nonceAndCipher = Arrays.copyOf(nonce, nonce.length + cipher.length);
+        System.arraycopy(cipher, 0, nonceAndCipher, nonce.length, cipher.length);
+        return nonceAndCipher;
+    }
+
+    @Override
+    public byte[] cryptoBoxSealEasy(byte[] message, Key publicKey) throws SodiumException {
+        byte[] keyBytes = publicKey.getAsBytes();
+        if (!Box.Checker.checkPublicKey(keyBytes.length)) {
+            throw new SodiumException("Public key length is incorrect.");
+        }
+        byte[] cipher = new byte[Box.SEALBYTES + message.length];
+        if (!cryptoBoxSeal(cipher, message, message.length, keyBytes)) {
+            throw new SodiumException("Could not encrypt message.");
+        }
+        return cipher;
+    }
+
+    @Override
+    public byte[] cryptoBoxSealOpenEasy(byte[] cipherText, KeyPair keyPair) throws SodiumException {
+        byte[] publicKey = keyPair.getPublicKey().getAsBytes();
+        byte[] secretKey = keyPair.getSecretKey().getAsBytes();
+        checkBoxKeys(null, publicKey, secretKey);
+        if (cipherText.length < Box.SEALBYTES) {
+            throw new SodiumException("Could not decrypt your message.");
+        }
+        byte[] message = new byte[cipherText.length - Box.SEALBYTES];
+        if (!cryptoBoxSealOpen(message, cipherText, cipherText.length, publicKey, secretKey)) {
+            throw new SodiumException("Could not decrypt your message.");
+        }
+        return message;
+    }
+
+    private boolean boxEasy(byte[] cipherText, byte[] message, long messageLen, byte[] nonce, byte[] publicKey, byte[] secretKey) {
+        BoxSessionCache cache = boxSessionCache;
+        return cache == null
+                ? cryptoBoxEasy(cipherText, message, messageLen, nonce, publicKey, secretKey)
+                : cache.cryptoBoxEasy(cipherText, message, messageLen, nonce, publicKey, secretKey);
+    }
+
+    private boolean boxOpenEasy(byte[] message, byte[] cipherText, long cipherTextLen, byte[] nonce, byte[] publicKey, byte[] secretKey) {
+        BoxSessionCache cache = boxSessionCache;
+        return cache == null
+                ? cryptoBoxOpenEasy(message, cipherText, cipherTextLen, nonce, publicKey, secretKey)
+                : cache.cryptoBoxOpenEasy(message, cipherText, cipherTextLen, nonce, publicKey, secretKey);
+    }
+
+    /**
+     * Checks the sizes the byte[] Box methods would otherwise
+     * leave native code to read past.
+     * @param nonce The nonce, or null if there isn't one.
+     * @param publicKey The public key.
+     * @param secretKey The secret key.
+     * @throws SodiumException If one has the wrong size.
+     */
+    private static void checkBoxKeys(byte[] nonce, byte[] publicKey, byte[] secretKey) throws SodiumException {
+        if (nonce != null && !Box.Checker.checkNonce(nonce.length)) {
+            throw new SodiumException("Incorrect nonce length.");
+        }
+        if (!Box.Checker.checkPublicKey(publicKey.length)) {
+            throw new SodiumException("Public key length is incorrect.");
+        }
+        if (!Box.Checker.checkSecretKey(secretKey.length)) {
+            throw new SodiumException("Secret key length is incorrect.");
+        }
+    }
+
+    private static void checkSharedKey(byte[] nonce, Key sharedSecretKey) throws SodiumException {
+        if (!Box.Checker.checkNonce(nonce.length)) {
+            throw new SodiumException("Incorrect nonce length.");
+        }
+        int length = sharedSecretKey instanceof SecureKey
+                ? ((SecureKey) sharedSecretKey).getSize()
+                : sharedSecretKey.getAsBytes().length;
+        if (!Box.Checker.checkBeforeNmBytes(length)) {
+            throw new SodiumException("Incorrect shared secret key length.");
+        }
+    }
+
     //// -------------------------------------------|
     //// CRYPTO SIGN
     //// -------------------------------------------|
@@ -1108,7 +1770,7 @@ public abstract class LazySodium implements
         if (messageLen < 0 || messageLen > message.length) {
             throw new IllegalArgumentException("messageLen out of bounds: " + messageLen);
         }
-        return successful(getSodium().crypto_sign(signedMessage, (new PointerByReference(Pointer.NULL)).getPointer(), message, messageLen, secretKey));
+        return successful(getSodium().crypto_sign(signedMessage, null, message, messageLen, secretKey));
     }
 
     @Override
@@ -1116,7 +1778,7 @@ public abstract class LazySodium implements
         if (signedMessageLen < 0 || signedMessageLen > signedMessage.length) {
             throw new IllegalArgumentException("signedMessageLen out of bounds: " + signedMessageLen);
         }
-        return successful(getSodium().crypto_sign_open(message, (new PointerByReference(Pointer.NULL)).getPointer(), signedMessage, signedMessageLen, publicKey));
+        return successful(getSodium().crypto_sign_open(message, null, signedMessage, signedMessageLen, publicKey));
     }
 
     @Override
@@ -1124,7 +1786,7 @@ public abstract class LazySodium implements
         if (messageLen < 0 || messageLen > message.length) {
             throw new IllegalArgumentException("messageLen out of bounds: " + messageLen);
         }
-        return successful(getSodium().crypto_sign_detached(signature, (new PointerByReference(Pointer.NULL)).getPointer(), message, messageLen, secretKey));
+        return successful(getSodium().crypto_sign_detached(signature, null, message, messageLen, secretKey));
     }
 
     @Override
@@ -1136,31 +1798,143 @@ public abstract class LazySodium implements
     }
 
     @Override
-    public boolean convertPublicKeyEd25519ToCurve25519(byte[] curve, byte[] ed) {
-        return successful(getSodium().crypto_sign_ed25519_pk_to_curve25519(curve, ed));
+    public boolean cryptoSignDetached(byte[] signature, int signatureOff, byte[] message, int messageOff, int messageLen, byte[] secretKey) {
+        checkRange(message, messageOff, messageLen, "message");
+        checkRange(signature, signatureOff, Sign.BYTES, "signature");
+        ScratchBuffer s = ScratchBuffer.acquire((long) Sign.BYTES + messageLen + ScratchBuffer.arrayBytes(secretKey));
+        try {
+            Pointer sig = s.out(Sign.BYTES);
+            int res = getSodium().crypto_sign_detached(sig, null, s.in(message, messageOff, messageLen), messageLen, s.in(secretKey));
+            if (!successful(res)) {
+                return false;
+            }
+            s.copyOut(sig, signature, signatureOff, Sign.BYTES);
+            return true;
+        } finally {
+            s.release();
+        }
     }
 
     @Override
-    public boolean convertSecretKeyEd25519ToCurve25519(byte[] curve, byte[] ed) {
-        return successful(getSodium().crypto_sign_ed25519_sk_to_curve25519(curve, ed));
+    public boolean cryptoSignVerifyDetached(byte[] signature, int signatureOff, byte[] message, int messageOff, int messageLen, byte[] publicKey) {
+        checkRange(message, messageOff, messageLen, "message");
+        checkRange(signature, signatureOff, Sign.BYTES, "signature");
+        ScratchBuffer s = ScratchBuffer.acquire((long) Sign.BYTES + messageLen + ScratchBuffer.arrayBytes(publicKey));
+        try {
+            return successful(getSodium().crypto_sign_verify_detached(
+                    s.in(signature, signatureOff, Sign.BYTES),
+                    s.in(message, messageOff, messageLen),
+                    messageLen,
+                    s.in(publicKey)
+            ));
+        } finally {
+            s.release();
+        }
     }
 
     @Override
-    public boolean cryptoSignEd25519SkToSeed(byte[] seed, byte[] ed) {
-        return successful(getSodium().crypto_sign_ed25519_sk_to_seed(seed, ed));
+    public BitSet cryptoSignVerifyDetachedBatch(byte[][] signatures, byte[][] messages, byte[][] publicKeys) {
+        return cryptoSignVerifyDetachedBatch(signatures, messages, publicKeys, null);
     }
 
     @Override
-    public boolean cryptoSignEd25519SkToPk(byte[] publicKey, byte[] ed) {
-        return successful(getSodium().crypto_sign_ed25519_sk_to_pk(publicKey, ed));
-    }
-
-    // -- lazy
-
+    public BitSet cryptoSignVerifyDetachedBatch(final byte[][] signatures,
+                                                final byte[][] messages,
+                                                final byte[][] publicKeys,
+                                                Executor executor) {
+        int count = signatures.length;
+        checkBatch(messages, count, "messages");
+        checkBatch(publicKeys, count, "publicKeys");
+        final boolean[] results = new boolean[count];
+        if (executor == null || count <= SIGN_BATCH_PART) {
+            verifyDetached(signatures, messages, publicKeys, 0, count, results);
+        } else {
+            List<CompletableFuture<Void>> parts = new ArrayList<>();
+            for (int from = 0; from < count; from += SIGN_BATCH_PART) {
+                final int start = from;
+                final int end = Math.min(from + SIGN_BATCH_PART, count);
+                parts.add(CompletableFuture.runAsync(new Runnable() {
+                    @Override
+                    public void run() {
+                        verifyDetached(signatures, messages, publicKeys, start, end, results);
+                    }
+                }, executor));
+            }
+            CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0])).join();
+        }
+        BitSet valid = new BitSet(count);
+        for (int i = 0; i < count; i++) {
+            if (results[i]) {
+                valid.set(i);
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * Verifies signatures {@code from} to {@code to} of a batch. The distinct
+     * public keys are copied into scratch memory first, then every signature
+     * and message is staged after them in turn.
+     */
+    private void verifyDetached(byte[][] signatures, byte[][] messages, byte[][] publicKeys, int from, int to, boolean[] results) {
+        Map<ByteBuffer, Integer> keyIndexes = new HashMap<>();
+        long itemBytes = 0;
+        for (int i = from; i < to; i++) {
+            if (publicKeys[i] != null && publicKeys[i].length == Sign.PUBLICKEYBYTES && !keyIndexes.containsKey(ByteBuffer.wrap(publicKeys[i]))) {
+                keyIndexes.put(ByteBuffer.wrap(publicKeys[i]), keyIndexes.size());
+            }
+            itemBytes = Math.max(itemBytes, (long) Sign.BYTES + ScratchBuffer.arrayBytes(messages[i]));
+        }
+
+        ScratchBuffer s = ScratchBuffer.acquire((long) keyIndexes.size() * Sign.PUBLICKEYBYTES + itemBytes);
+        try {
+            Pointer[] keys = new Pointer[keyIndexes.size()];
+            for (Map.Entry<ByteBuffer, Integer> key : keyIndexes.entrySet()) {
+                keys[key.getValue()] = s.in(key.getKey().array());
+            }
+            int mark = s.mark();
+            for (int i = from; i < to; i++) {
+                byte[] signature = signatures[i];
+                byte[] message = messages[i];
+                Integer keyIndex = publicKeys[i] == null ? null : keyIndexes.get(ByteBuffer.wrap(publicKeys[i]));
+                if (signature == null || signature.length != Sign.BYTES || message == null || keyIndex == null) {
+                    continue;
+                }
+                results[i] = successful(getSodium().crypto_sign_verify_detached(
+                        s.in(signature), s.in(message), message.length, keys[keyIndex]));
+                s.reset(mark);
+            }
+        } finally {
+            s.release();
+        }
+    }
+
+    @Override
+    public boolean convertPublicKeyEd25519ToCurve25519(byte[] curve, byte[] ed) {
+        return successful(getSodium().crypto_sign_ed25519_pk_to_curve25519(curve, ed));
+    }
+
+    @Override
+    public boolean convertSecretKeyEd25519ToCurve25519(byte[] curve, byte[] ed) {
+        return successful(getSodium().crypto_sign_ed25519_sk_to_curve25519(curve, ed));
+    }
+
+    @Override
+    public boolean cryptoSignEd25519SkToSeed(byte[] seed, byte[] ed) {
+        return successful(getSodium().crypto_sign_ed25519_sk_to_seed(seed, ed));
+    }
+
+    @Override
+    public boolean cryptoSignEd25519SkToPk(byte[] publicKey, byte[] ed) {
+        return successful(getSodium().crypto_sign_ed25519_sk_to_pk(publicKey, ed));
+    }
+
+    // -- lazy
+
     @Override
     public KeyPair cryptoSignKeypair() throws SodiumException {
-        byte[] publicKey = randomBytesBuf(Sign.PUBLICKEYBYTES);
-        byte[] secretKey = randomBytesBuf(Sign.SECRETKEYBYTES);
+        byte[] publicKey = new byte[Sign.PUBLICKEYBYTES];
+        byte[] secretKey = new byte[Sign.SECRETKEYBYTES];
         if (!cryptoSignKeypair(publicKey, secretKey)) {
             throw new SodiumException("Could not generate a signing keypair.");
         }
@@ -1169,8 +1943,8 @@ public abstract class LazySodium implements
 
     @Override
     public KeyPair cryptoSignSeedKeypair(byte[] seed) throws SodiumException {
-        byte[] publicKey = randomBytesBuf(Sign.PUBLICKEYBYTES);
-        byte[] secretKey = randomBytesBuf(Sign.SECRETKEYBYTES);
+        byte[] publicKey = new byte[Sign.PUBLICKEYBYTES];
+        byte[] secretKey = new byte[Sign.SECRETKEYBYTES];
         if (!cryptoSignSeedKeypair(publicKey, secretKey, seed)) {
             throw new SodiumException("Could not generate a signing keypair with a seed.");
         }
@@ -1189,42 +1963,62 @@ public abstract class LazySodium implements
 
     @Override
     public String cryptoSign(String message, String secretKey) throws SodiumException {
-        byte[] messageBytes = bytes(message);
-        byte[] secretKeyBytes = messageEncoder.decode(secretKey);
-        byte[] signedMessage = randomBytesBuf(Sign.BYTES + messageBytes.length);
-        boolean res = cryptoSign(signedMessage, messageBytes, messageBytes.length, secretKeyBytes);
-
-        if (!res) {
-            throw new SodiumException("Could not sign your message.");
-        }
-
-        return messageEncoder.encode(signedMessage);
+        return sign(message, messageEncoder.decode(secretKey));
     }
 
     @Override
     public String cryptoSign(String message, Key secretKey) throws SodiumException {
-        return cryptoSign(message, secretKey.getAsHexString());
+        return sign(message, secretKey.getAsBytes());
+    }
+
+    private String sign(String message, byte[] secretKeyBytes) throws SodiumException {
+        HeapScratch scratch = HeapScratch.acquire();
+        try {
+            byte[] messageBytes = scratch.encode(HeapScratch.MESSAGE, message, charset);
+            int messageLen = scratch.length(HeapScratch.MESSAGE);
+            int signedMessageLen = Sign.BYTES + messageLen;
+            byte[] signedMessage = scratch.array(HeapScratch.OUTPUT, signedMessageLen);
+            boolean res = cryptoSign(signedMessage, messageBytes, messageLen, secretKeyBytes);
+
+            if (!res) {
+                throw new SodiumException("Could not sign your message.");
+            }
+
+            return messageEncoder.encode(signedMessage, 0, signedMessageLen);
+        } finally {
+            scratch.release();
+        }
     }
 
     @Override
     public String cryptoSignOpen(String signedMessage, Key publicKey) {
-        byte[] signedMessageBytes = messageEncoder.decode(signedMessage);
         byte[] publicKeyBytes = publicKey.getAsBytes();
+        HeapScratch scratch = HeapScratch.acquire();
+        try {
+            int signedMessageLen = messageEncoder.decodedLength(signedMessage);
+            if (signedMessageLen < Sign.BYTES) {
+                return null;
+            }
+            byte[] signedMessageBytes = scratch.array(HeapScratch.MESSAGE, signedMessageLen);
+            messageEncoder.decodeInto(signedMessage, signedMessageBytes, 0);
+            int messageLen = signedMessageLen - Sign.BYTES;
+            byte[] messageBytes = scratch.array(HeapScratch.OUTPUT, messageLen);
 
-        byte[] messageBytes = randomBytesBuf(signedMessageBytes.length - Sign.BYTES);
+            boolean res = cryptoSignOpen(
+                    messageBytes,
+                    signedMessageBytes,
+                    signedMessageLen,
+                    publicKeyBytes
+            );
 
-        boolean res = cryptoSignOpen(
-                messageBytes,
-                signedMessageBytes,
-                signedMessageBytes.length,
-                publicKeyBytes
-        );
+            if (!res) {
+                return null;
+            }
 
-        if (!res) {
-            return null;
+            return new String(messageBytes, 0, messageLen, charset);
+        } finally {
+            scratch.release();
         }
-
-        return str(messageBytes);
     }
 
     @Override
@@ -1389,9 +2183,82 @@ public abstract class LazySodium implements
         ));
     }
 
+    @Override
+    public boolean cryptoSecretStreamPush(SecretStream.State state,
+                                          byte[] cipher,
+                                          int cipherOff,
+                                          byte[] message,
+                                          int messageOff,
+                                          int messageLen,
+                                          byte tag) {
+        int cipherLen = messageLen + SecretStream.ABYTES;
+        checkRange(message, messageOff, messageLen, "message");
+        checkRange(cipher, cipherOff, cipherLen, "cipher");
+        ScratchBuffer s = ScratchBuffer.acquire((long) messageLen + cipherLen);
+        try {
+            Pointer c = s.out(cipherLen);
+            int res = getSodium().crypto_secretstream_xchacha20poly1305_push(
+                    state,
+                    c,
+                    null,
+                    s.in(message, messageOff, messageLen),
+                    messageLen,
+                    null,
+                    0L,
+                    tag
+            );
+            if (!successful(res)) {
+                return false;
+            }
+            s.copyOut(c, cipher, cipherOff, cipherLen);
+            return true;
+        } finally {
+            s.release();
+        }
+    }
+
+    @Override
+    public boolean cryptoSecretStreamPull(SecretStream.State state,
+                                          byte[] message,
+                                          int messageOff,
+                                          byte[] tag,
+                                          byte[] cipher,
+                                          int cipherOff,
+                                          int cipherLen) {
+        checkRange(cipher, cipherOff, cipherLen, "cipher");
+        if (cipherLen < SecretStream.ABYTES) {
+            return false;
+        }
+        int messageLen = cipherLen - SecretStream.ABYTES;
+        checkRange(message, messageOff, messageLen, "message");
+        ScratchBuffer s = ScratchBuffer.acquire((long) messageLen + cipherLen + ScratchBuffer.arrayBytes(tag));
+        try {
+            Pointer m = s.out(messageLen);
+            Pointer tagPointer = s.out(tag);
+            int res = getSodium().crypto_secretstream_xchacha20poly1305_pull(
+                    state,
+                    m,
+                    null,
+                    tagPointer,
+                    s.in(cipher, cipherOff, cipherLen),
+                    cipherLen,
+                    null,
+                    0L
+            );
+            if (!successful(res)) {
+                return false;
+            }
+            s.copyOut(m, message, messageOff, messageLen);
+            s.copyOut(tagPointer, tag);
+            return true;
+        } finally {
+            s.release();
+        }
+    }
+
     @Override
     public Key cryptoSecretStreamKeygen() {
-        byte[] key = randomBytesBuf(SecretStream.KEYBYTES);
+        byte[] key = new byte[SecretStream.KEYBYTES];
         getSodium().crypto_secretstream_xchacha20poly1305_keygen(key);
         return Key.fromBytes(key);
     }
@@ -1402,10 +2269,25 @@ public abstract class LazySodium implements
         if (!SecretStream.Checker.headerCheck(header.length)) {
             throw new SodiumException("Header of secret stream incorrect length.");
         }
-        getSodium().crypto_secretstream_xchacha20poly1305_init_push(state, header, key.getAsBytes());
+        if (key instanceof SecureKey) {
+            getSodium().crypto_secretstream_xchacha20poly1305_init_push(state, header, secretStreamKey((SecureKey) key));
+        } else {
+            getSodium().crypto_secretstream_xchacha20poly1305_init_push(state, header, key.getAsBytes());
+        }
         return state;
     }
 
+    /**
+     * The native function reads a whole key, which would run into the
+     * guard page after a shorter SecureKey rather than past an array.
+     */
+    private static Pointer secretStreamKey(SecureKey key) throws SodiumException {
+        if (key.getSize() != SecretStream.KEYBYTES) {
+            throw new SodiumException("Key is incorrect size.");
+        }
+        return key.getPointer();
+    }
+
     @Override
     public String cryptoSecretStreamPush(SecretStream.State state, String message, byte tag) throws SodiumException {
         byte[] messageBytes = bytes(message);
@@ -1435,7 +2317,9 @@ public abstract class LazySodium implements
             throw new SodiumException("Header of secret stream incorrect length.");
         }
 
-        int res = getSodium().crypto_secretstream_xchacha20poly1305_init_pull(state, header, key.getAsBytes());
+        int res = key instanceof SecureKey
+                ? getSodium().crypto_secretstream_xchacha20poly1305_init_pull(state, header, secretStreamKey((SecureKey) key))
+                : getSodium().crypto_secretstream_xchacha20poly1305_init_pull(state, header, key.getAsBytes());
 
         if (res != 0) {
             throw new SodiumException("Could not initialise a decryption state.");
@@ -1595,19 +2479,19 @@ public abstract class LazySodium implements
     @Override
     public Key cryptoStreamKeygen(Stream.Method method) {
         if (method.equals(Stream.Method.CHACHA20)) {
-            byte[] k = randomBytesBuf(Stream.CHACHA20_KEYBYTES);
+            byte[] k = new byte[Stream.CHACHA20_KEYBYTES];
             cryptoStreamChaCha20Keygen(k);
             return Key.fromBytes(k);
         } else if (method.equals(Stream.Method.CHACHA20_IETF)) {
-            byte[] k = randomBytesBuf(Stream.CHACHA20_IETF_KEYBYTES);
+            byte[] k = new byte[Stream.CHACHA20_IETF_KEYBYTES];
             cryptoStreamChaCha20Keygen(k);
             return Key.fromBytes(k);
         } else if (method.equals(Stream.Method.SALSA20)) {
-            byte[] k = randomBytesBuf(Stream.SALSA20_KEYBYTES);
+            byte[] k = new byte[Stream.SALSA20_KEYBYTES];
             cryptoStreamSalsa20Keygen(k);
             return Key.fromBytes(k);
         } else {
-            byte[] k = randomBytesBuf(Stream.XSALSA20_KEYBYTES);
+            byte[] k = new byte[Stream.XSALSA20_KEYBYTES];
             cryptoStreamXSalsa20Keygen(k);
             return Key.fromBytes(k);
         }
@@ -1708,6 +2592,36 @@ public abstract class LazySodium implements
         return successful(getSodium().crypto_auth_verify(tag, in, inLen, key));
     }
 
+    @Override
+    public boolean cryptoAuth(byte[] tag, int tagOff, byte[] in, int inOff, int inLen, byte[] key) {
+        checkRange(in, inOff, inLen, "in");
+        checkRange(tag, tagOff, Auth.BYTES, "tag");
+        ScratchBuffer s = ScratchBuffer.acquire((long) Auth.BYTES + inLen + ScratchBuffer.arrayBytes(key));
+        try {
+            Pointer tagPointer = s.out(Auth.BYTES);
+            int res = getSodium().crypto_auth(tagPointer, s.in(in, inOff, inLen), inLen, s.in(key));
+            if (!successful(res)) {
+                return false;
+            }
+            s.copyOut(tagPointer, tag, tagOff, Auth.BYTES);
+            return true;
+        } finally {
+            s.release();
+        }
+    }
+
+    @Override
+    public boolean cryptoAuthVerify(byte[] tag, int tagOff, byte[] in, int inOff, int inLen, byte[] key) {
+        checkRange(in, inOff, inLen, "in");
+        checkRange(tag, tagOff, Auth.BYTES, "tag");
+        ScratchBuffer s = ScratchBuffer.acquire((long) Auth.BYTES + inLen + ScratchBuffer.arrayBytes(key));
+        try {
+            return successful(getSodium().crypto_auth_verify(s.in(tag, tagOff, Auth.BYTES), s.in(in, inOff, inLen), inLen, s.in(key)));
+        } finally {
+            s.release();
+        }
+    }
+
     @Override
     public void cryptoAuthKeygen(byte[] k) {
         getSodium().crypto_auth_keygen(k);
@@ -1716,17 +2630,18 @@ public abstract class LazySodium implements
 
     @Override
     public Key cryptoAuthKeygen() {
-        byte[] key = randomBytesBuf(Auth.KEYBYTES);
+        byte[] key = new byte[Auth.KEYBYTES];
         cryptoAuthKeygen(key);
         return Key.fromBytes(key);
     }
 
     @Override
     public String cryptoAuth(String message, Key key) throws SodiumException {
-        byte[] tag = randomBytesBuf(Auth.BYTES);
+        byte[] tag = new byte[Auth.BYTES];
         byte[] messageBytes = bytes(message);
-        byte[] keyBytes = key.getAsBytes();
-        boolean res = cryptoAuth(tag, messageBytes, messageBytes.length, keyBytes);
+        boolean res = key instanceof SecureKey
+                ? auth(tag, messageBytes, (SecureKey) key)
+                : cryptoAuth(tag, messageBytes, messageBytes.length, key.getAsBytes());
 
         if (!res) {
             throw new SodiumException("Could not apply auth tag to your message.");
@@ -1739,8 +2654,39 @@ public abstract class LazySodium implements
     public boolean cryptoAuthVerify(String tag, String message, Key key) {
         byte[] tagToBytes = messageEncoder.decode(tag);
         byte[] messageBytes = bytes(message);
-        byte[] keyBytes = key.getAsBytes();
-        return cryptoAuthVerify(tagToBytes, messageBytes, messageBytes.length, keyBytes);
+        if (key instanceof SecureKey) {
+            return authVerify(tagToBytes, messageBytes, (SecureKey) key);
+        }
+        return cryptoAuthVerify(tagToBytes, messageBytes, messageBytes.length, key.getAsBytes());
+    }
+
+    private boolean auth(byte[] tag, byte[] message, SecureKey key) {
+        if (key.getSize() != Auth.KEYBYTES) {
+            return false;
+        }
+        ScratchBuffer s = ScratchBuffer.acquire(ScratchBuffer.arrayBytes(tag, message));
+        try {
+            Pointer tagPointer = s.out(Auth.BYTES);
+            if (!successful(getSodium().crypto_auth(tagPointer, s.in(message), message.length, key.getPointer()))) {
+                return false;
+            }
+            s.copyOut(tagPointer, tag, 0, Auth.BYTES);
+            return true;
+        } finally {
+            s.release();
+        }
+    }
+
+    private boolean authVerify(byte[] tag, byte[] message, SecureKey key) {
+        if (key.getSize() != Auth.KEYBYTES || tag.length != Auth.BYTES) {
+            return false;
+        }
+        ScratchBuffer s = ScratchBuffer.acquire(ScratchBuffer.arrayBytes(tag, message));
+        try {
+            return successful(getSodium().crypto_auth_verify(s.in(tag), s.in(message), message.length, key.getPointer()));
+        } finally {
+            s.release();
+        }
     }
 
 
@@ -2014,7 +2960,7 @@ public abstract class LazySodium implements
     public String cryptoShortHash(String in, Key key) throws SodiumException {
         byte[] inBytes = hexToBytes(in);
         byte[] keyBytes = key.getAsBytes();
-        byte[] out = randomBytesBuf(ShortHash.BYTES);
+        byte[] out = new byte[ShortHash.BYTES];
         if (getSodium().crypto_shorthash(out, inBytes, inBytes.length, keyBytes) != 0) {
             throw new SodiumException("Failed short-input hashing.");
         }
@@ -2023,7 +2969,7 @@ public abstract class LazySodium implements
 
     @Override
     public Key cryptoShortHashKeygen() {
-        byte[] key = randomBytesBuf(ShortHash.SIPHASH24_KEYBYTES);
+        byte[] key = new byte[ShortHash.SIPHASH24_KEYBYTES];
         getSodium().crypto_shorthash_keygen(key);
         return Key.fromBytes(key);
     }
@@ -2073,6 +3019,43 @@ public abstract class LazySodium implements
         return successful(getSodium().crypto_generichash_update(state, in, inLen));
     }
 
+    @Override
+    public boolean cryptoGenericHashUpdate(byte[] state, byte[] in, int inOff, int inLen) {
+        checkRange(in, inOff, inLen, "in");
+        ScratchBuffer s = ScratchBuffer.acquire(inLen);
+        try {
+            return successful(getSodium().crypto_generichash_update(state, s.in(in, inOff, inLen), inLen));
+        } finally {
+            s.release();
+        }
+    }
+
+    @Override
+    public boolean cryptoGenericHash(byte[] out, int outOff, int outLen, byte[] in, int inOff, int inLen, byte[] key, int keyLen) {
+        checkRange(in, inOff, inLen, "in");
+        checkRange(out, outOff, outLen, "out");
+        if (key != null) {
+            checkRange(key, 0, keyLen, "key");
+        }
+        ScratchBuffer s = ScratchBuffer.acquire((long) outLen + inLen + ScratchBuffer.arrayBytes(key));
+        try {
+            Pointer outPointer = s.out(outLen);
+            int res = getSodium().crypto_generichash(outPointer, outLen, s.in(in, inOff, inLen), inLen, s.in(key), keyLen);
+            if (!successful(res)) {
+                return false;
+            }
+            s.copyOut(outPointer, out, outOff, outLen);
+            return true;
+        } finally {
+            s.release();
+        }
+    }
+
+    @Override
+    public boolean cryptoGenericHash(byte[] out, int outOff, int outLen, byte[] in, int inOff, int inLen) {
+        return cryptoGenericHash(out, outOff, outLen, in, inOff, inLen, null, 0);
+    }
+
     @Override
     public boolean cryptoGenericHashFinal(byte[] state, byte[] out, int outLen) {
         return successful(getSodium().crypto_generichash_final(state, out, outLen));
@@ -2092,7 +3075,7 @@ public abstract class LazySodium implements
 
     @Override
     public Key cryptoGenericHashKeygen() {
-        byte[] key = randomBytesBuf(GenericHash.KEYBYTES);
+        byte[] key = new byte[GenericHash.KEYBYTES];
         cryptoGenericHashKeygen(key);
         return Key.fromBytes(key);
     }
@@ -2106,30 +3089,30 @@ public abstract class LazySodium implements
 
     @Override
     public String cryptoGenericHash(String in, Key key) throws SodiumException {
-        byte[] message = bytes(in);
         byte[] keyBytes = key.getAsBytes();
-
-        byte[] hash = randomBytesBuf(GenericHash.BYTES);
-        boolean res = cryptoGenericHash(hash, hash.length, message, message.length, keyBytes, keyBytes.length);
-
-        if (!res) {
-            throw new SodiumException("Could not hash the message.");
-        }
-
-        return messageEncoder.encode(hash);
+        return genericHash(in, keyBytes, keyBytes.length);
     }
 
     @Override
     public String cryptoGenericHash(String in) throws SodiumException {
-        byte[] message = bytes(in);
-        byte[] hash = randomBytesBuf(GenericHash.BYTES);
-        boolean res = cryptoGenericHash(hash, hash.length, message, message.length, null, 0);
+        return genericHash(in, null, 0);
+    }
 
-        if (!res) {
-            throw new SodiumException("Could not hash the message.");
-        }
+    private String genericHash(String in, byte[] key, int keyLen) throws SodiumException {
+        HeapScratch scratch = HeapScratch.acquire();
+        try {
+            byte[] message = scratch.encode(HeapScratch.MESSAGE, in, charset);
+            byte[] hash = scratch.array(HeapScratch.OUTPUT, GenericHash.BYTES);
+            boolean res = cryptoGenericHash(hash, GenericHash.BYTES, message, scratch.length(HeapScratch.MESSAGE), key, keyLen);
 
-        return messageEncoder.encode(hash);
+            if (!res) {
+                throw new SodiumException("Could not hash the message.");
+            }
+
+            return messageEncoder.encode(hash, 0, GenericHash.BYTES);
+        } finally {
+            scratch.release();
+        }
     }
 
     @Override
@@ -2270,6 +3253,431 @@ public abstract class LazySodium implements
         return getSodium().crypto_aead_aes256gcm_is_available() == 1;
     }
 
+    @Override
+    public boolean cryptoAeadAES256GCMBeforeNm(AEAD.StateAES state, byte[] key) {
+        if (key.length != AEAD.AES256GCM_KEYBYTES) {
+            return false;
+        }
+        return successful(getSodium().crypto_aead_aes256gcm_beforenm(state, key));
+    }
+
+    @Override
+    public boolean cryptoAeadAES256GCMEncryptAfterNm(byte[] cipher, long[] cipherLen, byte[] message, long messageLen, byte[] additionalData, long additionalDataLen, byte[] nSec, byte[] nPub, AEAD.StateAES state) {
+        return successful(getSodium().crypto_aead_aes256gcm_encrypt_afternm(cipher, cipherLen, message, messageLen, additionalData, additionalDataLen, nSec, nPub, state));
+    }
+
+    @Override
+    public boolean cryptoAeadAES256GCMDecryptAfterNm(byte[] message, long[] messageLen, byte[] nSec, byte[] cipher, long cipherLen, byte[] additionalData, long additionalDataLen, byte[] nPub, AEAD.StateAES state) {
+        return successful(getSodium().crypto_aead_aes256gcm_decrypt_afternm(message, messageLen, nSec, cipher, cipherLen, additionalData, additionalDataLen, nPub, state));
+    }
+
+    @Override
+    public boolean cryptoAeadChaCha20Poly1305Encrypt(ByteBuffer cipher, ByteBuffer message, ByteBuffer additionalData, ByteBuffer nPub, ByteBuffer key) {
+        return aeadEncrypt(AEAD.Method.CHACHA20_POLY1305, cipher, message, additionalData, nPub, key);
+    }
+
+    @Override
+    public boolean cryptoAeadChaCha20Poly1305Decrypt(ByteBuffer message, ByteBuffer cipher, ByteBuffer additionalData, ByteBuffer nPub, ByteBuffer key) {
+        return aeadDecrypt(AEAD.Method.CHACHA20_POLY1305, message, cipher, additionalData, nPub, key);
+    }
+
+    @Override
+    public boolean cryptoAeadChaCha20Poly1305IetfEncrypt(ByteBuffer cipher, ByteBuffer message, ByteBuffer additionalData, ByteBuffer nPub, ByteBuffer key) {
+        return aeadEncrypt(AEAD.Method.CHACHA20_POLY1305_IETF, cipher, message, additionalData, nPub, key);
+    }
+
+    @Override
+    public boolean cryptoAeadChaCha20Poly1305IetfDecrypt(ByteBuffer message, ByteBuffer cipher, ByteBuffer additionalData, ByteBuffer nPub, ByteBuffer key) {
+        return aeadDecrypt(AEAD.Method.CHACHA20_POLY1305_IETF, message, cipher, additionalData, nPub, key);
+    }
+
+    @Override
+    public boolean cryptoAeadXChaCha20Poly1305IetfEncrypt(ByteBuffer cipher, ByteBuffer message, ByteBuffer additionalData, ByteBuffer nPub, ByteBuffer key) {
+        return aeadEncrypt(AEAD.Method.XCHACHA20_POLY1305_IETF, cipher, message, additionalData, nPub, key);
+    }
+
+    @Override
+    public boolean cryptoAeadXChaCha20Poly1305IetfDecrypt(ByteBuffer message, ByteBuffer cipher, ByteBuffer additionalData, ByteBuffer nPub, ByteBuffer key) {
+        return aeadDecrypt(AEAD.Method.XCHACHA20_POLY1305_IETF, message, cipher, additionalData, nPub, key);
+    }
+
+    @Override
+    public boolean cryptoAeadAES256GCMEncrypt(ByteBuffer cipher, ByteBuffer message, ByteBuffer additionalData, ByteBuffer nPub, ByteBuffer key) {
+        return aeadEncrypt(AEAD.Method.AES256GCM, cipher, message, additionalData, nPub, key);
+    }
+
+    @Override
+    public boolean cryptoAeadAES256GCMDecrypt(ByteBuffer message, ByteBuffer cipher, ByteBuffer additionalData, ByteBuffer nPub, ByteBuffer key) {
+        return aeadDecrypt(AEAD.Method.AES256GCM, message, cipher, additionalData, nPub, key);
+    }
+
+    @Override
+    public boolean cryptoAeadChaCha20Poly1305Encrypt(byte[] cipher, int cipherOff, byte[] message, int messageOff, int messageLen, byte[] additionalData, int additionalDataOff, int additionalDataLen, byte[] nPub, byte[] key) {
+        return aeadEncrypt(AEAD.Method.CHACHA20_POLY1305, wrap(cipher, cipherOff, cipher.length - cipherOff, "cipher"), wrap(message, messageOff, messageLen, "message"),
+                wrap(additionalData, additionalDataOff, additionalDataLen, "additionalData"), ByteBuffer.wrap(nPub), ByteBuffer.wrap(key));
+    }
+
+    @Override
+    public boolean cryptoAeadChaCha20Poly1305Decrypt(byte[] message, int messageOff, byte[] cipher, int cipherOff, int cipherLen, byte[] additionalData, int additionalDataOff, int additionalDataLen, byte[] nPub, byte[] key) {
+        return aeadDecrypt(AEAD.Method.CHACHA20_POLY1305, wrap(message, messageOff, message.length - messageOff, "message"), wrap(cipher, cipherOff, cipherLen, "cipher"),
+                wrap(additionalData, additionalDataOff, additionalDataLen, "additionalData"), ByteBuffer.wrap(nPub), ByteBuffer.wrap(key));
+    }
+
+    @Override
+    public boolean cryptoAeadChaCha20Poly1305IetfEncrypt(byte[] cipher, int cipherOff, byte[] message, int messageOff, int messageLen, byte[] additionalData, int additionalDataOff, int additionalDataLen, byte[] nPub, byte[] key) {
+        return aeadEncrypt(AEAD.Method.CHACHA20_POLY1305_IETF, wrap(cipher, cipherOff, cipher.length - cipherOff, "cipher"), wrap(message, messageOff, messageLen, "message"),
+                wrap(additionalData, additionalDataOff, additionalDataLen, "additionalData"), ByteBuffer.wrap(nPub), ByteBuffer.wrap(key));
+    }
+
+    @Override
+    public boolean cryptoAeadChaCha20Poly1305IetfDecrypt(byte[] message, int messageOff, byte[] cipher, int cipherOff, int cipherLen, byte[] additionalData, int additionalDataOff, int additionalDataLen, byte[] nPub, byte[] key) {
+        return aeadDecrypt(AEAD.Method.CHACHA20_POLY1305_IETF, wrap(message, messageOff, message.length - messageOff, "message"), wrap(cipher, cipherOff, cipherLen, "cipher"),
+                wrap(additionalData, additionalDataOff, additionalDataLen, "additionalData"), ByteBuffer.wrap(nPub), ByteBuffer.wrap(key));
+    }
+
+    @Override
+    public boolean cryptoAeadXChaCha20Poly1305IetfEncrypt(byte[] cipher, int cipherOff, byte[] message, int messageOff, int messageLen, byte[] additionalData, int additionalDataOff, int additionalDataLen, byte[] nPub, byte[] key) {
+        return aeadEncrypt(AEAD.Method.XCHACHA20_POLY1305_IETF, wrap(cipher, cipherOff, cipher.length - cipherOff, "cipher"), wrap(message, messageOff, messageLen, "message"),
+                wrap(additionalData, additionalDataOff, additionalDataLen, "additionalData"), ByteBuffer.wrap(nPub), ByteBuffer.wrap(key));
+    }
+
+    @Override
+    public boolean cryptoAeadXChaCha20Poly1305IetfDecrypt(byte[] message, int messageOff, byte[] cipher, int cipherOff, int cipherLen, byte[] additionalData, int additionalDataOff, int additionalDataLen, byte[] nPub, byte[] key) {
+        return aeadDecrypt(AEAD.Method.XCHACHA20_POLY1305_IETF, wrap(message, messageOff, message.length - messageOff, "message"), wrap(cipher, cipherOff, cipherLen, "cipher"),
+                wrap(additionalData, additionalDataOff, additionalDataLen, "additionalData"), ByteBuffer.wrap(nPub), ByteBuffer.wrap(key));
+    }
+
+    @Override
+    public boolean cryptoAeadAES256GCMEncrypt(byte[] cipher, int cipherOff, byte[] message, int messageOff, int messageLen, byte[] additionalData, int additionalDataOff, int additionalDataLen, byte[] nPub, byte[] key) {
+        return aeadEncrypt(AEAD.Method.AES256GCM, wrap(cipher, cipherOff, cipher.length - cipherOff, "cipher"), wrap(message, messageOff, messageLen, "message"),
+                wrap(additionalData, additionalDataOff, additionalDataLen, "additionalData"), ByteBuffer.wrap(nPub), ByteBuffer.wrap(key));
+    }
+
+    @Override
+    public boolean cryptoAeadAES256GCMDecrypt(byte[] message, int messageOff, byte[] cipher, int cipherOff, int cipherLen, byte[] additionalData, int additionalDataOff, int additionalDataLen, byte[] nPub, byte[] key) {
+        return aeadDecrypt(AEAD.Method.AES256GCM, wrap(message, messageOff, message.length - messageOff, "message"), wrap(cipher, cipherOff, cipherLen, "cipher"),
+                wrap(additionalData, additionalDataOff, additionalDataLen, "additionalData"), ByteBuffer.wrap(nPub), ByteBuffer.wrap(key));
+    }
+
+    private boolean aeadEncrypt(AEAD.Method method,
+                                ByteBuffer cipher,
+                                ByteBuffer message,
+                                ByteBuffer additionalData,
+                                ByteBuffer nPub,
+                                ByteBuffer key) {
+        int messageLen = message.remaining();
+        int cipherLen = messageLen + AEAD.CHACHA20POLY1305_ABYTES;
+        ByteBuffer c = window(cipher, cipherLen, "cipher");
+        ByteBuffer n = window(nPub, aeadNonceBytes(method), "nPub");
+        ByteBuffer k = window(key, AEAD.CHACHA20POLY1305_KEYBYTES, "key");
+        long adLen = additionalData == null ? 0 : additionalData.remaining();
+
+        ScratchBuffer s = ScratchBuffer.acquire(ScratchBuffer.heapBytes(c, message, additionalData, n, k));
+        try {
+            Pointer cPointer = s.out(c);
+            Pointer mPointer = s.in(message);
+            Pointer adPointer = s.in(additionalData);
+            Pointer nPointer = s.in(n);
+            Pointer kPointer = s.in(k);
+            if (!aeadEncrypt(method, cPointer, mPointer, messageLen, adPointer, adLen, nPointer, kPointer)) {
+                return false;
+            }
+            s.copyOut(cPointer, c, cipherLen);
+        } finally {
+            s.release();
+        }
+        message.position(message.position() + messageLen);
+        cipher.position(cipher.position() + cipherLen);
+        return true;
+    }
+
+    private boolean aeadDecrypt(AEAD.Method method,
+                                ByteBuffer message,
+                                ByteBuffer cipher,
+                                ByteBuffer additionalData,
+                                ByteBuffer nPub,
+                                ByteBuffer key) {
+        int cipherLen = cipher.remaining();
+        if (cipherLen < AEAD.CHACHA20POLY1305_ABYTES) {
+            return false;
+        }
+        int messageLen = cipherLen - AEAD.CHACHA20POLY1305_ABYTES;
+        ByteBuffer m = window(message, messageLen, "message");
+        ByteBuffer n = window(nPub, aeadNonceBytes(method), "nPub");
+        ByteBuffer k = window(key, AEAD.CHACHA20POLY1305_KEYBYTES, "key");
+        long adLen = additionalData == null ? 0 : additionalData.remaining();
+
+        ScratchBuffer s = ScratchBuffer.acquire(ScratchBuffer.heapBytes(m, cipher, additionalData, n, k));
+        try {
+            Pointer mPointer = s.out(m);
+            Pointer cPointer = s.in(cipher);
+            Pointer adPointer = s.in(additionalData);
+            Pointer nPointer = s.in(n);
+            Pointer kPointer = s.in(k);
+            if (!aeadDecrypt(method, mPointer, cPointer, cipherLen, adPointer, adLen, nPointer, kPointer)) {
+                return false;
+            }
+            s.copyOut(mPointer, m, messageLen);
+        } finally {
+            s.release();
+        }
+        cipher.position(cipher.position() + cipherLen);
+        message.position(message.position() + messageLen);
+        return true;
+    }
+
+    private boolean aeadEncrypt(AEAD.Method method, byte[] cipher, int cipherLen, byte[] message, int messageLen,
+                                byte[] additionalData, int additionalDataLen, byte[] nPub, SecureKey key) {
+        if (key.getSize() != AEAD.CHACHA20POLY1305_KEYBYTES || nPub.length != aeadNonceBytes(method)) {
+            return false;
+        }
+        ScratchBuffer s = ScratchBuffer.acquire((long) cipherLen + messageLen + additionalDataLen + nPub.length);
+        try {
+            Pointer c = s.out(cipherLen);
+            if (!aeadEncrypt(method, c, s.in(message, 0, messageLen), messageLen,
+                    s.in(additionalData, 0, additionalDataLen), additionalDataLen, s.in(nPub), key.getPointer())) {
+                return false;
+            }
+            s.copyOut(c, cipher, 0, cipherLen);
+            return true;
+        } finally {
+            s.release();
+        }
+    }
+
+    private boolean aeadDecrypt(AEAD.Method method, byte[] message, int messageLen, byte[] cipher, int cipherLen,
+                                byte[] additionalData, int additionalDataLen, byte[] nPub, SecureKey key) {
+        if (key.getSize() != AEAD.CHACHA20POLY1305_KEYBYTES || nPub.length != aeadNonceBytes(method)) {
+            return false;
+        }
+        ScratchBuffer s = ScratchBuffer.acquire((long) messageLen + cipherLen + additionalDataLen + nPub.length);
+        try {
+            Pointer m = s.out(messageLen);
+            if (!aeadDecrypt(method, m, s.in(cipher, 0, cipherLen), cipherLen,
+                    s.in(additionalData, 0, additionalDataLen), additionalDataLen, s.in(nPub), key.getPointer())) {
+                return false;
+            }
+            s.copyOut(m, message, 0, messageLen);
+            return true;
+        } finally {
+            s.release();
+        }
+    }
+
+    private boolean aeadEncrypt(AEAD.Method method, Pointer c, Pointer m, long mLen, Pointer ad, long adLen, Pointer nPub, Pointer key) {
+        switch (method) {
+            case CHACHA20_POLY1305:
+                return successful(getSodium().crypto_aead_chacha20poly1305_encrypt(c, null, m, mLen, ad, adLen, null, nPub, key));
+            case CHACHA20_POLY1305_IETF:
+                return successful(getSodium().crypto_aead_chacha20poly1305_ietf_encrypt(c, null, m, mLen, ad, adLen, null, nPub, key));
+            case XCHACHA20_POLY1305_IETF:
+                return successful(getSodium().crypto_aead_xchacha20poly1305_ietf_encrypt(c, null, m, mLen, ad, adLen, null, nPub, key));
+            default:
+                return successful(getSodium().crypto_aead_aes256gcm_encrypt(c, null, m, mLen, ad, adLen, null, nPub, key));
+        }
+    }
+
+    private boolean aeadDecrypt(AEAD.Method method, Pointer m, Pointer c, long cLen, Pointer ad, long adLen, Pointer nPub, Pointer key) {
+        switch (method) {
+            case CHACHA20_POLY1305:
+                return successful(getSodium().crypto_aead_chacha20poly1305_decrypt(m, null, null, c, cLen, ad, adLen, nPub, key));
+            case CHACHA20_POLY1305_IETF:
+                return successful(getSodium().crypto_aead_chacha20poly1305_ietf_decrypt(m, null, null, c, cLen, ad, adLen, nPub, key));
+            case XCHACHA20_POLY1305_IETF:
+                return successful(getSodium().crypto_aead_xchacha20poly1305_ietf_decrypt(m, null, null, c, cLen, ad, adLen, nPub, key));
+            default:
+                return successful(getSodium().crypto_aead_aes256gcm_decrypt(m, null, null, c, cLen, ad, adLen, nPub, key));
+        }
+    }
+
+    @Override
+    public boolean cryptoAeadEncryptInPlace(byte[] buffer, int messageOff, int messageLen, byte[] additionalData, byte[] nPub, byte[] key, AEAD.Method method) {
+        return cryptoAeadEncryptInPlace(ByteBuffer.wrap(buffer), messageOff, messageLen, additionalData, nPub, key, method);
+    }
+
+    @Override
+    public boolean cryptoAeadDecryptInPlace(byte[] buffer, int cipherOff, int cipherLen, byte[] additionalData, byte[] nPub, byte[] key, AEAD.Method method) {
+        return cryptoAeadDecryptInPlace(ByteBuffer.wrap(buffer), cipherOff, cipherLen, additionalData, nPub, key, method);
+    }
+
+    @Override
+    public boolean cryptoAeadEncryptInPlace(ByteBuffer buffer, int messageOff, int messageLen, byte[] additionalData, byte[] nPub, byte[] key, AEAD.Method method) {
+        if (messageLen < 0) {
+            throw new IllegalArgumentException("messageLen out of bounds: " + messageLen);
+        }
+        int cipherLen = messageLen + AEAD.CHACHA20POLY1305_ABYTES;
+        int nonceLen = aeadNonceBytes(method);
+        checkRange(buffer, messageOff, cipherLen, "buffer");
+        checkRange(nPub, 0, nonceLen, "nPub");
+        checkRange(key, 0, AEAD.CHACHA20POLY1305_KEYBYTES, "key");
+        ScratchBuffer s = ScratchBuffer.acquire(inPlaceBytes(buffer, cipherLen) + ScratchBuffer.arrayBytes(additionalData)
+                + nonceLen + AEAD.CHACHA20POLY1305_KEYBYTES);
+        try {
+            Pointer c = s.inPlace(buffer, messageOff, cipherLen);
+            if (!aeadEncrypt(method, c, c, messageLen, s.in(additionalData), ScratchBuffer.arrayBytes(additionalData),
+                    s.in(nPub, 0, nonceLen), s.in(key, 0, AEAD.CHACHA20POLY1305_KEYBYTES))) {
+                return false;
+            }
+            s.copyBack(c, buffer, messageOff, cipherLen);
+            return true;
+        } finally {
+            s.release();
+        }
+    }
+
+    @Override
+    public boolean cryptoAeadDecryptInPlace(ByteBuffer buffer, int cipherOff, int cipherLen, byte[] additionalData, byte[] nPub, byte[] key, AEAD.Method method) {
+        int nonceLen = aeadNonceBytes(method);
+        checkRange(buffer, cipherOff, cipherLen, "buffer");
+        checkRange(nPub, 0, nonceLen, "nPub");
+        checkRange(key, 0, AEAD.CHACHA20POLY1305_KEYBYTES, "key");
+        if (cipherLen < AEAD.CHACHA20POLY1305_ABYTES) {
+            return false;
+        }
+        ScratchBuffer s = ScratchBuffer.acquire(inPlaceBytes(buffer, cipherLen) + ScratchBuffer.arrayBytes(additionalData)
+                + nonceLen + AEAD.CHACHA20POLY1305_KEYBYTES);
+        try {
+            Pointer c = s.inPlace(buffer, cipherOff, cipherLen);
+            if (!aeadDecrypt(method, c, c, cipherLen, s.in(additionalData), ScratchBuffer.arrayBytes(additionalData),
+                    s.in(nPub, 0, nonceLen), s.in(key, 0, AEAD.CHACHA20POLY1305_KEYBYTES))) {
+                return false;
+            }
+            s.copyBack(c, buffer, cipherOff, cipherLen - AEAD.CHACHA20POLY1305_ABYTES);
+            return true;
+        } finally {
+            s.release();
+        }
+    }
+
+    @Override
+    public boolean[] cryptoAeadEncryptBatch(byte[][] ciphers, byte[][] messages, byte[][] additionalData, byte[][] nPubs, byte[] key, AEAD.Method method) {
+        return aeadBatch(true, ciphers, messages, additionalData, nPubs, key, null, method);
+    }
+
+    @Override
+    public boolean[] cryptoAeadEncryptBatch(byte[][] ciphers, byte[][] messages, byte[][] additionalData, byte[][] nPubs, byte[][] keys, AEAD.Method method) {
+        return aeadBatch(true, ciphers, messages, additionalData, nPubs, null, keys, method);
+    }
+
+    @Override
+    public boolean[] cryptoAeadDecryptBatch(byte[][] messages, byte[][] ciphers, byte[][] additionalData, byte[][] nPubs, byte[] key, AEAD.Method method) {
+        return aeadBatch(false, messages, ciphers, additionalData, nPubs, key, null, method);
+    }
+
+    @Override
+    public boolean[] cryptoAeadDecryptBatch(byte[][] messages, byte[][] ciphers, byte[][] additionalData, byte[][] nPubs, byte[][] keys, AEAD.Method method) {
+        return aeadBatch(false, messages, ciphers, additionalData, nPubs, null, keys, method);
+    }
+
+    /**
+     * Encrypts or decrypts every item of a batch, reusing one piece of
+     * scratch memory. A shared key is copied into it once, then each
+     * item is staged after it and wiped before the next one.
+     */
+    private boolean[] aeadBatch(boolean encrypt,
+                                byte[][] out,
+                                byte[][] in,
+                                byte[][] additionalData,
+                                byte[][] nPubs,
+                                byte[] key,
+                                byte[][] keys,
+                                AEAD.Method method) {
+        int count = in.length;
+        int nonceLen = aeadNonceBytes(method);
+        int keyLen = AEAD.CHACHA20POLY1305_KEYBYTES;
+        int tagLen = AEAD.CHACHA20POLY1305_ABYTES;
+        checkBatch(out, count, "out");
+        checkBatch(nPubs, count, "nPubs");
+        if (additionalData != null) {
+            checkBatch(additionalData, count, "additionalData");
+        }
+        if (key != null) {
+            checkRange(key, 0, keyLen, "key");
+        } else {
+            checkBatch(keys, count, "keys");
+        }
+
+        long itemBytes = 0;
+        for (int i = 0; i < count; i++) {
+            int outLen = encrypt ? in[i].length + tagLen : Math.max(in[i].length - tagLen, 0);
+            checkRange(out[i], 0, outLen, "out[" + i + "]");
+            checkRange(nPubs[i], 0, nonceLen, "nPubs[" + i + "]");
+            if (keys != null) {
+                checkRange(keys[i], 0, keyLen, "keys[" + i + "]");
+            }
+            long bytes = (long) outLen + in[i].length + nonceLen + (keys == null ? 0 : keyLen)
+                    + (additionalData == null ? 0 : ScratchBuffer.arrayBytes(additionalData[i]));
+            itemBytes = Math.max(itemBytes, bytes);
+        }
+
+        boolean[] results = new boolean[count];
+        ScratchBuffer s = ScratchBuffer.acquire((key == null ? 0 : keyLen) + itemBytes);
+        try {
+            Pointer sharedKey = key == null ? null : s.in(key, 0, keyLen);
+            int mark = s.mark();
+            for (int i = 0; i < count; i++) {
+                int inLen = in[i].length;
+                if (!encrypt && inLen < tagLen) {
+                    continue;
+                }
+                int outLen = encrypt ? inLen + tagLen : inLen - tagLen;
+                byte[] ad = additionalData == null ? null : additionalData[i];
+                Pointer outPointer = s.out(outLen);
+                Pointer inPointer = s.in(in[i]);
+                Pointer adPointer = s.in(ad);
+                Pointer nPointer = s.in(nPubs[i], 0, nonceLen);
+                Pointer kPointer = sharedKey != null ? sharedKey : s.in(keys[i], 0, keyLen);
+                results[i] = encrypt
+                        ? aeadEncrypt(method, outPointer, inPointer, inLen, adPointer, ScratchBuffer.arrayBytes(ad), nPointer, kPointer)
+                        : aeadDecrypt(method, outPointer, inPointer, inLen, adPointer, ScratchBuffer.arrayBytes(ad), nPointer, kPointer);
+                if (results[i]) {
+                    s.copyOut(outPointer, out[i], 0, outLen);
+                }
+                s.reset(mark);
+            }
+        } finally {
+            s.release();
+        }
+        return results;
+    }
+
+    private static void checkBatch(Object[] items, int count, String name) {
+        if (items.length != count) {
+            throw new IllegalArgumentException(name + " has " + items.length + " items, needs " + count);
+        }
+    }
+
+    private static byte[] nextNonce(NonceSequence nonces, int nonceBytes) throws SodiumException {
+        if (nonces.getSize() != nonceBytes) {
+            throw new SodiumException("Incorrect nonce length.");
+        }
+        return nonces.next();
+    }
+
+    /**
+     * Both peers of a box share its key, so only sequences that start
+     * at random can't hand out the nonces the other peer uses.
+     */
+    private static byte[] nextBoxNonce(NonceSequence nonces) throws SodiumException {
+        if (!nonces.isRandomStart()) {
+            throw new SodiumException("A box needs a nonce sequence that starts from random bytes.");
+        }
+        return nextNonce(nonces, Box.NONCEBYTES);
+    }
+
+    private static int aeadNonceBytes(AEAD.Method method) {
+        switch (method) {
+            case CHACHA20_POLY1305:
+                return AEAD.CHACHA20POLY1305_NPUBBYTES;
+            case CHACHA20_POLY1305_IETF:
+                return AEAD.CHACHA20POLY1305_IETF_NPUBBYTES;
+            case XCHACHA20_POLY1305_IETF:
+                return AEAD.XCHACHA20POLY1305_IETF_NPUBBYTES;
+            default:
+                return AEAD.AES256GCM_NPUBBYTES;
+        }
+    }
+
 
     // -- lazy
 
@@ -2277,19 +3685,19 @@ public abstract class LazySodium implements
     public Key keygen(AEAD.Method method) {
         switch (method) {
             case CHACHA20_POLY1305:
-                byte[] key = randomBytesBuf(AEAD.CHACHA20POLY1305_KEYBYTES);
+                byte[] key = new byte[AEAD.CHACHA20POLY1305_KEYBYTES];
                 cryptoAeadChaCha20Poly1305Keygen(key);
                 return Key.fromBytes(key);
             case CHACHA20_POLY1305_IETF:
-                byte[] key2 = randomBytesBuf(AEAD.CHACHA20POLY1305_IETF_KEYBYTES);
+                byte[] key2 = new byte[AEAD.CHACHA20POLY1305_IETF_KEYBYTES];
                 cryptoAeadChaCha20Poly1305IetfKeygen(key2);
                 return Key.fromBytes(key2);
             case XCHACHA20_POLY1305_IETF:
-                byte[] key3 = randomBytesBuf(AEAD.XCHACHA20POLY1305_IETF_KEYBYTES);
+                byte[] key3 = new byte[AEAD.XCHACHA20POLY1305_IETF_KEYBYTES];
                 cryptoAeadXChaCha20Poly1305IetfKeygen(key3);
                 return Key.fromBytes(key3);
             case AES256GCM:
-                byte[] key4 = randomBytesBuf(AEAD.AES256GCM_KEYBYTES);
+                byte[] key4 = new byte[AEAD.AES256GCM_KEYBYTES];
                 cryptoAeadAES256GCMKeygen(key4);
                 return Key.fromBytes(key4);
         }
@@ -2303,67 +3711,40 @@ public abstract class LazySodium implements
 
     @Override
     public String encrypt(String m, String additionalData, byte[] nSec, byte[] nPub, Key k, AEAD.Method method) {
-        byte[] messageBytes = bytes(m);
-        byte[] additionalDataBytes = additionalData == null ? new byte[0] : bytes(additionalData);
-        long additionalBytesLen = additionalData == null ? 0L : additionalDataBytes.length;
-        byte[] keyBytes = k.getAsBytes();
+        HeapScratch scratch = HeapScratch.acquire();
+        try {
+            byte[] messageBytes = scratch.encode(HeapScratch.MESSAGE, m, charset);
+            int messageLen = scratch.length(HeapScratch.MESSAGE);
+            byte[] additionalDataBytes = scratch.encode(HeapScratch.ADDITIONAL_DATA, additionalData == null ? "" : additionalData, charset);
+            int additionalBytesLen = scratch.length(HeapScratch.ADDITIONAL_DATA);
+            // Every method's tag is the same size.
+            int cipherLen = messageLen + AEAD.CHACHA20POLY1305_ABYTES;
+            byte[] cipherBytes = scratch.array(HeapScratch.OUTPUT, cipherLen);
+            if (k instanceof SecureKey) {
+                if (!aeadEncrypt(method, cipherBytes, cipherLen, messageBytes, messageLen,
+                        additionalDataBytes, additionalBytesLen, nPub, (SecureKey) k)) {
+                    throw new IllegalArgumentException("Incorrect key or nonce length.");
+                }
+            } else {
+                aeadEncrypt(method, cipherBytes, messageBytes, messageLen,
+                        additionalDataBytes, additionalBytesLen, nSec, nPub, k.getAsBytes());
+            }
+            return messageEncoder.encode(cipherBytes, 0, cipherLen);
+        } finally {
+            scratch.release();
+        }
+    }
 
-        if (method.equals(AEAD.Method.CHACHA20_POLY1305)) {
-            byte[] cipherBytes = new byte[messageBytes.length + AEAD.CHACHA20POLY1305_ABYTES];
-            cryptoAeadChaCha20Poly1305Encrypt(
-                    cipherBytes,
-                    null,
-                    messageBytes,
-                    messageBytes.length,
-                    additionalDataBytes,
-                    additionalBytesLen,
-                    nSec,
-                    nPub,
-                    keyBytes
-            );
-            return messageEncoder.encode(cipherBytes);
-        } else if (method.equals(AEAD.Method.CHACHA20_POLY1305_IETF)) {
-            byte[] cipherBytes = new byte[messageBytes.length + AEAD.CHACHA20POLY1305_IETF_ABYTES];
-            cryptoAeadChaCha20Poly1305IetfEncrypt(
-                    cipherBytes,
-                    null,
-                    messageBytes,
-                    messageBytes.length,
-                    additionalDataBytes,
-                    additionalBytesLen,
-                    nSec,
-                    nPub,
-                    keyBytes
-            );
-            return messageEncoder.encode(cipherBytes);
-        } else if (method.equals(AEAD.Method.XCHACHA20_POLY1305_IETF)) {
-            byte[] cipherBytes3 = new byte[messageBytes.length + AEAD.XCHACHA20POLY1305_IETF_ABYTES];
-            cryptoAeadXChaCha20Poly1305IetfEncrypt(
-                    cipherBytes3,
-                    null,
-                    messageBytes,
-                    messageBytes.length,
-                    additionalDataBytes,
-                    additionalBytesLen,
-                    nSec,
-                    nPub,
-                    keyBytes
-            );
-            return messageEncoder.encode(cipherBytes3);
-        } else {
-            byte[] cipherBytes = new byte[messageBytes.length + AEAD.AES256GCM_ABYTES];
-            cryptoAeadAES256GCMEncrypt(
-                    cipherBytes,
-                    null,
-                    messageBytes,
-                    messageBytes.length,
-                    additionalDataBytes,
-                    additionalBytesLen,
-                    nSec,
-                    nPub,
-                    keyBytes
-            );
-            return messageEncoder.encode(cipherBytes);
+    private boolean aeadEncrypt(AEAD.Method method, byte[] c, byte[] m, long mLen, byte[] ad, long adLen, byte[] nSec, byte[] nPub, byte[] k) {
+        switch (method) {
+            case CHACHA20_POLY1305:
+                return cryptoAeadChaCha20Poly1305Encrypt(c, null, m, mLen, ad, adLen, nSec, nPub, k);
+            case CHACHA20_POLY1305_IETF:
+                return cryptoAeadChaCha20Poly1305IetfEncrypt(c, null, m, mLen, ad, adLen, nSec, nPub, k);
+            case XCHACHA20_POLY1305_IETF:
+                return cryptoAeadXChaCha20Poly1305IetfEncrypt(c, null, m, mLen, ad, adLen, nSec, nPub, k);
+            default:
+                return cryptoAeadAES256GCMEncrypt(c, null, m, mLen, ad, adLen, nSec, nPub, k);
         }
     }
 
@@ -2375,75 +3756,127 @@ public abstract class LazySodium implements
 
     @Override
     public String decrypt(String cipher, String additionalData, byte[] nSec, byte[] nPub, Key k, AEAD.Method method) throws AEADBadTagException {
-        byte[] cipherBytes = messageEncoder.decode(cipher);
-        byte[] additionalDataBytes = additionalData == null ? new byte[0] : bytes(additionalData);
-        long additionalBytesLen = additionalData == null ? 0L : additionalDataBytes.length;
-        byte[] keyBytes = k.getAsBytes();
-
-        if (method.equals(AEAD.Method.CHACHA20_POLY1305)) {
-            byte[] messageBytes = new byte[cipherBytes.length - AEAD.CHACHA20POLY1305_ABYTES];
-            if (!cryptoAeadChaCha20Poly1305Decrypt(
-                    messageBytes,
-                    null,
-                    nSec,
-                    cipherBytes,
-                    cipherBytes.length,
-                    additionalDataBytes,
-                    additionalBytesLen,
-                    nPub,
-                    keyBytes
-            )) {
-                throw new AEADBadTagException();
-            }
-            return str(messageBytes);
-        } else if (method.equals(AEAD.Method.CHACHA20_POLY1305_IETF)) {
-            byte[] messageBytes = new byte[cipherBytes.length - AEAD.CHACHA20POLY1305_IETF_ABYTES];
-            if (!cryptoAeadChaCha20Poly1305IetfDecrypt(
-                    messageBytes,
-                    null,
-                    nSec,
-                    cipherBytes,
-                    cipherBytes.length,
-                    additionalDataBytes,
-                    additionalBytesLen,
-                    nPub,
-                    keyBytes
-            )) {
-                throw new AEADBadTagException();
-            }
-            return str(messageBytes);
-        } else if (method.equals(AEAD.Method.XCHACHA20_POLY1305_IETF)) {
-            byte[] messageBytes = new byte[cipherBytes.length - AEAD.XCHACHA20POLY1305_IETF_ABYTES];
-            if (!cryptoAeadXChaCha20Poly1305IetfDecrypt(
-                    messageBytes,
-                    null,
-                    nSec,
-                    cipherBytes,
-                    cipherBytes.length,
-                    additionalDataBytes,
-                    additionalBytesLen,
-                    nPub,
-                    keyBytes
-            )) {
+        HeapScratch scratch = HeapScratch.acquire();
+        try {
+            int cipherLen = messageEncoder.decodedLength(cipher);
+            if (cipherLen < AEAD.CHACHA20POLY1305_ABYTES) {
                 throw new AEADBadTagException();
             }
-            return str(messageBytes);
-        } else {
-            byte[] messageBytes = new byte[cipherBytes.length - AEAD.AES256GCM_ABYTES];
-            if (!cryptoAeadAES256GCMDecrypt(
-                    messageBytes,
-                    null,
-                    nSec,
-                    cipherBytes,
-                    cipherBytes.length,
-                    additionalDataBytes,
-                    additionalBytesLen,
-                    nPub,
-                    keyBytes
-            )) {
+            byte[] cipherBytes = scratch.array(HeapScratch.MESSAGE, cipherLen);
+            messageEncoder.decodeInto(cipher, cipherBytes, 0);
+            byte[] additionalDataBytes = scratch.encode(HeapScratch.ADDITIONAL_DATA, additionalData == null ? "" : additionalData, charset);
+            int additionalBytesLen = scratch.length(HeapScratch.ADDITIONAL_DATA);
+            int messageLen = cipherLen - AEAD.CHACHA20POLY1305_ABYTES;
+            byte[] messageBytes = scratch.array(HeapScratch.OUTPUT, messageLen);
+            boolean res = k instanceof SecureKey
+                    ? aeadDecrypt(method, messageBytes, messageLen, cipherBytes, cipherLen,
+                            additionalDataBytes, additionalBytesLen, nPub, (SecureKey) k)
+                    : aeadDecrypt(method, messageBytes, nSec, cipherBytes, cipherLen,
+                            additionalDataBytes, additionalBytesLen, nPub, k.getAsBytes());
+            if (!res) {
                 throw new AEADBadTagException();
             }
-            return str(messageBytes);
+            return new String(messageBytes, 0, messageLen, charset);
+        } finally {
+            scratch.release();
+        }
+    }
+
+    private boolean aeadDecrypt(AEAD.Method method, byte[] m, byte[] nSec, byte[] c, long cLen, byte[] ad, long adLen, byte[] nPub, byte[] k) {
+        switch (method) {
+            case CHACHA20_POLY1305:
+                return cryptoAeadChaCha20Poly1305Decrypt(m, null, nSec, c, cLen, ad, adLen, nPub, k);
+            case CHACHA20_POLY1305_IETF:
+                return cryptoAeadChaCha20Poly1305IetfDecrypt(m, null, nSec, c, cLen, ad, adLen, nPub, k);
+            case XCHACHA20_POLY1305_IETF:
+                return cryptoAeadXChaCha20Poly1305IetfDecrypt(m, null, nSec, c, cLen, ad, adLen, nPub, k);
+            default:
+                return cryptoAeadAES256GCMDecrypt(m, null, nSec, c, cLen, ad, adLen, nPub, k);
+        }
+    }
+
+    @Override
+    public byte[] encrypt(byte[] m, byte[] additionalData, byte[] nPub, Key k, AEAD.Method method) throws SodiumException {
+        byte[] cipher = new byte[m.length + AEAD.CHACHA20POLY1305_ABYTES];
+        aeadEncrypt(method, ByteBuffer.wrap(cipher), ByteBuffer.wrap(m),
+                additionalData == null ? null : ByteBuffer.wrap(additionalData), nPub, k);
+        return cipher;
+    }
+
+    @Override
+    public byte[] decrypt(byte[] cipher, byte[] additionalData, byte[] nPub, Key k, AEAD.Method method) throws AEADBadTagException {
+        if (cipher.length < AEAD.CHACHA20POLY1305_ABYTES) {
+            throw new AEADBadTagException();
+        }
+        byte[] message = new byte[cipher.length - AEAD.CHACHA20POLY1305_ABYTES];
+        aeadDecrypt(method, ByteBuffer.wrap(message), ByteBuffer.wrap(cipher),
+                additionalData == null ? null : ByteBuffer.wrap(additionalData), nPub, k);
+        return message;
+    }
+
+    @Override
+    public ByteBuffer encrypt(ByteBuffer m, ByteBuffer additionalData, byte[] nPub, Key k, AEAD.Method method) throws SodiumException {
+        ByteBuffer cipher = allocateLike(m, m.remaining() + AEAD.CHACHA20POLY1305_ABYTES);
+        aeadEncrypt(method, cipher, m, additionalData, nPub, k);
+        cipher.flip();
+        return cipher;
+    }
+
+    @Override
+    public ByteBuffer decrypt(ByteBuffer cipher, ByteBuffer additionalData, byte[] nPub, Key k, AEAD.Method method) throws AEADBadTagException {
+        if (cipher.remaining() < AEAD.CHACHA20POLY1305_ABYTES) {
+            throw new AEADBadTagException();
+        }
+        ByteBuffer message = allocateLike(cipher, cipher.remaining() - AEAD.CHACHA20POLY1305_ABYTES);
+        aeadDecrypt(method, message, cipher, additionalData, nPub, k);
+        message.flip();
+        return message;
+    }
+
+    @Override
+    public byte[] encrypt(byte[] m, byte[] additionalData, NonceSequence nonces, Key k, AEAD.Method method) throws SodiumException {
+        byte[] nPub = nextNonce(nonces, aeadNonceBytes(method));
+        byte[] nonceAndCipher = new byte[nPub.length + m.length + AEAD.CHACHA20POLY1305_ABYTES];
+        System.arraycopy(nPub, 0, nonceAndCipher, 0, nPub.length);
+        aeadEncrypt(method, ByteBuffer.wrap(nonceAndCipher, nPub.length, nonceAndCipher.length - nPub.length),
+                ByteBuffer.wrap(m), additionalData == null ? null : ByteBuffer.wrap(additionalData), nPub, k);
+        return nonceAndCipher;
+    }
+
+    @Override
+    public byte[] decrypt(byte[] nonceAndCipher, byte[] additionalData, Key k, AEAD.Method method) throws AEADBadTagException {
+        int nonceBytes = aeadNonceBytes(method);
+        if (nonceAndCipher.length < nonceBytes + AEAD.CHACHA20POLY1305_ABYTES) {
+            throw new AEADBadTagException();
+        }
+        byte[] message = new byte[nonceAndCipher.length - nonceBytes - AEAD.CHACHA20POLY1305_ABYTES];
+        aeadDecrypt(method, ByteBuffer.wrap(message),
+                ByteBuffer.wrap(nonceAndCipher, nonceBytes, nonceAndCipher.length - nonceBytes),
+                additionalData == null ? null : ByteBuffer.wrap(additionalData),
+                Arrays.copyOf(nonceAndCipher, nonceBytes), k);
+        return message;
+    }
+
+    private void aeadEncrypt(AEAD.Method method, ByteBuffer cipher, ByteBuffer message, ByteBuffer additionalData,
+                             byte[] nPub, Key k) throws SodiumException {
+        if (nPub.length != aeadNonceBytes(method)) {
+            throw new SodiumException("Incorrect nonce length.");
+        }
+        ByteBuffer key = keyBuffer(k);
+        if (key.remaining() != AEAD.CHACHA20POLY1305_KEYBYTES) {
+            throw new SodiumException("Incorrect key length.");
+        }
+        if (!aeadEncrypt(method, cipher, message, additionalData, ByteBuffer.wrap(nPub), key)) {
+            throw new SodiumException("Could not encrypt message.");
+        }
+    }
+
+    private void aeadDecrypt(AEAD.Method method, ByteBuffer message, ByteBuffer cipher, ByteBuffer additionalData,
+                             byte[] nPub, Key k) throws AEADBadTagException {
+        ByteBuffer key = keyBuffer(k);
+        if (nPub.length != aeadNonceBytes(method) || key.remaining() != AEAD.CHACHA20POLY1305_KEYBYTES
+                || !aeadDecrypt(method, message, cipher, additionalData, ByteBuffer.wrap(nPub), key)) {
+            throw new AEADBadTagException();
         }
     }
 
@@ -2660,6 +4093,103 @@ public abstract class LazySodium implements
         return trimmed;
     }
 
+    /**
+     * Gets the next {@code len} bytes of {@code buffer}
+     * without changing its position.
+     * @param buffer The buffer.
+     * @param len The number of bytes needed.
+     * @param name The name of the buffer, for the exception message.
+     * @return A buffer with exactly {@code len} bytes remaining.
+     */
+    private static ByteBuffer window(ByteBuffer buffer, int len, String name) {
+        if (buffer.remaining() < len) {
+            throw new IllegalArgumentException(name + " has " + buffer.remaining() + " bytes remaining, needs " + len);
+        }
+        if (buffer.remaining() == len) {
+            return buffer;
+        }
+        ByteBuffer window = buffer.duplicate();
+        window.limit(window.position() + len);
+        return window;
+    }
+
+    /**
+     * The bytes of a key as a buffer. A {@link SecureKey}'s memory is
+     * used directly rather than copied onto the heap.
+     * @param key The key.
+     * @return A buffer with exactly the key's bytes remaining.
+     */
+    private static ByteBuffer keyBuffer(Key key) {
+        if (key instanceof SecureKey) {
+            SecureKey secureKey = (SecureKey) key;
+            return secureKey.getPointer().getByteBuffer(0, secureKey.getSize());
+        }
+        return ByteBuffer.wrap(key.getAsBytes());
+    }
+
+    /**
+     * Allocates the result of a {@code LazyBytes} method.
+     * @param input The buffer the result is made from.
+     * @param len The size of the result.
+     * @return A direct buffer if {@code input} is direct, else a heap buffer.
+     */
+    private static ByteBuffer allocateLike(ByteBuffer input, int len) {
+        return input.isDirect() ? ByteBuffer.allocateDirect(len) : ByteBuffer.allocate(len);
+    }
+
+    /**
+     * Checks that {@code array} has {@code len} bytes from {@code off}.
+     * @param array The array.
+     * @param off The offset.
+     * @param len The length.
+     * @param name The name of the array, for the exception message.
+     */
+    private static void checkRange(byte[] array, int off, int len, String name) {
+        if (off < 0 || len < 0 || off > array.length - len) {
+            throw new IllegalArgumentException(name + " out of bounds: offset " + off + ", length " + len);
+        }
+    }
+
+    /**
+     * Checks that {@code buffer} has {@code len} bytes from the absolute index {@code off}.
+     * @param buffer The buffer.
+     * @param off The offset.
+     * @param len The length.
+     * @param name The name of the buffer, for the exception message.
+     */
+    private static void checkRange(ByteBuffer buffer, int off, int len, String name) {
+        if (off < 0 || len < 0 || off > buffer.limit() - len) {
+            throw new IllegalArgumentException(name + " out of bounds: offset " + off + ", length " + len);
+        }
+    }
+
+    /**
+     * The number of bytes of scratch memory that working on
+     * {@code len} bytes of {@code buffer} in place needs.
+     * @param buffer The buffer.
+     * @param len The number of bytes.
+     * @return 0 for a direct buffer, else {@code len}.
+     */
+    private static long inPlaceBytes(ByteBuffer buffer, int len) {
+        return buffer.isDirect() ? 0 : len;
+    }
+
+    /**
+     * Wraps part of an array after checking its bounds.
+     * @param array The array, which can be null.
+     * @param off The offset.
+     * @param len The length.
+     * @param name The name of the array, for the exception message.
+     * @return A buffer over the part of the array, or null if the array is null.
+     */
+    private static ByteBuffer wrap(byte[] array, int off, int len, String name) {
+        if (array == null) {
+            return null;
+        }
+        checkRange(array, off, len, name);
+        return ByteBuffer.wrap(array, off, len);
+    }
+
 
     public abstract Sodium getSodium();
 
@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+
+package com.goterl.lazysodium;
+
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+
+/**
+ * Native memory that heap data is copied into so that it can be handed to
+ * the {@link Pointer} variants of the sodium functions. Direct buffers are
+ * passed through as they are, without being copied.
+ *
+ * <p>Every thread has a small scratch buffer of {@link #THREAD_LOCAL_BYTES}
+ * that is reused between calls. Anything larger gets a buffer of its own
+ * that is freed on {@link #release()}. The used memory is always wiped
+ * on release because it may have held keys or plaintext.</p>
+ */
+final class ScratchBuffer {
+
+    static final int THREAD_LOCAL_BYTES = 16 * 1024;
+
+    private static final byte[] ZEROS = new byte[THREAD_LOCAL_BYTES];
+
+    private static final ThreadLocal<ScratchBuffer> LOCAL = new ThreadLocal<ScratchBuffer>() {
+        @Override
+        protected ScratchBuffer initialValue() {
+            return new ScratchBuffer(ByteBuffer.allocateDirect(THREAD_LOCAL_BYTES), 0);
+        }
+    };
+
+    private final ByteBuffer buffer;
+    private final Pointer pointer;
+    private final long address;
+    private final long mallocAddress;
+    private boolean inUse;
+    private int used;
+
+    private ScratchBuffer(ByteBuffer buffer, long mallocAddress) {
+        this.buffer = buffer;
+        this.pointer = Native.getDirectBufferPointer(buffer);
+        this.address = Pointer.nativeValue(pointer);
+        this.mallocAddress = mallocAddress;
+    }
+
+    /**
+     * Gets scratch memory of at least {@code size} bytes.
+     * Must be followed by {@link #release()}.
+     * @param size The number of bytes needed.
+     * @return Scratch memory.
+     */
+    static ScratchBuffer acquire(long size) {
+        if (size <= THREAD_LOCAL_BYTES) {
+            ScratchBuffer local = LOCAL.get();
+            if (!local.inUse) {
+                local.inUse = true;
+                return local;
+            }
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Scratch memory too large: " + size);
+        }
+        long mallocAddress = Native.malloc(Math.max(size, 1));
+        if (mallocAddress == 0) {
+            throw new OutOfMemoryError("Could not allocate " + size + " bytes of native memory.");
+        }
+        ByteBuffer buffer = new Pointer(mallocAddress).getByteBuffer(0, size);
+        ScratchBuffer scratch = new ScratchBuffer(buffer, mallocAddress);
+        scratch.inUse = true;
+        return scratch;
+    }
+
+    /**
+     * The number of bytes that the heap buffers in {@code buffers}
+     * will take up in scratch memory.
+     * @param buffers Buffers, which may be null or direct.
+     * @return The sum of the remaining bytes of the heap buffers.
+     */
+    static long heapBytes(ByteBuffer... buffers) {
+        long total = 0;
+        for (ByteBuffer b : buffers) {
+            if (b != null && !b.isDirect()) {
+                total += b.remaining();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * The number of bytes that {@code arrays} will take up in scratch memory.
+     * @param arrays Arrays, which may be null.
+     * @return The sum of the lengths of the arrays.
+     */
+    static long arrayBytes(byte[]... arrays) {
+        long total = 0;
+        for (byte[] array : arrays) {
+            if (array != null) {
+                total += array.length;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Gets a pointer to the position of a direct buffer.
+     * @param buffer A direct buffer.
+     * @return A pointer to {@code buffer.position()}.
+     */
+    static Pointer pointer(ByteBuffer buffer) {
+        return Native.getDirectBufferPointer(buffer).share(buffer.position());
+    }
+
+    /**
+     * Reserves room for {@code len} bytes of output.
+     * @param len The number of bytes.
+     * @return A pointer to the reserved memory.
+     */
+    Pointer out(int len) {
+        if (len < 0 || len > buffer.capacity() - used) {
+            throw new IllegalStateException("Scratch memory exhausted.");
+        }
+        Pointer p = pointer.share(used);
+        used += len;
+        return p;
+    }
+
+    /**
+     * Reserves room for an output array.
+     * @param array The array the output will be copied to.
+     * @return A pointer to room for the array's length, or null if the array is null.
+     */
+    Pointer out(byte[] array) {
+        return array == null ? null : out(array.length);
+    }
+
+    /**
+     * Gets a pointer that output can be written to at the position
+     * of {@code buffer}. Heap buffers get room in scratch memory which
+     * has to be copied back with {@link #copyOut(Pointer, ByteBuffer, int)}.
+     * @param buffer The destination buffer, which may be null.
+     * @return A pointer to write to.
+     */
+    Pointer out(ByteBuffer buffer) {
+        if (buffer == null) {
+            return null;
+        }
+        if (buffer.isReadOnly()) {
+            throw new ReadOnlyBufferException();
+        }
+        return buffer.isDirect() ? pointer(buffer) : out(buffer.remaining());
+    }
+
+    /**
+     * Copies part of an array into scratch memory.
+     * @param array The input.
+     * @param off The offset of the input within the array.
+     * @param len The length of the input.
+     * @return A pointer to the copy.
+     */
+    Pointer in(byte[] array, int off, int len) {
+        Pointer p = out(len);
+        buffer.position((int) (Pointer.nativeValue(p) - address));
+        buffer.put(array, off, len);
+        return p;
+    }
+
+    /**
+     * Copies an array into scratch memory.
+     * @param array The input.
+     * @return A pointer to the copy, or null if the array is null.
+     */
+    Pointer in(byte[] array) {
+        return array == null ? null : in(array, 0, array.length);
+    }
+
+    /**
+     * Gets a pointer to the remaining bytes of {@code buffer}. Heap
+     * buffers are copied into scratch memory, direct ones are not.
+     * The position of {@code buffer} is not changed.
+     * @param buffer The input, which may be null.
+     * @return A pointer to the input.
+     */
+    Pointer in(ByteBuffer buffer) {
+        if (buffer == null) {
+            return null;
+        }
+        if (buffer.isDirect()) {
+            return pointer(buffer);
+        }
+        if (buffer.hasArray()) {
+            return in(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        // A read-only heap buffer doesn't give access to its array.
+        Pointer p = out(buffer.remaining());
+        this.buffer.position((int) (Pointer.nativeValue(p) - address));
+        this.buffer.put(buffer.duplicate());
+        return p;
+    }
+
+    /**
+     * Gets a pointer to {@code len} bytes of {@code buffer} from the
+     * absolute index {@code off}, for a function that reads and writes
+     * the same memory. Heap buffers are copied into scratch memory and
+     * have to be copied back with {@link #copyBack(Pointer, ByteBuffer, int, int)}.
+     * @param buffer A writable buffer.
+     * @param off The absolute index.
+     * @param len The number of bytes.
+     * @return A pointer to the bytes.
+     */
+    Pointer inPlace(ByteBuffer buffer, int off, int len) {
+        if (buffer.isReadOnly()) {
+            throw new ReadOnlyBufferException();
+        }
+        if (buffer.isDirect()) {
+            return Native.getDirectBufferPointer(buffer).share(off);
+        }
+        return in(buffer.array(), buffer.arrayOffset() + off, len);
+    }
+
+    /**
+     * Copies bytes given out by {@link #inPlace(ByteBuffer, int, int)}
+     * back into a heap buffer. Nothing is copied for direct buffers.
+     * @param from A pointer returned by {@link #inPlace(ByteBuffer, int, int)}.
+     * @param to The buffer.
+     * @param off The absolute index within the buffer.
+     * @param len The number of bytes to copy.
+     */
+    void copyBack(Pointer from, ByteBuffer to, int off, int len) {
+        if (!to.isDirect()) {
+            copyOut(from, to.array(), to.arrayOffset() + off, len);
+        }
+    }
+
+    /**
+     * Copies output from scratch memory into an array.
+     * @param from A pointer returned by {@link #out(int)}.
+     * @param to The destination.
+     * @param off The offset within the destination.
+     * @param len The number of bytes to copy.
+     */
+    void copyOut(Pointer from, byte[] to, int off, int len) {
+        buffer.position((int) (Pointer.nativeValue(from) - address));
+        buffer.get(to, off, len);
+    }
+
+    void copyOut(Pointer from, byte[] to) {
+        if (to != null) {
+            copyOut(from, to, 0, to.length);
+        }
+    }
+
+    /**
+     * Copies {@code len} bytes of output to the position of {@code to},
+     * if it is a heap buffer. Output for direct buffers was written in
+     * place so nothing is copied. The position of {@code to} is not changed.
+     * @param from A pointer returned by {@link #out(ByteBuffer)}.
+     * @param to The destination buffer.
+     * @param len The number of bytes to copy.
+     */
+    void copyOut(Pointer from, ByteBuffer to, int len) {
+        if (to != null && !to.isDirect()) {
+            copyOut(from, to.array(), to.arrayOffset() + to.position(), len);
+        }
+    }
+
+    /**
+     * Marks how much of the memory is in use, so that everything
+     * reserved after this can be given back with {@link #reset(int)}.
+     * @return The mark.
+     */
+    int mark() {
+        return used;
+    }
+
+    /**
+     * Wipes and gives back everything reserved since {@code mark}.
+     * @param mark A mark returned by {@link #mark()}.
+     */
+    void reset(int mark) {
+        buffer.position(mark);
+        wipe(used - mark);
+        used = mark;
+    }
+
+    /**
+     * Wipes the used memory and gives it back.
+     */
+    void release() {
+        buffer.position(0);
+        wipe(used);
+        used = 0;
+        inUse = false;
+        if (mallocAddress != 0) {
+            Native.free(mallocAddress);
+        }
+    }
+
+    private void wipe(int len) {
+        while (len > 0) {
+            int n = Math.min(len, ZEROS.length);
+            buffer.put(ZEROS, 0, n);
+            len -= n;
+        }
+    }
+
+}
@@ -35,6 +35,7 @@ public class Sodium {
     public native int sodium_is_zero(byte[] n, int nLen);
     public native void sodium_stackzero(int len);
     public native int sodium_memcmp(byte[] b1, byte[] b2, int len);
+    public native int sodium_memcmp(Pointer b1, Pointer b2, int len);
     public native int sodium_base64_encoded_len(int binLen, int variant);
     public native int sodium_compare(byte[] b1, byte[] b2, int len);
 
@@ -72,6 +73,7 @@ public class Sodium {
     //// -------------------------------------------|
 
     public native int sodium_memzero(byte[] pnt, int len);
+    public native int sodium_memzero(Pointer pnt, int len);
     public native int sodium_mlock(byte[] addr, int len);
     public native int sodium_munlock(byte[] addr, int len);
     public native Pointer sodium_malloc(int size);
@@ -106,6 +108,8 @@ public class Sodium {
 
     public native void randombytes_buf(byte[] buffer, int size);
 
+    public native void randombytes_buf(Pointer buffer, int size);
+
     public native void randombytes_buf_deterministic(byte[] buffer, int size, byte[] seed);
 
 
@@ -146,6 +150,10 @@ public class Sodium {
 
     public native int crypto_hash_sha512(byte[] out, byte[] in, long inLen);
 
+    public native int crypto_hash_sha256(Pointer out, Pointer in, long inLen);
+
+    public native int crypto_hash_sha512(Pointer out, Pointer in, long inLen);
+
 
     public native int crypto_hash_sha256_init(Hash.State256 state);
 
@@ -153,6 +161,10 @@ public class Sodium {
                                                 byte[] in,
                                                 long inLen);
 
+    public native int crypto_hash_sha256_update(Hash.State256 state,
+                                                Pointer in,
+                                                long inLen);
+
     public native int crypto_hash_sha256_final(Hash.State256 state, byte[] out);
 
 
@@ -162,6 +174,10 @@ public class Sodium {
                                                 byte[] in,
                                                 long inLen);
 
+    public native int crypto_hash_sha512_update(Hash.State512 state,
+                                                Pointer in,
+                                                long inLen);
+
     public native int crypto_hash_sha512_final(Hash.State512 state, byte[] out);
 
 
@@ -179,6 +195,18 @@ public class Sodium {
                                           byte[] context,
                                           byte[] masterKey);
 
+    public native int crypto_kdf_derive_from_key(Pointer subkey,
+                                          int subkeyLen,
+                                          long subkeyId,
+                                          byte[] context,
+                                          Pointer masterKey);
+
+    public native int crypto_kdf_derive_from_key(byte[] subkey,
+                                          int subkeyLen,
+                                          long subkeyId,
+                                          byte[] context,
+                                          Pointer masterKey);
+
 
 
 
@@ -207,6 +235,22 @@ public class Sodium {
             byte[] clientPk
     );
 
+    public native int crypto_kx_client_session_keys(
+            Pointer rx,
+            Pointer tx,
+            byte[] clientPk,
+            byte[] clientSk,
+            byte[] serverPk
+    );
+
+    public native int crypto_kx_server_session_keys(
+            Pointer rx,
+            Pointer tx,
+            byte[] serverPk,
+            byte[] serverSk,
+            byte[] clientPk
+    );
+
 
 
 
@@ -245,6 +289,32 @@ public class Sodium {
                                               byte[] nonce,
                                               byte[] key);
 
+    public native int crypto_secretbox_easy(Pointer cipherText,
+                                     Pointer message,
+                                     long messageLen,
+                                     Pointer nonce,
+                                     Pointer key);
+
+    public native int crypto_secretbox_open_easy(Pointer message,
+                                          Pointer cipherText,
+                                          long cipherTextLen,
+                                          Pointer nonce,
+                                          Pointer key);
+
+    public native int crypto_secretbox_detached(Pointer cipherText,
+                                         Pointer mac,
+                                         Pointer message,
+                                         long messageLen,
+                                         Pointer nonce,
+                                         Pointer key);
+
+    public native int crypto_secretbox_open_detached(Pointer message,
+                                              Pointer cipherText,
+                                              Pointer mac,
+                                              long cipherTextLen,
+                                              Pointer nonce,
+                                              Pointer key);
+
 
 
     //// -------------------------------------------|
@@ -274,6 +344,24 @@ public class Sodium {
             byte[] secretKey
     );
 
+    public native int crypto_box_easy(
+        Pointer cipherText,
+        Pointer message,
+        long messageLen,
+        Pointer nonce,
+        Pointer publicKey,
+        Pointer secretKey
+    );
+
+    public native int crypto_box_open_easy(
+            Pointer message,
+            Pointer cipherText,
+            long cipherTextLen,
+            Pointer nonce,
+            Pointer publicKey,
+            Pointer secretKey
+    );
+
     public native int crypto_box_detached(byte[] cipherText,
                                    byte[] mac,
                                    byte[] message,
@@ -292,6 +380,8 @@ public class Sodium {
 
     public native int crypto_box_beforenm(byte[] k, byte[] publicKey, byte[] secretKey);
 
+    public native int crypto_box_beforenm(Pointer k, byte[] publicKey, byte[] secretKey);
+
 
     public native int crypto_box_easy_afternm(
         byte[] cipherText,
@@ -307,6 +397,34 @@ public class Sodium {
             byte[] key
     );
 
+    public native int crypto_box_easy_afternm(
+        Pointer cipherText,
+        Pointer message,
+        long messageLen,
+        Pointer nonce,
+        Pointer key
+    );
+
+    public native int crypto_box_open_easy_afternm(
+            Pointer message, Pointer cipher,
+            long cLen, Pointer nonce,
+            Pointer key
+    );
+
+    public native int crypto_box_easy_afternm(
+        byte[] cipherText,
+        byte[] message,
+        long messageLen,
+        byte[] nonce,
+        Pointer key
+    );
+
+    public native int crypto_box_open_easy_afternm(
+            byte[] message, byte[] cipher,
+            long cLen, byte[] nonce,
+            Pointer key
+    );
+
     public native int crypto_box_detached_afternm(
             byte[] cipherText,
             byte[] mac,
@@ -378,6 +496,41 @@ public class Sodium {
 
     public native int crypto_sign_verify_detached(byte[] signature, byte[] message, long messageLen, byte[] publicKey);
 
+    public native int crypto_sign(
+            Pointer signedMessage,
+            Pointer sigLength,
+            Pointer message,
+            long messageLen,
+            Pointer secretKey
+    );
+
+    public native int crypto_sign_open(
+            Pointer message,
+            Pointer messageLen,
+            Pointer signedMessage,
+            long signedMessageLen,
+            Pointer publicKey
+    );
+
+    public native int crypto_sign_detached(
+            Pointer signature,
+            Pointer sigLength,
+            Pointer message,
+            long messageLen,
+            Pointer secretKey
+    );
+
+    public native int crypto_sign_verify_detached(Pointer signature, Pointer message, long messageLen, Pointer publicKey);
+
+    // Signs with a secret key that is already held in native memory.
+    public native int crypto_sign_detached(
+            byte[] signature,
+            Pointer sigLength,
+            byte[] message,
+            long messageLen,
+            Pointer secretKey
+    );
+
 
     public native int crypto_sign_ed25519_pk_to_curve25519(
             byte[] curve25519PublicKey,
@@ -407,6 +560,12 @@ public class Sodium {
             byte[] key
     );
 
+    public native int crypto_secretstream_xchacha20poly1305_init_push(
+            SecretStream.State state,
+            byte[] header,
+            Pointer key
+    );
+
     public native int crypto_secretstream_xchacha20poly1305_push(
             SecretStream.State state,
             byte[] cipher,
@@ -424,6 +583,12 @@ public class Sodium {
             byte[] key
     );
 
+    public native int crypto_secretstream_xchacha20poly1305_init_pull(
+            SecretStream.State state,
+            byte[] header,
+            Pointer key
+    );
+
     public native int crypto_secretstream_xchacha20poly1305_pull(
             SecretStream.State state,
             byte[] message,
@@ -435,6 +600,28 @@ public class Sodium {
             long additionalDataLen
     );
 
+    public native int crypto_secretstream_xchacha20poly1305_push(
+            SecretStream.State state,
+            Pointer cipher,
+            long[] cipherAddr,
+            Pointer message,
+            long messageLen,
+            Pointer additionalData,
+            long additionalDataLen,
+            byte  tag
+    );
+
+    public native int crypto_secretstream_xchacha20poly1305_pull(
+            SecretStream.State state,
+            Pointer message,
+            long[] messageAddress,
+            Pointer tagAddress,
+            Pointer cipher,
+            long cipherLen,
+            Pointer additionalData,
+            long additionalDataLen
+    );
+
     public native void crypto_secretstream_xchacha20poly1305_rekey(SecretStream.State state);
 
     public native int crypto_secretstream_xchacha20poly1305_abytes();
@@ -579,6 +766,10 @@ public class Sodium {
 
     public native int crypto_auth_verify(byte[] tag, byte[] in, long inLen, byte[] key);
 
+    public native int crypto_auth(Pointer tag, Pointer in, long inLen, Pointer key);
+
+    public native int crypto_auth_verify(Pointer tag, Pointer in, long inLen, Pointer key);
+
     public native void crypto_auth_keygen(byte[] k);
 
 
@@ -717,6 +908,16 @@ public class Sodium {
                                          byte[] in,
                                          long inLen);
 
+    public native int crypto_generichash(
+            Pointer out, int outLen,
+            Pointer in, long inLen,
+            Pointer key, int keyLen
+    );
+
+    public native int crypto_generichash_update(byte[] state,
+                                         Pointer in,
+                                         long inLen);
+
     public native int crypto_generichash_final(byte[] state, byte[] out, int outLen);
 
     public native int crypto_generichash_statebytes();
@@ -795,6 +996,79 @@ public class Sodium {
             byte[] k
     );
 
+    public native int crypto_aead_chacha20poly1305_encrypt(
+            Pointer c,
+            long[] cLen,
+            Pointer m,
+            long mLen,
+            Pointer ad,
+            long adLen,
+            Pointer nSec,
+            Pointer nPub,
+            Pointer k
+    );
+
+    public native int crypto_aead_chacha20poly1305_decrypt(
+            Pointer m,
+            long[] mLen,
+            Pointer nSec,
+            Pointer c,
+            long cLen,
+            Pointer ad,
+            long adLen,
+            Pointer nPub,
+            Pointer k
+    );
+
+    public native int crypto_aead_chacha20poly1305_encrypt(
+            byte[] c,
+            long[] cLen,
+            byte[] m,
+            long mLen,
+            byte[] ad,
+            long adLen,
+            byte[] nSec,
+            byte[] nPub,
+            Pointer k
+    );
+
+    public native int crypto_aead_chacha20poly1305_decrypt(
+            byte[] m,
+            long[] mLen,
+            byte[] nSec,
+            byte[] c,
+            long cLen,
+            byte[] ad,
+            long adLen,
+            byte[] nPub,
+            Pointer k
+    );
+
+    public native int crypto_aead_chacha20poly1305_encrypt_detached(
+            Pointer c,
+            Pointer mac,
+            long[] macLenAddress,
+            Pointer m,
+            long mLen,
+            Pointer ad,
+            long adLen,
+            Pointer nSec,
+            Pointer nPub,
+            Pointer k
+    );
+
+    public native int crypto_aead_chacha20poly1305_decrypt_detached(
+            Pointer m,
+            Pointer nsec,
+            Pointer c,
+            long cLen,
+            Pointer mac,
+            Pointer ad,
+            long adLen,
+            Pointer npub,
+            Pointer k
+    );
+
     // ietf
 
     public native void crypto_aead_chacha20poly1305_ietf_keygen(byte[] key);
@@ -848,6 +1122,79 @@ public class Sodium {
             byte[] k
     );
 
+    public native int crypto_aead_chacha20poly1305_ietf_encrypt(
+            Pointer c,
+            long[] cLen,
+            Pointer m,
+            long mLen,
+            Pointer ad,
+            long adLen,
+            Pointer nSec,
+            Pointer nPub,
+            Pointer k
+    );
+
+    public native int crypto_aead_chacha20poly1305_ietf_decrypt(
+            Pointer m,
+            long[] mLen,
+            Pointer nSec,
+            Pointer c,
+            long cLen,
+            Pointer ad,
+            long adLen,
+            Pointer nPub,
+            Pointer k
+    );
+
+    public native int crypto_aead_chacha20poly1305_ietf_encrypt(
+            byte[] c,
+            long[] cLen,
+            byte[] m,
+            long mLen,
+            byte[] ad,
+            long adLen,
+            byte[] nSec,
+            byte[] nPub,
+            Pointer k
+    );
+
+    public native int crypto_aead_chacha20poly1305_ietf_decrypt(
+            byte[] m,
+            long[] mLen,
+            byte[] nSec,
+            byte[] c,
+            long cLen,
+            byte[] ad,
+            long adLen,
+            byte[] nPub,
+            Pointer k
+    );
+
+    public native int crypto_aead_chacha20poly1305_ietf_encrypt_detached(
+            Pointer c,
+            Pointer mac,
+            long[] macLenAddress,
+            Pointer m,
+            long mLen,
+            Pointer ad,
+            long adLen,
+            Pointer nSec,
+            Pointer nPub,
+            Pointer k
+    );
+
+    public native int crypto_aead_chacha20poly1305_ietf_decrypt_detached(
+            Pointer m,
+            Pointer nSec,
+            Pointer c,
+            long cLen,
+            Pointer mac,
+            Pointer ad,
+            long adLen,
+            Pointer nPub,
+            Pointer k
+    );
+
     // xchacha
 
     public native void crypto_aead_xchacha20poly1305_ietf_keygen(byte[] k);
@@ -902,6 +1249,79 @@ public class Sodium {
             byte[] key
     );
 
+    public native int crypto_aead_xchacha20poly1305_ietf_encrypt(
+            Pointer c,
+            long[] cLen,
+            Pointer m,
+            long mLen,
+            Pointer ad,
+            long adLen,
+            Pointer nSec,
+            Pointer nPub,
+            Pointer k
+    );
+
+    public native int crypto_aead_xchacha20poly1305_ietf_decrypt(
+            Pointer m,
+            long[] mLen,
+            Pointer nSec,
+            Pointer c,
+            long cLen,
+            Pointer ad,
+            long adLen,
+            Pointer nPub,
+            Pointer k
+    );
+
+    public native int crypto_aead_xchacha20poly1305_ietf_encrypt(
+            byte[] c,
+            long[] cLen,
+            byte[] m,
+            long mLen,
+            byte[] ad,
+            long adLen,
+            byte[] nSec,
+            byte[] nPub,
+            Pointer k
+    );
+
+    public native int crypto_aead_xchacha20poly1305_ietf_decrypt(
+            byte[] m,
+            long[] mLen,
+            byte[] nSec,
+            byte[] c,
+            long cLen,
+            byte[] ad,
+            long adLen,
+            byte[] nPub,
+            Pointer k
+    );
+
+    public native int crypto_aead_xchacha20poly1305_ietf_encrypt_detached(
+            Pointer cipher,
+            Pointer mac,
+            long[] macLenAddress,
+            Pointer message,
+            long messageLen,
+            Pointer additionalData,
+            long additionalDataLen,
+            Pointer nSec,
+            Pointer nPub,
+            Pointer key
+    );
+
+    public native int crypto_aead_xchacha20poly1305_ietf_decrypt_detached(
+            Pointer message,
+            Pointer nSec,
+            Pointer cipher,
+            long cipherLen,
+            Pointer mac,
+            Pointer additionalData,
+            long additionalDataLen,
+            Pointer nPub,
+            Pointer key
+    );
+
 
     // AES
 
@@ -956,6 +1376,55 @@ public class Sodium {
             byte[] key
     );
 
+    public native int crypto_aead_aes256gcm_encrypt(
+            Pointer cipher,
+            long[] cipherLen,
+            Pointer message,
+            long messageLen,
+            Pointer additionalData,
+            long additionalDataLen,
+            Pointer nSec,
+            Pointer nPub,
+            Pointer key
+    );
+
+    public native int crypto_aead_aes256gcm_decrypt(
+            Pointer message,
+            long[] messageLen,
+            Pointer nSec,
+            Pointer cipher,
+            long cipherLen,
+            Pointer additionalData,
+            long additionalDataLen,
+            Pointer nPub,
+            Pointer key
+    );
+
+    public native int crypto_aead_aes256gcm_encrypt_detached(
+        Pointer cipher,
+        Pointer mac,
+        long[] macLenAddress,
+        Pointer message,
+        long messageLen,
+        Pointer additionalData,
+        long additionalDataLen,
+        Pointer nSec,
+        Pointer nPub,
+        Pointer key
+    );
+
+    public native int crypto_aead_aes256gcm_decrypt_detached(
+            Pointer message,
+            Pointer nSec,
+            Pointer cipher,
+            long cipherLen,
+            Pointer mac,
+            Pointer additionalData,
+            long additionalDataLen,
+            Pointer nPub,
+            Pointer key
+    );
+
 
 
     public native int crypto_aead_aes256gcm_beforenm(
@@ -1015,4 +1484,32 @@ public class Sodium {
 
     public native int crypto_aead_aes256gcm_is_available();
 
+    public native int crypto_aead_aes256gcm_beforenm(Pointer state, byte[] key);
+
+    public native int crypto_aead_aes256gcm_beforenm(Pointer state, Pointer key);
+
+    public native int crypto_aead_aes256gcm_encrypt_afternm(
+            byte[] cipher,
+            long[] cipherLength,
+            byte[] message,
+            long messageLen,
+            byte[] additionalData,
+            long additionalDataLen,
+            byte[] nSec,
+            byte[] nPub,
+            Pointer state
+    );
+
+    public native int crypto_aead_aes256gcm_decrypt_afternm(
+            byte[] message,
+            long[] messageLength,
+            byte[] nSec,
+            byte[] cipher,
+            long cipherLen,
+            byte[] additionalData,
+            long additionalDataLen,
+            byte[] nPub,
+            Pointer state
+    );
+
 }
@@ -9,12 +9,16 @@
 package com.goterl.lazysodium.interfaces;
 
 
+import com.goterl.lazysodium.exceptions.SodiumException;
 import com.goterl.lazysodium.utils.DetachedDecrypt;
 import com.goterl.lazysodium.utils.DetachedEncrypt;
 import com.goterl.lazysodium.utils.Key;
+import com.goterl.lazysodium.utils.NonceSequence;
+import com.sun.jna.Memory;
 import com.sun.jna.Structure;
 
 import javax.crypto.AEADBadTagException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.List;
 
@@ -50,6 +54,7 @@ public interface AEAD {
     int AES256GCM_NSECBYTES = 0;
     int AES256GCM_NPUBBYTES = 12;
     int AES256GCM_ABYTES = 16;
+    int AES256GCM_STATEBYTES = 512;
 
 
 
@@ -115,6 +120,103 @@ public interface AEAD {
                 byte[] key
         );
 
+        /**
+         * Encrypts the remaining bytes of {@code message} into {@code cipher}
+         * without copying direct buffers onto the heap. On success the positions
+         * of {@code message} and {@code cipher} are advanced past the bytes read
+         * and written. The other buffers are read from their position and
+         * are left unchanged.
+         * @param cipher Receives the cipher text. Must have at least
+         *               {@code message.remaining()} + {@link #CHACHA20POLY1305_ABYTES} bytes remaining.
+         * @param message The message to encrypt.
+         * @param additionalData Remaining bytes are authenticated but not encrypted. Can be null.
+         * @param nPub The nonce of {@link #CHACHA20POLY1305_NPUBBYTES} bytes.
+         * @param key The key of {@link #CHACHA20POLY1305_KEYBYTES} bytes.
+         * @return True if the message was encrypted.
+         */
+        boolean cryptoAeadChaCha20Poly1305Encrypt(
+                ByteBuffer cipher,
+                ByteBuffer message,
+                ByteBuffer additionalData,
+                ByteBuffer nPub,
+                ByteBuffer key
+        );
+
+        /**
+         * Decrypts the remaining bytes of {@code cipher} into {@code message}.
+         * On success the positions of {@code cipher} and {@code message} are
+         * advanced past the bytes read and written. On failure nothing
+         * is advanced.
+         * @param message Receives the message. Must have at least
+         *                {@code cipher.remaining()} - {@link #CHACHA20POLY1305_ABYTES} bytes remaining.
+         * @param cipher The cipher text to decrypt.
+         * @param additionalData The additional data that was authenticated. Can be null.
+         * @param nPub The nonce used to encrypt.
+         * @param key The key used to encrypt.
+         * @return True if the cipher text was authentic and was decrypted.
+         */
+        boolean cryptoAeadChaCha20Poly1305Decrypt(
+                ByteBuffer message,
+                ByteBuffer cipher,
+                ByteBuffer additionalData,
+                ByteBuffer nPub,
+                ByteBuffer key
+        );
+
+        /**
+         * Encrypts part of an array into part of another (or the same) array.
+         * @param cipher The array to write the {@code messageLen} + {@link #CHACHA20POLY1305_ABYTES} bytes of cipher to.
+         * @param cipherOff Where to write the cipher.
+         * @param message The array holding the message.
+         * @param messageOff Where the message starts.
+         * @param messageLen The message length.
+         * @param additionalData The array holding the additional data. Can be null.
+         * @param additionalDataOff Where the additional data starts.
+         * @param additionalDataLen The additional data length.
+         * @param nPub The nonce.
+         * @param key The key.
+         * @return True if the message was encrypted.
+         */
+        boolean cryptoAeadChaCha20Poly1305Encrypt(
+                byte[] cipher,
+                int cipherOff,
+                byte[] message,
+                int messageOff,
+                int messageLen,
+                byte[] additionalData,
+                int additionalDataOff,
+                int additionalDataLen,
+                byte[] nPub,
+                byte[] key
+        );
+
+        /**
+         * Decrypts part of an array into part of another (or the same) array.
+         * @param message The array to write the {@code cipherLen} - {@link #CHACHA20POLY1305_ABYTES} bytes of message to.
+         * @param messageOff Where to write the message.
+         * @param cipher The array holding the cipher.
+         * @param cipherOff Where the cipher starts.
+         * @param cipherLen The cipher length.
+         * @param additionalData The array holding the additional data. Can be null.
+         * @param additionalDataOff Where the additional data starts.
+         * @param additionalDataLen The additional data length.
+         * @param nPub The nonce used to encrypt.
+         * @param key The key used to encrypt.
+         * @return True if the cipher was authentic and was decrypted.
+         */
+        boolean cryptoAeadChaCha20Poly1305Decrypt(
+                byte[] message,
+                int messageOff,
+                byte[] cipher,
+                int cipherOff,
+                int cipherLen,
+                byte[] additionalData,
+                int additionalDataOff,
+                int additionalDataLen,
+                byte[] nPub,
+                byte[] key
+        );
+
 
 
 
@@ -171,6 +273,64 @@ public interface AEAD {
                 byte[] key
         );
 
+        /**
+         * Encrypts the remaining bytes of {@code message} into {@code cipher}.
+         * @see #cryptoAeadChaCha20Poly1305Encrypt(ByteBuffer, ByteBuffer, ByteBuffer, ByteBuffer, ByteBuffer)
+         */
+        boolean cryptoAeadChaCha20Poly1305IetfEncrypt(
+                ByteBuffer cipher,
+                ByteBuffer message,
+                ByteBuffer additionalData,
+                ByteBuffer nPub,
+                ByteBuffer key
+        );
+
+        /**
+         * Decrypts the remaining bytes of {@code cipher} into {@code message}.
+         * @see #cryptoAeadChaCha20Poly1305Decrypt(ByteBuffer, ByteBuffer, ByteBuffer, ByteBuffer, ByteBuffer)
+         */
+        boolean cryptoAeadChaCha20Poly1305IetfDecrypt(
+                ByteBuffer message,
+                ByteBuffer cipher,
+                ByteBuffer additionalData,
+                ByteBuffer nPub,
+                ByteBuffer key
+        );
+
+        /**
+         * Encrypts part of an array into part of another (or the same) array.
+         * @see #cryptoAeadChaCha20Poly1305Encrypt(byte[], int, byte[], int, int, byte[], int, int, byte[], byte[])
+         */
+        boolean cryptoAeadChaCha20Poly1305IetfEncrypt(
+                byte[] cipher,
+                int cipherOff,
+                byte[] message,
+                int messageOff,
+                int messageLen,
+                byte[] additionalData,
+                int additionalDataOff,
+                int additionalDataLen,
+                byte[] nPub,
+                byte[] key
+        );
+
+        /**
+         * Decrypts part of an array into part of another (or the same) array.
+         * @see #cryptoAeadChaCha20Poly1305Decrypt(byte[], int, byte[], int, int, byte[], int, int, byte[], byte[])
+         */
+        boolean cryptoAeadChaCha20Poly1305IetfDecrypt(
+                byte[] message,
+                int messageOff,
+                byte[] cipher,
+                int cipherOff,
+                int cipherLen,
+                byte[] additionalData,
+                int additionalDataOff,
+                int additionalDataLen,
+                byte[] nPub,
+                byte[] key
+        );
+
 
 
 
@@ -228,6 +388,64 @@ public interface AEAD {
                 byte[] key
         );
 
+        /**
+         * Encrypts the remaining bytes of {@code message} into {@code cipher}.
+         * @see #cryptoAeadChaCha20Poly1305Encrypt(ByteBuffer, ByteBuffer, ByteBuffer, ByteBuffer, ByteBuffer)
+         */
+        boolean cryptoAeadXChaCha20Poly1305IetfEncrypt(
+                ByteBuffer cipher,
+                ByteBuffer message,
+                ByteBuffer additionalData,
+                ByteBuffer nPub,
+                ByteBuffer key
+        );
+
+        /**
+         * Decrypts the remaining bytes of {@code cipher} into {@code message}.
+         * @see #cryptoAeadChaCha20Poly1305Decrypt(ByteBuffer, ByteBuffer, ByteBuffer, ByteBuffer, ByteBuffer)
+         */
+        boolean cryptoAeadXChaCha20Poly1305IetfDecrypt(
+                ByteBuffer message,
+                ByteBuffer cipher,
+                ByteBuffer additionalData,
+                ByteBuffer nPub,
+                ByteBuffer key
+        );
+
+        /**
+         * Encrypts part of an array into part of another (or the same) array.
+         * @see #cryptoAeadChaCha20Poly1305Encrypt(byte[], int, byte[], int, int, byte[], int, int, byte[], byte[])
+         */
+        boolean cryptoAeadXChaCha20Poly1305IetfEncrypt(
+                byte[] cipher,
+                int cipherOff,
+                byte[] message,
+                int messageOff,
+                int messageLen,
+                byte[] additionalData,
+                int additionalDataOff,
+                int additionalDataLen,
+                byte[] nPub,
+                byte[] key
+        );
+
+        /**
+         * Decrypts part of an array into part of another (or the same) array.
+         * @see #cryptoAeadChaCha20Poly1305Decrypt(byte[], int, byte[], int, int, byte[], int, int, byte[], byte[])
+         */
+        boolean cryptoAeadXChaCha20Poly1305IetfDecrypt(
+                byte[] message,
+                int messageOff,
+                byte[] cipher,
+                int cipherOff,
+                int cipherLen,
+                byte[] additionalData,
+                int additionalDataOff,
+                int additionalDataLen,
+                byte[] nPub,
+                byte[] key
+        );
+
 
         // AES
 
@@ -283,8 +501,256 @@ public interface AEAD {
                 byte[] key
         );
 
+        /**
+         * Encrypts the remaining bytes of {@code message} into {@code cipher}.
+         * @see #cryptoAeadChaCha20Poly1305Encrypt(ByteBuffer, ByteBuffer, ByteBuffer, ByteBuffer, ByteBuffer)
+         */
+        boolean cryptoAeadAES256GCMEncrypt(
+                ByteBuffer cipher,
+                ByteBuffer message,
+                ByteBuffer additionalData,
+                ByteBuffer nPub,
+                ByteBuffer key
+        );
+
+        /**
+         * Decrypts the remaining bytes of {@code cipher} into {@code message}.
+         * @see #cryptoAeadChaCha20Poly1305Decrypt(ByteBuffer, ByteBuffer, ByteBuffer, ByteBuffer, ByteBuffer)
+         */
+        boolean cryptoAeadAES256GCMDecrypt(
+                ByteBuffer message,
+                ByteBuffer cipher,
+                ByteBuffer additionalData,
+                ByteBuffer nPub,
+                ByteBuffer key
+        );
+
+        /**
+         * Encrypts part of an array into part of another (or the same) array.
+         * @see #cryptoAeadChaCha20Poly1305Encrypt(byte[], int, byte[], int, int, byte[], int, int, byte[], byte[])
+         */
+        boolean cryptoAeadAES256GCMEncrypt(
+                byte[] cipher,
+                int cipherOff,
+                byte[] message,
+                int messageOff,
+                int messageLen,
+                byte[] additionalData,
+                int additionalDataOff,
+                int additionalDataLen,
+                byte[] nPub,
+                byte[] key
+        );
+
+        /**
+         * Decrypts part of an array into part of another (or the same) array.
+         * @see #cryptoAeadChaCha20Poly1305Decrypt(byte[], int, byte[], int, int, byte[], int, int, byte[], byte[])
+         */
+        boolean cryptoAeadAES256GCMDecrypt(
+                byte[] message,
+                int messageOff,
+                byte[] cipher,
+                int cipherOff,
+                int cipherLen,
+                byte[] additionalData,
+                int additionalDataOff,
+                int additionalDataLen,
+                byte[] nPub,
+                byte[] key
+        );
+
         boolean cryptoAeadAES256GCMIsAvailable();
 
+        /**
+         * Expands a key into a state once, so that
+         * {@link #cryptoAeadAES256GCMEncryptAfterNm(byte[], long[], byte[], long, byte[], long, byte[], byte[], StateAES)}
+         * and {@link #cryptoAeadAES256GCMDecryptAfterNm(byte[], long[], byte[], byte[], long, byte[], long, byte[], StateAES)}
+         * don't have to expand it on every call.
+         * @param state The state to fill.
+         * @param key A key of {@link #AES256GCM_KEYBYTES}.
+         * @return True if successful.
+         */
+        boolean cryptoAeadAES256GCMBeforeNm(StateAES state, byte[] key);
+
+        /**
+         * Like {@link #cryptoAeadAES256GCMEncrypt(byte[], long[], byte[], long, byte[], long, byte[], byte[], byte[])},
+         * but with a state from {@link #cryptoAeadAES256GCMBeforeNm(StateAES, byte[])} instead of a key.
+         */
+        boolean cryptoAeadAES256GCMEncryptAfterNm(
+                byte[] cipher,
+                long[] cipherLen,
+                byte[] message,
+                long messageLen,
+                byte[] additionalData,
+                long additionalDataLen,
+                byte[] nSec,
+                byte[] nPub,
+                StateAES state
+        );
+
+        /**
+         * Like {@link #cryptoAeadAES256GCMDecrypt(byte[], long[], byte[], byte[], long, byte[], long, byte[], byte[])},
+         * but with a state from {@link #cryptoAeadAES256GCMBeforeNm(StateAES, byte[])} instead of a key.
+         */
+        boolean cryptoAeadAES256GCMDecryptAfterNm(
+                byte[] message,
+                long[] messageLen,
+                byte[] nSec,
+                byte[] cipher,
+                long cipherLen,
+                byte[] additionalData,
+                long additionalDataLen,
+                byte[] nPub,
+                StateAES state
+        );
+
+
+        // In place
+
+        /**
+         * Encrypts part of an array in place. The cipher text overwrites the
+         * message and the authentication tag is written to the
+         * {@link #CHACHA20POLY1305_ABYTES} bytes just after it, so
+         * the array must have that much room after the message. Afterwards
+         * the array holds the same combined cipher text, starting at
+         * {@code messageOff}, that the regular encrypt functions produce.
+         * @param buffer The array holding the message, with room for the tag after it.
+         * @param messageOff Where the message starts.
+         * @param messageLen The message length.
+         * @param additionalData Additional data that is authenticated but not encrypted. Can be null.
+         * @param nPub The nonce, of the size the method needs.
+         * @param key The key.
+         * @param method The construction to use.
+         * @return True if successful.
+         */
+        boolean cryptoAeadEncryptInPlace(byte[] buffer,
+                                         int messageOff,
+                                         int messageLen,
+                                         byte[] additionalData,
+                                         byte[] nPub,
+                                         byte[] key,
+                                         Method method);
+
+        /**
+         * Decrypts part of an array in place. The message is written to
+         * {@code cipherOff}. Nothing is written if the cipher text,
+         * or {@code additionalData}, is not authentic.
+         * @param buffer The array holding the cipher text.
+         * @param cipherOff Where the cipher text starts.
+         * @param cipherLen The cipher text length, including the tag.
+         * @param additionalData The additional data that was used to encrypt. Can be null.
+         * @param nPub The nonce that was used to encrypt.
+         * @param key The key that was used to encrypt.
+         * @param method The construction that was used to encrypt.
+         * @return True if the cipher text was authentic and was decrypted.
+         */
+        boolean cryptoAeadDecryptInPlace(byte[] buffer,
+                                         int cipherOff,
+                                         int cipherLen,
+                                         byte[] additionalData,
+                                         byte[] nPub,
+                                         byte[] key,
+                                         Method method);
+
+        /**
+         * Encrypts part of a buffer in place. Offsets are absolute and the
+         * position of the buffer is not changed. A direct buffer is encrypted
+         * where it is, without being copied.
+         * @see #cryptoAeadEncryptInPlace(byte[], int, int, byte[], byte[], byte[], Method)
+         */
+        boolean cryptoAeadEncryptInPlace(ByteBuffer buffer,
+                                         int messageOff,
+                                         int messageLen,
+                                         byte[] additionalData,
+                                         byte[] nPub,
+                                         byte[] key,
+                                         Method method);
+
+        /**
+         * Decrypts part of a buffer in place. Offsets are absolute and the
+         * position of the buffer is not changed. Unlike a heap buffer, a
+         * direct buffer may have been overwritten when decryption fails,
+         * as {@link Method#AES256GCM} clears the message it wrote.
+         * @see #cryptoAeadDecryptInPlace(byte[], int, int, byte[], byte[], byte[], Method)
+         */
+        boolean cryptoAeadDecryptInPlace(ByteBuffer buffer,
+                                         int cipherOff,
+                                         int cipherLen,
+                                         byte[] additionalData,
+                                         byte[] nPub,
+                                         byte[] key,
+                                         Method method);
+
+
+        // Batches
+
+        /**
+         * Encrypts many messages under one key. This is a lot cheaper
+         * than encrypting them one by one when the messages are small, as
+         * the key is only staged in native memory once for the whole batch.
+         * Each {@code ciphers[i]} receives the combined cipher text of
+         * {@code messages[i]} and must be at least
+         * {@link #CHACHA20POLY1305_ABYTES} bytes longer than it.
+         * @param ciphers The arrays to write the cipher texts to.
+         * @param messages The messages.
+         * @param additionalData Additional data per message. The array, or any item of it, can be null.
+         * @param nPubs A unique nonce per message, of the size the method needs.
+         * @param key The key that encrypts every message.
+         * @param method The construction to use.
+         * @return Whether each message was encrypted.
+         */
+        boolean[] cryptoAeadEncryptBatch(byte[][] ciphers,
+                                         byte[][] messages,
+                                         byte[][] additionalData,
+                                         byte[][] nPubs,
+                                         byte[] key,
+                                         Method method);
+
+        /**
+         * Encrypts many messages, each under its own key.
+         * @param keys A key per message.
+         * @see #cryptoAeadEncryptBatch(byte[][], byte[][], byte[][], byte[][], byte[], Method)
+         */
+        boolean[] cryptoAeadEncryptBatch(byte[][] ciphers,
+                                         byte[][] messages,
+                                         byte[][] additionalData,
+                                         byte[][] nPubs,
+                                         byte[][] keys,
+                                         Method method);
+
+        /**
+         * Decrypts many cipher texts under one key. Each cipher text is
+         * checked on its own, so a bad tag only fails its own item.
+         * Each {@code messages[i]} receives the message of {@code ciphers[i]}
+         * and must be at least {@code ciphers[i].length} - {@link #CHACHA20POLY1305_ABYTES}
+         * bytes long. It is left untouched if its cipher text is not authentic.
+         * @param messages The arrays to write the messages to.
+         * @param ciphers The combined cipher texts.
+         * @param additionalData Additional data per cipher text. The array, or any item of it, can be null.
+         * @param nPubs The nonce each cipher text was encrypted with.
+         * @param key The key.
+         * @param method The construction that was used to encrypt.
+         * @return Whether each cipher text was authentic and was decrypted.
+         */
+        boolean[] cryptoAeadDecryptBatch(byte[][] messages,
+                                         byte[][] ciphers,
+                                         byte[][] additionalData,
+                                         byte[][] nPubs,
+                                         byte[] key,
+                                         Method method);
+
+        /**
+         * Decrypts many cipher texts, each under its own key.
+         * @param keys A key per cipher text.
+         * @see #cryptoAeadDecryptBatch(byte[][], byte[][], byte[][], byte[][], byte[], Method)
+         */
+        boolean[] cryptoAeadDecryptBatch(byte[][] messages,
+                                         byte[][] ciphers,
+                                         byte[][] additionalData,
+                                         byte[][] nPubs,
+                                         byte[][] keys,
+                                         Method method);
+
     }
 
 
@@ -346,8 +812,97 @@ public interface AEAD {
 
     }
 
+    /**
+     * Like {@link Lazy}, but messages, additional data and cipher texts
+     * are bytes rather than strings, so nothing is encoded or decoded.
+     * Every method's tag is {@link #CHACHA20POLY1305_ABYTES} long.
+     */
+    interface LazyBytes {
+
+        /**
+         * Encrypts a message.
+         * @param m The message.
+         * @param additionalData Authenticated but not encrypted. Can be null.
+         * @param nPub The nonce, of the size the method needs.
+         * @param k The key, of the size the method needs.
+         * @param method The algorithm.
+         * @return The cipher text, a tag longer than the message.
+         * @throws SodiumException If the nonce or key has the wrong size.
+         */
+        byte[] encrypt(byte[] m, byte[] additionalData, byte[] nPub, Key k, Method method) throws SodiumException;
+
+        /**
+         * Decrypts a message.
+         * @param cipher The cipher text from {@link #encrypt(byte[], byte[], byte[], Key, Method)}.
+         * @param additionalData The additional data it was encrypted with. Can be null.
+         * @param nPub The nonce it was encrypted with.
+         * @param k The key it was encrypted with.
+         * @param method The algorithm.
+         * @return The message.
+         * @throws AEADBadTagException If the cipher text isn't authentic.
+         */
+        byte[] decrypt(byte[] cipher, byte[] additionalData, byte[] nPub, Key k, Method method) throws AEADBadTagException;
+
+        /**
+         * Encrypts the remaining bytes of {@code m}, moving its
+         * position to its limit.
+         * @param m The message.
+         * @param additionalData Its remaining bytes are authenticated but not encrypted. Can be null.
+         * @param nPub The nonce, of the size the method needs.
+         * @param k The key, of the size the method needs.
+         * @param method The algorithm.
+         * @return A buffer holding just the cipher text. It is direct if {@code m} is.
+         * @throws SodiumException If the nonce or key has the wrong size.
+         */
+        ByteBuffer encrypt(ByteBuffer m, ByteBuffer additionalData, byte[] nPub, Key k, Method method) throws SodiumException;
+
+        /**
+         * Decrypts the remaining bytes of {@code cipher}, moving its
+         * position to its limit if it is authentic.
+         * @param cipher The cipher text.
+         * @param additionalData The additional data it was encrypted with. Can be null.
+         * @param nPub The nonce it was encrypted with.
+         * @param k The key it was encrypted with.
+         * @param method The algorithm.
+         * @return A buffer holding just the message. It is direct if {@code cipher} is.
+         * @throws AEADBadTagException If the cipher text isn't authentic.
+         */
+        ByteBuffer decrypt(ByteBuffer cipher, ByteBuffer additionalData, byte[] nPub, Key k, Method method) throws AEADBadTagException;
+
+        /**
+         * Encrypts a message with the next nonce of a sequence,
+         * which saves drawing a random nonce for every message.
+         * @param m The message.
+         * @param additionalData Authenticated but not encrypted. Can be null.
+         * @param nonces A sequence of nonces of the method's size.
+         * @param k The key.
+         * @param method The algorithm.
+         * @return The nonce followed by the cipher text.
+         * @throws SodiumException If the nonces or key have the wrong size.
+         */
+        byte[] encrypt(byte[] m, byte[] additionalData, NonceSequence nonces, Key k, Method method) throws SodiumException;
+
+        /**
+         * Decrypts a message from {@link #encrypt(byte[], byte[], NonceSequence, Key, Method)}.
+         * @param nonceAndCipher The nonce followed by the cipher text.
+         * @param additionalData The additional data it was encrypted with. Can be null.
+         * @param k The key.
+         * @param method The algorithm.
+         * @return The message.
+         * @throws AEADBadTagException If the cipher text isn't authentic or the key has the wrong size.
+         */
+        byte[] decrypt(byte[] nonceAndCipher, byte[] additionalData, Key k, Method method) throws AEADBadTagException;
+
+    }
+
 
 
+    /**
+     * An expanded AES256-GCM key. The structure is copied to and
+     * from {@link #arr} on every call, so it is on the Java heap;
+     * {@link com.goterl.lazysodium.utils.AeadContext} keeps one in
+     * secure memory instead.
+     */
     class StateAES extends Structure {
 
         public static class ByReference extends StateAES implements Structure.ByReference {
@@ -359,7 +914,14 @@ public interface AEAD {
             return Arrays.asList("arr");
         }
 
-        public byte[] arr = new byte[512];
+        // libsodium needs the state 16 byte aligned,
+        // which malloc doesn't promise on every platform.
+        @Override
+        protected Memory autoAllocate(int size) {
+            return new Memory(size + 15).align(16);
+        }
+
+        public byte[] arr = new byte[AES256GCM_STATEBYTES];
 
     }
 
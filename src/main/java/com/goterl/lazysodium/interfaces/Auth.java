@@ -64,6 +64,32 @@ public interface Auth {
          */
         boolean cryptoAuthVerify(byte[] tag, byte[] in, long inLen, byte[] key);
 
+        /**
+         * Computes a tag for part of an array and writes
+         * it to part of another (or the same) array.
+         * @param tag The array to write the {@link #BYTES} tag to.
+         * @param tagOff Where to write the tag.
+         * @param in The array holding the message.
+         * @param inOff Where the message starts.
+         * @param inLen The message length.
+         * @param key The key as generated by {@link #cryptoAuthKeygen(byte[])}.
+         * @return True if successful.
+         */
+        boolean cryptoAuth(byte[] tag, int tagOff, byte[] in, int inOff, int inLen, byte[] key);
+
+        /**
+         * Verifies a tag held in part of an array for
+         * a message held in part of another (or the same) array.
+         * @param tag The array holding the tag.
+         * @param tagOff Where the tag starts.
+         * @param in The array holding the message.
+         * @param inOff Where the message starts.
+         * @param inLen The message length.
+         * @param key The key as generated by {@link #cryptoAuthKeygen(byte[])}.
+         * @return True if successful verification.
+         */
+        boolean cryptoAuthVerify(byte[] tag, int tagOff, byte[] in, int inOff, int inLen, byte[] key);
+
 
         void cryptoAuthHMACSha256Keygen(byte[] key);
 
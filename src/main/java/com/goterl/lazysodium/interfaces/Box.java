@@ -15,6 +15,7 @@ import com.goterl.lazysodium.utils.DetachedDecrypt;
 import com.goterl.lazysodium.utils.DetachedEncrypt;
 import com.goterl.lazysodium.utils.Key;
 import com.goterl.lazysodium.utils.KeyPair;
+import com.goterl.lazysodium.utils.NonceSequence;
 
 public interface Box {
 
@@ -141,6 +142,51 @@ public interface Box {
                                             byte[] nonce,
                                             byte[] key);
 
+        // Offset variants that work on part of an array, e.g.
+        // a message inside a larger frame buffer.
+
+        boolean cryptoBoxEasy(
+                byte[] cipherText,
+                int cipherTextOff,
+                byte[] message,
+                int messageOff,
+                int messageLen,
+                byte[] nonce,
+                byte[] publicKey,
+                byte[] secretKey
+        );
+
+        boolean cryptoBoxOpenEasy(
+                byte[] message,
+                int messageOff,
+                byte[] cipherText,
+                int cipherTextOff,
+                int cipherTextLen,
+                byte[] nonce,
+                byte[] publicKey,
+                byte[] secretKey
+        );
+
+        boolean cryptoBoxEasyAfterNm(
+                byte[] cipherText,
+                int cipherTextOff,
+                byte[] message,
+                int messageOff,
+                int messageLen,
+                byte[] nonce,
+                byte[] key
+        );
+
+        boolean cryptoBoxOpenEasyAfterNm(
+                byte[] message,
+                int messageOff,
+                byte[] cipherText,
+                int cipherTextOff,
+                int cipherTextLen,
+                byte[] nonce,
+                byte[] key
+        );
+
 
 
         boolean cryptoBoxSeal(byte[] cipher, byte[] message, long messageLen, byte[] publicKey);
@@ -281,5 +327,130 @@ public interface Box {
         String cryptoBoxSealOpenEasy(String cipherText, KeyPair keyPair) throws SodiumException;
     }
 
+    /**
+     * Like {@link Lazy}, but messages, cipher texts and shared keys are
+     * bytes rather than strings, so nothing is encoded or decoded.
+     */
+    interface LazyBytes {
+
+        /**
+         * Encrypts a message.
+         * @param message The message.
+         * @param nonce The nonce of size {@link #NONCEBYTES}.
+         * @param keyPair The receiver's public key and the sender's secret key.
+         * @return The cipher text, {@link #MACBYTES} longer than the message.
+         * @throws SodiumException If a key or the nonce has the wrong size.
+         */
+        byte[] cryptoBoxEasy(byte[] message, byte[] nonce, KeyPair keyPair) throws SodiumException;
+
+        /**
+         * Decrypts a message.
+         * @param cipherText Encrypted via {@link #cryptoBoxEasy(byte[], byte[], KeyPair)}.
+         * @param nonce The nonce of size {@link #NONCEBYTES}.
+         * @param keyPair The sender's public key and the receiver's secret key.
+         * @return The message.
+         * @throws SodiumException If the cipher text isn't authentic, or a key or the nonce has the wrong size.
+         */
+        byte[] cryptoBoxOpenEasy(byte[] cipherText, byte[] nonce, KeyPair keyPair) throws SodiumException;
+
+        /**
+         * Calculates the shared key for {@link #cryptoBoxEasyAfterNm(byte[], byte[], Key)}
+         * and {@link #cryptoBoxOpenEasyAfterNm(byte[], byte[], Key)}.
+         * @param keyPair A public and secret key.
+         * @return The shared secret key.
+         * @throws SodiumException Incorrect key lengths.
+         */
+        Key cryptoBoxBeforeNmKey(KeyPair keyPair) throws SodiumException;
+
+        /**
+         * Encrypt a message with a shared key.
+         * @param message The message for encryption.
+         * @param nonce A randomly generated nonce via {@link Random#nonce(int)}.
+         * @param sharedSecretKey The shared key from {@link #cryptoBoxBeforeNmKey(KeyPair)}.
+         * @return The cipher text, {@link #MACBYTES} longer than the message.
+         * @throws SodiumException If the key or the nonce has the wrong size.
+         */
+        byte[] cryptoBoxEasyAfterNm(byte[] message, byte[] nonce, Key sharedSecretKey) throws SodiumException;
+
+        /**
+         * Decrypt a message with a shared key.
+         * @param cipher The cipher text to be decrypted.
+         * @param nonce The same nonce used to encrypt.
+         * @param sharedSecretKey The shared key from {@link #cryptoBoxBeforeNmKey(KeyPair)}.
+         * @return The message.
+         * @throws SodiumException If the cipher text isn't authentic, or the key or the nonce has the wrong size.
+         */
+        byte[] cryptoBoxOpenEasyAfterNm(byte[] cipher, byte[] nonce, Key sharedSecretKey) throws SodiumException;
+
+        /**
+         * Encrypts a message with the next nonce of a sequence,
+         * which saves drawing a random nonce for every message.
+         * Messages both ways between two peers use the same key, so
+         * each peer's sequence must start from random bytes, from
+         * {@link NonceSequence#NonceSequence(Random, int)}.
+         * Two sequences from zero would hand out the same nonces.
+         * @param message The message to encrypt.
+         * @param nonces A sequence of nonces of size {@link #NONCEBYTES}
+         *               that started from random bytes.
+         * @param keyPair The receiver's public key and the sender's secret key.
+         * @return The nonce followed by the cipher text.
+         * @throws SodiumException If the nonces or keys have the wrong size,
+         * or the sequence didn't start from random bytes.
+         */
+        byte[] cryptoBoxEasy(byte[] message, NonceSequence nonces, KeyPair keyPair) throws SodiumException;
+
+        /**
+         * Decrypts a message from {@link #cryptoBoxEasy(byte[], NonceSequence, KeyPair)}.
+         * @param nonceAndCipher The nonce followed by the cipher text.
+         * @param keyPair The sender's public key and the receiver's secret key.
+         * @return The message.
+         * @throws SodiumException If the cipher text isn't authentic or the keys have the wrong size.
+         */
+        byte[] cryptoBoxOpenEasy(byte[] nonceAndCipher, KeyPair keyPair) throws SodiumException;
+
+        /**
+         * Encrypts a message with a shared key and the next nonce of a sequence.
+         * Both peers compute the same shared key, so as with
+         * {@link #cryptoBoxEasy(byte[], NonceSequence, KeyPair)}, each
+         * peer's sequence must start from random bytes.
+         * @param message The message to encrypt.
+         * @param nonces A sequence of nonces of size {@link #NONCEBYTES}
+         *               that started from random bytes.
+         * @param sharedSecretKey The shared key from {@link #cryptoBoxBeforeNmKey(KeyPair)}.
+         * @return The nonce followed by the cipher text.
+         * @throws SodiumException If the nonces or key have the wrong size,
+         * or the sequence didn't start from random bytes.
+         */
+        byte[] cryptoBoxEasyAfterNm(byte[] message, NonceSequence nonces, Key sharedSecretKey) throws SodiumException;
+
+        /**
+         * Decrypts a message from {@link #cryptoBoxEasyAfterNm(byte[], NonceSequence, Key)}.
+         * @param nonceAndCipher The nonce followed by the cipher text.
+         * @param sharedSecretKey The shared key from {@link #cryptoBoxBeforeNmKey(KeyPair)}.
+         * @return The message.
+         * @throws SodiumException If the cipher text isn't authentic or the key has the wrong size.
+         */
+        byte[] cryptoBoxOpenEasyAfterNm(byte[] nonceAndCipher, Key sharedSecretKey) throws SodiumException;
+
+        /**
+         * Encrypts a message anonymously.
+         * @param message The message.
+         * @param publicKey The receiver's public key.
+         * @return The cipher text, {@link #SEALBYTES} longer than the message.
+         * @throws SodiumException If the key has the wrong size.
+         */
+        byte[] cryptoBoxSealEasy(byte[] message, Key publicKey) throws SodiumException;
+
+        /**
+         * Decrypts a message from {@link #cryptoBoxSealEasy(byte[], Key)}.
+         * @param cipherText The cipher text.
+         * @param keyPair The receiver's keypair.
+         * @return The message.
+         * @throws SodiumException If the cipher text isn't authentic, or a key has the wrong size.
+         */
+        byte[] cryptoBoxSealOpenEasy(byte[] cipherText, KeyPair keyPair) throws SodiumException;
+
+    }
+
 
 }
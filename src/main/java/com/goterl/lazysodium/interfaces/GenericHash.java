@@ -131,6 +131,46 @@ public interface GenericHash {
                                      byte[] in,
                                      long inLen);
 
+        /**
+         * Hashes part of an array into part of another array.
+         * @param out The array to write the hash to.
+         * @param outOff Where to write the hash.
+         * @param outLen The length of the hash. Between {@link #BYTES_MIN} and {@link #BYTES_MAX}.
+         * @param in The array holding the input.
+         * @param inOff Where the input starts.
+         * @param inLen The input length.
+         * @param key A key, or null for an unkeyed hash.
+         * @param keyLen The key length, or 0 for an unkeyed hash.
+         * @return True if the hash succeeded.
+         */
+        boolean cryptoGenericHash(
+                byte[] out, int outOff, int outLen,
+                byte[] in, int inOff, int inLen,
+                byte[] key, int keyLen
+        );
+
+        /**
+         * Hashes part of an array into part of another array, without a key.
+         * @see #cryptoGenericHash(byte[], int, int, byte[], int, int, byte[], int)
+         */
+        boolean cryptoGenericHash(
+                byte[] out, int outOff, int outLen,
+                byte[] in, int inOff, int inLen
+        );
+
+        /**
+         * Update a multi-part hashing with part of an array.
+         * @param state The state.
+         * @param in The array holding the hash part.
+         * @param inOff Where the hash part starts.
+         * @param inLen The length of the hash part.
+         * @return True if this part of the message was hashed.
+         */
+        boolean cryptoGenericHashUpdate(byte[] state,
+                                        byte[] in,
+                                        int inOff,
+                                        int inLen);
+
         /**
          * Now that the hash has finalised, the hash can
          * be put into {@code out}.
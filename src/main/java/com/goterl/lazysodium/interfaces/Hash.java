@@ -45,6 +45,16 @@ public interface Hash {
 
         boolean cryptoHashSha512Final(Hash.State512 state, byte[] out);
 
+        // Offset variants that work on part of an array.
+
+        boolean cryptoHashSha256(byte[] out, int outOff, byte[] in, int inOff, int inLen);
+
+        boolean cryptoHashSha512(byte[] out, int outOff, byte[] in, int inOff, int inLen);
+
+        boolean cryptoHashSha256Update(Hash.State256 state, byte[] in, int inOff, int inLen);
+
+        boolean cryptoHashSha512Update(Hash.State512 state, byte[] in, int inOff, int inLen);
+
     }
 
     interface Lazy {
@@ -8,7 +8,90 @@
 
 package com.goterl.lazysodium.interfaces;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 public interface MessageEncoder {
     String encode(byte[] cipher);
     byte[] decode(String cipherText);
+
+    /**
+     * Encodes part of an array. Implementations should
+     * override this to avoid copying the part first.
+     * @param cipher The array.
+     * @param off Where the part starts.
+     * @param len The length of the part.
+     * @return The encoded part.
+     */
+    default String encode(byte[] cipher, int off, int len) {
+        return encode(Arrays.copyOfRange(cipher, off, off + len));
+    }
+
+    /**
+     * Encodes part of an array onto the end of a {@link StringBuilder}.
+     * @param cipher The array.
+     * @param off Where the part starts.
+     * @param len The length of the part.
+     * @param out Where to append the encoded part.
+     */
+    default void encodeTo(byte[] cipher, int off, int len, StringBuilder out) {
+        out.append(encode(cipher, off, len));
+    }
+
+    /**
+     * Encodes the remaining bytes of a buffer onto the end of a
+     * {@link StringBuilder}, moving the buffer's position to its limit.
+     * @param cipher The bytes to encode.
+     * @param out Where to append the encoded bytes.
+     */
+    default void encodeTo(ByteBuffer cipher, StringBuilder out) {
+        if (cipher.hasArray()) {
+            encodeTo(cipher.array(), cipher.arrayOffset() + cipher.position(), cipher.remaining(), out);
+            cipher.position(cipher.limit());
+        } else {
+            byte[] bytes = new byte[cipher.remaining()];
+            cipher.get(bytes);
+            encodeTo(bytes, 0, bytes.length, out);
+        }
+    }
+
+    /**
+     * @param cipherText Encoded bytes.
+     * @return The number of bytes {@link #decodeInto(CharSequence, byte[], int)}
+     * would write. Implementations should override this to avoid decoding.
+     */
+    default int decodedLength(CharSequence cipherText) {
+        return decode(cipherText.toString()).length;
+    }
+
+    /**
+     * Decodes into an existing array.
+     * @param cipherText Encoded bytes.
+     * @param out Where to write the bytes.
+     * @param off Where in {@code out} to start.
+     * @return The number of bytes written.
+     */
+    default int decodeInto(CharSequence cipherText, byte[] out, int off) {
+        byte[] bytes = decode(cipherText.toString());
+        if (off < 0 || off > out.length - bytes.length) {
+            throw new IndexOutOfBoundsException("offset " + off + ", length " + bytes.length);
+        }
+        System.arraycopy(bytes, 0, out, off, bytes.length);
+        return bytes.length;
+    }
+
+    /**
+     * Decodes into a buffer, from its position onwards,
+     * moving its position past the bytes written.
+     * @param cipherText Encoded bytes.
+     * @param out Where to write the bytes.
+     * @return The number of bytes written.
+     * @throws BufferOverflowException If {@code out} doesn't have room.
+     */
+    default int decodeInto(CharSequence cipherText, ByteBuffer out) {
+        byte[] bytes = decode(cipherText.toString());
+        out.put(bytes);
+        return bytes.length;
+    }
 }
@@ -12,6 +12,9 @@ package com.goterl.lazysodium.interfaces;
 import com.goterl.lazysodium.exceptions.SodiumException;
 import com.goterl.lazysodium.utils.DetachedEncrypt;
 import com.goterl.lazysodium.utils.Key;
+import com.goterl.lazysodium.utils.NonceSequence;
+
+import java.nio.ByteBuffer;
 
 public interface SecretBox {
 
@@ -105,6 +108,135 @@ public interface SecretBox {
                                           byte[] nonce,
                                           byte[] key);
 
+        /**
+         * Encrypts part of an array into part of another (or the same) array,
+         * so that a message can be encrypted within a larger frame buffer
+         * without being copied out of it first.
+         * @param cipherText The array to write the cipher text to.
+         * @param cipherTextOff Where to write the {@code messageLen} + {@link #MACBYTES} bytes of cipher text.
+         * @param message The array holding the message.
+         * @param messageOff Where the message starts.
+         * @param messageLen The message length.
+         * @param nonce A nonce of size {@link #NONCEBYTES}.
+         * @param key The key of size {@link #KEYBYTES}.
+         * @return True if successful.
+         */
+        boolean cryptoSecretBoxEasy(byte[] cipherText,
+                                    int cipherTextOff,
+                                    byte[] message,
+                                    int messageOff,
+                                    int messageLen,
+                                    byte[] nonce,
+                                    byte[] key);
+
+        /**
+         * Decrypts part of an array into part of another (or the same) array.
+         * @param message The array to write the {@code cipherTextLen} - {@link #MACBYTES} bytes of message to.
+         * @param messageOff Where to write the message.
+         * @param cipherText The array holding the cipher text.
+         * @param cipherTextOff Where the cipher text starts.
+         * @param cipherTextLen The cipher text length.
+         * @param nonce The nonce that was used to encrypt.
+         * @param key The key that was used to encrypt.
+         * @return True if the cipher text was authentic and was decrypted.
+         * @see #cryptoSecretBoxEasy(byte[], int, byte[], int, int, byte[], byte[])
+         */
+        boolean cryptoSecretBoxOpenEasy(byte[] message,
+                                        int messageOff,
+                                        byte[] cipherText,
+                                        int cipherTextOff,
+                                        int cipherTextLen,
+                                        byte[] nonce,
+                                        byte[] key);
+
+        /**
+         * Encrypts part of an array, writing the cipher text to part of
+         * another (or the same) array and the mac to {@code mac}.
+         * @param cipherText The array to write the {@code messageLen} bytes of cipher text to.
+         * @param cipherTextOff Where to write the cipher text.
+         * @param mac The mac of size {@link #MACBYTES}.
+         * @param message The array holding the message.
+         * @param messageOff Where the message starts.
+         * @param messageLen The message length.
+         * @param nonce A nonce of size {@link #NONCEBYTES}.
+         * @param key The key of size {@link #KEYBYTES}.
+         * @return True if successful.
+         */
+        boolean cryptoSecretBoxDetached(byte[] cipherText,
+                                        int cipherTextOff,
+                                        byte[] mac,
+                                        byte[] message,
+                                        int messageOff,
+                                        int messageLen,
+                                        byte[] nonce,
+                                        byte[] key);
+
+        /**
+         * Decrypts part of an array that was encrypted with a detached mac.
+         * @param message The array to write the {@code cipherTextLen} bytes of message to.
+         * @param messageOff Where to write the message.
+         * @param cipherText The array holding the cipher text.
+         * @param cipherTextOff Where the cipher text starts.
+         * @param cipherTextLen The cipher text length.
+         * @param mac The mac.
+         * @param nonce The nonce that was used to encrypt.
+         * @param key The key that was used to encrypt.
+         * @return True if the cipher text was authentic and was decrypted.
+         */
+        boolean cryptoSecretBoxOpenDetached(byte[] message,
+                                            int messageOff,
+                                            byte[] cipherText,
+                                            int cipherTextOff,
+                                            int cipherTextLen,
+                                            byte[] mac,
+                                            byte[] nonce,
+                                            byte[] key);
+
+        /**
+         * Encrypts part of an array in place. The cipher text overwrites the
+         * message and the mac is written to the {@link #MACBYTES} bytes
+         * of headroom just before it, so that afterwards the array holds the
+         * same {@code messageLen} + {@link #MACBYTES} bytes, starting at
+         * {@code messageOff} - {@link #MACBYTES}, that
+         * {@link #cryptoSecretBoxEasy(byte[], byte[], long, byte[], byte[])} would produce.
+         * @param buffer The array holding the message, with room for the mac before it.
+         * @param messageOff Where the message starts. Must be at least {@link #MACBYTES}.
+         * @param messageLen The message length.
+         * @param nonce A nonce of size {@link #NONCEBYTES}.
+         * @param key The key of size {@link #KEYBYTES}.
+         * @return True if successful.
+         */
+        boolean cryptoSecretBoxEasyInPlace(byte[] buffer, int messageOff, int messageLen, byte[] nonce, byte[] key);
+
+        /**
+         * Decrypts part of an array in place. The message is written
+         * to {@code cipherTextOff} + {@link #MACBYTES}, which is where it
+         * was before {@link #cryptoSecretBoxEasyInPlace(byte[], int, int, byte[], byte[])}.
+         * Nothing is written if the cipher text is not authentic.
+         * @param buffer The array holding the cipher text.
+         * @param cipherTextOff Where the cipher text, which starts with the mac, starts.
+         * @param cipherTextLen The cipher text length.
+         * @param nonce The nonce that was used to encrypt.
+         * @param key The key that was used to encrypt.
+         * @return True if the cipher text was authentic and was decrypted.
+         */
+        boolean cryptoSecretBoxOpenEasyInPlace(byte[] buffer, int cipherTextOff, int cipherTextLen, byte[] nonce, byte[] key);
+
+        /**
+         * Encrypts part of a buffer in place. Offsets are absolute and the
+         * position of the buffer is not changed. A direct buffer is encrypted
+         * where it is, without being copied.
+         * @see #cryptoSecretBoxEasyInPlace(byte[], int, int, byte[], byte[])
+         */
+        boolean cryptoSecretBoxEasyInPlace(ByteBuffer buffer, int messageOff, int messageLen, byte[] nonce, byte[] key);
+
+        /**
+         * Decrypts part of a buffer in place. Offsets are absolute and the
+         * position of the buffer is not changed.
+         * @see #cryptoSecretBoxOpenEasyInPlace(byte[], int, int, byte[], byte[])
+         */
+        boolean cryptoSecretBoxOpenEasyInPlace(ByteBuffer buffer, int cipherTextOff, int cipherTextLen, byte[] nonce, byte[] key);
+
     }
 
     interface Lazy {
@@ -156,5 +288,75 @@ public interface SecretBox {
 
     }
 
+    /**
+     * Like {@link Lazy}, but messages and cipher texts are bytes rather
+     * than strings, so nothing is encoded or decoded.
+     */
+    interface LazyBytes {
+
+        /**
+         * Encrypts a message.
+         * @param message The message to encrypt.
+         * @param nonce A randomly generated nonce of size {@link #NONCEBYTES}. Use {@link Random#nonce(int)}.
+         * @param key A key of size {@link #KEYBYTES}.
+         * @return The cipher text, {@link #MACBYTES} longer than the message.
+         * @throws SodiumException If the nonce or key has the wrong size.
+         */
+        byte[] cryptoSecretBoxEasy(byte[] message, byte[] nonce, Key key) throws SodiumException;
+
+        /**
+         * Decrypts a message.
+         * @param cipher The cipher text from {@link #cryptoSecretBoxEasy(byte[], byte[], Key)}.
+         * @param nonce The nonce that was used to encrypt.
+         * @param key The key that was used to encrypt.
+         * @return The message.
+         * @throws SodiumException If the cipher text isn't authentic, or the nonce or key has the wrong size.
+         */
+        byte[] cryptoSecretBoxOpenEasy(byte[] cipher, byte[] nonce, Key key) throws SodiumException;
+
+        /**
+         * Encrypts the remaining bytes of {@code message}, moving its
+         * position to its limit.
+         * @param message The message to encrypt.
+         * @param nonce A randomly generated nonce of size {@link #NONCEBYTES}.
+         * @param key A key of size {@link #KEYBYTES}.
+         * @return A buffer holding just the cipher text. It is direct if {@code message} is.
+         * @throws SodiumException If the nonce or key has the wrong size.
+         */
+        ByteBuffer cryptoSecretBoxEasy(ByteBuffer message, byte[] nonce, Key key) throws SodiumException;
+
+        /**
+         * Decrypts the remaining bytes of {@code cipher}, moving its
+         * position to its limit.
+         * @param cipher The cipher text to decrypt.
+         * @param nonce The nonce that was used to encrypt.
+         * @param key The key that was used to encrypt.
+         * @return A buffer holding just the message. It is direct if {@code cipher} is.
+         * @throws SodiumException If the cipher text isn't authentic, or the nonce or key has the wrong size.
+         */
+        ByteBuffer cryptoSecretBoxOpenEasy(ByteBuffer cipher, byte[] nonce, Key key) throws SodiumException;
+
+        /**
+         * Encrypts a message with the next nonce of a sequence,
+         * which saves drawing a random nonce for every message.
+         * @param message The message to encrypt.
+         * @param nonces A sequence of nonces of size {@link #NONCEBYTES}.
+         * @param key A key of size {@link #KEYBYTES}.
+         * @return The nonce followed by the cipher text.
+         * @throws SodiumException If the nonces or key have the wrong size.
+         */
+        byte[] cryptoSecretBoxEasy(byte[] message, NonceSequence nonces, Key key) throws SodiumException;
+
+        /**
+         * Decrypts a message from {@link #cryptoSecretBoxEasy(byte[], NonceSequence, Key)}.
+         * @param nonceAndCipher The nonce followed by the cipher text.
+         * @param key The key that was used to encrypt.
+         * @return The message.
+         * @throws SodiumException If the cipher text isn't authentic or the key has the wrong size.
+         */
+        byte[] cryptoSecretBoxOpenEasy(byte[] nonceAndCipher, Key key) throws SodiumException;
+
+    }
+
 
 }
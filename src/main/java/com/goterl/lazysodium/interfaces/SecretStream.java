@@ -189,6 +189,48 @@ public interface SecretStream {
                 long cipherLen
         );
 
+        /**
+         * Encrypts part of an array into part of another (or the same) array.
+         * @param state The state.
+         * @param cipher The array to write the {@code messageLen} + {@link #ABYTES} bytes of cipher to.
+         * @param cipherOff Where to write the cipher.
+         * @param message The array holding the message.
+         * @param messageOff Where the message starts.
+         * @param messageLen The message length.
+         * @param tag The tag.
+         * @return True if the message was encrypted.
+         */
+        boolean cryptoSecretStreamPush(
+                State state,
+                byte[] cipher,
+                int cipherOff,
+                byte[] message,
+                int messageOff,
+                int messageLen,
+                byte tag
+        );
+
+        /**
+         * Decrypts part of an array into part of another (or the same) array.
+         * @param state The state.
+         * @param message The array to write the {@code cipherLen} - {@link #ABYTES} bytes of message to.
+         * @param messageOff Where to write the message.
+         * @param tag The tag, of size 1.
+         * @param cipher The array holding the cipher.
+         * @param cipherOff Where the cipher starts.
+         * @param cipherLen The cipher length.
+         * @return True if successful decryption.
+         */
+        boolean cryptoSecretStreamPull(
+                State state,
+                byte[] message,
+                int messageOff,
+                byte[] tag,
+                byte[] cipher,
+                int cipherOff,
+                int cipherLen
+        );
+
 
         /**
          * Explicitly rekeys.
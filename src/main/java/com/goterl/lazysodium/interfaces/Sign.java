@@ -17,7 +17,9 @@ import com.sun.jna.Pointer;
 import com.sun.jna.Structure;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 public interface Sign {
 
@@ -163,6 +165,68 @@ public interface Sign {
          */
         boolean cryptoSignVerifyDetached(byte[] signature, byte[] message, int messageLen, byte[] publicKey);
 
+        /**
+         * Signs part of an array, writing the signature to part of
+         * another (or the same) array.
+         * @param signature The array to write the {@link #BYTES} signature to.
+         * @param signatureOff Where to write the signature.
+         * @param message The array holding the message.
+         * @param messageOff Where the message starts.
+         * @param messageLen The message length.
+         * @param secretKey The secret key.
+         * @return True if the secret key could provide a signature.
+         */
+        boolean cryptoSignDetached(
+                byte[] signature,
+                int signatureOff,
+                byte[] message,
+                int messageOff,
+                int messageLen,
+                byte[] secretKey
+        );
+
+        /**
+         * Verifies a signature held in part of an array for
+         * a message held in part of another (or the same) array.
+         * @param signature The array holding the signature.
+         * @param signatureOff Where the signature starts.
+         * @param message The array holding the message.
+         * @param messageOff Where the message starts.
+         * @param messageLen The message length.
+         * @param publicKey The public key that signed the message.
+         * @return Returns true if the signature is valid for the message.
+         */
+        boolean cryptoSignVerifyDetached(
+                byte[] signature,
+                int signatureOff,
+                byte[] message,
+                int messageOff,
+                int messageLen,
+                byte[] publicKey
+        );
+
+        /**
+         * Verifies many detached signatures in one go. Each public key is
+         * only copied to native memory once per batch, however many of
+         * the messages it signed. A signature or public key of the wrong
+         * size counts as invalid rather than throwing.
+         * @param signatures The signatures.
+         * @param messages The messages, one per signature.
+         * @param publicKeys The public key that signed each message.
+         * @return A bit set where bit {@code i} is set if signature {@code i} is valid.
+         */
+        BitSet cryptoSignVerifyDetachedBatch(byte[][] signatures, byte[][] messages, byte[][] publicKeys);
+
+        /**
+         * Verifies many detached signatures, splitting large batches into
+         * parts that are verified on {@code executor}. Returns once every
+         * part has been verified.
+         * @param executor Runs the parts of the batch. If null, the batch
+         *                 is verified on the calling thread.
+         * @see #cryptoSignVerifyDetachedBatch(byte[][], byte[][], byte[][])
+         */
+        BitSet cryptoSignVerifyDetachedBatch(byte[][] signatures, byte[][] messages, byte[][] publicKeys, Executor executor);
+
         /**
          * Converts a public ed25519 key to a public curve25519 key.
          * @param curve The array in which the generated key will be placed.
@@ -0,0 +1,467 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.streams;
+
+import com.goterl.lazysodium.LazySodium;
+import com.goterl.lazysodium.Sodium;
+import com.goterl.lazysodium.exceptions.SodiumException;
+import com.goterl.lazysodium.interfaces.AEAD;
+import com.goterl.lazysodium.utils.Key;
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Encrypts and decrypts whole files with XChaCha20-Poly1305, in chunks
+ * that don't depend on each other, so that they can be encrypted and
+ * decrypted in parallel and any one of them decrypted on its own.
+ *
+ * <p>An encrypted file is a {@link #HEADERBYTES} header, made of a random
+ * {@link AEAD#XCHACHA20POLY1305_IETF_NPUBBYTES} file nonce and the chunk
+ * size as a 4 byte big-endian integer, followed by the file's contents cut
+ * into chunks of {@code chunkSize} bytes, each encrypted into
+ * {@code chunkSize} + {@link AEAD#XCHACHA20POLY1305_IETF_ABYTES} bytes.
+ * As with {@link SecretStreamFileCipher}, the last chunk is always shorter
+ * than the others, possibly empty.</p>
+ *
+ * <p>Chunk {@code i} is encrypted with the file nonce whose last 8 bytes,
+ * read as a little-endian integer, have had {@code i} added to them. Its
+ * additional data is {@code i} as 8 little-endian bytes followed by a byte
+ * that is 1 for the last chunk and 0 otherwise, so chunks can be neither
+ * reordered nor dropped from the end without decryption failing.</p>
+ */
+public class ChunkedFileCipher {
+
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    public static final int MAX_CHUNK_SIZE = 16 * 1024 * 1024;
+    public static final int HEADERBYTES = AEAD.XCHACHA20POLY1305_IETF_NPUBBYTES + 4;
+
+    private static final int NONCEBYTES = AEAD.XCHACHA20POLY1305_IETF_NPUBBYTES;
+    private static final int ABYTES = AEAD.XCHACHA20POLY1305_IETF_ABYTES;
+    private static final int ADBYTES = 9;
+
+    // Roughly how many plain bytes a task handles before it isn't split any further.
+    private static final long TASK_BYTES = 1024 * 1024;
+
+    private final Sodium sodium;
+    private final int chunkSize;
+    private final ForkJoinPool pool;
+
+    public ChunkedFileCipher(LazySodium lazySodium) {
+        this(lazySodium, DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param lazySodium The LazySodium instance to encrypt with.
+     * @param chunkSize The number of plain bytes in each chunk, at most
+     *                  {@link #MAX_CHUNK_SIZE}. It is stored in the header,
+     *                  so decrypting works whatever chunk size this has.
+     * @param pool Where chunks are encrypted and decrypted.
+     */
+    public ChunkedFileCipher(LazySodium lazySodium, int chunkSize, ForkJoinPool pool) {
+        if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("chunkSize out of bounds: " + chunkSize);
+        }
+        this.sodium = lazySodium.getSodium();
+        this.chunkSize = chunkSize;
+        this.pool = pool;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * The size of the encrypted file for a file of {@code plainSize} bytes.
+     * @param plainSize The size of the plain file.
+     * @return The size of the encrypted file.
+     */
+    public long encryptedSize(long plainSize) {
+        long chunks = plainSize / chunkSize + 1;
+        return HEADERBYTES + plainSize + chunks * ABYTES;
+    }
+
+    /**
+     * Encrypts a file into another, replacing it if it exists.
+     * The target is only replaced once the whole file has been
+     * encrypted, and is left as it was if anything fails.
+     * @param source The file to encrypt.
+     * @param target The encrypted file. It must not be {@code source}.
+     * @param key A key of {@link AEAD#XCHACHA20POLY1305_IETF_KEYBYTES}.
+     * @throws IOException If a file could not be read or written.
+     * @throws SodiumException If the file could not be encrypted.
+     */
+    public void encrypt(Path source, Path target, final Key key) throws IOException, SodiumException {
+        FileReplacer.replace(source, target, new FileReplacer.Transform() {
+            @Override
+            public void apply(FileChannel in, FileChannel out) throws IOException, SodiumException {
+                encrypt(in, out, key);
+            }
+        });
+    }
+
+    /**
+     * Decrypts a file into another, replacing it if it exists.
+     * The target is only replaced once the whole file has been
+     * decrypted, so if the encrypted file is not authentic or has
+     * been truncated, the target is left as it was.
+     * @param source The encrypted file.
+     * @param target The decrypted file. It must not be {@code source}.
+     * @param key The key that was used to encrypt.
+     * @throws IOException If a file could not be read or written.
+     * @throws SodiumException If the file is not authentic or is incomplete.
+     */
+    public void decrypt(Path source, Path target, final Key key) throws IOException, SodiumException {
+        FileReplacer.replace(source, target, new FileReplacer.Transform() {
+            @Override
+            public void apply(FileChannel in, FileChannel out) throws IOException, SodiumException {
+                decrypt(in, out, key);
+            }
+        });
+    }
+
+    /**
+     * Encrypts the whole of {@code source} and writes the result
+     * to {@code target}, from its start, cutting off anything
+     * {@code target} held beyond it. The positions of the
+     * channels are otherwise neither used nor changed.
+     * @param source The file to encrypt.
+     * @param target Where to write the encrypted file.
+     * @param key A key of {@link AEAD#XCHACHA20POLY1305_IETF_KEYBYTES}.
+     * @throws IOException If reading or writing failed.
+     * @throws SodiumException If encryption failed.
+     */
+    public void encrypt(FileChannel source, FileChannel target, Key key) throws IOException, SodiumException {
+        byte[] keyBytes = keyBytes(key);
+        long size = source.size();
+        byte[] header = new byte[HEADERBYTES];
+        sodium.randombytes_buf(header, NONCEBYTES);
+        ByteBuffer.wrap(header, NONCEBYTES, 4).putInt(chunkSize);
+        Layout layout = new Layout(header, chunkSize, size / chunkSize + 1, (int) (size % chunkSize));
+
+        writeFully(target, ByteBuffer.wrap(header), 0);
+        run(new Job(true, layout, keyBytes, source, target));
+        target.truncate(encryptedSize(size));
+    }
+
+    /**
+     * Decrypts the whole of {@code source} and writes the result to
+     * {@code target}, from its start, cutting off anything {@code target}
+     * held beyond it. The positions of the channels are otherwise
+     * neither used nor changed. Chunks are decrypted in parallel,
+     * so if one of them is not authentic, others after it may
+     * already have been written.
+     * @param source The encrypted file.
+     * @param target Where to write the decrypted contents.
+     * @param key The key that was used to encrypt.
+     * @throws IOException If reading or writing failed.
+     * @throws SodiumException If the file is not authentic or is incomplete.
+     */
+    public void decrypt(FileChannel source, FileChannel target, Key key) throws IOException, SodiumException {
+        byte[] keyBytes = keyBytes(key);
+        Layout layout = readLayout(source);
+        run(new Job(false, layout, keyBytes, source, target));
+        target.truncate(layout.plainSize());
+    }
+
+    /**
+     * Decrypts one chunk of an encrypted file without reading any other.
+     * @param source The encrypted file.
+     * @param index Which chunk to decrypt, from 0.
+     * @param key The key that was used to encrypt.
+     * @return The plain contents of the chunk.
+     * @throws IOException If reading failed.
+     * @throws SodiumException If the chunk is not authentic or
+     * the file doesn't have that many chunks.
+     */
+    public byte[] decryptChunk(FileChannel source, long index, Key key) throws IOException, SodiumException {
+        byte[] keyBytes = keyBytes(key);
+        Layout layout = readLayout(source);
+        if (index < 0 || index >= layout.chunks) {
+            throw new SodiumException("The file has no chunk " + index + ".");
+        }
+        Chunks chunks = new Chunks(sodium, layout, keyBytes);
+        try {
+            int len = chunks.decrypt(source, index);
+            return chunks.plain().getByteArray(0, len);
+        } finally {
+            chunks.wipe();
+        }
+    }
+
+    /**
+     * Reads the header of an encrypted file and works out
+     * from the file's size how its chunks are laid out.
+     */
+    static Layout readLayout(FileChannel source) throws IOException, SodiumException {
+        long size = source.size();
+        byte[] header = new byte[HEADERBYTES];
+        if (size < HEADERBYTES + ABYTES || readFully(source, ByteBuffer.wrap(header), 0) < HEADERBYTES) {
+            throw new SodiumException("The file is too short to have been encrypted.");
+        }
+        int chunkSize = ByteBuffer.wrap(header, NONCEBYTES, 4).getInt();
+        if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new SodiumException("The file's header is not valid.");
+        }
+        long body = size - HEADERBYTES;
+        long cipherChunk = chunkSize + ABYTES;
+        int lastLength = (int) (body % cipherChunk);
+        // The last chunk is never a full one, so a file that ends on a
+        // chunk boundary has lost its last chunk.
+        if (lastLength < ABYTES) {
+            throw new SodiumException(lastLength == 0
+                    ? "The file has been truncated."
+                    : "The file ends with an incomplete chunk.");
+        }
+        return new Layout(header, chunkSize, body / cipherChunk + 1, lastLength - ABYTES);
+    }
+
+    private void run(Job job) throws IOException, SodiumException {
+        try {
+            pool.invoke(new ChunkTask(job, 0, job.layout.chunks));
+        } catch (RuntimeException e) {
+            // The pool may rethrow a copy of the exception, so look for the cause.
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof SodiumException) {
+                    throw (SodiumException) cause;
+                }
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+            }
+            throw e;
+        }
+    }
+
+    static byte[] keyBytes(Key key) throws SodiumException {
+        byte[] bytes = key.getAsBytes();
+        if (bytes.length != AEAD.XCHACHA20POLY1305_IETF_KEYBYTES) {
+            throw new SodiumException("Key is incorrect size.");
+        }
+        return bytes;
+    }
+
+    private static int readFully(FileChannel source, ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int n = source.read(buffer, position + total);
+            if (n < 0) {
+                break;
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    private static void writeFully(FileChannel target, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += target.write(buffer, position);
+        }
+    }
+
+    /**
+     * Where the chunks of an encrypted file are and how they were encrypted.
+     */
+    static final class Layout {
+
+        final byte[] header;
+        final int chunkSize;
+        final long chunks;
+        final int lastLength;
+
+        Layout(byte[] header, int chunkSize, long chunks, int lastLength) {
+            this.header = header;
+            this.chunkSize = chunkSize;
+            this.chunks = chunks;
+            this.lastLength = lastLength;
+        }
+
+        long plainSize() {
+            return (chunks - 1) * chunkSize + lastLength;
+        }
+
+        int plainLength(long index) {
+            return index == chunks - 1 ? lastLength : chunkSize;
+        }
+
+        long plainOffset(long index) {
+            return index * chunkSize;
+        }
+
+        long cipherOffset(long index) {
+            return HEADERBYTES + index * (chunkSize + (long) ABYTES);
+        }
+
+    }
+
+    /**
+     * Native memory to encrypt or decrypt chunks in, one at a time:
+     * the key, the chunk's nonce and additional data, then a buffer
+     * each for the plain and the encrypted chunk.
+     */
+    static final class Chunks {
+
+        private static final int NONCE = AEAD.XCHACHA20POLY1305_IETF_KEYBYTES;
+        private static final int AD = NONCE + NONCEBYTES;
+        private static final int PLAIN = AD + ADBYTES;
+
+        private final Sodium sodium;
+        private final Layout layout;
+        private final Memory memory;
+        private final int bufferSize;
+        private final long nonceCounter;
+        private final byte[] scratch = new byte[ADBYTES];
+
+        Chunks(Sodium sodium, Layout layout, byte[] key) {
+            this.sodium = sodium;
+            this.layout = layout;
+            // A file smaller than a chunk needs no more than its own size.
+            this.bufferSize = (int) Math.min(layout.chunkSize, layout.plainSize()) + ABYTES;
+            this.memory = new Memory(PLAIN + 2L * bufferSize);
+            memory.write(0, key, 0, key.length);
+            memory.write(NONCE, layout.header, 0, NONCEBYTES - 8);
+            this.nonceCounter = ByteBuffer.wrap(layout.header, NONCEBYTES - 8, 8)
+                    .order(ByteOrder.LITTLE_ENDIAN).getLong();
+        }
+
+        Pointer plain() {
+            return memory.share(PLAIN);
+        }
+
+        private Pointer cipher() {
+            return memory.share(PLAIN + bufferSize);
+        }
+
+        void encrypt(FileChannel source, FileChannel target, long index) throws IOException, SodiumException {
+            int len = layout.plainLength(index);
+            if (readFully(source, memory.getByteBuffer(PLAIN, len), layout.plainOffset(index)) < len) {
+                throw new IOException("The file to encrypt changed size while it was being encrypted.");
+            }
+            prepare(index);
+            int res = sodium.crypto_aead_xchacha20poly1305_ietf_encrypt(cipher(), null, plain(), len,
+                    memory.share(AD), ADBYTES, null, memory.share(NONCE), memory);
+            if (res != 0) {
+                throw new SodiumException("Could not encrypt chunk " + index + ".");
+            }
+            writeFully(target, memory.getByteBuffer(PLAIN + bufferSize, len + ABYTES), layout.cipherOffset(index));
+        }
+
+        /**
+         * @return The length of the decrypted chunk, which is in {@link #plain()}.
+         */
+        int decrypt(FileChannel source, long index) throws IOException, SodiumException {
+            int len = layout.plainLength(index) + ABYTES;
+            if (readFully(source, memory.getByteBuffer(PLAIN + bufferSize, len), layout.cipherOffset(index)) < len) {
+                throw new SodiumException("The file has been truncated.");
+            }
+            prepare(index);
+            int res = sodium.crypto_aead_xchacha20poly1305_ietf_decrypt(plain(), null, null, cipher(), len,
+                    memory.share(AD), ADBYTES, memory.share(NONCE), memory);
+            if (res != 0) {
+                throw new SodiumException("Chunk " + index + " of the file is not authentic.");
+            }
+            return len - ABYTES;
+        }
+
+        /**
+         * Writes the nonce and the additional data of a chunk.
+         */
+        private void prepare(long index) {
+            ByteBuffer bytes = ByteBuffer.wrap(scratch).order(ByteOrder.LITTLE_ENDIAN);
+            bytes.putLong(0, nonceCounter + index);
+            memory.write(NONCE + NONCEBYTES - 8, scratch, 0, 8);
+            bytes.putLong(0, index);
+            scratch[8] = (byte) (index == layout.chunks - 1 ? 1 : 0);
+            memory.write(AD, scratch, 0, ADBYTES);
+        }
+
+        void wipe() {
+            memory.clear();
+        }
+
+    }
+
+    private final class Job {
+
+        final boolean encrypt;
+        final Layout layout;
+        final byte[] key;
+        final FileChannel source;
+        final FileChannel target;
+        final long chunksPerTask;
+
+        Job(boolean encrypt, Layout layout, byte[] key, FileChannel source, FileChannel target) {
+            this.encrypt = encrypt;
+            this.layout = layout;
+            this.key = key;
+            this.source = source;
+            this.target = target;
+            this.chunksPerTask = Math.max(1, TASK_BYTES / layout.chunkSize);
+        }
+
+    }
+
+    private final class ChunkTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Job job;
+        private final long from;
+        private final long to;
+
+        ChunkTask(Job job, long from, long to) {
+            this.job = job;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > job.chunksPerTask) {
+                long middle = (from + to) >>> 1;
+                invokeAll(new ChunkTask(job, from, middle), new ChunkTask(job, middle, to));
+                return;
+            }
+            Chunks chunks = new Chunks(sodium, job.layout, job.key);
+            try {
+                for (long i = from; i < to; i++) {
+                    if (job.encrypt) {
+                        chunks.encrypt(job.source, job.target, i);
+                    } else {
+                        int len = chunks.decrypt(job.source, i);
+                        writeFully(job.target, chunks.plain().getByteBuffer(0, len), job.layout.plainOffset(i));
+                    }
+                }
+            } catch (IOException | SodiumException e) {
+                throw new ChunkFailure(e);
+            } finally {
+                chunks.wipe();
+            }
+        }
+
+    }
+
+    private static final class ChunkFailure extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        ChunkFailure(Exception cause) {
+            super(cause);
+        }
+
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.streams;
+
+import com.goterl.lazysodium.LazySodium;
+import com.goterl.lazysodium.exceptions.SodiumException;
+import com.goterl.lazysodium.utils.Key;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads any range of the plain contents of a file encrypted by
+ * {@link ChunkedFileCipher}, such as one asked for by an HTTP range
+ * request, by decrypting only the chunks that the range covers.
+ *
+ * <p>Every chunk is authenticated before any of it is returned, and the
+ * final chunk is authenticated when the reader is opened, so
+ * {@link #size()} can be trusted. The most recently decrypted chunk is
+ * kept, so that reading a range in small consecutive pieces decrypts
+ * each chunk only once.</p>
+ *
+ * <p>A reader may be shared between threads, but reads through it
+ * happen one at a time. It doesn't close the channel it reads from.</p>
+ */
+public class ChunkedFileReader implements AutoCloseable {
+
+    private final FileChannel source;
+    private final ChunkedFileCipher.Layout layout;
+    private final ChunkedFileCipher.Chunks chunks;
+    private long chunkIndex = -1;
+    private int chunkLength;
+    private boolean closed;
+
+    /**
+     * Opens an encrypted file for reading by reading its
+     * header and authenticating its final chunk.
+     * @param lazySodium The LazySodium instance to decrypt with.
+     * @param source The encrypted file.
+     * @param key The key that was used to encrypt.
+     * @throws IOException If reading failed.
+     * @throws SodiumException If the file is not authentic or is incomplete.
+     */
+    public ChunkedFileReader(LazySodium lazySodium, FileChannel source, Key key) throws IOException, SodiumException {
+        byte[] keyBytes = ChunkedFileCipher.keyBytes(key);
+        this.source = source;
+        this.layout = ChunkedFileCipher.readLayout(source);
+        this.chunks = new ChunkedFileCipher.Chunks(lazySodium.getSodium(), layout, keyBytes);
+        try {
+            load(layout.chunks - 1);
+        } catch (IOException | SodiumException e) {
+            chunks.wipe();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The size of the plain contents.
+     */
+    public long size() {
+        return layout.plainSize();
+    }
+
+    /**
+     * Reads plain bytes starting at {@code position} into {@code dst},
+     * until it is full or the end of the contents is reached.
+     * @param dst Where to put the bytes.
+     * @param position Where in the plain contents to start.
+     * @return The number of bytes read, or -1 if {@code position}
+     * is at or after the end of the contents.
+     * @throws IOException If reading failed or the reader is closed.
+     * @throws SodiumException If a chunk that was read is not authentic.
+     */
+    public synchronized int read(ByteBuffer dst, long position) throws IOException, SodiumException {
+        ensureOpen();
+        if (position < 0) {
+            throw new IllegalArgumentException("Negative position: " + position);
+        }
+        long size = size();
+        if (position >= size) {
+            return -1;
+        }
+        int total = 0;
+        while (dst.hasRemaining() && position < size) {
+            long index = position / layout.chunkSize;
+            int offset = (int) (position - layout.plainOffset(index));
+            load(index);
+            int n = Math.min(dst.remaining(), chunkLength - offset);
+            dst.put(chunks.plain().getByteBuffer(offset, n));
+            position += n;
+            total += n;
+        }
+        return total;
+    }
+
+    /**
+     * Reads {@code length} plain bytes starting at {@code position}.
+     * @param position Where in the plain contents to start.
+     * @param length How many bytes to read.
+     * @return The bytes.
+     * @throws IOException If reading failed or the reader is closed.
+     * @throws SodiumException If a chunk that was read is not authentic.
+     */
+    public byte[] read(long position, int length) throws IOException, SodiumException {
+        if (position < 0 || length < 0 || position > size() - length) {
+            throw new IllegalArgumentException("Range out of bounds: position " + position + ", length " + length);
+        }
+        byte[] bytes = new byte[length];
+        if (length > 0) {
+            read(ByteBuffer.wrap(bytes), position);
+        }
+        return bytes;
+    }
+
+    /**
+     * Wipes the decrypted chunk and the key. The
+     * channel being read from is left open.
+     */
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            chunks.wipe();
+        }
+    }
+
+    private void load(long index) throws IOException, SodiumException {
+        if (index == chunkIndex) {
+            return;
+        }
+        chunkIndex = -1;
+        chunkLength = chunks.decrypt(source, index);
+        chunkIndex = index;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Reader closed");
+        }
+    }
+
+}
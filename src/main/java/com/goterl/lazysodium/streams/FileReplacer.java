@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.streams;
+
+import com.goterl.lazysodium.exceptions.SodiumException;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes one file from another through a temporary file in the
+ * target's directory, which is moved over the target only once it
+ * has been written in full. Until then the target is left as it was,
+ * whether the source can't be opened, the write fails or the source
+ * turns out not to be authentic.
+ */
+final class FileReplacer {
+
+    interface Transform {
+        void apply(FileChannel source, FileChannel target) throws IOException, SodiumException;
+    }
+
+    private FileReplacer() {
+    }
+
+    /**
+     * @param source The file to read.
+     * @param target The file to create or replace.
+     * @param transform Writes {@code target} from {@code source}.
+     * @throws IllegalArgumentException If {@code source} and {@code target} are the same file.
+     */
+    static void replace(Path source, Path target, Transform transform) throws IOException, SodiumException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            if (Files.exists(target) && Files.isSameFile(source, target)) {
+                throw new IllegalArgumentException("The source and target are the same file: " + target);
+            }
+            Path directory = target.toAbsolutePath().getParent();
+            Path temp = Files.createTempFile(directory, "." + target.getFileName(), ".tmp");
+            boolean moved = false;
+            try {
+                try (FileChannel out = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    transform.apply(in, out);
+                }
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                moved = true;
+            } finally {
+                if (!moved) {
+                    Files.deleteIfExists(temp);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.streams;
+
+import com.goterl.lazysodium.LazySodium;
+import com.goterl.lazysodium.Sodium;
+import com.goterl.lazysodium.exceptions.SodiumException;
+import com.goterl.lazysodium.interfaces.SecretStream;
+import com.goterl.lazysodium.utils.Key;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+
+/**
+ * Encrypts and decrypts whole files with
+ * {@code crypto_secretstream_xchacha20poly1305}.
+ *
+ * <p>An encrypted file is the {@link SecretStream#HEADERBYTES} header
+ * followed by the file's contents cut into chunks of {@code chunkSize}
+ * bytes, each encrypted into {@code chunkSize} + {@link SecretStream#ABYTES}
+ * bytes. The last chunk, which may be shorter or empty, is tagged
+ * {@link SecretStream#TAG_FINAL} so that a truncated file is detected.
+ * This is the layout the libsodium documentation describes, so files
+ * can be exchanged with other libsodium bindings that use the same
+ * chunk size.</p>
+ *
+ * <p>The source file is memory-mapped a window at a time and each chunk
+ * is encrypted straight out of the mapping into one reused direct buffer,
+ * so no arrays are allocated per chunk.</p>
+ */
+public class SecretStreamFileCipher {
+
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    // How much of the source file is mapped at once.
+    private static final long WINDOW_BYTES = 64L * 1024 * 1024;
+
+    private final Sodium sodium;
+    private final int chunkSize;
+    private final long windowBytes;
+
+    public SecretStreamFileCipher(LazySodium lazySodium) {
+        this(lazySodium, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param lazySodium The LazySodium instance to encrypt with.
+     * @param chunkSize The number of plain bytes in each chunk. Decrypting
+     *                  needs the same chunk size that was used to encrypt.
+     */
+    public SecretStreamFileCipher(LazySodium lazySodium, int chunkSize) {
+        this(lazySodium, chunkSize, WINDOW_BYTES);
+    }
+
+    SecretStreamFileCipher(LazySodium lazySodium, int chunkSize, long windowBytes) {
+        SecretStreamSupport.checkChunkSize(chunkSize);
+        this.sodium = lazySodium.getSodium();
+        this.chunkSize = chunkSize;
+        this.windowBytes = windowBytes;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * The size of the encrypted file for a file of {@code plainSize} bytes.
+     * @param plainSize The size of the plain file.
+     * @return The size of the encrypted file.
+     */
+    public long encryptedSize(long plainSize) {
+        long chunks = plainSize / chunkSize + 1;
+        return SecretStream.HEADERBYTES + plainSize + chunks * SecretStream.ABYTES;
+    }
+
+    /**
+     * Encrypts a file into another, replacing it if it exists.
+     * The target is only replaced once the whole file has been
+     * encrypted, and is left as it was if anything fails.
+     * @param source The file to encrypt.
+     * @param target The encrypted file. It must not be {@code source}.
+     * @param key A key of {@link SecretStream#KEYBYTES}.
+     * @throws IOException If a file could not be read or written.
+     * @throws SodiumException If the file could not be encrypted.
+     */
+    public void encrypt(Path source, Path target, final Key key) throws IOException, SodiumException {
+        FileReplacer.replace(source, target, new FileReplacer.Transform() {
+            @Override
+            public void apply(FileChannel in, FileChannel out) throws IOException, SodiumException {
+                encrypt(in, out, key);
+            }
+        });
+    }
+
+    /**
+     * Decrypts a file into another, replacing it if it exists.
+     * The target is only replaced once the whole file has been
+     * decrypted, so if the encrypted file is not authentic or has
+     * been truncated, the target is left as it was.
+     * @param source The encrypted file.
+     * @param target The decrypted file. It must not be {@code source}.
+     * @param key The key that was used to encrypt.
+     * @throws IOException If a file could not be read or written.
+     * @throws SodiumException If the file is not authentic or is incomplete.
+     */
+    public void decrypt(Path source, Path target, final Key key) throws IOException, SodiumException {
+        FileReplacer.replace(source, target, new FileReplacer.Transform() {
+            @Override
+            public void apply(FileChannel in, FileChannel out) throws IOException, SodiumException {
+                decrypt(in, out, key);
+            }
+        });
+    }
+
+    /**
+     * Encrypts from the current position of {@code source}
+     * to its end and writes the result to {@code target}.
+     * @param source The file to encrypt.
+     * @param target Where to write the header and the encrypted chunks.
+     * @param key A key of {@link SecretStream#KEYBYTES}.
+     * @throws IOException If reading or writing failed.
+     * @throws SodiumException If encryption failed.
+     */
+    public void encrypt(FileChannel source, WritableByteChannel target, Key key) throws IOException, SodiumException {
+        SecretStream.State state = SecretStreamSupport.newState();
+        byte[] header = new byte[SecretStream.HEADERBYTES];
+        if (sodium.crypto_secretstream_xchacha20poly1305_init_push(state, header, SecretStreamSupport.keyBytes(key)) != 0) {
+            throw new SodiumException("Could not initialise an encryption state.");
+        }
+
+        ByteBuffer cipher = ByteBuffer.allocateDirect(chunkSize + SecretStream.ABYTES);
+        Pointer cipherPointer = Native.getDirectBufferPointer(cipher);
+        long windowLimit = Math.max(1, windowBytes / chunkSize) * chunkSize;
+        long position = source.position();
+        long end = source.size();
+        long windowStart = position;
+        long windowEnd = position;
+        MappedByteBuffer mapped = null;
+        Pointer window = null;
+        try {
+            writeFully(target, ByteBuffer.wrap(header));
+            // Every file ends with a chunk shorter than chunkSize, which is
+            // empty when the file is a multiple of chunkSize long.
+            boolean last;
+            do {
+                int len = (int) Math.min(chunkSize, end - position);
+                last = len < chunkSize;
+                if (position + len > windowEnd) {
+                    windowStart = position;
+                    windowEnd = position + Math.min(windowLimit, end - position);
+                    mapped = source.map(FileChannel.MapMode.READ_ONLY, windowStart, windowEnd - windowStart);
+                    window = Native.getDirectBufferPointer(mapped);
+                }
+                Pointer message = len == 0 ? null : window.share(position - windowStart);
+                int res = sodium.crypto_secretstream_xchacha20poly1305_push(state, cipherPointer, null, message, len,
+                        null, 0, last ? SecretStream.TAG_FINAL : SecretStream.TAG_MESSAGE);
+                if (res != 0) {
+                    throw new SodiumException("Could not encrypt a chunk of the file.");
+                }
+                cipher.clear().limit(len + SecretStream.ABYTES);
+                writeFully(target, cipher);
+                position += len;
+            } while (!last);
+        } finally {
+            state.clear();
+            reachabilityFence(mapped);
+        }
+    }
+
+    /**
+     * Decrypts from the current position of {@code source}
+     * to its end and writes the result to {@code target}.
+     * @param source The encrypted file.
+     * @param target Where to write the decrypted contents.
+     * @param key The key that was used to encrypt.
+     * @throws IOException If reading or writing failed.
+     * @throws SodiumException If the file is not authentic or is incomplete.
+     */
+    public void decrypt(FileChannel source, WritableByteChannel target, Key key) throws IOException, SodiumException {
+        ByteBuffer headerBuffer = ByteBuffer.allocate(SecretStream.HEADERBYTES);
+        while (headerBuffer.hasRemaining()) {
+            if (source.read(headerBuffer) < 0) {
+                throw new SodiumException("The file is too short to have been encrypted.");
+            }
+        }
+        SecretStream.State state = SecretStreamSupport.newState();
+        if (sodium.crypto_secretstream_xchacha20poly1305_init_pull(state, headerBuffer.array(), SecretStreamSupport.keyBytes(key)) != 0) {
+            throw new SodiumException("Could not initialise a decryption state.");
+        }
+
+        int cipherChunk = chunkSize + SecretStream.ABYTES;
+        ByteBuffer message = ByteBuffer.allocateDirect(chunkSize + 1);
+        Pointer messagePointer = Native.getDirectBufferPointer(message);
+        Pointer tagPointer = messagePointer.share(chunkSize);
+        long windowLimit = Math.max(1, windowBytes / cipherChunk) * cipherChunk;
+        long position = source.position();
+        long end = source.size();
+        long windowStart = position;
+        long windowEnd = position;
+        MappedByteBuffer mapped = null;
+        Pointer window = null;
+        try {
+            boolean last;
+            do {
+                if (position == end) {
+                    throw new SodiumException("The file has been truncated.");
+                }
+                int len = (int) Math.min(cipherChunk, end - position);
+                if (len < SecretStream.ABYTES) {
+                    throw new SodiumException("The file ends with an incomplete chunk.");
+                }
+                if (position + len > windowEnd) {
+                    windowStart = position;
+                    windowEnd = position + Math.min(windowLimit, end - position);
+                    mapped = source.map(FileChannel.MapMode.READ_ONLY, windowStart, windowEnd - windowStart);
+                    window = Native.getDirectBufferPointer(mapped);
+                }
+                int res = sodium.crypto_secretstream_xchacha20poly1305_pull(state, messagePointer, null, tagPointer,
+                        window.share(position - windowStart), len, null, 0);
+                if (res != 0) {
+                    throw new SodiumException("A chunk of the file is not authentic.");
+                }
+                position += len;
+                message.clear();
+                last = message.get(chunkSize) == SecretStream.TAG_FINAL;
+                if (last && position != end) {
+                    throw new SodiumException("The file continues after its final chunk.");
+                }
+                message.limit(len - SecretStream.ABYTES);
+                writeFully(target, message);
+            } while (!last);
+        } finally {
+            state.clear();
+            SecretStreamSupport.wipe(message);
+            reachabilityFence(mapped);
+        }
+    }
+
+    /**
+     * The native calls only see the address of a mapping, so it is
+     * touched once they are done to keep it from being unmapped early.
+     */
+    private static void reachabilityFence(MappedByteBuffer mapped) {
+        if (mapped != null) {
+            mapped.clear();
+        }
+    }
+
+    private static void writeFully(WritableByteChannel target, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+}
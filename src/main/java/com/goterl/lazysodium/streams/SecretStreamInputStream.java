@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.streams;
+
+import com.goterl.lazysodium.LazySodium;
+import com.goterl.lazysodium.Sodium;
+import com.goterl.lazysodium.exceptions.SodiumException;
+import com.goterl.lazysodium.interfaces.SecretStream;
+import com.goterl.lazysodium.utils.Key;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Decrypts a stream written by {@link SecretStreamOutputStream} or
+ * {@link SecretStreamFileCipher}, one chunk at a time. Memory use stays
+ * the same however long the stream is.
+ *
+ * <p>Only authentic chunks are ever returned. A chunk that is not
+ * authentic, or a stream that ends before its
+ * {@link SecretStream#TAG_FINAL} chunk, makes {@code read} throw an
+ * {@link IOException} caused by a {@link SodiumException}. Bytes
+ * returned before that came from earlier, authentic chunks, so callers
+ * that must not act on a partial stream should wait for the end of it.</p>
+ */
+public class SecretStreamInputStream extends FilterInputStream {
+
+    private final Sodium sodium;
+    private final SecretStream.State state;
+    private final int chunkSize;
+    private final ByteBuffer message;
+    private final ByteBuffer cipher;
+    private final Pointer messagePointer;
+    private final Pointer cipherPointer;
+    private final Pointer tagPointer;
+    private final byte[] transfer;
+    private boolean finished;
+    private boolean closed;
+    private IOException failure;
+
+    public SecretStreamInputStream(LazySodium lazySodium, InputStream in, Key key) throws IOException, SodiumException {
+        this(lazySodium, in, key, SecretStreamFileCipher.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Starts reading a stream by reading its header from {@code in}.
+     * @param lazySodium The LazySodium instance to decrypt with.
+     * @param in The encrypted stream.
+     * @param key The key that was used to encrypt.
+     * @param chunkSize The chunk size that was used to encrypt.
+     * @throws IOException If the header could not be read.
+     * @throws SodiumException If the key is the wrong size or the header is not valid.
+     */
+    public SecretStreamInputStream(LazySodium lazySodium, InputStream in, Key key, int chunkSize)
+            throws IOException, SodiumException {
+        super(in);
+        SecretStreamSupport.checkChunkSize(chunkSize);
+        this.sodium = lazySodium.getSodium();
+        this.chunkSize = chunkSize;
+        this.transfer = new byte[chunkSize + SecretStream.ABYTES];
+        byte[] header = new byte[SecretStream.HEADERBYTES];
+        if (readFully(header, SecretStream.HEADERBYTES) != SecretStream.HEADERBYTES) {
+            throw new SodiumException("The stream is too short to have been encrypted.");
+        }
+        this.state = SecretStreamSupport.newState();
+        if (sodium.crypto_secretstream_xchacha20poly1305_init_pull(state, header, SecretStreamSupport.keyBytes(key)) != 0) {
+            throw new SodiumException("Could not initialise a decryption state.");
+        }
+        this.message = ByteBuffer.allocateDirect(chunkSize + 1);
+        this.cipher = ByteBuffer.allocateDirect(chunkSize + SecretStream.ABYTES);
+        this.messagePointer = Native.getDirectBufferPointer(message);
+        this.cipherPointer = Native.getDirectBufferPointer(cipher);
+        this.tagPointer = messagePointer.share(chunkSize);
+        message.limit(0);
+    }
+
+    @Override
+    public int read() throws IOException {
+        ensureOpen();
+        if (!message.hasRemaining() && !pull()) {
+            return -1;
+        }
+        return message.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if (off < 0 || len < 0 || off > b.length - len) {
+            throw new IndexOutOfBoundsException("offset " + off + ", length " + len);
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (!message.hasRemaining() && !pull()) {
+            return -1;
+        }
+        int n = Math.min(len, message.remaining());
+        message.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        ensureOpen();
+        long skipped = 0;
+        while (skipped < n && (message.hasRemaining() || pull())) {
+            int step = (int) Math.min(n - skipped, message.remaining());
+            message.position(message.position() + step);
+            skipped += step;
+        }
+        return skipped;
+    }
+
+    /**
+     * @return The number of decrypted bytes that can be read without
+     * reading from the underlying stream.
+     */
+    @Override
+    public int available() throws IOException {
+        ensureOpen();
+        return message.remaining();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readLimit) {
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    /**
+     * Closes the underlying stream and wipes the buffers and the state.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        state.clear();
+        SecretStreamSupport.wipe(message);
+        in.close();
+    }
+
+    /**
+     * Decrypts the next chunk into {@link #message}. Once a chunk has
+     * failed, every later call fails the same way.
+     * @return False if the final chunk has already been read.
+     */
+    private boolean pull() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        if (finished) {
+            return false;
+        }
+        int len = readFully(transfer, transfer.length);
+        if (len < SecretStream.ABYTES) {
+            throw fail(len == 0 ? "The stream has been truncated." : "The stream ends with an incomplete chunk.");
+        }
+        cipher.clear();
+        cipher.put(transfer, 0, len);
+        int res = sodium.crypto_secretstream_xchacha20poly1305_pull(state, messagePointer, null, tagPointer,
+                cipherPointer, len, null, 0);
+        if (res != 0) {
+            throw fail("A chunk of the stream is not authentic.");
+        }
+        message.clear();
+        finished = message.get(chunkSize) == SecretStream.TAG_FINAL;
+        message.limit(0);
+        if (finished && len == transfer.length && in.read() != -1) {
+            throw fail("The stream continues after its final chunk.");
+        }
+        if (!finished && len < transfer.length) {
+            throw fail("The stream has been truncated.");
+        }
+        message.limit(len - SecretStream.ABYTES);
+        return message.hasRemaining() || pull();
+    }
+
+    private IOException fail(String reason) {
+        failure = new IOException(new SodiumException(reason));
+        return failure;
+    }
+
+    private int readFully(byte[] b, int len) throws IOException {
+        int total = 0;
+        while (total < len) {
+            int n = in.read(b, total, len - total);
+            if (n < 0) {
+                break;
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+}
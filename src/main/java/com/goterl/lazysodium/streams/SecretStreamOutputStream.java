@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.streams;
+
+import com.goterl.lazysodium.LazySodium;
+import com.goterl.lazysodium.Sodium;
+import com.goterl.lazysodium.exceptions.SodiumException;
+import com.goterl.lazysodium.interfaces.SecretStream;
+import com.goterl.lazysodium.utils.Key;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Encrypts everything written to it with
+ * {@code crypto_secretstream_xchacha20poly1305} and writes the
+ * header and the encrypted chunks to another stream. Memory use stays
+ * the same however much is written.
+ *
+ * <p>The output has the same layout as {@link SecretStreamFileCipher}
+ * with the same chunk size, and can be read back with a
+ * {@link SecretStreamInputStream}. Chunks are only written once full,
+ * so {@link #flush()} does not push a partly filled chunk. The last
+ * chunk is written, tagged {@link SecretStream#TAG_FINAL}, on
+ * {@link #close()}, which must be called for the output to be complete.</p>
+ */
+public class SecretStreamOutputStream extends FilterOutputStream {
+
+    private final Sodium sodium;
+    private final SecretStream.State state;
+    private final ByteBuffer message;
+    private final ByteBuffer cipher;
+    private final Pointer messagePointer;
+    private final Pointer cipherPointer;
+    private final byte[] transfer;
+    private boolean closed;
+
+    public SecretStreamOutputStream(LazySodium lazySodium, OutputStream out, Key key) throws IOException, SodiumException {
+        this(lazySodium, out, key, SecretStreamFileCipher.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Starts a stream by writing its header to {@code out}.
+     * @param lazySodium The LazySodium instance to encrypt with.
+     * @param out Where to write the encrypted stream.
+     * @param key A key of {@link SecretStream#KEYBYTES}.
+     * @param chunkSize The number of plain bytes in each chunk. Reading
+     *                  needs the same chunk size that was used to write.
+     * @throws IOException If the header could not be written.
+     * @throws SodiumException If the key is the wrong size.
+     */
+    public SecretStreamOutputStream(LazySodium lazySodium, OutputStream out, Key key, int chunkSize)
+            throws IOException, SodiumException {
+        super(out);
+        SecretStreamSupport.checkChunkSize(chunkSize);
+        this.sodium = lazySodium.getSodium();
+        this.state = SecretStreamSupport.newState();
+        byte[] header = new byte[SecretStream.HEADERBYTES];
+        if (sodium.crypto_secretstream_xchacha20poly1305_init_push(state, header, SecretStreamSupport.keyBytes(key)) != 0) {
+            throw new SodiumException("Could not initialise an encryption state.");
+        }
+        this.message = ByteBuffer.allocateDirect(chunkSize);
+        this.cipher = ByteBuffer.allocateDirect(chunkSize + SecretStream.ABYTES);
+        this.messagePointer = Native.getDirectBufferPointer(message);
+        this.cipherPointer = Native.getDirectBufferPointer(cipher);
+        this.transfer = new byte[chunkSize + SecretStream.ABYTES];
+        out.write(header);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        message.put((byte) b);
+        if (!message.hasRemaining()) {
+            push(SecretStream.TAG_MESSAGE);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if (off < 0 || len < 0 || off > b.length - len) {
+            throw new IndexOutOfBoundsException("offset " + off + ", length " + len);
+        }
+        while (len > 0) {
+            int n = Math.min(len, message.remaining());
+            message.put(b, off, n);
+            off += n;
+            len -= n;
+            if (!message.hasRemaining()) {
+                push(SecretStream.TAG_MESSAGE);
+            }
+        }
+    }
+
+    /**
+     * Flushes the underlying stream. Bytes of a chunk
+     * that isn't full yet are not written.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        out.flush();
+    }
+
+    /**
+     * Writes the final chunk, closes the underlying
+     * stream and wipes the buffers and the state.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            // Full chunks have already been pushed, so the final
+            // chunk is always shorter than a full one, possibly empty.
+            push(SecretStream.TAG_FINAL);
+            out.flush();
+        } finally {
+            state.clear();
+            SecretStreamSupport.wipe(message);
+            SecretStreamSupport.wipe(cipher);
+            out.close();
+        }
+    }
+
+    private void push(byte tag) throws IOException {
+        int len = message.position();
+        int res = sodium.crypto_secretstream_xchacha20poly1305_push(state, cipherPointer, null, messagePointer, len,
+                null, 0, tag);
+        if (res != 0) {
+            throw new IOException(new SodiumException("Could not encrypt a chunk of the stream."));
+        }
+        cipher.clear();
+        cipher.get(transfer, 0, len + SecretStream.ABYTES);
+        out.write(transfer, 0, len + SecretStream.ABYTES);
+        message.clear();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+}
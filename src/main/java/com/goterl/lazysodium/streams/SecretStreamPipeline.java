@@ -0,0 +1,459 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.streams;
+
+import com.goterl.lazysodium.LazySodium;
+import com.goterl.lazysodium.Sodium;
+import com.goterl.lazysodium.exceptions.SodiumException;
+import com.goterl.lazysodium.interfaces.SecretStream;
+import com.goterl.lazysodium.utils.Key;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousByteChannel;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Encrypts and decrypts secret streams between asynchronous channels,
+ * such as an {@link java.nio.channels.AsynchronousSocketChannel} or an
+ * {@link AsynchronousFileChannel} seen through {@link #channel(AsynchronousFileChannel, long)}.
+ *
+ * <p>Two pairs of direct buffers are used in turn, so that while one
+ * chunk is being encrypted on the executor, the next one is already
+ * being read and the previous one may still be being written. Chunks
+ * are encrypted one after another, as the secret stream state demands,
+ * but never wait for I/O that they don't depend on.</p>
+ *
+ * <p>The output has the same layout as {@link SecretStreamFileCipher}
+ * and {@link SecretStreamOutputStream} with the same chunk size.</p>
+ */
+public class SecretStreamPipeline {
+
+    private static final BiFunction<Integer, Void, Integer> FIRST = new BiFunction<Integer, Void, Integer>() {
+        @Override
+        public Integer apply(Integer first, Void second) {
+            return first;
+        }
+    };
+
+    private final Sodium sodium;
+    private final int chunkSize;
+    private final Executor executor;
+
+    public SecretStreamPipeline(LazySodium lazySodium) {
+        this(lazySodium, SecretStreamFileCipher.DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param lazySodium The LazySodium instance to encrypt with.
+     * @param chunkSize The number of plain bytes in each chunk. Decrypting
+     *                  needs the same chunk size that was used to encrypt.
+     * @param executor Runs the encryption and decryption of the chunks.
+     */
+    public SecretStreamPipeline(LazySodium lazySodium, int chunkSize, Executor executor) {
+        SecretStreamSupport.checkChunkSize(chunkSize);
+        this.sodium = lazySodium.getSodium();
+        this.chunkSize = chunkSize;
+        this.executor = executor;
+    }
+
+    /**
+     * Encrypts everything that can be read from {@code source} and writes
+     * the header and the encrypted chunks to {@code target}. Neither
+     * channel is closed.
+     * @param source The plain data.
+     * @param target Where to write the encrypted stream.
+     * @param key A key of {@link SecretStream#KEYBYTES}.
+     * @return A future of the number of plain bytes encrypted, that completes
+     * once everything has been written.
+     * @throws SodiumException If the key is the wrong size.
+     */
+    public CompletableFuture<Long> encrypt(AsynchronousByteChannel source, AsynchronousByteChannel target, Key key)
+            throws SodiumException {
+        Job job = new Job(source, target, chunkSize, chunkSize + SecretStream.ABYTES);
+        byte[] header = new byte[SecretStream.HEADERBYTES];
+        if (sodium.crypto_secretstream_xchacha20poly1305_init_push(job.state, header, SecretStreamSupport.keyBytes(key)) != 0) {
+            job.wipe();
+            throw new SodiumException("Could not initialise an encryption state.");
+        }
+        CompletableFuture<Void> headerWritten = writeFully(target, ByteBuffer.wrap(header));
+        job.written = headerWritten;
+        encryptChunk(job, 0, readFully(source, job.in[0]), headerWritten, CompletableFuture.<Void>completedFuture(null));
+        return job.result;
+    }
+
+    /**
+     * Decrypts a stream read from {@code source} and writes the plain data
+     * to {@code target}. Neither channel is closed. Only authentic chunks
+     * are written, but if the stream turns out to be damaged or truncated,
+     * the chunks before that will already have been written.
+     * @param source The encrypted stream.
+     * @param target Where to write the plain data.
+     * @param key The key that was used to encrypt.
+     * @return A future of the number of plain bytes written. It completes
+     * exceptionally with a {@link SodiumException} if the stream
+     * is not authentic or is incomplete.
+     * @throws SodiumException If the key is the wrong size.
+     */
+    public CompletableFuture<Long> decrypt(final AsynchronousByteChannel source, AsynchronousByteChannel target, Key key)
+            throws SodiumException {
+        final byte[] keyBytes = SecretStreamSupport.keyBytes(key);
+        final Job job = new Job(source, target, chunkSize + SecretStream.ABYTES, chunkSize + 1);
+        final ByteBuffer header = ByteBuffer.allocate(SecretStream.HEADERBYTES);
+        readFully(source, header).thenAcceptAsync(new Consumer<Integer>() {
+            @Override
+            public void accept(Integer len) {
+                if (len < SecretStream.HEADERBYTES) {
+                    throw new CompletionException(new SodiumException("The stream is too short to have been encrypted."));
+                }
+                if (sodium.crypto_secretstream_xchacha20poly1305_init_pull(job.state, header.array(), keyBytes) != 0) {
+                    throw new CompletionException(new SodiumException("Could not initialise a decryption state."));
+                }
+                CompletableFuture<Void> none = CompletableFuture.completedFuture(null);
+                decryptChunk(job, 0, readFully(source, job.in[0]), none, none);
+            }
+        }, executor).exceptionally(job.failure);
+        return job.result;
+    }
+
+    /**
+     * Reads chunk {@code n} into buffer {@code n % 2}, once the write
+     * that last used that buffer's cipher text is done. The next read
+     * starts before this chunk is encrypted.
+     */
+    private void encryptChunk(final Job job,
+                              final long n,
+                              CompletableFuture<Integer> read,
+                              final CompletableFuture<Void> previousWrite,
+                              CompletableFuture<Void> writeBeforeThat) {
+        final int slot = (int) (n & 1);
+        read.thenCombine(writeBeforeThat, FIRST).thenAcceptAsync(new Consumer<Integer>() {
+            @Override
+            public void accept(Integer len) {
+                boolean last = len < chunkSize;
+                CompletableFuture<Integer> next = last ? null : readFully(job.source, job.in[1 - slot]);
+                if (next != null) {
+                    job.next = next;
+                }
+                int res = sodium.crypto_secretstream_xchacha20poly1305_push(job.state, job.outPointers[slot], null,
+                        job.inPointers[slot], len, null, 0, last ? SecretStream.TAG_FINAL : SecretStream.TAG_MESSAGE);
+                if (res != 0) {
+                    throw new CompletionException(new SodiumException("Could not encrypt a chunk of the stream."));
+                }
+                job.total += len;
+                job.out[slot].clear().limit(len + SecretStream.ABYTES);
+                CompletableFuture<Void> written = previousWrite.thenCompose(job.write(slot));
+                job.written = written;
+                if (last) {
+                    written.thenRun(job.success).exceptionally(job.failure);
+                } else {
+                    encryptChunk(job, n + 1, next, written, previousWrite);
+                }
+            }
+        }, executor).exceptionally(job.failure);
+    }
+
+    private void decryptChunk(final Job job,
+                              final long n,
+                              CompletableFuture<Integer> read,
+                              final CompletableFuture<Void> previousWrite,
+                              CompletableFuture<Void> writeBeforeThat) {
+        final int slot = (int) (n & 1);
+        final int cipherChunk = chunkSize + SecretStream.ABYTES;
+        read.thenCombine(writeBeforeThat, FIRST).thenAcceptAsync(new Consumer<Integer>() {
+            @Override
+            public void accept(Integer len) {
+                if (len < SecretStream.ABYTES) {
+                    throw new CompletionException(new SodiumException(len == 0
+                            ? "The stream has been truncated."
+                            : "The stream ends with an incomplete chunk."));
+                }
+                // Read on even after the final chunk, to check that nothing follows it.
+                CompletableFuture<Integer> next = readFully(job.source, job.in[1 - slot]);
+                job.next = next;
+                ByteBuffer message = job.out[slot];
+                Pointer messagePointer = job.outPointers[slot];
+                int res = sodium.crypto_secretstream_xchacha20poly1305_pull(job.state, messagePointer, null,
+                        messagePointer.share(chunkSize), job.inPointers[slot], len, null, 0);
+                if (res != 0) {
+                    throw new CompletionException(new SodiumException("A chunk of the stream is not authentic."));
+                }
+                message.clear();
+                boolean last = message.get(chunkSize) == SecretStream.TAG_FINAL;
+                if (!last && len < cipherChunk) {
+                    throw new CompletionException(new SodiumException("The stream has been truncated."));
+                }
+                message.limit(len - SecretStream.ABYTES);
+                job.total += len - SecretStream.ABYTES;
+                CompletableFuture<Void> written = previousWrite.thenCompose(job.write(slot));
+                job.written = written;
+                if (last) {
+                    next.thenCombine(written, FIRST).thenAccept(new Consumer<Integer>() {
+                        @Override
+                        public void accept(Integer trailing) {
+                            if (trailing > 0) {
+                                throw new CompletionException(new SodiumException("The stream continues after its final chunk."));
+                            }
+                            job.success.run();
+                        }
+                    }).exceptionally(job.failure);
+                } else {
+                    decryptChunk(job, n + 1, next, written, previousWrite);
+                }
+            }
+        }, executor).exceptionally(job.failure);
+    }
+
+    /**
+     * Reads until {@code buffer} is full or the channel has no more to read.
+     * @return A future of the number of bytes read, which is less than the
+     * buffer's capacity only at the end of the channel.
+     */
+    private static CompletableFuture<Integer> readFully(final AsynchronousByteChannel channel, final ByteBuffer buffer) {
+        final CompletableFuture<Integer> read = new CompletableFuture<>();
+        buffer.clear();
+        CompletionHandler<Integer, Void> handler = new CompletionHandler<Integer, Void>() {
+            @Override
+            public void completed(Integer n, Void attachment) {
+                if (n < 0 || !buffer.hasRemaining()) {
+                    read.complete(buffer.position());
+                    return;
+                }
+                try {
+                    channel.read(buffer, null, this);
+                } catch (RuntimeException e) {
+                    read.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void failed(Throwable e, Void attachment) {
+                read.completeExceptionally(e);
+            }
+        };
+        handler.completed(0, null);
+        return read;
+    }
+
+    private static CompletableFuture<Void> writeFully(final AsynchronousByteChannel channel, final ByteBuffer buffer) {
+        final CompletableFuture<Void> written = new CompletableFuture<>();
+        CompletionHandler<Integer, Void> handler = new CompletionHandler<Integer, Void>() {
+            @Override
+            public void completed(Integer n, Void attachment) {
+                if (!buffer.hasRemaining()) {
+                    written.complete(null);
+                    return;
+                }
+                try {
+                    channel.write(buffer, null, this);
+                } catch (RuntimeException e) {
+                    written.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void failed(Throwable e, Void attachment) {
+                written.completeExceptionally(e);
+            }
+        };
+        handler.completed(0, null);
+        return written;
+    }
+
+    /**
+     * Views part of a file as an {@link AsynchronousByteChannel}, reading
+     * and writing from {@code position} onwards. Like any byte channel,
+     * only one read and one write may be outstanding at a time.
+     * Closing the view closes the file.
+     * @param file The file.
+     * @param position Where to start reading or writing.
+     * @return A channel over the file.
+     */
+    public static AsynchronousByteChannel channel(AsynchronousFileChannel file, long position) {
+        return new FileByteChannel(file, position);
+    }
+
+    /**
+     * The buffers and state of one encryption or decryption.
+     */
+    private static final class Job {
+
+        final AsynchronousByteChannel source;
+        final AsynchronousByteChannel target;
+        final SecretStream.State state = SecretStreamSupport.newState();
+        final ByteBuffer[] in = new ByteBuffer[2];
+        final ByteBuffer[] out = new ByteBuffer[2];
+        final Pointer[] inPointers = new Pointer[2];
+        final Pointer[] outPointers = new Pointer[2];
+        final CompletableFuture<Long> result = new CompletableFuture<>();
+        final AtomicBoolean failed = new AtomicBoolean();
+        // Only touched by one chunk at a time, each of which
+        // happens-after the last through the futures that chain them.
+        long total;
+        // The latest read and write to have been started. A failure
+        // waits for both before it wipes the buffers they use.
+        volatile CompletableFuture<?> next = CompletableFuture.completedFuture(null);
+        volatile CompletableFuture<?> written = CompletableFuture.completedFuture(null);
+
+        final Runnable success = new Runnable() {
+            @Override
+            public void run() {
+                wipe();
+                result.complete(total);
+            }
+        };
+
+        final Function<Throwable, Void> failure = new Function<Throwable, Void>() {
+            @Override
+            public Void apply(Throwable e) {
+                final Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                if (!failed.compareAndSet(false, true)) {
+                    return null;
+                }
+                CompletableFuture.allOf(next, written).handle(new BiFunction<Void, Throwable, Void>() {
+                    @Override
+                    public Void apply(Void ignored, Throwable ioFailure) {
+                        wipe();
+                        result.completeExceptionally(cause);
+                        return null;
+                    }
+                });
+                return null;
+            }
+        };
+
+        Job(AsynchronousByteChannel source, AsynchronousByteChannel target, int inSize, int outSize) {
+            this.source = source;
+            this.target = target;
+            for (int i = 0; i < 2; i++) {
+                in[i] = ByteBuffer.allocateDirect(inSize);
+                out[i] = ByteBuffer.allocateDirect(outSize);
+                inPointers[i] = Native.getDirectBufferPointer(in[i]);
+                outPointers[i] = Native.getDirectBufferPointer(out[i]);
+            }
+        }
+
+        Function<Void, CompletableFuture<Void>> write(final int slot) {
+            return new Function<Void, CompletableFuture<Void>>() {
+                @Override
+                public CompletableFuture<Void> apply(Void previous) {
+                    return writeFully(target, out[slot]);
+                }
+            };
+        }
+
+        void wipe() {
+            state.clear();
+            for (int i = 0; i < 2; i++) {
+                SecretStreamSupport.wipe(in[i]);
+                SecretStreamSupport.wipe(out[i]);
+            }
+        }
+
+    }
+
+    private static final class FileByteChannel implements AsynchronousByteChannel {
+
+        private final AsynchronousFileChannel file;
+        private long readPosition;
+        private long writePosition;
+
+        FileByteChannel(AsynchronousFileChannel file, long position) {
+            this.file = file;
+            this.readPosition = position;
+            this.writePosition = position;
+        }
+
+        @Override
+        public <A> void read(ByteBuffer dst, A attachment, final CompletionHandler<Integer, ? super A> handler) {
+            file.read(dst, readPosition, attachment, new CompletionHandler<Integer, A>() {
+                @Override
+                public void completed(Integer n, A attachment) {
+                    if (n > 0) {
+                        readPosition += n;
+                    }
+                    handler.completed(n, attachment);
+                }
+
+                @Override
+                public void failed(Throwable e, A attachment) {
+                    handler.failed(e, attachment);
+                }
+            });
+        }
+
+        @Override
+        public Future<Integer> read(ByteBuffer dst) {
+            CompletableFuture<Integer> read = new CompletableFuture<>();
+            read(dst, read, FileByteChannel.<Integer>completer());
+            return read;
+        }
+
+        @Override
+        public <A> void write(ByteBuffer src, A attachment, final CompletionHandler<Integer, ? super A> handler) {
+            file.write(src, writePosition, attachment, new CompletionHandler<Integer, A>() {
+                @Override
+                public void completed(Integer n, A attachment) {
+                    writePosition += n;
+                    handler.completed(n, attachment);
+                }
+
+                @Override
+                public void failed(Throwable e, A attachment) {
+                    handler.failed(e, attachment);
+                }
+            });
+        }
+
+        @Override
+        public Future<Integer> write(ByteBuffer src) {
+            CompletableFuture<Integer> written = new CompletableFuture<>();
+            write(src, written, FileByteChannel.<Integer>completer());
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return file.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            file.close();
+        }
+
+        private static <V> CompletionHandler<V, CompletableFuture<V>> completer() {
+            return new CompletionHandler<V, CompletableFuture<V>>() {
+                @Override
+                public void completed(V result, CompletableFuture<V> future) {
+                    future.complete(result);
+                }
+
+                @Override
+                public void failed(Throwable e, CompletableFuture<V> future) {
+                    future.completeExceptionally(e);
+                }
+            };
+        }
+
+    }
+
+}
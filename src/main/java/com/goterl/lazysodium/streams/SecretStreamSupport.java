@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.streams;
+
+import com.goterl.lazysodium.exceptions.SodiumException;
+import com.goterl.lazysodium.interfaces.SecretStream;
+import com.goterl.lazysodium.utils.Key;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Helpers shared by the secret stream classes in this package.
+ */
+final class SecretStreamSupport {
+
+    private SecretStreamSupport() {
+    }
+
+    /**
+     * Creates a state that only lives in native memory, so that it isn't
+     * copied to and from its Java fields around every call.
+     * @return A new state.
+     */
+    static SecretStream.State newState() {
+        SecretStream.State state = new SecretStream.State.ByReference();
+        // JNA allocates the memory lazily on the first copy, so allocate it here instead.
+        state.getPointer();
+        state.setAutoSynch(false);
+        return state;
+    }
+
+    static byte[] keyBytes(Key key) throws SodiumException {
+        byte[] bytes = key.getAsBytes();
+        if (bytes.length != SecretStream.KEYBYTES) {
+            throw new SodiumException("Key is incorrect size.");
+        }
+        return bytes;
+    }
+
+    static void checkChunkSize(int chunkSize) {
+        if (chunkSize <= 0 || chunkSize > Integer.MAX_VALUE - SecretStream.ABYTES) {
+            throw new IllegalArgumentException("chunkSize out of bounds: " + chunkSize);
+        }
+    }
+
+    static void wipe(ByteBuffer buffer) {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            buffer.put((byte) 0);
+        }
+    }
+
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.utils;
+
+import com.goterl.lazysodium.LazySodium;
+import com.goterl.lazysodium.Sodium;
+import com.goterl.lazysodium.exceptions.SodiumException;
+import com.goterl.lazysodium.interfaces.AEAD;
+import com.sun.jna.Pointer;
+
+import javax.crypto.AEADBadTagException;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Encrypts and decrypts with one key and one {@link AEAD.Method},
+ * as many times as needed and from any number of threads.
+ *
+ * <p>The key is prepared once when the context is created. For
+ * {@link AEAD.Method#AES256GCM} it is expanded with
+ * {@code crypto_aead_aes256gcm_beforenm}, so that small records
+ * don't pay for the AES key schedule every time. For the other
+ * methods it is copied into memory from {@code sodium_malloc}.
+ * Either way it is kept read-only in guarded memory, never on
+ * the Java heap. Close the context to wipe and free it.</p>
+ */
+public class AeadContext implements AutoCloseable {
+
+    private final Sodium sodium;
+    private final AEAD.Method method;
+    private final int nonceBytes;
+    // The key, or the expanded key for AES256-GCM.
+    private final Pointer key;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private boolean closed;
+
+    /**
+     * @param lazySodium The LazySodium instance to encrypt with.
+     * @param key A key of 32 bytes. It can be a {@link SecureKey},
+     *            which is only on the heap for as long as it takes to copy.
+     * @param method The algorithm.
+     * @throws SodiumException If the key is the wrong size, memory could not
+     * be allocated, or the method is AES256-GCM and this CPU doesn't support it.
+     */
+    public AeadContext(LazySodium lazySodium, Key key, AEAD.Method method) throws SodiumException {
+        this.sodium = lazySodium.getSodium();
+        this.method = method;
+        this.nonceBytes = nonceBytes(method);
+        if (method == AEAD.Method.AES256GCM && sodium.crypto_aead_aes256gcm_is_available() != 1) {
+            throw new SodiumException("AES256-GCM is not available on this CPU.");
+        }
+        int keySize = key instanceof SecureKey ? ((SecureKey) key).getSize() : key.getAsBytes().length;
+        if (keySize != AEAD.CHACHA20POLY1305_KEYBYTES) {
+            throw new SodiumException("Key is incorrect size.");
+        }
+        int size = method == AEAD.Method.AES256GCM ? AEAD.AES256GCM_STATEBYTES : keySize;
+        this.key = sodium.sodium_malloc(size);
+        if (this.key == null) {
+            throw new SodiumException("Could not allocate memory for the key.");
+        }
+        if (method == AEAD.Method.AES256GCM) {
+            int res = key instanceof SecureKey
+                    ? sodium.crypto_aead_aes256gcm_beforenm(this.key, ((SecureKey) key).getPointer())
+                    : sodium.crypto_aead_aes256gcm_beforenm(this.key, key.getAsBytes());
+            if (res != 0) {
+                sodium.sodium_free(this.key);
+                throw new SodiumException("Could not expand the key.");
+            }
+        } else if (key instanceof SecureKey) {
+            byte[] copy = key.getAsBytes();
+            this.key.write(0, copy, 0, keySize);
+            Arrays.fill(copy, (byte) 0);
+        } else {
+            this.key.write(0, key.getAsBytes(), 0, keySize);
+        }
+        sodium.sodium_mprotect_readonly(this.key);
+    }
+
+    public AEAD.Method getMethod() {
+        return method;
+    }
+
+    /**
+     * @return The size of the nonce the method needs.
+     */
+    public int getNonceBytes() {
+        return nonceBytes;
+    }
+
+    /**
+     * Encrypts a message.
+     * @param message The message.
+     * @param additionalData Authenticated but not encrypted. Can be null.
+     * @param nPub The nonce of {@link #getNonceBytes()}.
+     * @return The cipher text, a tag longer than the message.
+     * @throws SodiumException If the nonce is the wrong size.
+     * @throws IllegalStateException If the context has been closed.
+     */
+    public byte[] encrypt(byte[] message, byte[] additionalData, byte[] nPub) throws SodiumException {
+        byte[] cipher = new byte[message.length + AEAD.CHACHA20POLY1305_ABYTES];
+        if (!encrypt(cipher, message, message.length, additionalData, additionalData == null ? 0 : additionalData.length, nPub)) {
+            throw new SodiumException("Could not encrypt message.");
+        }
+        return cipher;
+    }
+
+    /**
+     * Decrypts a message.
+     * @param cipher The cipher text.
+     * @param additionalData The additional data it was encrypted with. Can be null.
+     * @param nPub The nonce it was encrypted with.
+     * @return The message.
+     * @throws AEADBadTagException If the cipher text isn't authentic.
+     * @throws IllegalStateException If the context has been closed.
+     */
+    public byte[] decrypt(byte[] cipher, byte[] additionalData, byte[] nPub) throws AEADBadTagException {
+        if (cipher.length < AEAD.CHACHA20POLY1305_ABYTES) {
+            throw new AEADBadTagException();
+        }
+        byte[] message = new byte[cipher.length - AEAD.CHACHA20POLY1305_ABYTES];
+        if (!decrypt(message, cipher, cipher.length, additionalData, additionalData == null ? 0 : additionalData.length, nPub)) {
+            throw new AEADBadTagException();
+        }
+        return message;
+    }
+
+    /**
+     * Encrypts the first {@code messageLen} bytes of a message.
+     * @param cipher Where to write the cipher text, at least
+     *               {@code messageLen} plus the tag long.
+     * @param message The message.
+     * @param messageLen The message length.
+     * @param additionalData Authenticated but not encrypted. Can be null.
+     * @param additionalDataLen The additional data length.
+     * @param nPub The nonce of {@link #getNonceBytes()}.
+     * @return False if the nonce is the wrong size.
+     * @throws IllegalStateException If the context has been closed.
+     */
+    public boolean encrypt(byte[] cipher, byte[] message, long messageLen, byte[] additionalData, long additionalDataLen, byte[] nPub) {
+        checkLength(message, messageLen, "messageLen");
+        checkLength(additionalData, additionalDataLen, "additionalDataLen");
+        if (cipher.length - AEAD.CHACHA20POLY1305_ABYTES < messageLen) {
+            throw new IllegalArgumentException("cipher is too short: " + cipher.length);
+        }
+        if (nPub.length != nonceBytes) {
+            return false;
+        }
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            switch (method) {
+                case CHACHA20_POLY1305:
+                    return sodium.crypto_aead_chacha20poly1305_encrypt(cipher, null, message, messageLen,
+                            additionalData, additionalDataLen, null, nPub, key) == 0;
+                case CHACHA20_POLY1305_IETF:
+                    return sodium.crypto_aead_chacha20poly1305_ietf_encrypt(cipher, null, message, messageLen,
+                            additionalData, additionalDataLen, null, nPub, key) == 0;
+                case XCHACHA20_POLY1305_IETF:
+                    return sodium.crypto_aead_xchacha20poly1305_ietf_encrypt(cipher, null, message, messageLen,
+                            additionalData, additionalDataLen, null, nPub, key) == 0;
+                default:
+                    return sodium.crypto_aead_aes256gcm_encrypt_afternm(cipher, null, message, messageLen,
+                            additionalData, additionalDataLen, null, nPub, key) == 0;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Decrypts the first {@code cipherLen} bytes of a cipher text.
+     * @param message Where to write the message, at least
+     *                {@code cipherLen} minus the tag long.
+     * @param cipher The cipher text.
+     * @param cipherLen The cipher text length.
+     * @param additionalData The additional data it was encrypted with. Can be null.
+     * @param additionalDataLen The additional data length.
+     * @param nPub The nonce it was encrypted with.
+     * @return False if the cipher text isn't authentic or the nonce is the wrong size.
+     * @throws IllegalStateException If the context has been closed.
+     */
+    public boolean decrypt(byte[] message, byte[] cipher, long cipherLen, byte[] additionalData, long additionalDataLen, byte[] nPub) {
+        checkLength(cipher, cipherLen, "cipherLen");
+        checkLength(additionalData, additionalDataLen, "additionalDataLen");
+        if (cipherLen < AEAD.CHACHA20POLY1305_ABYTES || nPub.length != nonceBytes) {
+            return false;
+        }
+        if (message.length < cipherLen - AEAD.CHACHA20POLY1305_ABYTES) {
+            throw new IllegalArgumentException("message is too short: " + message.length);
+        }
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            switch (method) {
+                case CHACHA20_POLY1305:
+                    return sodium.crypto_aead_chacha20poly1305_decrypt(message, null, null, cipher, cipherLen,
+                            additionalData, additionalDataLen, nPub, key) == 0;
+                case CHACHA20_POLY1305_IETF:
+                    return sodium.crypto_aead_chacha20poly1305_ietf_decrypt(message, null, null, cipher, cipherLen,
+                            additionalData, additionalDataLen, nPub, key) == 0;
+                case XCHACHA20_POLY1305_IETF:
+                    return sodium.crypto_aead_xchacha20poly1305_ietf_decrypt(message, null, null, cipher, cipherLen,
+                            additionalData, additionalDataLen, nPub, key) == 0;
+                default:
+                    return sodium.crypto_aead_aes256gcm_decrypt_afternm(message, null, null, cipher, cipherLen,
+                            additionalData, additionalDataLen, nPub, key) == 0;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Wipes and frees the key. Calls already under way finish first.
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (!closed) {
+                closed = true;
+                sodium.sodium_free(key);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Context closed");
+        }
+    }
+
+    private static void checkLength(byte[] array, long len, String name) {
+        if (len < 0 || len > (array == null ? 0 : array.length)) {
+            throw new IllegalArgumentException(name + " out of bounds: " + len);
+        }
+    }
+
+    private static int nonceBytes(AEAD.Method method) {
+        switch (method) {
+            case CHACHA20_POLY1305:
+                return AEAD.CHACHA20POLY1305_NPUBBYTES;
+            case CHACHA20_POLY1305_IETF:
+                return AEAD.CHACHA20POLY1305_IETF_NPUBBYTES;
+            case XCHACHA20_POLY1305_IETF:
+                return AEAD.XCHACHA20POLY1305_IETF_NPUBBYTES;
+            default:
+                return AEAD.AES256GCM_NPUBBYTES;
+        }
+    }
+
+}
@@ -10,17 +10,136 @@ package com.goterl.lazysodium.utils;
 
 import com.goterl.lazysodium.interfaces.MessageEncoder;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 
+/**
+ * Encodes with {@link Base64#getEncoder()} and decodes with
+ * {@link Base64#getDecoder()}, whose loops the JIT compiles to
+ * faster code than a lookup table over a string's chars. Encoding
+ * onto a {@link StringBuilder}, which the JDK can't do, is
+ * table-driven instead.
+ */
 public class Base64MessageEncoder implements MessageEncoder {
 
+    private static final byte[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
+
+    // A multiple of four.
+    private static final int CHUNK_CHARS = 1024;
+
     @Override
     public String encode(byte[] cipher) {
         return Base64.getEncoder().encodeToString(cipher);
     }
 
+    @Override
+    public String encode(byte[] cipher, int off, int len) {
+        ByteBuffer encoded = Base64.getEncoder().encode(ByteBuffer.wrap(cipher, off, len));
+        return new String(encoded.array(), 0, encoded.remaining(), StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public void encodeTo(byte[] cipher, int off, int len, StringBuilder out) {
+        checkRange(cipher.length, off, len);
+        out.ensureCapacity(out.length() + encodedLength(len));
+        // Appending a chunk at a time is much faster than a char at a time.
+        char[] chunk = new char[Math.min(encodedLength(len), CHUNK_CHARS)];
+        int n = 0;
+        int end = off + len - len % 3;
+        for (int i = off; i < end; i += 3) {
+            int bits = (cipher[i] & 0xFF) << 16 | (cipher[i + 1] & 0xFF) << 8 | cipher[i + 2] & 0xFF;
+            chunk[n++] = (char) ALPHABET[bits >>> 18];
+            chunk[n++] = (char) ALPHABET[bits >>> 12 & 0x3F];
+            chunk[n++] = (char) ALPHABET[bits >>> 6 & 0x3F];
+            chunk[n++] = (char) ALPHABET[bits & 0x3F];
+            if (n == chunk.length) {
+                out.append(chunk, 0, n);
+                n = 0;
+            }
+        }
+        out.append(chunk, 0, n);
+        if (end < off + len) {
+            int bits = (cipher[end] & 0xFF) << 16 | (end + 1 < off + len ? (cipher[end + 1] & 0xFF) << 8 : 0);
+            out.append((char) ALPHABET[bits >>> 18])
+                    .append((char) ALPHABET[bits >>> 12 & 0x3F])
+                    .append(end + 1 < off + len ? (char) ALPHABET[bits >>> 6 & 0x3F] : '=')
+                    .append('=');
+        }
+    }
+
     @Override
     public byte[] decode(String cipherText) {
         return Base64.getDecoder().decode(cipherText);
     }
+
+    @Override
+    public int decodedLength(CharSequence cipherText) {
+        int chars = unpaddedLength(cipherText);
+        return chars / 4 * 3 + (chars % 4 == 0 ? 0 : chars % 4 - 1);
+    }
+
+    @Override
+    public int decodeInto(CharSequence cipherText, byte[] out, int off) {
+        int len = decodedLength(cipherText);
+        checkRange(out.length, off, len);
+        // Characters beyond Latin-1 become '?', which the decoder rejects.
+        byte[] src = cipherText.toString().getBytes(StandardCharsets.ISO_8859_1);
+        if (off == 0) {
+            return Base64.getDecoder().decode(src, out);
+        }
+        System.arraycopy(Base64.getDecoder().decode(src), 0, out, off, len);
+        return len;
+    }
+
+    @Override
+    public int decodeInto(CharSequence cipherText, ByteBuffer out) {
+        int len = decodedLength(cipherText);
+        if (out.remaining() < len) {
+            throw new BufferOverflowException();
+        }
+        if (out.hasArray()) {
+            decodeInto(cipherText, out.array(), out.arrayOffset() + out.position());
+            out.position(out.position() + len);
+        } else {
+            out.put(decode(cipherText.toString()));
+        }
+        return len;
+    }
+
+    private static int encodedLength(int len) {
+        if (len > Integer.MAX_VALUE / 4 * 3) {
+            throw new IllegalArgumentException("len out of bounds: " + len);
+        }
+        return (len + 2) / 3 * 4;
+    }
+
+    /**
+     * The number of characters before any padding.
+     */
+    private static int unpaddedLength(CharSequence cipherText) {
+        int length = cipherText.length();
+        int chars = length;
+        if (chars > 0 && cipherText.charAt(chars - 1) == '=') {
+            chars--;
+            if (chars > 0 && cipherText.charAt(chars - 1) == '=') {
+                chars--;
+            }
+            if (length % 4 != 0) {
+                throw new IllegalArgumentException("Base64 string has incorrect padding.");
+            }
+        }
+        if (chars % 4 == 1) {
+            throw new IllegalArgumentException("Base64 string has an incorrect length.");
+        }
+        return chars;
+    }
+
+    private static void checkRange(int length, int off, int len) {
+        if (off < 0 || len < 0 || off > length - len) {
+            throw new IndexOutOfBoundsException("offset " + off + ", length " + len);
+        }
+    }
 }
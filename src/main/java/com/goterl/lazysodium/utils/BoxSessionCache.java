@@ -0,0 +1,402 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.utils;
+
+import com.goterl.lazysodium.LazySodium;
+import com.goterl.lazysodium.Sodium;
+import com.goterl.lazysodium.exceptions.SodiumException;
+import com.goterl.lazysodium.interfaces.Box;
+import com.goterl.lazysodium.interfaces.GenericHash;
+import com.sun.jna.Pointer;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the shared keys that {@code crypto_box_beforenm} computes
+ * for pairs of a public and a secret key, so that encrypting to or
+ * decrypting from the same peer again skips the X25519 scalar
+ * multiplication, which is almost all the work of {@code crypto_box_easy}
+ * for short messages. The output is the same as {@code crypto_box_easy}'s.
+ *
+ * <p>Shared keys are kept in a single block of guarded, locked memory
+ * from {@code sodium_malloc}, never on the Java heap, and are wiped
+ * as soon as they are evicted. Pairs are told apart by a keyed BLAKE2b
+ * hash of both keys, so the cache doesn't keep the secret keys either.</p>
+ *
+ * <p>When the cache is full the least recently used shared key is
+ * evicted, and a shared key is recomputed once it is older than the
+ * time to live. Give the cache to {@link LazySodium#setBoxSessionCache(BoxSessionCache)}
+ * to have its {@code Box} methods use it. The cache is safe to share
+ * between threads. Close it to wipe and free every shared key.</p>
+ */
+public class BoxSessionCache implements AutoCloseable {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+    public static final long DEFAULT_TIME_TO_LIVE_MINUTES = 60;
+
+    private final Sodium sodium;
+    private final long timeToLiveNanos;
+    private final Pointer keys;
+    private final Pointer[] slots;
+    private final int[] freeSlots;
+    private final byte[] hashKey = new byte[GenericHash.KEYBYTES];
+    private final LinkedHashMap<SessionId, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private int freeCount;
+    private int users;
+    private long hits;
+    private long misses;
+    private boolean closed;
+    private boolean freed;
+
+    public BoxSessionCache(LazySodium lazySodium) throws SodiumException {
+        this(lazySodium, DEFAULT_CAPACITY, DEFAULT_TIME_TO_LIVE_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * @param lazySodium The LazySodium instance to encrypt with.
+     * @param capacity The most shared keys to keep.
+     * @param timeToLive How long a shared key is kept after it is computed.
+     * @param unit The unit of {@code timeToLive}.
+     * @throws SodiumException If the memory for the shared keys could not be allocated.
+     */
+    public BoxSessionCache(LazySodium lazySodium, int capacity, long timeToLive, TimeUnit unit) throws SodiumException {
+        if (capacity <= 0 || capacity > Integer.MAX_VALUE / Box.BEFORENMBYTES) {
+            throw new IllegalArgumentException("capacity out of bounds: " + capacity);
+        }
+        if (timeToLive <= 0) {
+            throw new IllegalArgumentException("timeToLive out of bounds: " + timeToLive);
+        }
+        this.sodium = lazySodium.getSodium();
+        this.timeToLiveNanos = unit.toNanos(timeToLive);
+        this.keys = sodium.sodium_malloc(capacity * Box.BEFORENMBYTES);
+        if (keys == null) {
+            throw new SodiumException("Could not allocate memory for the shared keys.");
+        }
+        this.slots = new Pointer[capacity];
+        this.freeSlots = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = keys.share((long) i * Box.BEFORENMBYTES);
+            freeSlots[i] = capacity - 1 - i;
+        }
+        this.freeCount = capacity;
+        sodium.randombytes_buf(hashKey, hashKey.length);
+    }
+
+    /**
+     * Encrypts like {@link Box.Native#cryptoBoxEasy(byte[], byte[], long, byte[], byte[], byte[])},
+     * with the shared key of {@code publicKey} and {@code secretKey}.
+     * @param cipherText The output, at least {@code messageLen} + {@link Box#MACBYTES} long.
+     * @param message The message.
+     * @param messageLen The message length.
+     * @param nonce The nonce of {@link Box#NONCEBYTES}.
+     * @param publicKey The receiver's public key.
+     * @param secretKey The sender's secret key.
+     * @return False if a key or the nonce is the wrong size.
+     * @throws IllegalStateException If the cache is closed.
+     */
+    public boolean cryptoBoxEasy(byte[] cipherText, byte[] message, long messageLen, byte[] nonce, byte[] publicKey, byte[] secretKey) {
+        if (messageLen < 0 || messageLen > message.length) {
+            throw new IllegalArgumentException("messageLen out of bounds: " + messageLen);
+        }
+        if (cipherText.length - Box.MACBYTES < messageLen) {
+            throw new IllegalArgumentException("cipherText is too short: " + cipherText.length);
+        }
+        if (!checkSizes(nonce, publicKey, secretKey)) {
+            return false;
+        }
+        Entry entry = acquire(publicKey, secretKey);
+        if (entry == null) {
+            return sodium.crypto_box_easy(cipherText, message, messageLen, nonce, publicKey, secretKey) == 0;
+        }
+        try {
+            return sodium.crypto_box_easy_afternm(cipherText, message, messageLen, nonce, slots[entry.slot]) == 0;
+        } finally {
+            release(entry);
+        }
+    }
+
+    /**
+     * Decrypts like {@link Box.Native#cryptoBoxOpenEasy(byte[], byte[], long, byte[], byte[], byte[])},
+     * with the shared key of {@code publicKey} and {@code secretKey}.
+     * @param message The output, at least {@code cipherTextLen} - {@link Box#MACBYTES} long.
+     * @param cipherText The cipher text.
+     * @param cipherTextLen The cipher text length.
+     * @param nonce The nonce of {@link Box#NONCEBYTES}.
+     * @param publicKey The sender's public key.
+     * @param secretKey The receiver's secret key.
+     * @return False if the cipher text isn't authentic, or a key or the nonce is the wrong size.
+     * @throws IllegalStateException If the cache is closed.
+     */
+    public boolean cryptoBoxOpenEasy(byte[] message, byte[] cipherText, long cipherTextLen, byte[] nonce, byte[] publicKey, byte[] secretKey) {
+        if (cipherTextLen < 0 || cipherTextLen > cipherText.length) {
+            throw new IllegalArgumentException("cipherTextLen out of bounds: " + cipherTextLen);
+        }
+        if (cipherTextLen < Box.MACBYTES || !checkSizes(nonce, publicKey, secretKey)) {
+            return false;
+        }
+        if (message.length < cipherTextLen - Box.MACBYTES) {
+            throw new IllegalArgumentException("message is too short: " + message.length);
+        }
+        Entry entry = acquire(publicKey, secretKey);
+        if (entry == null) {
+            return sodium.crypto_box_open_easy(message, cipherText, cipherTextLen, nonce, publicKey, secretKey) == 0;
+        }
+        try {
+            return sodium.crypto_box_open_easy_afternm(message, cipherText, cipherTextLen, nonce, slots[entry.slot]) == 0;
+        } finally {
+            release(entry);
+        }
+    }
+
+    /**
+     * Evicts the shared key of a pair, for example
+     * once one of the keys is no longer trusted.
+     * @param publicKey The public key.
+     * @param secretKey The secret key.
+     */
+    public void invalidate(byte[] publicKey, byte[] secretKey) {
+        SessionId id = sessionId(publicKey, secretKey);
+        synchronized (this) {
+            Entry entry = entries.remove(id);
+            if (entry != null) {
+                evict(entry);
+            }
+        }
+    }
+
+    /**
+     * Evicts every shared key that is older than the time to live.
+     * Expired keys are otherwise only evicted when they are next
+     * used or when room is needed.
+     */
+    public synchronized void evictExpired() {
+        long now = System.nanoTime();
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (now - entry.expiresAt >= 0) {
+                it.remove();
+                evict(entry);
+            }
+        }
+    }
+
+    /**
+     * Evicts every shared key.
+     */
+    public synchronized void clear() {
+        for (Entry entry : entries.values()) {
+            evict(entry);
+        }
+        entries.clear();
+    }
+
+    /**
+     * @return The number of shared keys kept.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return How many times a kept shared key was used.
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * @return How many times a shared key had to be computed.
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * Wipes and frees every shared key. Encryptions already under way
+     * finish first; starting one afterwards throws {@link IllegalStateException}.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        clear();
+        Arrays.fill(hashKey, (byte) 0);
+        freeIfUnused();
+    }
+
+    /**
+     * Gets the entry for a pair, computing its shared key if it isn't
+     * kept, and marks it as in use until {@link #release(Entry)}.
+     * @return The entry, or null if every slot is in use.
+     */
+    private Entry acquire(byte[] publicKey, byte[] secretKey) {
+        // Hashed before taking the lock, which is only
+        // held for the map and the slots.
+        SessionId id = sessionId(publicKey, secretKey);
+        Entry entry;
+        synchronized (this) {
+            checkOpen();
+            long now = System.nanoTime();
+            entry = entries.get(id);
+            if (entry != null) {
+                if (now - entry.expiresAt < 0) {
+                    hits++;
+                    entry.users++;
+                    users++;
+                    return entry;
+                }
+                entries.remove(id);
+                evict(entry);
+            }
+            misses++;
+            int slot = takeSlot();
+            if (slot < 0) {
+                return null;
+            }
+            entry = new Entry(slot, now + timeToLiveNanos);
+            entry.users++;
+            users++;
+        }
+        // Nobody else can see the entry yet, so its slot
+        // can be written without holding the lock.
+        if (sodium.crypto_box_beforenm(slots[entry.slot], publicKey, secretKey) != 0) {
+            synchronized (this) {
+                entry.evicted = true;
+                release(entry);
+            }
+            return null;
+        }
+        synchronized (this) {
+            if (!closed) {
+                Entry previous = entries.put(id, entry);
+                if (previous != null) {
+                    evict(previous);
+                }
+            } else {
+                entry.evicted = true;
+            }
+        }
+        return entry;
+    }
+
+    private synchronized void release(Entry entry) {
+        entry.users--;
+        users--;
+        if (entry.evicted && entry.users == 0) {
+            freeSlot(entry.slot);
+        }
+        freeIfUnused();
+    }
+
+    /**
+     * Takes a free slot, evicting least recently used entries until one is free.
+     * @return The slot, or -1 if every slot is in use.
+     */
+    private int takeSlot() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (freeCount == 0 && it.hasNext()) {
+            Entry eldest = it.next();
+            it.remove();
+            evict(eldest);
+        }
+        return freeCount == 0 ? -1 : freeSlots[--freeCount];
+    }
+
+    /**
+     * Frees an entry's slot, or marks it to be freed once it
+     * is no longer in use. The entry must already be out of the map.
+     */
+    private void evict(Entry entry) {
+        entry.evicted = true;
+        if (entry.users == 0) {
+            freeSlot(entry.slot);
+        }
+    }
+
+    private void freeSlot(int slot) {
+        sodium.sodium_memzero(slots[slot], Box.BEFORENMBYTES);
+        freeSlots[freeCount++] = slot;
+    }
+
+    private void freeIfUnused() {
+        if (closed && users == 0 && !freed) {
+            freed = true;
+            sodium.sodium_free(keys);
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Cache closed");
+        }
+    }
+
+    /**
+     * Safe without the lock: {@link #hashKey} only changes when
+     * {@link #close()} wipes it, and the id of a closed cache is never used.
+     */
+    private SessionId sessionId(byte[] publicKey, byte[] secretKey) {
+        byte[] pair = new byte[publicKey.length + secretKey.length];
+        System.arraycopy(publicKey, 0, pair, 0, publicKey.length);
+        System.arraycopy(secretKey, 0, pair, publicKey.length, secretKey.length);
+        byte[] hash = new byte[GenericHash.BYTES];
+        sodium.crypto_generichash(hash, hash.length, pair, pair.length, hashKey, hashKey.length);
+        Arrays.fill(pair, (byte) 0);
+        return new SessionId(hash);
+    }
+
+    private static boolean checkSizes(byte[] nonce, byte[] publicKey, byte[] secretKey) {
+        return Box.Checker.checkNonce(nonce.length)
+                && Box.Checker.checkPublicKey(publicKey.length)
+                && Box.Checker.checkSecretKey(secretKey.length);
+    }
+
+    private static final class SessionId {
+
+        private final byte[] hash;
+        private final int hashCode;
+
+        private SessionId(byte[] hash) {
+            this.hash = hash;
+            this.hashCode = Arrays.hashCode(hash);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof SessionId && Arrays.equals(hash, ((SessionId) obj).hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+    }
+
+    private static final class Entry {
+
+        private final int slot;
+        private final long expiresAt;
+        private int users;
+        private boolean evicted;
+
+        private Entry(int slot, long expiresAt) {
+            this.slot = slot;
+            this.expiresAt = expiresAt;
+        }
+
+    }
+
+}
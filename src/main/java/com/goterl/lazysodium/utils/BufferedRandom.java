@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.utils;
+
+import com.goterl.lazysodium.LazySodium;
+import com.goterl.lazysodium.Sodium;
+import com.goterl.lazysodium.interfaces.Random;
+import com.goterl.lazysodium.interfaces.Stream;
+
+import java.util.Arrays;
+
+/**
+ * Random bytes for when they are needed often and a few at a time,
+ * such as nonces and salts.
+ *
+ * <p>Every thread gets its own fast-key-erasure generator: a ChaCha20
+ * key, seeded once from {@code randombytes_buf}, whose key stream is
+ * made {@value #BLOCK_BYTES} bytes at a time with
+ * {@code crypto_stream_chacha20}. The first 32 bytes of each block
+ * replace the key, so earlier blocks can't be worked out from the
+ * generator's state, and the rest are handed out. Bytes are wiped
+ * from the block as they are handed out. Most calls therefore don't
+ * call into native code at all, and none take a lock.</p>
+ */
+public class BufferedRandom implements Random {
+
+    public static final int BLOCK_BYTES = 4096;
+
+    private static final byte[] NONCE = new byte[Stream.CHACHA20_NONCEBYTES];
+
+    private final Sodium sodium;
+    private final ThreadLocal<Generator> generators = new ThreadLocal<Generator>() {
+        @Override
+        protected Generator initialValue() {
+            return new Generator();
+        }
+    };
+
+    /**
+     * @param lazySodium The LazySodium instance to seed and run the generators with.
+     */
+    public BufferedRandom(LazySodium lazySodium) {
+        this.sodium = lazySodium.getSodium();
+    }
+
+    /**
+     * Fills part of an array with random bytes.
+     * @param out The array.
+     * @param off Where the part starts.
+     * @param len The length of the part.
+     */
+    public void nextBytes(byte[] out, int off, int len) {
+        if (off < 0 || len < 0 || off > out.length - len) {
+            throw new IndexOutOfBoundsException("offset " + off + ", length " + len);
+        }
+        Generator generator = generators.get();
+        while (len > 0) {
+            int n = Math.min(len, generator.available());
+            if (n == 0) {
+                generator.refill();
+                continue;
+            }
+            generator.take(out, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Fills an array with random bytes.
+     * @param out The array.
+     */
+    public void nextBytes(byte[] out) {
+        nextBytes(out, 0, out.length);
+    }
+
+    /**
+     * @return A random long.
+     */
+    public long nextLong() {
+        return generators.get().nextBits(8);
+    }
+
+    /**
+     * @return A random int.
+     */
+    public int nextInt() {
+        return (int) generators.get().nextBits(4);
+    }
+
+    @Override
+    public long randomBytesRandom() {
+        return nextInt() & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Like {@code randombytes_uniform}, {@code upperBound} is unsigned,
+     * and the result is free of modulo bias.
+     */
+    @Override
+    public long randomBytesUniform(int upperBound) {
+        long bound = upperBound & 0xFFFFFFFFL;
+        if (bound < 2) {
+            return 0;
+        }
+        // Values below this would make the smallest results more likely.
+        long min = (0x100000000L - bound) % bound;
+        long r;
+        do {
+            r = randomBytesRandom();
+        } while (r < min);
+        return r % bound;
+    }
+
+    @Override
+    public byte[] randomBytesBuf(int size) {
+        byte[] bs = new byte[size];
+        nextBytes(bs, 0, size);
+        return bs;
+    }
+
+    @Override
+    public byte[] randomBytesDeterministic(int size, byte[] seed) {
+        byte[] bs = new byte[size];
+        sodium.randombytes_buf_deterministic(bs, size, seed);
+        return bs;
+    }
+
+    @Override
+    public byte[] nonce(int size) {
+        return randomBytesBuf(size);
+    }
+
+    /**
+     * The generator of one thread.
+     */
+    private final class Generator {
+
+        private final byte[] key = new byte[Stream.CHACHA20_KEYBYTES];
+        private final byte[] block = new byte[BLOCK_BYTES];
+        private int used = BLOCK_BYTES;
+
+        Generator() {
+            sodium.randombytes_buf(key, key.length);
+        }
+
+        int available() {
+            return BLOCK_BYTES - used;
+        }
+
+        void refill() {
+            sodium.crypto_stream_chacha20(block, BLOCK_BYTES, NONCE, key);
+            System.arraycopy(block, 0, key, 0, key.length);
+            Arrays.fill(block, 0, key.length, (byte) 0);
+            used = key.length;
+        }
+
+        void take(byte[] out, int off, int len) {
+            System.arraycopy(block, used, out, off, len);
+            Arrays.fill(block, used, used + len, (byte) 0);
+            used += len;
+        }
+
+        long nextBits(int bytes) {
+            if (available() < bytes) {
+                refill();
+            }
+            long bits = 0;
+            for (int i = 0; i < bytes; i++) {
+                bits = bits << 8 | (block[used] & 0xFF);
+                block[used++] = 0;
+            }
+            return bits;
+        }
+    }
+
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.utils;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Table-driven hexadecimal encoding and decoding. Bytes are encoded
+ * as upper case digits, and either case is decoded.
+ *
+ * <p>Encoding looks up both digits of a byte at once and decoding
+ * looks up each digit, so neither branches on the data. Besides
+ * the methods that return a new array or string, there are ones that
+ * write into an existing array, {@link ByteBuffer} or {@link StringBuilder}.</p>
+ */
+public final class Hex {
+
+    // Both digits of every byte value, high digit first.
+    private static final byte[] PAIRS = new byte[512];
+
+    // The value of every ASCII digit, or -1.
+    private static final byte[] VALUES = new byte[128];
+
+    private static final int CHUNK_CHARS = 1024;
+
+    static {
+        byte[] digits = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < 256; i++) {
+            PAIRS[2 * i] = digits[i >>> 4];
+            PAIRS[2 * i + 1] = digits[i & 0x0F];
+        }
+        for (int i = 0; i < VALUES.length; i++) {
+            VALUES[i] = (byte) Character.digit((char) i, 16);
+        }
+    }
+
+    private Hex() {
+    }
+
+    /**
+     * @param bin Bytes.
+     * @return Hexadecimal string.
+     */
+    public static String encode(byte[] bin) {
+        return encode(bin, 0, bin.length);
+    }
+
+    /**
+     * @param bin Byte array.
+     * @param off Where the part to encode starts.
+     * @param len The length of the part.
+     * @return Hexadecimal string.
+     */
+    public static String encode(byte[] bin, int off, int len) {
+        checkRange(bin.length, off, len);
+        byte[] out = new byte[encodedLength(len)];
+        encode(bin, off, len, out, 0);
+        // Every digit is ASCII, so this is a plain copy.
+        return new String(out, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Encodes into an existing array as ASCII digits.
+     * @param bin Byte array.
+     * @param off Where the part to encode starts.
+     * @param len The length of the part.
+     * @param out Where to write {@code 2 * len} digits.
+     * @param outOff Where in {@code out} to start.
+     */
+    public static void encode(byte[] bin, int off, int len, byte[] out, int outOff) {
+        checkRange(bin.length, off, len);
+        checkRange(out.length, outOff, encodedLength(len));
+        for (int i = 0; i < len; i++) {
+            int pair = (bin[off + i] & 0xFF) << 1;
+            out[outOff + 2 * i] = PAIRS[pair];
+            out[outOff + 2 * i + 1] = PAIRS[pair + 1];
+        }
+    }
+
+    /**
+     * Encodes onto the end of a {@link StringBuilder}.
+     * @param bin Byte array.
+     * @param off Where the part to encode starts.
+     * @param len The length of the part.
+     * @param out Where to append the digits.
+     */
+    public static void encode(byte[] bin, int off, int len, StringBuilder out) {
+        checkRange(bin.length, off, len);
+        out.ensureCapacity(out.length() + encodedLength(len));
+        // Appending a chunk at a time is much faster than a char at a time.
+        char[] chunk = new char[Math.min(encodedLength(len), CHUNK_CHARS)];
+        for (int i = 0; i < len; ) {
+            int n = Math.min(len - i, chunk.length / 2);
+            for (int j = 0; j < n; j++, i++) {
+                int pair = (bin[off + i] & 0xFF) << 1;
+                chunk[2 * j] = (char) PAIRS[pair];
+                chunk[2 * j + 1] = (char) PAIRS[pair + 1];
+            }
+            out.append(chunk, 0, 2 * n);
+        }
+    }
+
+    /**
+     * Encodes the remaining bytes of a buffer onto the end of
+     * a {@link StringBuilder}, moving the buffer's position to its limit.
+     * @param bin Bytes to encode.
+     * @param out Where to append the digits.
+     */
+    public static void encode(ByteBuffer bin, StringBuilder out) {
+        if (bin.hasArray()) {
+            encode(bin.array(), bin.arrayOffset() + bin.position(), bin.remaining(), out);
+            bin.position(bin.limit());
+            return;
+        }
+        out.ensureCapacity(out.length() + encodedLength(bin.remaining()));
+        char[] chunk = new char[Math.min(encodedLength(bin.remaining()), CHUNK_CHARS)];
+        while (bin.hasRemaining()) {
+            int n = Math.min(bin.remaining(), chunk.length / 2);
+            for (int j = 0; j < n; j++) {
+                int pair = (bin.get() & 0xFF) << 1;
+                chunk[2 * j] = (char) PAIRS[pair];
+                chunk[2 * j + 1] = (char) PAIRS[pair + 1];
+            }
+            out.append(chunk, 0, 2 * n);
+        }
+    }
+
+    /**
+     * @param hex Hexadecimal string.
+     * @return The bytes it encodes.
+     * @throws IllegalArgumentException If {@code hex} isn't hexadecimal.
+     */
+    public static byte[] decode(CharSequence hex) {
+        byte[] out = new byte[decodedLength(hex)];
+        decode(hex, out, 0);
+        return out;
+    }
+
+    /**
+     * Decodes into an existing array. If {@code hex} turns out not to be
+     * hexadecimal, the bytes before the bad digit will have been written.
+     * @param hex Hexadecimal string.
+     * @param out Where to write the bytes.
+     * @param off Where in {@code out} to start.
+     * @return The number of bytes written.
+     * @throws IllegalArgumentException If {@code hex} isn't hexadecimal.
+     */
+    public static int decode(CharSequence hex, byte[] out, int off) {
+        int len = decodedLength(hex);
+        checkRange(out.length, off, len);
+        for (int i = 0; i < len; i++) {
+            out[off + i] = decodeByte(hex, 2 * i);
+        }
+        return len;
+    }
+
+    /**
+     * Decodes into a buffer, from its position onwards, moving its
+     * position past the bytes written.
+     * @param hex Hexadecimal string.
+     * @param out Where to write the bytes.
+     * @return The number of bytes written.
+     * @throws IllegalArgumentException If {@code hex} isn't hexadecimal.
+     * @throws BufferOverflowException If {@code out} doesn't have room.
+     */
+    public static int decode(CharSequence hex, ByteBuffer out) {
+        int len = decodedLength(hex);
+        if (out.remaining() < len) {
+            throw new BufferOverflowException();
+        }
+        if (out.hasArray()) {
+            decode(hex, out.array(), out.arrayOffset() + out.position());
+            out.position(out.position() + len);
+            return len;
+        }
+        for (int i = 0; i < len; i++) {
+            out.put(decodeByte(hex, 2 * i));
+        }
+        return len;
+    }
+
+    /**
+     * @param len A number of bytes.
+     * @return The number of digits they are encoded as.
+     */
+    public static int encodedLength(int len) {
+        if (len < 0 || len > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("len out of bounds: " + len);
+        }
+        return 2 * len;
+    }
+
+    /**
+     * @param hex Hexadecimal string.
+     * @return The number of bytes it encodes.
+     * @throws IllegalArgumentException If {@code hex} has an odd length.
+     */
+    public static int decodedLength(CharSequence hex) {
+        if ((hex.length() & 1) != 0) {
+            throw new IllegalArgumentException("Hexadecimal string has an odd length.");
+        }
+        return hex.length() / 2;
+    }
+
+    private static byte decodeByte(CharSequence hex, int i) {
+        int high = value(hex.charAt(i));
+        int low = value(hex.charAt(i + 1));
+        if ((high | low) < 0) {
+            throw new IllegalArgumentException("Not a hexadecimal digit at " + (high < 0 ? i : i + 1) + ".");
+        }
+        return (byte) (high << 4 | low);
+    }
+
+    private static int value(char c) {
+        return c < VALUES.length ? VALUES[c] : -1;
+    }
+
+    private static void checkRange(int length, int off, int len) {
+        if (off < 0 || len < 0 || off > length - len) {
+            throw new IndexOutOfBoundsException("offset " + off + ", length " + len);
+        }
+    }
+
+}
@@ -11,15 +11,58 @@ package com.goterl.lazysodium.utils;
 import com.goterl.lazysodium.LazySodium;
 import com.goterl.lazysodium.interfaces.MessageEncoder;
 
+import java.nio.ByteBuffer;
+
 public class HexMessageEncoder implements MessageEncoder {
 
     @Override
     public String encode(byte[] cipher) {
-        return LazySodium.toHex(cipher);
+        return Hex.encode(cipher);
+    }
+
+    @Override
+    public String encode(byte[] cipher, int off, int len) {
+        return Hex.encode(cipher, off, len);
+    }
+
+    @Override
+    public void encodeTo(byte[] cipher, int off, int len, StringBuilder out) {
+        Hex.encode(cipher, off, len, out);
+    }
+
+    @Override
+    public void encodeTo(ByteBuffer cipher, StringBuilder out) {
+        Hex.encode(cipher, out);
     }
 
     @Override
     public byte[] decode(String cipherText) {
         return LazySodium.toBin(cipherText);
     }
+
+    @Override
+    public int decodedLength(CharSequence cipherText) {
+        return cipherText.length() / 2;
+    }
+
+    @Override
+    public int decodeInto(CharSequence cipherText, byte[] out, int off) {
+        try {
+            return Hex.decode(cipherText, out, off);
+        } catch (IllegalArgumentException e) {
+            // Decode it the way decode(String) always has.
+            return MessageEncoder.super.decodeInto(cipherText, out, off);
+        }
+    }
+
+    @Override
+    public int decodeInto(CharSequence cipherText, ByteBuffer out) {
+        int position = out.position();
+        try {
+            return Hex.decode(cipherText, out);
+        } catch (IllegalArgumentException e) {
+            out.position(position);
+            return MessageEncoder.super.decodeInto(cipherText, out);
+        }
+    }
 }
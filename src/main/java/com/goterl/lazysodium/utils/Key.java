@@ -11,12 +11,13 @@ package com.goterl.lazysodium.utils;
 import com.goterl.lazysodium.LazySodium;
 
 import java.nio.charset.Charset;
+import java.security.MessageDigest;
 import java.util.Base64;
 
 public class Key {
     private byte[] key;
 
-    private Key(byte[] key) {
+    protected Key(byte[] key) {
         this.key = key;
     }
 
@@ -25,11 +26,11 @@ public class Key {
     }
 
     public String getAsHexString() {
-        return LazySodium.toHex(key);
+        return LazySodium.toHex(getAsBytes());
     }
 
     public String getAsPlainString(Charset charset) {
-        return new String(key, charset);
+        return new String(getAsBytes(), charset);
     }
 
     public String getAsPlainString() {
@@ -101,6 +102,16 @@ public class Key {
     public boolean equals(Object obj) {
         if (!(obj instanceof Key)) return false;
         Key other = (Key) obj;
-        return other.getAsHexString().equalsIgnoreCase(getAsHexString());
+        if (other instanceof SecureKey) {
+            return other.equals(this);
+        }
+        // Takes the same time however many leading bytes match.
+        return MessageDigest.isEqual(getAsBytes(), other.getAsBytes());
+    }
+
+    @Override
+    public int hashCode() {
+        // Only the length, so that the hash code says nothing about the key.
+        return getAsBytes().length;
     }
 }
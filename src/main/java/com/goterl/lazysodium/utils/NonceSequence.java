@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.utils;
+
+import com.goterl.lazysodium.interfaces.Random;
+
+/**
+ * Hands out nonces that are never repeated, by counting rather
+ * than by asking for random bytes each time. Each nonce is the last
+ * one plus one, read as a little-endian number, just as
+ * {@code sodium_increment} would leave it, but without calling
+ * into native code.
+ *
+ * <p>A sequence that starts from zero must be the only user of its
+ * key. A sequence that starts from random bytes can share a key with
+ * other such sequences, as long as the nonce is big enough for
+ * random nonces to be safe: the 24 bytes of {@code crypto_box},
+ * {@code crypto_secretbox} or XChaCha20-Poly1305-IETF, say. Either way,
+ * running out would take 2<sup>64</sup> nonces.</p>
+ *
+ * <p>Both peers of a {@code crypto_box} share a key, whichever way
+ * their messages go, so two sequences from zero, one for each peer,
+ * would hand out the same nonces. The {@code crypto_box} methods
+ * therefore only take sequences from {@link #NonceSequence(Random, int)}.</p>
+ *
+ * <p>A sequence can be shared between threads.</p>
+ */
+public final class NonceSequence {
+
+    private final byte[] counter;
+    private final boolean randomStart;
+
+    /**
+     * Starts counting from zero.
+     * @param size The size of the nonces, at least 8.
+     */
+    public NonceSequence(int size) {
+        this(new byte[checkSize(size)], false);
+    }
+
+    /**
+     * Starts counting from random bytes.
+     * @param random Where to get the random bytes, such as a LazySodium instance.
+     * @param size The size of the nonces, at least 8.
+     */
+    public NonceSequence(Random random, int size) {
+        this(random.randomBytesBuf(checkSize(size)), true);
+    }
+
+    /**
+     * Starts counting from the given nonce, which is handed out first.
+     * @param start The first nonce, at least 8 bytes. It is copied.
+     */
+    public NonceSequence(byte[] start) {
+        this(start.clone(), false);
+    }
+
+    private NonceSequence(byte[] counter, boolean randomStart) {
+        checkSize(counter.length);
+        this.counter = counter;
+        this.randomStart = randomStart;
+    }
+
+    /**
+     * @return The size of the nonces.
+     */
+    public int getSize() {
+        return counter.length;
+    }
+
+    /**
+     * @return Whether the sequence started from random bytes, so that
+     * it can share a key with other such sequences.
+     */
+    public boolean isRandomStart() {
+        return randomStart;
+    }
+
+    /**
+     * @return The next nonce.
+     */
+    public byte[] next() {
+        byte[] nonce = new byte[counter.length];
+        next(nonce, 0);
+        return nonce;
+    }
+
+    /**
+     * Writes the next nonce into an existing array.
+     * @param out Where to write the nonce.
+     * @param off Where in {@code out} to start.
+     */
+    public void next(byte[] out, int off) {
+        if (off < 0 || off > out.length - counter.length) {
+            throw new IndexOutOfBoundsException("offset " + off + ", length " + counter.length);
+        }
+        synchronized (counter) {
+            System.arraycopy(counter, 0, out, off, counter.length);
+            // A carry past the first byte is rare, so this rarely loops.
+            for (int i = 0; i < counter.length && ++counter[i] == 0; i++) {
+                // carry
+            }
+        }
+    }
+
+    private static int checkSize(int size) {
+        if (size < 8) {
+            throw new IllegalArgumentException("A nonce needs at least 8 bytes: " + size);
+        }
+        return size;
+    }
+
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.utils;
+
+import com.goterl.lazysodium.LazySodium;
+import com.goterl.lazysodium.exceptions.SodiumException;
+import com.goterl.lazysodium.interfaces.PwHash;
+import com.sun.jna.NativeLong;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hashes and verifies passwords with {@code crypto_pwhash_str} on a
+ * fixed pool of threads, never using more than a set amount of memory
+ * at once.
+ *
+ * <p>Each hash takes {@code memLimit} bytes of memory for as long as it
+ * runs, so a burst of logins could otherwise take more memory than the
+ * machine has. Here a request first waits in a bounded queue for a
+ * thread, then for its {@code memLimit} to fit in the memory budget.
+ * A request that can't be queued fails straight away with a
+ * {@link RejectedExecutionException}, and one that has waited longer
+ * than the timeout fails with a {@link TimeoutException}, so callers
+ * find out about overload quickly instead of waiting behind it.</p>
+ *
+ * <p>Passwords are read when the hash runs, so they must not be
+ * changed until the future completes.</p>
+ */
+public class PwHashService implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_QUEUED = 1024;
+    public static final long DEFAULT_TIMEOUT_SECONDS = 10;
+
+    private static final AtomicInteger POOLS = new AtomicInteger();
+
+    private final LazySodium lazySodium;
+    private final ThreadPoolExecutor executor;
+    // One permit per KiB, the unit Argon2 counts memory in.
+    private final Semaphore memory;
+    private final int budgetKiB;
+    private final long timeoutNanos;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+
+    /**
+     * Creates a service with a thread per core, a queue of
+     * {@link #DEFAULT_MAX_QUEUED} and a timeout of
+     * {@link #DEFAULT_TIMEOUT_SECONDS} seconds.
+     * @param lazySodium The LazySodium instance to hash with.
+     * @param memoryBudget How many bytes of {@code memLimit} can be in use at once.
+     */
+    public PwHashService(LazySodium lazySodium, long memoryBudget) {
+        this(lazySodium, Runtime.getRuntime().availableProcessors(), memoryBudget,
+                DEFAULT_MAX_QUEUED, DEFAULT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param lazySodium The LazySodium instance to hash with.
+     * @param threads How many hashes can run at once.
+     * @param memoryBudget How many bytes of {@code memLimit} can be in use at once.
+     * @param maxQueued How many requests can wait for a thread.
+     * @param timeout How long a request can wait, for a thread and then for memory.
+     * @param unit The unit of {@code timeout}.
+     */
+    public PwHashService(LazySodium lazySodium, int threads, long memoryBudget, int maxQueued,
+                         long timeout, TimeUnit unit) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        }
+        if (memoryBudget < PwHash.ARGON2ID_MEMLIMIT_MIN) {
+            throw new IllegalArgumentException("memoryBudget is too small: " + memoryBudget);
+        }
+        if (maxQueued <= 0) {
+            throw new IllegalArgumentException("maxQueued must be positive: " + maxQueued);
+        }
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("timeout must be positive: " + timeout);
+        }
+        this.lazySodium = lazySodium;
+        this.budgetKiB = (int) Math.min(memoryBudget / 1024, Integer.MAX_VALUE);
+        this.memory = new Semaphore(budgetKiB, true);
+        this.timeoutNanos = unit.toNanos(timeout);
+        final int pool = POOLS.incrementAndGet();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(maxQueued), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "lazysodium-pwhash-" + pool + "-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    /**
+     * Hashes a password.
+     * @param password The password.
+     * @param opsLimit Between {@link PwHash#OPSLIMIT_MIN} and {@link PwHash#OPSLIMIT_MAX}.
+     * @param memLimit Between {@link PwHash#MEMLIMIT_MIN} and {@link PwHash#MEMLIMIT_MAX},
+     *                 and no more than the memory budget.
+     * @return A future of the hash, {@link PwHash#STR_BYTES} long and ending in a null byte.
+     * It completes exceptionally with an {@link IllegalArgumentException} if a limit
+     * is out of range, with a {@link SodiumException} if the password could not be
+     * hashed, or as described for the service.
+     */
+    public CompletableFuture<byte[]> hash(final byte[] password, final long opsLimit, final NativeLong memLimit) {
+        if (!PwHash.Checker.opsLimitIsCorrect(opsLimit)) {
+            return failedFuture(new IllegalArgumentException("The opsLimit provided is not the correct value."));
+        }
+        if (!PwHash.Checker.memLimitIsCorrect(memLimit)) {
+            return failedFuture(new IllegalArgumentException("The memLimit provided is not the correct value."));
+        }
+        long kiB = (memLimit.longValue() + 1023) / 1024;
+        return submit(new Task<byte[]>(kiB) {
+            @Override
+            byte[] compute() throws SodiumException {
+                byte[] hash = new byte[PwHash.STR_BYTES];
+                if (!lazySodium.cryptoPwHashStr(hash, password, password.length, opsLimit, memLimit)) {
+                    throw new SodiumException("Password hashing failed.");
+                }
+                return hash;
+            }
+        });
+    }
+
+    /**
+     * Verifies a password against a hash from {@link #hash(byte[], long, NativeLong)}
+     * or {@code crypto_pwhash_str}. The memory the hash needs is read from it.
+     * @param hash The hash, with or without its null byte.
+     * @param password The password.
+     * @return A future of whether the password matches. It completes
+     * exceptionally as described for the service.
+     */
+    public CompletableFuture<Boolean> verify(byte[] hash, final byte[] password) {
+        int end = 0;
+        while (end < hash.length && hash[end] != 0) {
+            end++;
+        }
+        // The native function needs the null byte.
+        final byte[] terminated = Arrays.copyOf(hash, end + 1);
+        long kiB = memoryKiB(terminated);
+        if (kiB < 0) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return submit(new Task<Boolean>(kiB) {
+            @Override
+            Boolean compute() {
+                return lazySodium.cryptoPwHashStrVerify(terminated, password, password.length);
+            }
+        });
+    }
+
+    /**
+     * @return How many requests are waiting for a thread.
+     */
+    public int queued() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return How many hashes are running.
+     */
+    public int active() {
+        return active.get();
+    }
+
+    /**
+     * @return How many bytes of the memory budget are taken by running hashes.
+     */
+    public long memoryInUse() {
+        return (budgetKiB - (long) memory.availablePermits()) * 1024;
+    }
+
+    /**
+     * @return How many hashes and verifications have finished.
+     */
+    public long completed() {
+        return completed.get();
+    }
+
+    /**
+     * @return How many hashes or verifications have failed with an exception.
+     */
+    public long failed() {
+        return failed.get();
+    }
+
+    /**
+     * @return How many requests were turned away because the queue was full.
+     */
+    public long rejected() {
+        return rejected.get();
+    }
+
+    /**
+     * @return How many requests waited longer than the timeout.
+     */
+    public long timedOut() {
+        return timedOut.get();
+    }
+
+    /**
+     * Stops taking requests and cancels those that are still waiting.
+     * Hashes already running finish first.
+     */
+    @Override
+    public void close() {
+        List<Runnable> waiting = executor.shutdownNow();
+        for (Runnable task : waiting) {
+            ((Task<?>) task).future.cancel(false);
+        }
+        boolean interrupted = false;
+        while (!executor.isTerminated()) {
+            try {
+                executor.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Task<T> task) {
+        if (task.kiB > budgetKiB) {
+            task.future.completeExceptionally(
+                    new IllegalArgumentException("memLimit is larger than the memory budget."));
+            return task.future;
+        }
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            task.future.completeExceptionally(e);
+        }
+        return task.future;
+    }
+
+    private static <T> CompletableFuture<T> failedFuture(Throwable e) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+    }
+
+    /**
+     * Reads the memory cost from a hash such as
+     * {@code $argon2id$v=19$m=65536,t=2,p=1$...}.
+     * @return The cost in KiB, or -1 if there isn't one.
+     */
+    private static long memoryKiB(byte[] hash) {
+        for (int i = 0; i + 3 < hash.length; i++) {
+            if (hash[i] == '$' && hash[i + 1] == 'm' && hash[i + 2] == '=') {
+                long kiB = 0;
+                int j = i + 3;
+                for (; j < hash.length && hash[j] >= '0' && hash[j] <= '9' && kiB <= Integer.MAX_VALUE; j++) {
+                    kiB = kiB * 10 + (hash[j] - '0');
+                }
+                return j == i + 3 ? -1 : kiB;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A request, which takes its memory from the budget while it runs.
+     */
+    private abstract class Task<T> implements Runnable {
+
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final long kiB;
+        final long deadline = System.nanoTime() + timeoutNanos;
+
+        Task(long kiB) {
+            this.kiB = kiB;
+        }
+
+        abstract T compute() throws SodiumException;
+
+        @Override
+        public void run() {
+            if (future.isDone()) {
+                return;
+            }
+            int permits = (int) kiB;
+            try {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || !memory.tryAcquire(permits, remaining, TimeUnit.NANOSECONDS)) {
+                    timedOut.incrementAndGet();
+                    future.completeExceptionally(new TimeoutException("Timed out waiting to hash a password."));
+                    return;
+                }
+            } catch (InterruptedException e) {
+                future.completeExceptionally(new CancellationException("The password hashing service was closed."));
+                return;
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                future.completeExceptionally(e);
+                return;
+            }
+            // Metrics are updated before the future completes, so that
+            // they already count a request when its caller sees the result.
+            active.incrementAndGet();
+            T result;
+            try {
+                result = compute();
+            } catch (SodiumException | RuntimeException e) {
+                finish(permits);
+                failed.incrementAndGet();
+                future.completeExceptionally(e);
+                return;
+            }
+            finish(permits);
+            completed.incrementAndGet();
+            future.complete(result);
+        }
+
+        private void finish(int permits) {
+            active.decrementAndGet();
+            memory.release(permits);
+        }
+    }
+
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.utils;
+
+import com.goterl.lazysodium.LazySodium;
+import com.goterl.lazysodium.Sodium;
+import com.goterl.lazysodium.exceptions.SodiumException;
+import com.sun.jna.Pointer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lends out buffers from {@code sodium_malloc}, keeping them for reuse
+ * once they are returned instead of freeing them. Allocating guarded,
+ * locked memory takes several system calls, so doing it once per buffer
+ * rather than once per use makes secure memory cheap enough for
+ * plain text on hot paths.
+ *
+ * <p>Buffers come in power of two sizes from {@value #MIN_BUFFER_SIZE}
+ * bytes up to the pool's largest size. Larger requests are allocated
+ * and freed every time. Each thread keeps the last buffer of each size
+ * it returned, so a thread that borrows and returns the same size over
+ * and over doesn't touch the shared lists at all.</p>
+ *
+ * <p>Buffers are wiped with {@code sodium_memzero} when they are
+ * returned. Closing the pool frees every buffer that isn't borrowed;
+ * borrowed ones are freed when they are returned.</p>
+ */
+public class SecureBufferPool implements AutoCloseable {
+
+    public static final int MIN_BUFFER_SIZE = 64;
+    public static final int DEFAULT_MAX_BUFFER_SIZE = 64 * 1024;
+    public static final int DEFAULT_BUFFERS_PER_SIZE = 16;
+
+    private static final int IDLE = 0;
+    private static final int BORROWED = 1;
+    private static final int RETURNING = 2;
+    private static final int FREED = 3;
+
+    private final Sodium sodium;
+    private final int maxBufferSize;
+    private final int buffersPerSize;
+    private final List<ConcurrentLinkedQueue<Buffer>> shared;
+    private final AtomicInteger[] sharedCounts;
+    private final Set<Buffer> buffers = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<Buffer[]> local;
+    private volatile boolean closed;
+
+    public SecureBufferPool(LazySodium lazySodium) {
+        this(lazySodium, DEFAULT_MAX_BUFFER_SIZE, DEFAULT_BUFFERS_PER_SIZE);
+    }
+
+    /**
+     * @param lazySodium The LazySodium instance to allocate with.
+     * @param maxBufferSize The largest size that is pooled, rounded up to a power of two.
+     * @param buffersPerSize How many returned buffers of each size are kept
+     *                       between all threads, besides the one each thread keeps.
+     */
+    @SuppressWarnings("unchecked")
+    public SecureBufferPool(LazySodium lazySodium, int maxBufferSize, int buffersPerSize) {
+        if (maxBufferSize < MIN_BUFFER_SIZE || maxBufferSize > 1 << 30) {
+            throw new IllegalArgumentException("maxBufferSize out of bounds: " + maxBufferSize);
+        }
+        if (buffersPerSize < 0) {
+            throw new IllegalArgumentException("buffersPerSize out of bounds: " + buffersPerSize);
+        }
+        this.sodium = lazySodium.getSodium();
+        this.maxBufferSize = MIN_BUFFER_SIZE << sizeClass(maxBufferSize);
+        this.buffersPerSize = buffersPerSize;
+        final int classes = sizeClass(maxBufferSize) + 1;
+        this.shared = new ArrayList<>(classes);
+        this.sharedCounts = new AtomicInteger[classes];
+        for (int i = 0; i < classes; i++) {
+            shared.add(new ConcurrentLinkedQueue<Buffer>());
+            sharedCounts[i] = new AtomicInteger();
+        }
+        this.local = new ThreadLocal<Buffer[]>() {
+            @Override
+            protected Buffer[] initialValue() {
+                return new Buffer[classes];
+            }
+        };
+    }
+
+    /**
+     * Borrows a buffer of at least {@code size} bytes, which
+     * must be returned by closing it once it is no longer needed.
+     * @param size The number of bytes needed.
+     * @return A wiped buffer.
+     * @throws SodiumException If memory could not be allocated.
+     * @throws IllegalStateException If the pool is closed.
+     */
+    public Buffer borrow(int size) throws SodiumException {
+        if (size < 0) {
+            throw new IllegalArgumentException("size out of bounds: " + size);
+        }
+        if (closed) {
+            throw new IllegalStateException("Pool closed");
+        }
+        if (size > maxBufferSize) {
+            return allocate(size, -1);
+        }
+        int sizeClass = sizeClass(size);
+        Buffer[] cache = local.get();
+        Buffer buffer = cache[sizeClass];
+        cache[sizeClass] = null;
+        while (buffer == null || !buffer.state.compareAndSet(IDLE, BORROWED)) {
+            buffer = shared.get(sizeClass).poll();
+            if (buffer == null) {
+                return allocate(MIN_BUFFER_SIZE << sizeClass, sizeClass);
+            }
+            sharedCounts[sizeClass].decrementAndGet();
+        }
+        return buffer;
+    }
+
+    public int getMaxBufferSize() {
+        return maxBufferSize;
+    }
+
+    /**
+     * @return The number of buffers allocated by the pool that
+     * haven't been freed, whether they are borrowed or not.
+     */
+    public int allocated() {
+        return buffers.size();
+    }
+
+    /**
+     * Frees every buffer that isn't borrowed. Borrowed buffers
+     * are freed when they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Buffer buffer : buffers) {
+            buffer.free(IDLE);
+        }
+    }
+
+    private Buffer allocate(int capacity, int sizeClass) throws SodiumException {
+        Pointer pointer = sodium.sodium_malloc(capacity);
+        if (pointer == null) {
+            throw new SodiumException("Could not allocate secure memory.");
+        }
+        Buffer buffer = new Buffer(pointer, capacity, sizeClass);
+        buffers.add(buffer);
+        return buffer;
+    }
+
+    private void giveBack(Buffer buffer) {
+        sodium.sodium_memzero(buffer.pointer, buffer.capacity);
+        if (buffer.sizeClass < 0) {
+            buffer.free(RETURNING);
+            return;
+        }
+        buffer.state.set(IDLE);
+        Buffer[] cache = local.get();
+        if (cache[buffer.sizeClass] == null) {
+            cache[buffer.sizeClass] = buffer;
+        } else if (sharedCounts[buffer.sizeClass].incrementAndGet() <= buffersPerSize) {
+            shared.get(buffer.sizeClass).offer(buffer);
+        } else {
+            sharedCounts[buffer.sizeClass].decrementAndGet();
+            buffer.free(IDLE);
+        }
+        // A buffer returned while the pool is being closed may
+        // have been missed by close(), so free it here instead.
+        if (closed) {
+            buffer.free(IDLE);
+        }
+    }
+
+    /**
+     * The index of the smallest power of two size of at least {@code size} bytes.
+     */
+    private static int sizeClass(int size) {
+        if (size <= MIN_BUFFER_SIZE) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+    }
+
+    /**
+     * Memory borrowed from a {@link SecureBufferPool}. Close
+     * it to wipe it and give it back to the pool.
+     */
+    public final class Buffer implements AutoCloseable {
+
+        private final Pointer pointer;
+        private final int capacity;
+        private final int sizeClass;
+        private final AtomicInteger state = new AtomicInteger(BORROWED);
+
+        private Buffer(Pointer pointer, int capacity, int sizeClass) {
+            this.pointer = pointer;
+            this.capacity = capacity;
+            this.sizeClass = sizeClass;
+        }
+
+        /**
+         * @return The buffer's memory, which may be larger than was asked for.
+         * @throws IllegalStateException If the buffer has been returned.
+         */
+        public Pointer getPointer() {
+            if (state.get() != BORROWED) {
+                throw new IllegalStateException("Buffer returned");
+            }
+            return pointer;
+        }
+
+        public int capacity() {
+            return capacity;
+        }
+
+        /**
+         * Wipes the buffer and gives it back to the pool.
+         * It must not be used after this.
+         */
+        @Override
+        public void close() {
+            if (state.compareAndSet(BORROWED, RETURNING)) {
+                giveBack(this);
+            }
+        }
+
+        private void free(int expected) {
+            if (state.compareAndSet(expected, FREED)) {
+                buffers.remove(this);
+                sodium.sodium_free(pointer);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,402 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.utils;
+
+import com.goterl.lazysodium.LazySodium;
+import com.goterl.lazysodium.Sodium;
+import com.goterl.lazysodium.exceptions.SodiumException;
+import com.goterl.lazysodium.interfaces.AEAD;
+import com.goterl.lazysodium.interfaces.KeyExchange;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+
+import javax.crypto.AEADBadTagException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Seals and opens the messages of one long-lived connection with
+ * the session keys of {@code crypto_kx} and XChaCha20-Poly1305-IETF.
+ *
+ * <p>The session keys never touch the Java heap: {@code crypto_kx}
+ * writes them straight into memory from {@code sodium_malloc}. Each
+ * direction numbers its messages, and a message's number is its
+ * nonce, so no random nonce is drawn or sent. This also means that
+ * messages must be opened in the order they were sealed, exactly
+ * once; a message that was lost, replayed or reordered doesn't open.</p>
+ *
+ * <p>After {@code rekeyAfterMessages} messages or {@code rekeyAfterBytes}
+ * bytes in one direction, that direction's key is replaced with one
+ * derived from it with {@code crypto_kdf_derive_from_key}, and the old
+ * key is wiped. Both ends must be created with the same limits.</p>
+ *
+ * <p>{@link #seal(ByteBuffer)} and {@link #open(ByteBuffer)} work in
+ * place and allocate nothing once a buffer has been seen, so the same
+ * buffers can be reused for every message. Direct buffers are fastest.
+ * Sealing and opening can happen on different threads at the same
+ * time; calls in the same direction are serialized.</p>
+ */
+public class SecureChannel implements AutoCloseable {
+
+    public static final int ABYTES = AEAD.XCHACHA20POLY1305_IETF_ABYTES;
+
+    public static final long DEFAULT_REKEY_AFTER_MESSAGES = 1L << 20;
+    public static final long DEFAULT_REKEY_AFTER_BYTES = 1L << 30;
+
+    private static final byte[] REKEY_CONTEXT = "lzschnl1".getBytes(StandardCharsets.US_ASCII);
+
+    // A key, the key that replaces it, and the nonce.
+    private static final int DIRECTION_BYTES = 2 * KeyExchange.SESSIONKEYBYTES + 32;
+
+    private final Sodium sodium;
+    private final long rekeyAfterMessages;
+    private final long rekeyAfterBytes;
+    private final Pointer memory;
+    private final Direction rx;
+    private final Direction tx;
+
+    private SecureChannel(Sodium sodium, long rekeyAfterMessages, long rekeyAfterBytes) throws SodiumException {
+        if (rekeyAfterMessages <= 0) {
+            throw new IllegalArgumentException("rekeyAfterMessages must be positive: " + rekeyAfterMessages);
+        }
+        if (rekeyAfterBytes <= 0) {
+            throw new IllegalArgumentException("rekeyAfterBytes must be positive: " + rekeyAfterBytes);
+        }
+        this.sodium = sodium;
+        this.rekeyAfterMessages = rekeyAfterMessages;
+        this.rekeyAfterBytes = rekeyAfterBytes;
+        this.memory = sodium.sodium_malloc(2 * DIRECTION_BYTES);
+        if (memory == null) {
+            throw new SodiumException("Could not allocate memory for the session keys.");
+        }
+        sodium.sodium_memzero(memory, 2 * DIRECTION_BYTES);
+        this.rx = new Direction(memory.share(0));
+        this.tx = new Direction(memory.share(DIRECTION_BYTES));
+    }
+
+    /**
+     * Opens the client end of a channel.
+     * @param lazySodium The LazySodium instance to encrypt with.
+     * @param clientKeyPair The client's {@code crypto_kx} key pair.
+     * @param serverPublicKey The server's {@code crypto_kx} public key.
+     * @return The channel.
+     * @throws SodiumException If a key is the wrong size or the server's public key is not acceptable.
+     */
+    public static SecureChannel client(LazySodium lazySodium, KeyPair clientKeyPair, Key serverPublicKey)
+            throws SodiumException {
+        return client(lazySodium, clientKeyPair, serverPublicKey, DEFAULT_REKEY_AFTER_MESSAGES, DEFAULT_REKEY_AFTER_BYTES);
+    }
+
+    /**
+     * Opens the client end of a channel.
+     * @param lazySodium The LazySodium instance to encrypt with.
+     * @param clientKeyPair The client's {@code crypto_kx} key pair.
+     * @param serverPublicKey The server's {@code crypto_kx} public key.
+     * @param rekeyAfterMessages How many messages to seal or open with a key.
+     * @param rekeyAfterBytes How many bytes of messages to seal or open with a key.
+     * @return The channel.
+     * @throws SodiumException If a key is the wrong size or the server's public key is not acceptable.
+     */
+    public static SecureChannel client(LazySodium lazySodium, KeyPair clientKeyPair, Key serverPublicKey,
+                                       long rekeyAfterMessages, long rekeyAfterBytes) throws SodiumException {
+        return create(lazySodium, clientKeyPair, serverPublicKey, true, rekeyAfterMessages, rekeyAfterBytes);
+    }
+
+    /**
+     * Opens the server end of a channel.
+     * @param lazySodium The LazySodium instance to encrypt with.
+     * @param serverKeyPair The server's {@code crypto_kx} key pair.
+     * @param clientPublicKey The client's {@code crypto_kx} public key.
+     * @return The channel.
+     * @throws SodiumException If a key is the wrong size or the client's public key is not acceptable.
+     */
+    public static SecureChannel server(LazySodium lazySodium, KeyPair serverKeyPair, Key clientPublicKey)
+            throws SodiumException {
+        return server(lazySodium, serverKeyPair, clientPublicKey, DEFAULT_REKEY_AFTER_MESSAGES, DEFAULT_REKEY_AFTER_BYTES);
+    }
+
+    /**
+     * Opens the server end of a channel.
+     * @param lazySodium The LazySodium instance to encrypt with.
+     * @param serverKeyPair The server's {@code crypto_kx} key pair.
+     * @param clientPublicKey The client's {@code crypto_kx} public key.
+     * @param rekeyAfterMessages How many messages to seal or open with a key.
+     * @param rekeyAfterBytes How many bytes of messages to seal or open with a key.
+     * @return The channel.
+     * @throws SodiumException If a key is the wrong size or the client's public key is not acceptable.
+     */
+    public static SecureChannel server(LazySodium lazySodium, KeyPair serverKeyPair, Key clientPublicKey,
+                                       long rekeyAfterMessages, long rekeyAfterBytes) throws SodiumException {
+        return create(lazySodium, serverKeyPair, clientPublicKey, false, rekeyAfterMessages, rekeyAfterBytes);
+    }
+
+    private static SecureChannel create(LazySodium lazySodium, KeyPair keyPair, Key peerPublicKey, boolean client,
+                                        long rekeyAfterMessages, long rekeyAfterBytes) throws SodiumException {
+        byte[] publicKey = keyPair.getPublicKey().getAsBytes();
+        byte[] peer = peerPublicKey.getAsBytes();
+        if (publicKey.length != KeyExchange.PUBLICKEYBYTES || peer.length != KeyExchange.PUBLICKEYBYTES) {
+            throw new SodiumException("Public key is incorrect size.");
+        }
+        SecureChannel channel = new SecureChannel(lazySodium.getSodium(), rekeyAfterMessages, rekeyAfterBytes);
+        Sodium sodium = channel.sodium;
+        Key secret = keyPair.getSecretKey();
+        byte[] secretKey = secret.getAsBytes();
+        try {
+            if (secretKey.length != KeyExchange.SECRETKEYBYTES) {
+                throw new SodiumException("Secret key is incorrect size.");
+            }
+            int res = client
+                    ? sodium.crypto_kx_client_session_keys(channel.rx.key, channel.tx.key, publicKey, secretKey, peer)
+                    : sodium.crypto_kx_server_session_keys(channel.rx.key, channel.tx.key, publicKey, secretKey, peer);
+            if (res != 0) {
+                throw new SodiumException("Could not compute the session keys.");
+            }
+        } catch (SodiumException e) {
+            channel.close();
+            throw e;
+        } finally {
+            // A SecureKey hands out a copy; a Key its own array.
+            if (secret instanceof SecureKey) {
+                Arrays.fill(secretKey, (byte) 0);
+            }
+        }
+        return channel;
+    }
+
+    /**
+     * Seals a message in place. The message is the buffer's remaining
+     * bytes; afterwards they are the cipher text, and the limit is moved
+     * {@link #ABYTES} further on to take in the tag.
+     * @param buffer The message, with room for the tag after its limit.
+     * @throws BufferOverflowException If there isn't room for the tag.
+     * @throws ReadOnlyBufferException If the buffer is read-only.
+     * @throws SodiumException If the message could not be sealed.
+     * @throws IllegalStateException If the channel has been closed.
+     */
+    public void seal(ByteBuffer buffer) throws SodiumException {
+        checkWritable(buffer);
+        if (buffer.capacity() - buffer.limit() < ABYTES) {
+            throw new BufferOverflowException();
+        }
+        int messageLen = buffer.remaining();
+        synchronized (tx) {
+            tx.checkOpen();
+            Pointer data = tx.begin(buffer, messageLen, messageLen + ABYTES);
+            int res = sodium.crypto_aead_xchacha20poly1305_ietf_encrypt(data, null, data, messageLen,
+                    null, 0, null, tx.nonce, tx.key);
+            tx.end(buffer, res == 0 ? messageLen + ABYTES : 0);
+            if (res != 0) {
+                throw new SodiumException("Could not seal the message.");
+            }
+            buffer.limit(buffer.limit() + ABYTES);
+            tx.advance(messageLen);
+        }
+    }
+
+    /**
+     * Opens a cipher text in place. The cipher text is the buffer's
+     * remaining bytes; afterwards they start with the message, and the
+     * limit is moved {@link #ABYTES} back to leave out the tag. If the
+     * cipher text doesn't open, the channel is left as it was but the
+     * buffer's contents are undefined.
+     * @param buffer The cipher text.
+     * @throws AEADBadTagException If the cipher text isn't authentic or
+     * isn't the next one from the other end.
+     * @throws ReadOnlyBufferException If the buffer is read-only.
+     * @throws SodiumException If a heap buffer's bytes could not be copied to native memory.
+     * @throws IllegalStateException If the channel has been closed.
+     */
+    public void open(ByteBuffer buffer) throws AEADBadTagException, SodiumException {
+        checkWritable(buffer);
+        int cipherLen = buffer.remaining();
+        if (cipherLen < ABYTES) {
+            throw new AEADBadTagException();
+        }
+        int messageLen = cipherLen - ABYTES;
+        synchronized (rx) {
+            rx.checkOpen();
+            Pointer data = rx.begin(buffer, cipherLen, cipherLen);
+            int res = sodium.crypto_aead_xchacha20poly1305_ietf_decrypt(data, null, null, data, cipherLen,
+                    null, 0, rx.nonce, rx.key);
+            rx.end(buffer, res == 0 ? messageLen : 0);
+            if (res != 0) {
+                throw new AEADBadTagException();
+            }
+            buffer.limit(buffer.limit() - ABYTES);
+            rx.advance(messageLen);
+        }
+    }
+
+    /**
+     * @return How many times the key for sealing has been replaced.
+     */
+    public long getSealEpoch() {
+        synchronized (tx) {
+            return tx.epoch;
+        }
+    }
+
+    /**
+     * @return How many times the key for opening has been replaced.
+     */
+    public long getOpenEpoch() {
+        synchronized (rx) {
+            return rx.epoch;
+        }
+    }
+
+    /**
+     * Wipes and frees the session keys. Calls already under way finish first.
+     */
+    @Override
+    public void close() {
+        synchronized (rx) {
+            synchronized (tx) {
+                if (!rx.closed) {
+                    rx.close();
+                    tx.close();
+                    sodium.sodium_free(memory);
+                }
+            }
+        }
+    }
+
+    private static void checkWritable(ByteBuffer buffer) {
+        if (buffer.isReadOnly()) {
+            throw new ReadOnlyBufferException();
+        }
+    }
+
+    /**
+     * The key and message counters of one direction, and what it
+     * needs to reach the bytes of a buffer without allocating.
+     */
+    private final class Direction {
+
+        private Pointer key;
+        private Pointer nextKey;
+        private final Pointer nonce;
+
+        private long messages;
+        private long bytes;
+        private long epoch;
+        private boolean closed;
+
+        // Points into the last direct buffer; moved rather than replaced.
+        private final Pointer view = new Pointer(0);
+        private ByteBuffer lastBuffer;
+        private long lastAddress;
+
+        // Where the bytes of heap buffers are worked on.
+        private Pointer scratch;
+        private int scratchSize;
+        private int scratchUsed;
+
+        Direction(Pointer memory) {
+            this.key = memory;
+            this.nextKey = memory.share(KeyExchange.SESSIONKEYBYTES);
+            this.nonce = memory.share(2 * KeyExchange.SESSIONKEYBYTES);
+        }
+
+        void checkOpen() {
+            if (closed) {
+                throw new IllegalStateException("Channel closed");
+            }
+        }
+
+        /**
+         * @param buffer The buffer to work on.
+         * @param inputLen How many of its bytes, from its position, are input.
+         * @param span How many bytes, from its position, the output needs.
+         * @return A pointer to the bytes.
+         */
+        Pointer begin(ByteBuffer buffer, int inputLen, int span) throws SodiumException {
+            if (buffer.isDirect()) {
+                if (buffer != lastBuffer) {
+                    lastAddress = Pointer.nativeValue(Native.getDirectBufferPointer(buffer));
+                    lastBuffer = buffer;
+                }
+                Pointer.nativeValue(view, lastAddress + buffer.position());
+                return view;
+            }
+            if (span > scratchSize) {
+                int size = Math.max(span, scratchSize > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : 2 * scratchSize);
+                Pointer grown = sodium.sodium_malloc(size);
+                if (grown == null) {
+                    throw new SodiumException("Could not allocate memory for the message.");
+                }
+                if (scratch != null) {
+                    sodium.sodium_free(scratch);
+                }
+                scratch = grown;
+                scratchSize = size;
+            }
+            scratch.write(0, buffer.array(), buffer.arrayOffset() + buffer.position(), inputLen);
+            scratchUsed = span;
+            return scratch;
+        }
+
+        /**
+         * Copies the output back into a heap buffer and wipes the scratch memory.
+         */
+        void end(ByteBuffer buffer, int outputLen) {
+            if (buffer.isDirect()) {
+                return;
+            }
+            scratch.read(0, buffer.array(), buffer.arrayOffset() + buffer.position(), outputLen);
+            sodium.sodium_memzero(scratch, scratchUsed);
+        }
+
+        void advance(int messageLen) {
+            messages++;
+            bytes += messageLen;
+            if (messages >= rekeyAfterMessages || bytes >= rekeyAfterBytes) {
+                rekey();
+            } else {
+                setNonce(messages);
+            }
+        }
+
+        private void rekey() {
+            epoch++;
+            if (sodium.crypto_kdf_derive_from_key(nextKey, KeyExchange.SESSIONKEYBYTES, epoch,
+                    REKEY_CONTEXT, key) != 0) {
+                throw new IllegalStateException("Could not derive the next key.");
+            }
+            sodium.sodium_memzero(key, KeyExchange.SESSIONKEYBYTES);
+            Pointer old = key;
+            key = nextKey;
+            nextKey = old;
+            messages = 0;
+            bytes = 0;
+            setNonce(0);
+        }
+
+        private void setNonce(long counter) {
+            // Little-endian, so both ends agree whatever their byte order.
+            for (int i = 0; i < 8; i++) {
+                nonce.setByte(i, (byte) (counter >>> (8 * i)));
+            }
+        }
+
+        void close() {
+            closed = true;
+            lastBuffer = null;
+            if (scratch != null) {
+                sodium.sodium_free(scratch);
+                scratch = null;
+                scratchSize = 0;
+            }
+        }
+    }
+
+}
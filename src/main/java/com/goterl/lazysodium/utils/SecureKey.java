@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.utils;
+
+import com.goterl.lazysodium.LazySodium;
+import com.goterl.lazysodium.Sodium;
+import com.goterl.lazysodium.exceptions.SodiumException;
+import com.sun.jna.Pointer;
+
+import java.util.Arrays;
+
+/**
+ * A {@link Key} kept in guarded memory from {@code sodium_malloc}
+ * instead of on the Java heap. The memory is read-only, can be made
+ * inaccessible with {@link #noAccess()} while the key isn't needed,
+ * and is wiped and freed by {@link #close()}.
+ *
+ * <p>LazySodium's {@code SecretBox}, {@code AEAD} and {@code Auth}
+ * methods that take a {@link Key} read a secure key straight from
+ * its memory. Everything else that takes a {@link Key} calls
+ * {@link #getAsBytes()}, which copies the key onto the heap, so
+ * prefer those methods, or pass {@link #getPointer()} to the
+ * {@link Sodium} methods that take a {@link Pointer}.</p>
+ *
+ * <p>Changing the protection while another thread uses the key is
+ * not safe; the key must be readable whenever it is being used.</p>
+ */
+public class SecureKey extends Key implements AutoCloseable {
+
+    private final Sodium sodium;
+    private final Pointer pointer;
+    private final int size;
+    private boolean accessible = true;
+    private boolean closed;
+
+    private SecureKey(Sodium sodium, int size) throws SodiumException {
+        super(null);
+        if (size <= 0) {
+            throw new IllegalArgumentException("size out of bounds: " + size);
+        }
+        this.sodium = sodium;
+        this.size = size;
+        this.pointer = sodium.sodium_malloc(size);
+        if (pointer == null) {
+            throw new SodiumException("Could not allocate memory for the key.");
+        }
+    }
+
+    /**
+     * Generate a random key with a given size, without
+     * it ever being on the Java heap.
+     * @param ls LazySodium instance as we need to get true
+     *           random bytes.
+     * @param size The size of the key to generate.
+     * @return A new SecureKey.
+     * @throws SodiumException If the memory could not be allocated.
+     */
+    public static SecureKey random(LazySodium ls, int size) throws SodiumException {
+        SecureKey key = new SecureKey(ls.getSodium(), size);
+        ls.getSodium().randombytes_buf(key.pointer, size);
+        key.sodium.sodium_mprotect_readonly(key.pointer);
+        return key;
+    }
+
+    /**
+     * Create a SecureKey by copying raw bytes. The
+     * array is not changed, so wipe it if it is no longer needed.
+     * @param ls LazySodium instance.
+     * @param bytes The key.
+     * @return A new SecureKey.
+     * @throws SodiumException If the memory could not be allocated.
+     */
+    public static SecureKey fromBytes(LazySodium ls, byte[] bytes) throws SodiumException {
+        SecureKey key = new SecureKey(ls.getSodium(), bytes.length);
+        key.pointer.write(0, bytes, 0, bytes.length);
+        key.sodium.sodium_mprotect_readonly(key.pointer);
+        return key;
+    }
+
+    /**
+     * Create a SecureKey by copying another key.
+     * @param ls LazySodium instance.
+     * @param key The key to copy.
+     * @return A new SecureKey.
+     * @throws SodiumException If the memory could not be allocated.
+     */
+    public static SecureKey fromKey(LazySodium ls, Key key) throws SodiumException {
+        if (key instanceof SecureKey) {
+            SecureKey other = (SecureKey) key;
+            byte[] bytes = other.getAsBytes();
+            try {
+                return fromBytes(ls, bytes);
+            } finally {
+                Arrays.fill(bytes, (byte) 0);
+            }
+        }
+        return fromBytes(ls, key.getAsBytes());
+    }
+
+    /**
+     * @return The read-only memory holding the key.
+     * @throws IllegalStateException If the key is closed
+     * or has been made inaccessible.
+     */
+    public synchronized Pointer getPointer() {
+        ensureAccessible();
+        return pointer;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Makes the key's memory inaccessible, so that any
+     * attempt to read it crashes rather than leaking it.
+     */
+    public synchronized void noAccess() {
+        ensureOpen();
+        sodium.sodium_mprotect_noaccess(pointer);
+        accessible = false;
+    }
+
+    /**
+     * Makes the key's memory readable again after {@link #noAccess()}.
+     */
+    public synchronized void readOnly() {
+        ensureOpen();
+        sodium.sodium_mprotect_readonly(pointer);
+        accessible = true;
+    }
+
+    public synchronized boolean isAccessible() {
+        return accessible && !closed;
+    }
+
+    /**
+     * Copies the key onto the Java heap, which
+     * is what this class otherwise avoids.
+     * @return A new array holding the key.
+     * @throws IllegalStateException If the key is closed
+     * or has been made inaccessible.
+     */
+    @Override
+    public byte[] getAsBytes() {
+        return getPointer().getByteArray(0, size);
+    }
+
+    /**
+     * Compares keys in constant time with {@code sodium_memcmp}.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Key)) return false;
+        if (obj == this) return true;
+        if (obj instanceof SecureKey) {
+            SecureKey other = (SecureKey) obj;
+            return other.size == size && sodium.sodium_memcmp(getPointer(), other.getPointer(), size) == 0;
+        }
+        byte[] other = ((Key) obj).getAsBytes();
+        if (other.length != size) {
+            return false;
+        }
+        byte[] bytes = getAsBytes();
+        try {
+            return sodium.sodium_memcmp(bytes, other, size) == 0;
+        } finally {
+            Arrays.fill(bytes, (byte) 0);
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return size;
+    }
+
+    /**
+     * Wipes and frees the key's memory.
+     */
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            sodium.sodium_free(pointer);
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Key closed");
+        }
+    }
+
+    private void ensureAccessible() {
+        ensureOpen();
+        if (!accessible) {
+            throw new IllegalStateException("Key is not accessible");
+        }
+    }
+
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.utils;
+
+import com.goterl.lazysodium.LazySodium;
+import com.goterl.lazysodium.Sodium;
+import com.goterl.lazysodium.exceptions.SodiumException;
+import com.goterl.lazysodium.interfaces.Sign;
+import com.sun.jna.Pointer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Signs messages with one secret key, on the calling thread or
+ * spread across an {@link Executor}. The secret key is copied
+ * once into guarded, read-only memory from {@code sodium_malloc}
+ * rather than being passed to native code on every call.
+ *
+ * <p>Any executor can be used, for example a fixed pool sized to
+ * the number of cores or, on JDK 21 and later,
+ * {@code Executors.newVirtualThreadPerTaskExecutor()}.
+ * Close the service to wipe and free the key.</p>
+ */
+public class SigningService implements AutoCloseable {
+
+    // How many messages each task of signAll signs.
+    private static final int BATCH_PART = 256;
+
+    private final Sodium sodium;
+    private final Executor executor;
+    private final Pointer secretKey;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private boolean closed;
+
+    /**
+     * Creates a service that runs asynchronous signing
+     * on the common fork join pool.
+     * @param lazySodium The LazySodium instance to sign with.
+     * @param secretKey An ed25519 secret key of {@link Sign#SECRETKEYBYTES}.
+     * @throws SodiumException If the key is the wrong size or could not be stored.
+     */
+    public SigningService(LazySodium lazySodium, Key secretKey) throws SodiumException {
+        this(lazySodium, secretKey, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a service that runs asynchronous signing on {@code executor}.
+     * @param lazySodium The LazySodium instance to sign with.
+     * @param secretKey An ed25519 secret key of {@link Sign#SECRETKEYBYTES}.
+     * @param executor Where to sign messages submitted with {@link #signAsync(byte[])}
+     *                 and {@link #signAll(byte[][])}.
+     * @throws SodiumException If the key is the wrong size or could not be stored.
+     */
+    public SigningService(LazySodium lazySodium, Key secretKey, Executor executor) throws SodiumException {
+        byte[] keyBytes = secretKey.getAsBytes();
+        if (keyBytes.length != Sign.SECRETKEYBYTES) {
+            throw new SodiumException("Secret key is incorrect size.");
+        }
+        this.sodium = lazySodium.getSodium();
+        this.executor = executor;
+        this.secretKey = sodium.sodium_malloc(Sign.SECRETKEYBYTES);
+        if (this.secretKey == null) {
+            throw new SodiumException("Could not allocate memory for the secret key.");
+        }
+        this.secretKey.write(0, keyBytes, 0, keyBytes.length);
+        sodium.sodium_mprotect_readonly(this.secretKey);
+    }
+
+    /**
+     * Signs a message on the calling thread.
+     * @param message The message.
+     * @return The detached signature of {@link Sign#BYTES}.
+     * @throws SodiumException If the message could not be signed.
+     * @throws IllegalStateException If the service has been closed.
+     */
+    public byte[] sign(byte[] message) throws SodiumException {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            return signUnlocked(message);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Signs a message on the executor.
+     * @param message The message.
+     * @return A future of the detached signature. It completes exceptionally
+     * with a {@link SodiumException} if the message could not be signed.
+     */
+    public CompletableFuture<byte[]> signAsync(final byte[] message) {
+        final CompletableFuture<byte[]> signature = new CompletableFuture<>();
+        submit(signature, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    signature.complete(sign(message));
+                } catch (SodiumException | RuntimeException e) {
+                    signature.completeExceptionally(e);
+                }
+            }
+        });
+        return signature;
+    }
+
+    /**
+     * Signs many messages, splitting them into parts that
+     * are signed on the executor at the same time.
+     * @param messages The messages.
+     * @return A future of the detached signatures, in the same order as
+     * {@code messages}, that completes once every message has been signed.
+     */
+    public CompletableFuture<byte[][]> signAll(final byte[][] messages) {
+        final byte[][] signatures = new byte[messages.length][];
+        List<CompletableFuture<Void>> parts = new ArrayList<>();
+        for (int from = 0; from < messages.length; from += BATCH_PART) {
+            final int start = from;
+            final int end = Math.min(from + BATCH_PART, messages.length);
+            final CompletableFuture<Void> part = new CompletableFuture<>();
+            submit(part, new Runnable() {
+                @Override
+                public void run() {
+                    lock.readLock().lock();
+                    try {
+                        checkOpen();
+                        for (int i = start; i < end; i++) {
+                            signatures[i] = signUnlocked(messages[i]);
+                        }
+                        part.complete(null);
+                    } catch (SodiumException | RuntimeException e) {
+                        part.completeExceptionally(e);
+                    } finally {
+                        lock.readLock().unlock();
+                    }
+                }
+            });
+            parts.add(part);
+        }
+        return CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0]))
+                .thenApply(new Function<Void, byte[][]>() {
+                    @Override
+                    public byte[][] apply(Void done) {
+                        return signatures;
+                    }
+                });
+    }
+
+    /**
+     * Wipes and frees the secret key once signing that is
+     * under way has finished. Signing afterwards fails with
+     * an {@link IllegalStateException}.
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (!closed) {
+                closed = true;
+                sodium.sodium_free(secretKey);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private byte[] signUnlocked(byte[] message) throws SodiumException {
+        byte[] signature = new byte[Sign.BYTES];
+        if (sodium.crypto_sign_detached(signature, null, message, message.length, secretKey) != 0) {
+            throw new SodiumException("Could not sign the message.");
+        }
+        return signature;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The signing service has been closed.");
+        }
+    }
+
+    private void submit(CompletableFuture<?> future, Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+}
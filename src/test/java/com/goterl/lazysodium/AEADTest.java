@@ -8,18 +8,24 @@
 
 package com.goterl.lazysodium;
 
+import com.goterl.lazysodium.exceptions.SodiumException;
 import com.goterl.lazysodium.interfaces.AEAD;
 import com.goterl.lazysodium.interfaces.MessageEncoder;
 import com.goterl.lazysodium.utils.DetachedDecrypt;
 import com.goterl.lazysodium.utils.DetachedEncrypt;
 import com.goterl.lazysodium.utils.HexMessageEncoder;
 import com.goterl.lazysodium.utils.Key;
+import com.goterl.lazysodium.utils.NonceSequence;
+import com.goterl.lazysodium.utils.SecureKey;
+import com.sun.jna.Pointer;
 import junit.framework.TestCase;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import javax.crypto.AEADBadTagException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 public class AEADTest extends BaseTest {
 
@@ -244,6 +250,109 @@ public class AEADTest extends BaseTest {
         }
     }
 
+    @Test
+    public void encryptXChachaDirectBuffers() {
+        byte[] key = lazySodium.keygen(AEAD.Method.XCHACHA20_POLY1305_IETF).getAsBytes();
+        byte[] nPub = lazySodium.nonce(AEAD.XCHACHA20POLY1305_IETF_NPUBBYTES);
+        byte[] message = lazySodium.bytes(PASSWORD);
+        byte[] expected = new byte[message.length + AEAD.XCHACHA20POLY1305_IETF_ABYTES];
+        lazySodium.cryptoAeadXChaCha20Poly1305IetfEncrypt(expected, null, message, message.length, null, 0, null, nPub, key);
+
+        ByteBuffer messageBuffer = direct(message);
+        ByteBuffer cipherBuffer = ByteBuffer.allocateDirect(expected.length);
+        TestCase.assertTrue(lazySodium.cryptoAeadXChaCha20Poly1305IetfEncrypt(
+                cipherBuffer, messageBuffer, null, direct(nPub), direct(key)));
+        TestCase.assertFalse(messageBuffer.hasRemaining());
+        TestCase.assertFalse(cipherBuffer.hasRemaining());
+
+        byte[] cipher = new byte[expected.length];
+        cipherBuffer.flip();
+        cipherBuffer.get(cipher);
+        TestCase.assertTrue(Arrays.equals(expected, cipher));
+
+        cipherBuffer.flip();
+        ByteBuffer decrypted = ByteBuffer.allocateDirect(message.length);
+        TestCase.assertTrue(lazySodium.cryptoAeadXChaCha20Poly1305IetfDecrypt(
+                decrypted, cipherBuffer, null, direct(nPub), direct(key)));
+        decrypted.flip();
+        TestCase.assertEquals(direct(message), decrypted);
+    }
+
+    @Test
+    public void encryptChachaIetfHeapBufferWindows() {
+        byte[] key = lazySodium.keygen(AEAD.Method.CHACHA20_POLY1305_IETF).getAsBytes();
+        byte[] nPub = lazySodium.nonce(AEAD.CHACHA20POLY1305_IETF_NPUBBYTES);
+        ByteBuffer additionalData = ByteBuffer.wrap(lazySodium.bytes("header"));
+        byte[] message = lazySodium.bytes(PASSWORD);
+
+        // Message in the middle of a larger frame, cipher written after a prefix.
+        byte[] frame = new byte[message.length + 10];
+        System.arraycopy(message, 0, frame, 5, message.length);
+        ByteBuffer messageBuffer = ByteBuffer.wrap(frame, 5, message.length);
+        ByteBuffer cipherBuffer = ByteBuffer.allocate(3 + message.length + AEAD.CHACHA20POLY1305_IETF_ABYTES);
+        cipherBuffer.position(3);
+
+        TestCase.assertTrue(lazySodium.cryptoAeadChaCha20Poly1305IetfEncrypt(
+                cipherBuffer, messageBuffer, additionalData, ByteBuffer.wrap(nPub), ByteBuffer.wrap(key)));
+        TestCase.assertEquals(5 + message.length, messageBuffer.position());
+        TestCase.assertEquals(0, additionalData.position());
+
+        cipherBuffer.position(3);
+        ByteBuffer decrypted = ByteBuffer.allocate(message.length);
+        TestCase.assertTrue(lazySodium.cryptoAeadChaCha20Poly1305IetfDecrypt(
+                decrypted, cipherBuffer, additionalData, ByteBuffer.wrap(nPub), ByteBuffer.wrap(key)));
+        TestCase.assertEquals(PASSWORD, lazySodium.str(decrypted.array()));
+    }
+
+    @Test
+    public void decryptChachaBufferWithWrongAdditionalData() {
+        byte[] key = lazySodium.keygen(AEAD.Method.CHACHA20_POLY1305).getAsBytes();
+        byte[] nPub = lazySodium.nonce(AEAD.CHACHA20POLY1305_NPUBBYTES);
+        ByteBuffer cipher = ByteBuffer.allocateDirect(PASSWORD.length() + AEAD.CHACHA20POLY1305_ABYTES);
+        lazySodium.cryptoAeadChaCha20Poly1305Encrypt(cipher, direct(lazySodium.bytes(PASSWORD)),
+                direct(lazySodium.bytes("right")), direct(nPub), direct(key));
+        cipher.flip();
+
+        ByteBuffer decrypted = ByteBuffer.allocateDirect(PASSWORD.length());
+        TestCase.assertFalse(lazySodium.cryptoAeadChaCha20Poly1305Decrypt(decrypted, cipher,
+                direct(lazySodium.bytes("wrong")), direct(nPub), direct(key)));
+        TestCase.assertEquals(0, cipher.position());
+        TestCase.assertEquals(0, decrypted.position());
+    }
+
+    @Test
+    public void encryptBufferTooSmall() {
+        byte[] key = lazySodium.keygen(AEAD.Method.CHACHA20_POLY1305_IETF).getAsBytes();
+        byte[] nPub = lazySodium.nonce(AEAD.CHACHA20POLY1305_IETF_NPUBBYTES);
+        expectedException.expect(IllegalArgumentException.class);
+        lazySodium.cryptoAeadChaCha20Poly1305IetfEncrypt(ByteBuffer.allocateDirect(PASSWORD.length()),
+                direct(lazySodium.bytes(PASSWORD)), null, direct(nPub), direct(key));
+    }
+
+    @Test
+    public void encryptAESDirectBuffers() {
+        if (lazySodium.cryptoAeadAES256GCMIsAvailable()) {
+            byte[] key = lazySodium.keygen(AEAD.Method.AES256GCM).getAsBytes();
+            byte[] nPub = lazySodium.nonce(AEAD.AES256GCM_NPUBBYTES);
+            ByteBuffer cipher = ByteBuffer.allocateDirect(PASSWORD.length() + AEAD.AES256GCM_ABYTES);
+            TestCase.assertTrue(lazySodium.cryptoAeadAES256GCMEncrypt(cipher, direct(lazySodium.bytes(PASSWORD)),
+                    null, direct(nPub), direct(key)));
+            cipher.flip();
+
+            ByteBuffer decrypted = ByteBuffer.allocateDirect(PASSWORD.length());
+            TestCase.assertTrue(lazySodium.cryptoAeadAES256GCMDecrypt(decrypted, cipher, null, direct(nPub), direct(key)));
+            decrypted.flip();
+            TestCase.assertEquals(direct(lazySodium.bytes(PASSWORD)), decrypted);
+        }
+    }
+
+    private ByteBuffer direct(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes);
+        buffer.flip();
+        return buffer;
+    }
+
     private String malformCipher(String ciphertext) {
         byte[] malformedBuf = malformCipherBytes(ciphertext);
         return encoder.encode(malformedBuf);
@@ -256,4 +365,219 @@ public class AEADTest extends BaseTest {
         }
         return cipherBuf;
     }
+
+    @Test
+    public void encryptXChachaWithinFrame() {
+        byte[] key = lazySodium.keygen(AEAD.Method.XCHACHA20_POLY1305_IETF).getAsBytes();
+        byte[] nPub = lazySodium.nonce(AEAD.XCHACHA20POLY1305_IETF_NPUBBYTES);
+        byte[] message = lazySodium.bytes(PASSWORD);
+
+        // The header is authenticated as additional data and the body is encrypted in place.
+        byte[] frame = new byte[6 + message.length + AEAD.XCHACHA20POLY1305_IETF_ABYTES];
+        System.arraycopy(lazySodium.bytes("header"), 0, frame, 0, 6);
+        System.arraycopy(message, 0, frame, 6, message.length);
+        TestCase.assertTrue(lazySodium.cryptoAeadXChaCha20Poly1305IetfEncrypt(frame, 6, frame, 6, message.length, frame, 0, 6, nPub, key));
+
+        TestCase.assertTrue(lazySodium.cryptoAeadXChaCha20Poly1305IetfDecrypt(frame, 6, frame, 6, frame.length - 6, frame, 0, 6, nPub, key));
+        TestCase.assertTrue(Arrays.equals(message, Arrays.copyOfRange(frame, 6, 6 + message.length)));
+    }
+
+    @Test
+    public void encryptInPlace() {
+        byte[] key = lazySodium.keygen(AEAD.Method.XCHACHA20_POLY1305_IETF).getAsBytes();
+        byte[] nPub = lazySodium.nonce(AEAD.XCHACHA20POLY1305_IETF_NPUBBYTES);
+        byte[] ad = lazySodium.bytes("ad");
+        byte[] message = lazySodium.bytes(PASSWORD);
+
+        byte[] expected = new byte[message.length + AEAD.XCHACHA20POLY1305_IETF_ABYTES];
+        lazySodium.cryptoAeadXChaCha20Poly1305IetfEncrypt(expected, null, message, message.length, ad, ad.length, null, nPub, key);
+
+        byte[] buffer = new byte[2 + expected.length];
+        System.arraycopy(message, 0, buffer, 2, message.length);
+        TestCase.assertTrue(lazySodium.cryptoAeadEncryptInPlace(buffer, 2, message.length, ad, nPub, key, AEAD.Method.XCHACHA20_POLY1305_IETF));
+        TestCase.assertTrue(Arrays.equals(expected, Arrays.copyOfRange(buffer, 2, buffer.length)));
+
+        TestCase.assertFalse(lazySodium.cryptoAeadDecryptInPlace(buffer, 2, expected.length, null, nPub, key, AEAD.Method.XCHACHA20_POLY1305_IETF));
+        TestCase.assertTrue(Arrays.equals(expected, Arrays.copyOfRange(buffer, 2, buffer.length)));
+
+        TestCase.assertTrue(lazySodium.cryptoAeadDecryptInPlace(buffer, 2, expected.length, ad, nPub, key, AEAD.Method.XCHACHA20_POLY1305_IETF));
+        TestCase.assertTrue(Arrays.equals(message, Arrays.copyOfRange(buffer, 2, 2 + message.length)));
+    }
+
+    @Test
+    public void encryptInPlaceDirectBuffer() {
+        for (AEAD.Method method : AEAD.Method.values()) {
+            if (method == AEAD.Method.AES256GCM && !lazySodium.cryptoAeadAES256GCMIsAvailable()) {
+                continue;
+            }
+            byte[] key = lazySodium.keygen(method).getAsBytes();
+            byte[] nPub = lazySodium.nonce(AEAD.XCHACHA20POLY1305_IETF_NPUBBYTES);
+            byte[] message = lazySodium.randomBytesBuf(50_000);
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(message.length + AEAD.CHACHA20POLY1305_ABYTES);
+            buffer.put(message).clear();
+            TestCase.assertTrue(lazySodium.cryptoAeadEncryptInPlace(buffer, 0, message.length, null, nPub, key, method));
+            TestCase.assertTrue(lazySodium.cryptoAeadDecryptInPlace(buffer, 0, buffer.capacity(), null, nPub, key, method));
+
+            byte[] decrypted = new byte[message.length];
+            buffer.get(decrypted);
+            TestCase.assertTrue(method.name(), Arrays.equals(message, decrypted));
+        }
+    }
+
+    @Test
+    public void encryptBatch() {
+        AEAD.Method method = AEAD.Method.CHACHA20_POLY1305_IETF;
+        byte[] key = lazySodium.keygen(method).getAsBytes();
+        int count = 50;
+        byte[][] messages = new byte[count][];
+        byte[][] ciphers = new byte[count][];
+        byte[][] nPubs = new byte[count][];
+        byte[][] ad = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            messages[i] = lazySodium.bytes("Record " + i);
+            ciphers[i] = new byte[messages[i].length + AEAD.CHACHA20POLY1305_IETF_ABYTES];
+            nPubs[i] = lazySodium.nonce(AEAD.CHACHA20POLY1305_IETF_NPUBBYTES);
+            ad[i] = i % 2 == 0 ? null : lazySodium.bytes("ad " + i);
+        }
+
+        boolean[] encrypted = lazySodium.cryptoAeadEncryptBatch(ciphers, messages, ad, nPubs, key, method);
+        for (int i = 0; i < count; i++) {
+            TestCase.assertTrue(encrypted[i]);
+            byte[] expected = new byte[ciphers[i].length];
+            lazySodium.cryptoAeadChaCha20Poly1305IetfEncrypt(expected, null, messages[i], messages[i].length,
+                    ad[i], ad[i] == null ? 0 : ad[i].length, null, nPubs[i], key);
+            TestCase.assertTrue(Arrays.equals(expected, ciphers[i]));
+        }
+
+        // One bad tag only fails its own item.
+        ciphers[7][0] ^= 1;
+        byte[][] decrypted = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            decrypted[i] = new byte[messages[i].length];
+        }
+        boolean[] results = lazySodium.cryptoAeadDecryptBatch(decrypted, ciphers, ad, nPubs, key, method);
+        for (int i = 0; i < count; i++) {
+            TestCase.assertEquals(i != 7, results[i]);
+            if (i != 7) {
+                TestCase.assertTrue(Arrays.equals(messages[i], decrypted[i]));
+            }
+        }
+    }
+
+    @Test
+    public void encryptBatchWithKeyPerItem() {
+        AEAD.Method method = AEAD.Method.XCHACHA20_POLY1305_IETF;
+        byte[][] keys = {lazySodium.keygen(method).getAsBytes(), lazySodium.keygen(method).getAsBytes()};
+        byte[][] nPubs = {lazySodium.nonce(AEAD.XCHACHA20POLY1305_IETF_NPUBBYTES), lazySodium.nonce(AEAD.XCHACHA20POLY1305_IETF_NPUBBYTES)};
+        byte[][] messages = {lazySodium.bytes("first"), new byte[0]};
+        byte[][] ciphers = {new byte[5 + AEAD.XCHACHA20POLY1305_IETF_ABYTES], new byte[AEAD.XCHACHA20POLY1305_IETF_ABYTES]};
+
+        boolean[] encrypted = lazySodium.cryptoAeadEncryptBatch(ciphers, messages, null, nPubs, keys, method);
+        TestCase.assertTrue(encrypted[0] && encrypted[1]);
+
+        byte[][] decrypted = {new byte[5], new byte[0]};
+        byte[][] swappedKeys = {keys[1], keys[1]};
+        boolean[] results = lazySodium.cryptoAeadDecryptBatch(decrypted, ciphers, null, nPubs, swappedKeys, method);
+        TestCase.assertFalse(results[0]);
+        TestCase.assertTrue(results[1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void encryptBatchWithTooSmallCipher() {
+        AEAD.Method method = AEAD.Method.CHACHA20_POLY1305;
+        byte[] key = lazySodium.keygen(method).getAsBytes();
+        byte[][] messages = {lazySodium.bytes("message")};
+        byte[][] ciphers = {new byte[messages[0].length]};
+        byte[][] nPubs = {lazySodium.nonce(AEAD.CHACHA20POLY1305_NPUBBYTES)};
+        lazySodium.cryptoAeadEncryptBatch(ciphers, messages, null, nPubs, key, method);
+    }
+
+    @Test
+    public void bytesMatchStrings() throws Exception {
+        AEAD.LazyBytes aeadBytes = (AEAD.LazyBytes) lazySodium;
+        Key key = lazySodium.keygen(AEAD.Method.XCHACHA20_POLY1305_IETF);
+        byte[] nPub = lazySodium.nonce(AEAD.XCHACHA20POLY1305_IETF_NPUBBYTES);
+        byte[] additionalData = lazySodium.bytes("header");
+
+        byte[] cipher = aeadBytes.encrypt(lazySodium.bytes(PASSWORD), additionalData, nPub, key, AEAD.Method.XCHACHA20_POLY1305_IETF);
+        TestCase.assertEquals(lazySodium.encrypt(PASSWORD, "header", nPub, key, AEAD.Method.XCHACHA20_POLY1305_IETF), encoder.encode(cipher));
+        TestCase.assertEquals(PASSWORD, lazySodium.str(aeadBytes.decrypt(cipher, additionalData, nPub, key, AEAD.Method.XCHACHA20_POLY1305_IETF)));
+
+        try (SecureKey secureKey = SecureKey.fromKey(lazySodium, key)) {
+            for (ByteBuffer in : Arrays.asList(ByteBuffer.allocate(cipher.length), ByteBuffer.allocateDirect(cipher.length))) {
+                in.put(cipher).flip();
+                ByteBuffer opened = aeadBytes.decrypt(in, ByteBuffer.wrap(additionalData), nPub, secureKey, AEAD.Method.XCHACHA20_POLY1305_IETF);
+                TestCase.assertFalse(in.hasRemaining());
+                TestCase.assertEquals(in.isDirect(), opened.isDirect());
+
+                ByteBuffer sealed = aeadBytes.encrypt(opened, ByteBuffer.wrap(additionalData), nPub, key, AEAD.Method.XCHACHA20_POLY1305_IETF);
+                TestCase.assertFalse(opened.hasRemaining());
+                TestCase.assertEquals(ByteBuffer.wrap(cipher), sealed);
+            }
+        }
+
+        byte[] noAdditionalData = aeadBytes.encrypt(lazySodium.bytes(PASSWORD), null, nPub, key, AEAD.Method.XCHACHA20_POLY1305_IETF);
+        TestCase.assertEquals(PASSWORD, lazySodium.decrypt(encoder.encode(noAdditionalData), null, nPub, key, AEAD.Method.XCHACHA20_POLY1305_IETF));
+    }
+
+    @Test(expected = AEADBadTagException.class)
+    public void bytesRejectWrongAdditionalData() throws Exception {
+        AEAD.LazyBytes aeadBytes = (AEAD.LazyBytes) lazySodium;
+        Key key = lazySodium.keygen(AEAD.Method.CHACHA20_POLY1305_IETF);
+        byte[] nPub = lazySodium.nonce(AEAD.CHACHA20POLY1305_IETF_NPUBBYTES);
+        byte[] cipher = aeadBytes.encrypt(lazySodium.bytes(PASSWORD), lazySodium.bytes("a"), nPub, key, AEAD.Method.CHACHA20_POLY1305_IETF);
+        aeadBytes.decrypt(cipher, lazySodium.bytes("b"), nPub, key, AEAD.Method.CHACHA20_POLY1305_IETF);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void encryptSecureKeyWithWrongNonce() throws SodiumException {
+        Key key = lazySodium.keygen(AEAD.Method.XCHACHA20_POLY1305_IETF);
+        byte[] nPub = lazySodium.nonce(AEAD.CHACHA20POLY1305_IETF_NPUBBYTES);
+        try (SecureKey secureKey = SecureKey.fromKey(lazySodium, key)) {
+            lazySodium.encrypt(PASSWORD, null, nPub, secureKey, AEAD.Method.XCHACHA20_POLY1305_IETF);
+        }
+    }
+
+    @Test
+    public void bytesWithNonceSequence() throws Exception {
+        AEAD.LazyBytes aeadBytes = (AEAD.LazyBytes) lazySodium;
+        Key key = lazySodium.keygen(AEAD.Method.CHACHA20_POLY1305_IETF);
+        NonceSequence nonces = new NonceSequence(AEAD.CHACHA20POLY1305_IETF_NPUBBYTES);
+        byte[] ad = lazySodium.bytes("a");
+
+        byte[] cipher = aeadBytes.encrypt(lazySodium.bytes(PASSWORD), ad, nonces, key, AEAD.Method.CHACHA20_POLY1305_IETF);
+        byte[] nPub = new byte[AEAD.CHACHA20POLY1305_IETF_NPUBBYTES];
+        TestCase.assertTrue(Arrays.equals(aeadBytes.encrypt(lazySodium.bytes(PASSWORD), ad, nPub, key, AEAD.Method.CHACHA20_POLY1305_IETF),
+                Arrays.copyOfRange(cipher, nPub.length, cipher.length)));
+        TestCase.assertEquals(PASSWORD, lazySodium.str(aeadBytes.decrypt(cipher, ad, key, AEAD.Method.CHACHA20_POLY1305_IETF)));
+
+        try {
+            aeadBytes.encrypt(lazySodium.bytes(PASSWORD), ad, nonces, key, AEAD.Method.XCHACHA20_POLY1305_IETF);
+            TestCase.fail("Encrypted with nonces of the wrong size.");
+        } catch (SodiumException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void encryptAESAfterNm() throws AEADBadTagException {
+        if (lazySodium.cryptoAeadAES256GCMIsAvailable()) {
+            Key key = lazySodium.keygen(AEAD.Method.AES256GCM);
+            byte[] nPub = lazySodium.nonce(AEAD.AES256GCM_NPUBBYTES);
+            byte[] message = lazySodium.bytes(PASSWORD);
+            AEAD.StateAES state = new AEAD.StateAES();
+            TestCase.assertEquals(0, Pointer.nativeValue(state.getPointer()) % 16);
+            TestCase.assertTrue(lazySodium.cryptoAeadAES256GCMBeforeNm(state, key.getAsBytes()));
+
+            byte[] cipher = new byte[message.length + AEAD.AES256GCM_ABYTES];
+            TestCase.assertTrue(lazySodium.cryptoAeadAES256GCMEncryptAfterNm(cipher, null, message, message.length, null, 0, null, nPub, state));
+            TestCase.assertEquals(lazySodium.encrypt(PASSWORD, null, nPub, key, AEAD.Method.AES256GCM), encoder.encode(cipher));
+
+            byte[] decrypted = new byte[message.length];
+            TestCase.assertTrue(lazySodium.cryptoAeadAES256GCMDecryptAfterNm(decrypted, null, null, cipher, cipher.length, null, 0, nPub, state));
+            TestCase.assertTrue(Arrays.equals(message, decrypted));
+        }
+    }
+
 }
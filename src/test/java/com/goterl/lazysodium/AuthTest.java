@@ -14,6 +14,8 @@ import com.goterl.lazysodium.utils.Key;
 import junit.framework.TestCase;
 import org.junit.Test;
 
+import java.util.Arrays;
+
 import static org.junit.Assert.assertTrue;
 
 public class AuthTest extends BaseTest {
@@ -148,4 +150,19 @@ public class AuthTest extends BaseTest {
         boolean isTrue = lazySodium.cryptoAuthHMACShaVerify(Auth.Type.SHA512256, sha, m + m2 + m3, k);
         assertTrue(isTrue);
     }
+
+    @Test
+    public void authWithinFrame() {
+        byte[] key = lazySodium.cryptoAuthKeygen().getAsBytes();
+        byte[] message = lazySodium.bytes("Authenticate part of a frame");
+
+        byte[] frame = new byte[message.length + Auth.BYTES];
+        System.arraycopy(message, 0, frame, 0, message.length);
+        assertTrue(lazySodium.cryptoAuth(frame, message.length, frame, 0, message.length, key));
+        assertTrue(lazySodium.cryptoAuthVerify(frame, message.length, frame, 0, message.length, key));
+
+        byte[] tag = Arrays.copyOfRange(frame, message.length, frame.length);
+        assertTrue(lazySodium.cryptoAuthVerify(tag, message, message.length, key));
+    }
+
 }
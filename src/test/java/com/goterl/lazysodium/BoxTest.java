@@ -12,11 +12,18 @@ import com.goterl.lazysodium.exceptions.SodiumException;
 import com.goterl.lazysodium.interfaces.Box;
 import com.goterl.lazysodium.utils.DetachedDecrypt;
 import com.goterl.lazysodium.utils.DetachedEncrypt;
+import com.goterl.lazysodium.utils.Hex;
 import com.goterl.lazysodium.utils.KeyPair;
+import com.goterl.lazysodium.utils.Key;
+import com.goterl.lazysodium.utils.NonceSequence;
 import junit.framework.TestCase;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
 import static org.junit.Assert.assertNotNull;
 
 /**
@@ -144,4 +151,113 @@ public class BoxTest extends BaseTest {
         // Public-private key encryption complete!
         TestCase.assertEquals(message, decryptedMessage);
     }
+
+    @Test
+    public void encryptWithinFrame() throws SodiumException {
+        KeyPair client = cryptoBoxLazy.cryptoBoxKeypair();
+        KeyPair server = cryptoBoxLazy.cryptoBoxKeypair();
+        byte[] nonce = lazySodium.nonce(Box.NONCEBYTES);
+        byte[] message = lazySodium.bytes("Boxed inside a frame");
+
+        byte[] frame = new byte[2 + message.length + Box.MACBYTES];
+        System.arraycopy(message, 0, frame, 2, message.length);
+        TestCase.assertTrue(lazySodium.cryptoBoxEasy(frame, 2, frame, 2, message.length, nonce,
+                server.getPublicKey().getAsBytes(), client.getSecretKey().getAsBytes()));
+
+        byte[] opened = new byte[message.length];
+        TestCase.assertTrue(lazySodium.cryptoBoxOpenEasy(opened, 0, frame, 2, frame.length - 2, nonce,
+                client.getPublicKey().getAsBytes(), server.getSecretKey().getAsBytes()));
+        TestCase.assertEquals(lazySodium.str(message), lazySodium.str(opened));
+    }
+
+    @Test
+    public void bytesMatchStrings() throws SodiumException {
+        Box.LazyBytes boxBytes = (Box.LazyBytes) lazySodium;
+        KeyPair client = cryptoBoxLazy.cryptoBoxKeypair();
+        KeyPair server = cryptoBoxLazy.cryptoBoxKeypair();
+        KeyPair clientToServer = new KeyPair(server.getPublicKey(), client.getSecretKey());
+        KeyPair serverFromClient = new KeyPair(client.getPublicKey(), server.getSecretKey());
+        byte[] nonce = lazySodium.nonce(Box.NONCEBYTES);
+        String message = "Hello server";
+
+        byte[] cipher = boxBytes.cryptoBoxEasy(lazySodium.bytes(message), nonce, clientToServer);
+        TestCase.assertEquals(cryptoBoxLazy.cryptoBoxEasy(message, nonce, clientToServer), LazySodium.toHex(cipher));
+        TestCase.assertEquals(message, lazySodium.str(boxBytes.cryptoBoxOpenEasy(cipher, nonce, serverFromClient)));
+
+        Key sharedKey = boxBytes.cryptoBoxBeforeNmKey(serverFromClient);
+        TestCase.assertEquals(cryptoBoxLazy.cryptoBoxBeforeNm(clientToServer), sharedKey.getAsHexString());
+        TestCase.assertEquals(message, lazySodium.str(boxBytes.cryptoBoxOpenEasyAfterNm(cipher, nonce, sharedKey)));
+        TestCase.assertEquals(LazySodium.toHex(cipher),
+                LazySodium.toHex(boxBytes.cryptoBoxEasyAfterNm(lazySodium.bytes(message), nonce, sharedKey)));
+
+        byte[] sealed = boxBytes.cryptoBoxSealEasy(lazySodium.bytes(message), server.getPublicKey());
+        TestCase.assertEquals(message, lazySodium.str(boxBytes.cryptoBoxSealOpenEasy(sealed, server)));
+        TestCase.assertEquals(message, cryptoBoxLazy.cryptoBoxSealOpenEasy(LazySodium.toHex(sealed), server));
+    }
+
+    @Test
+    public void bytesWithNonceSequence() throws SodiumException {
+        Box.LazyBytes boxBytes = (Box.LazyBytes) lazySodium;
+        KeyPair client = cryptoBoxLazy.cryptoBoxKeypair();
+        KeyPair server = cryptoBoxLazy.cryptoBoxKeypair();
+        KeyPair clientToServer = new KeyPair(server.getPublicKey(), client.getSecretKey());
+        KeyPair serverFromClient = new KeyPair(client.getPublicKey(), server.getSecretKey());
+        NonceSequence nonces = new NonceSequence(lazySodium, Box.NONCEBYTES);
+        byte[] message = lazySodium.bytes("Hello server");
+
+        byte[] cipher = boxBytes.cryptoBoxEasy(message, nonces, clientToServer);
+        TestCase.assertEquals(Box.NONCEBYTES + Box.MACBYTES + message.length, cipher.length);
+        TestCase.assertEquals("Hello server", lazySodium.str(boxBytes.cryptoBoxOpenEasy(cipher, serverFromClient)));
+
+        Key sharedKey = boxBytes.cryptoBoxBeforeNmKey(serverFromClient);
+        byte[] next = boxBytes.cryptoBoxEasyAfterNm(message, nonces, sharedKey);
+        TestCase.assertEquals("Hello server", lazySodium.str(boxBytes.cryptoBoxOpenEasyAfterNm(next, sharedKey)));
+        TestCase.assertEquals("Hello server", lazySodium.str(boxBytes.cryptoBoxOpenEasyAfterNm(cipher, sharedKey)));
+    }
+
+    @Test
+    public void peersNonceSequencesNeverCollide() throws SodiumException {
+        Box.LazyBytes boxBytes = (Box.LazyBytes) lazySodium;
+        KeyPair client = cryptoBoxLazy.cryptoBoxKeypair();
+        KeyPair server = cryptoBoxLazy.cryptoBoxKeypair();
+        // Both peers end up with the same key.
+        Key clientKey = boxBytes.cryptoBoxBeforeNmKey(new KeyPair(server.getPublicKey(), client.getSecretKey()));
+        Key serverKey = boxBytes.cryptoBoxBeforeNmKey(new KeyPair(client.getPublicKey(), server.getSecretKey()));
+        TestCase.assertEquals(clientKey, serverKey);
+        NonceSequence clientNonces = new NonceSequence(lazySodium, Box.NONCEBYTES);
+        NonceSequence serverNonces = new NonceSequence(lazySodium, Box.NONCEBYTES);
+        byte[] message = lazySodium.bytes("ping");
+
+        Set<String> nonces = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            byte[] fromClient = boxBytes.cryptoBoxEasyAfterNm(message, clientNonces, clientKey);
+            byte[] fromServer = boxBytes.cryptoBoxEasyAfterNm(message, serverNonces, serverKey);
+            TestCase.assertTrue(nonces.add(Hex.encode(Arrays.copyOf(fromClient, Box.NONCEBYTES))));
+            TestCase.assertTrue(nonces.add(Hex.encode(Arrays.copyOf(fromServer, Box.NONCEBYTES))));
+        }
+
+        // Sequences from zero would collide, so they are turned away.
+        for (NonceSequence fromZero : new NonceSequence[] {
+                new NonceSequence(Box.NONCEBYTES), new NonceSequence(new byte[Box.NONCEBYTES])}) {
+            try {
+                boxBytes.cryptoBoxEasyAfterNm(message, fromZero, clientKey);
+                TestCase.fail("Took a sequence from zero.");
+            } catch (SodiumException expected) {
+                // Expected.
+            }
+            try {
+                boxBytes.cryptoBoxEasy(message, fromZero, new KeyPair(server.getPublicKey(), client.getSecretKey()));
+                TestCase.fail("Took a sequence from zero.");
+            } catch (SodiumException expected) {
+                // Expected.
+            }
+        }
+    }
+
+    @Test(expected = SodiumException.class)
+    public void bytesRejectShortCipher() throws SodiumException {
+        KeyPair keyPair = cryptoBoxLazy.cryptoBoxKeypair();
+        ((Box.LazyBytes) lazySodium).cryptoBoxOpenEasy(new byte[Box.MACBYTES - 1], lazySodium.nonce(Box.NONCEBYTES), keyPair);
+    }
+
 }
@@ -14,6 +14,8 @@ import com.goterl.lazysodium.utils.Key;
 import junit.framework.TestCase;
 import org.junit.Test;
 
+import java.util.Arrays;
+
 public class GenericHashTest extends BaseTest {
 
     @Test
@@ -87,5 +89,25 @@ public class GenericHashTest extends BaseTest {
         return hash;
     }
 
+    @Test
+    public void hashWithinFrame() {
+        byte[] message = lazySodium.bytes("Only the middle is hashed");
+        byte[] expected = new byte[GenericHash.BYTES];
+        lazySodium.cryptoGenericHash(expected, expected.length, message, message.length);
+
+        byte[] frame = new byte[message.length + 20];
+        System.arraycopy(message, 0, frame, 10, message.length);
+        byte[] out = new byte[GenericHash.BYTES + 5];
+        TestCase.assertTrue(lazySodium.cryptoGenericHash(out, 5, GenericHash.BYTES, frame, 10, message.length));
+        TestCase.assertTrue(Arrays.equals(expected, Arrays.copyOfRange(out, 5, out.length)));
+
+        byte[] state = new byte[lazySodium.cryptoGenericHashStateBytes()];
+        byte[] multiPart = new byte[GenericHash.BYTES];
+        lazySodium.cryptoGenericHashInit(state, GenericHash.BYTES);
+        lazySodium.cryptoGenericHashUpdate(state, frame, 10, 4);
+        lazySodium.cryptoGenericHashUpdate(state, frame, 14, message.length - 4);
+        lazySodium.cryptoGenericHashFinal(state, multiPart, multiPart.length);
+        TestCase.assertTrue(Arrays.equals(expected, multiPart));
+    }
 
 }
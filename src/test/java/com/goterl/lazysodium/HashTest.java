@@ -13,6 +13,8 @@ import com.goterl.lazysodium.interfaces.Hash;
 import junit.framework.TestCase;
 import org.junit.Test;
 
+import java.util.Arrays;
+
 public class HashTest extends BaseTest {
 
 
@@ -67,4 +69,38 @@ public class HashTest extends BaseTest {
 
         TestCase.assertNotNull(hash);
     }
+
+    @Test
+    public void sha256WithinFrame() {
+        byte[] message = lazySodium.bytes(MESSAGE);
+        byte[] expected = new byte[Hash.SHA256_BYTES];
+        lazySodium.cryptoHashSha256(expected, message, message.length);
+
+        byte[] frame = new byte[message.length + 2];
+        System.arraycopy(message, 0, frame, 1, message.length);
+        byte[] out = new byte[Hash.SHA256_BYTES];
+        TestCase.assertTrue(lazySodium.cryptoHashSha256(out, 0, frame, 1, message.length));
+        TestCase.assertTrue(Arrays.equals(expected, out));
+
+        Hash.State256 state = new Hash.State256.ByReference();
+        lazySodium.cryptoHashSha256Init(state);
+        lazySodium.cryptoHashSha256Update(state, frame, 1, M1.length());
+        lazySodium.cryptoHashSha256Update(state, frame, 1 + M1.length(), M2.length());
+        byte[] multiPart = new byte[Hash.SHA256_BYTES];
+        lazySodium.cryptoHashSha256Final(state, multiPart);
+        TestCase.assertTrue(Arrays.equals(expected, multiPart));
+    }
+
+    @Test
+    public void sha512WithinFrame() {
+        byte[] message = lazySodium.bytes(MESSAGE);
+        byte[] expected = new byte[Hash.SHA512_BYTES];
+        lazySodium.cryptoHashSha512(expected, message, message.length);
+
+        byte[] frame = new byte[message.length + Hash.SHA512_BYTES];
+        System.arraycopy(message, 0, frame, 0, message.length);
+        TestCase.assertTrue(lazySodium.cryptoHashSha512(frame, message.length, frame, 0, message.length));
+        TestCase.assertTrue(Arrays.equals(expected, Arrays.copyOfRange(frame, message.length, frame.length)));
+    }
+
 }
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium;
+
+import com.goterl.lazysodium.exceptions.SodiumException;
+import com.goterl.lazysodium.interfaces.AEAD;
+import com.goterl.lazysodium.interfaces.SecretBox;
+import com.goterl.lazysodium.utils.Key;
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class HeapScratchTest extends BaseTest {
+
+    private static final String[] STRINGS = {
+            "",
+            "plain ascii",
+            "café über €中文",
+            "😀 emoji",
+            "unpaired \ud83d high",
+            "unpaired \ude00 low",
+            "\ude00\ud83d reversed",
+            "ends with \ud83d"
+    };
+
+    @Test
+    public void encodesLikeGetBytes() {
+        HeapScratch scratch = HeapScratch.acquire();
+        try {
+            for (String s : STRINGS) {
+                byte[] expected = s.getBytes(StandardCharsets.UTF_8);
+                byte[] encoded = scratch.encode(HeapScratch.MESSAGE, s, StandardCharsets.UTF_8);
+                TestCase.assertEquals(expected.length, scratch.length(HeapScratch.MESSAGE));
+                TestCase.assertTrue(Arrays.equals(expected, Arrays.copyOf(encoded, expected.length)));
+            }
+        } finally {
+            scratch.release();
+        }
+    }
+
+    @Test
+    public void nestedUseGetsAnotherScratch() {
+        HeapScratch outer = HeapScratch.acquire();
+        try {
+            HeapScratch inner = HeapScratch.acquire();
+            TestCase.assertNotSame(outer, inner);
+            inner.release();
+        } finally {
+            outer.release();
+        }
+        HeapScratch again = HeapScratch.acquire();
+        TestCase.assertSame(outer, again);
+        again.release();
+    }
+
+    @Test
+    public void releaseWipesWhatWasUsed() {
+        HeapScratch scratch = HeapScratch.acquire();
+        byte[] array = scratch.encode(HeapScratch.MESSAGE, "secret", StandardCharsets.UTF_8);
+        scratch.release();
+        for (int i = 0; i < 6; i++) {
+            TestCase.assertEquals(0, array[i]);
+        }
+    }
+
+    @Test
+    public void stringMethodsRoundTrip() throws Exception {
+        Key key = lazySodium.cryptoSecretBoxKeygen();
+        byte[] nonce = lazySodium.nonce(SecretBox.NONCEBYTES);
+        byte[] nPub = lazySodium.nonce(AEAD.XCHACHA20POLY1305_IETF_NPUBBYTES);
+        char[] big = new char[HeapScratch.MAX_KEPT_BYTES];
+        Arrays.fill(big, 'é');
+        String[] messages = Arrays.copyOf(STRINGS, STRINGS.length + 1);
+        messages[STRINGS.length] = new String(big);
+        for (String m : messages) {
+            String expected = new String(m.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+
+            String cipher = lazySodium.cryptoSecretBoxEasy(m, nonce, key);
+            TestCase.assertEquals(expected, lazySodium.cryptoSecretBoxOpenEasy(cipher, nonce, key));
+
+            cipher = lazySodium.encrypt(m, m, nPub, key, AEAD.Method.XCHACHA20_POLY1305_IETF);
+            TestCase.assertEquals(expected, lazySodium.decrypt(cipher, m, nPub, key, AEAD.Method.XCHACHA20_POLY1305_IETF));
+
+            byte[] hash = new byte[32];
+            byte[] in = m.getBytes(StandardCharsets.UTF_8);
+            lazySodium.cryptoGenericHash(hash, hash.length, in, in.length);
+            TestCase.assertEquals(lazySodium.toHexStr(hash), lazySodium.cryptoGenericHash(m));
+        }
+    }
+
+    @Test(expected = SodiumException.class)
+    public void shortCipherIsRejected() throws SodiumException {
+        lazySodium.cryptoSecretBoxOpenEasy("00", lazySodium.nonce(SecretBox.NONCEBYTES), lazySodium.cryptoSecretBoxKeygen());
+    }
+
+}
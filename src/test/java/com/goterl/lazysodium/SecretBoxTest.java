@@ -11,10 +11,15 @@ package com.goterl.lazysodium;
 import com.goterl.lazysodium.exceptions.SodiumException;
 import com.goterl.lazysodium.interfaces.SecretBox;
 import com.goterl.lazysodium.utils.Key;
+import com.goterl.lazysodium.utils.NonceSequence;
+import com.goterl.lazysodium.utils.SecureKey;
 import junit.framework.TestCase;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 public class SecretBoxTest extends BaseTest {
 
 
@@ -41,4 +46,138 @@ public class SecretBoxTest extends BaseTest {
         TestCase.assertEquals(decrypted, message);
     }
 
+    @Test
+    public void encryptWithinFrame() {
+        byte[] key = lazySodium.cryptoSecretBoxKeygen().getAsBytes();
+        byte[] nonce = lazySodium.nonce(SecretBox.NONCEBYTES);
+        byte[] message = lazySodium.bytes("A message inside a larger frame");
+
+        byte[] expected = new byte[message.length + SecretBox.MACBYTES];
+        lazySodium.cryptoSecretBoxEasy(expected, message, message.length, nonce, key);
+
+        // Header of 4 bytes, then the message, then room for the mac.
+        byte[] frame = new byte[4 + message.length + SecretBox.MACBYTES];
+        System.arraycopy(message, 0, frame, 4, message.length);
+        TestCase.assertTrue(lazySodium.cryptoSecretBoxEasy(frame, 4, frame, 4, message.length, nonce, key));
+        TestCase.assertTrue(Arrays.equals(expected, Arrays.copyOfRange(frame, 4, frame.length)));
+
+        TestCase.assertTrue(lazySodium.cryptoSecretBoxOpenEasy(frame, 4, frame, 4, expected.length, nonce, key));
+        TestCase.assertTrue(Arrays.equals(message, Arrays.copyOfRange(frame, 4, 4 + message.length)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void encryptWithinFrameOutOfBounds() {
+        byte[] key = lazySodium.cryptoSecretBoxKeygen().getAsBytes();
+        byte[] nonce = lazySodium.nonce(SecretBox.NONCEBYTES);
+        byte[] frame = new byte[32];
+        lazySodium.cryptoSecretBoxEasy(frame, 8, frame, 0, 16, nonce, key);
+    }
+
+    @Test
+    public void encryptInPlace() {
+        byte[] key = lazySodium.cryptoSecretBoxKeygen().getAsBytes();
+        byte[] nonce = lazySodium.nonce(SecretBox.NONCEBYTES);
+        byte[] message = lazySodium.bytes("Encrypted where it lies");
+
+        byte[] expected = new byte[message.length + SecretBox.MACBYTES];
+        lazySodium.cryptoSecretBoxEasy(expected, message, message.length, nonce, key);
+
+        byte[] buffer = new byte[SecretBox.MACBYTES + message.length];
+        System.arraycopy(message, 0, buffer, SecretBox.MACBYTES, message.length);
+        TestCase.assertTrue(lazySodium.cryptoSecretBoxEasyInPlace(buffer, SecretBox.MACBYTES, message.length, nonce, key));
+        TestCase.assertTrue(Arrays.equals(expected, buffer));
+
+        TestCase.assertTrue(lazySodium.cryptoSecretBoxOpenEasyInPlace(buffer, 0, buffer.length, nonce, key));
+        TestCase.assertTrue(Arrays.equals(message, Arrays.copyOfRange(buffer, SecretBox.MACBYTES, buffer.length)));
+    }
+
+    @Test
+    public void encryptInPlaceDirectBuffer() {
+        byte[] key = lazySodium.cryptoSecretBoxKeygen().getAsBytes();
+        byte[] nonce = lazySodium.nonce(SecretBox.NONCEBYTES);
+        byte[] message = lazySodium.randomBytesBuf(100_000);
+
+        byte[] expected = new byte[message.length + SecretBox.MACBYTES];
+        lazySodium.cryptoSecretBoxEasy(expected, message, message.length, nonce, key);
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(SecretBox.MACBYTES + message.length);
+        buffer.position(SecretBox.MACBYTES);
+        buffer.put(message);
+        buffer.clear();
+        TestCase.assertTrue(lazySodium.cryptoSecretBoxEasyInPlace(buffer, SecretBox.MACBYTES, message.length, nonce, key));
+        byte[] cipherText = new byte[expected.length];
+        buffer.get(cipherText).clear();
+        TestCase.assertTrue(Arrays.equals(expected, cipherText));
+
+        // A tampered cipher text is rejected and left as it was.
+        buffer.put(100, (byte) (buffer.get(100) ^ 1));
+        TestCase.assertFalse(lazySodium.cryptoSecretBoxOpenEasyInPlace(buffer, 0, expected.length, nonce, key));
+        TestCase.assertEquals((byte) (cipherText[100] ^ 1), buffer.get(100));
+        buffer.put(100, cipherText[100]);
+
+        TestCase.assertTrue(lazySodium.cryptoSecretBoxOpenEasyInPlace(buffer, 0, expected.length, nonce, key));
+        byte[] decrypted = new byte[message.length];
+        buffer.position(SecretBox.MACBYTES);
+        buffer.get(decrypted);
+        TestCase.assertTrue(Arrays.equals(message, decrypted));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void encryptInPlaceWithoutHeadroom() {
+        byte[] key = lazySodium.cryptoSecretBoxKeygen().getAsBytes();
+        byte[] nonce = lazySodium.nonce(SecretBox.NONCEBYTES);
+        lazySodium.cryptoSecretBoxEasyInPlace(new byte[64], 8, 32, nonce, key);
+    }
+
+    @Test
+    public void bytesMatchStrings() throws SodiumException {
+        SecretBox.LazyBytes secretBoxBytes = (SecretBox.LazyBytes) lazySodium;
+        Key key = secretBoxLazy.cryptoSecretBoxKeygen();
+        byte[] nonce = lazySodium.nonce(SecretBox.NONCEBYTES);
+        String message = "This is a super secret message.";
+
+        byte[] cipher = secretBoxBytes.cryptoSecretBoxEasy(lazySodium.bytes(message), nonce, key);
+        TestCase.assertEquals(secretBoxLazy.cryptoSecretBoxEasy(message, nonce, key), LazySodium.toHex(cipher));
+        TestCase.assertEquals(message, lazySodium.str(secretBoxBytes.cryptoSecretBoxOpenEasy(cipher, nonce, key)));
+
+        try (SecureKey secureKey = SecureKey.fromKey(lazySodium, key)) {
+            TestCase.assertTrue(Arrays.equals(cipher, secretBoxBytes.cryptoSecretBoxEasy(lazySodium.bytes(message), nonce, secureKey)));
+            for (ByteBuffer in : Arrays.asList(ByteBuffer.allocate(cipher.length), ByteBuffer.allocateDirect(cipher.length))) {
+                in.put(cipher).flip();
+                ByteBuffer opened = secretBoxBytes.cryptoSecretBoxOpenEasy(in, nonce, secureKey);
+                TestCase.assertFalse(in.hasRemaining());
+                TestCase.assertEquals(in.isDirect(), opened.isDirect());
+
+                ByteBuffer sealed = secretBoxBytes.cryptoSecretBoxEasy(opened, nonce, key);
+                TestCase.assertFalse(opened.hasRemaining());
+                byte[] sealedBytes = new byte[sealed.remaining()];
+                sealed.get(sealedBytes);
+                TestCase.assertTrue(Arrays.equals(cipher, sealedBytes));
+            }
+        }
+    }
+
+    @Test
+    public void bytesWithNonceSequence() throws SodiumException {
+        SecretBox.LazyBytes secretBoxBytes = (SecretBox.LazyBytes) lazySodium;
+        Key key = secretBoxLazy.cryptoSecretBoxKeygen();
+        byte[] start = lazySodium.nonce(SecretBox.NONCEBYTES);
+        NonceSequence nonces = new NonceSequence(start);
+        byte[] message = lazySodium.bytes("This is a super secret message.");
+
+        byte[] first = secretBoxBytes.cryptoSecretBoxEasy(message, nonces, key);
+        byte[] second = secretBoxBytes.cryptoSecretBoxEasy(message, nonces, key);
+        TestCase.assertTrue(Arrays.equals(start, Arrays.copyOf(first, SecretBox.NONCEBYTES)));
+        TestCase.assertTrue(Arrays.equals(secretBoxBytes.cryptoSecretBoxEasy(message, start, key),
+                Arrays.copyOfRange(first, SecretBox.NONCEBYTES, first.length)));
+        TestCase.assertFalse(Arrays.equals(first, second));
+        TestCase.assertTrue(Arrays.equals(message, secretBoxBytes.cryptoSecretBoxOpenEasy(first, key)));
+        TestCase.assertTrue(Arrays.equals(message, secretBoxBytes.cryptoSecretBoxOpenEasy(second, key)));
+    }
+
+    @Test(expected = SodiumException.class)
+    public void bytesRejectWrongKeySize() throws SodiumException {
+        ((SecretBox.LazyBytes) lazySodium).cryptoSecretBoxEasy(new byte[8], lazySodium.nonce(SecretBox.NONCEBYTES), Key.fromBytes(new byte[16]));
+    }
+
 }
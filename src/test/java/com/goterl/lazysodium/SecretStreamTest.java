@@ -14,6 +14,8 @@ import com.goterl.lazysodium.utils.Key;
 import junit.framework.TestCase;
 import org.junit.Test;
 
+import java.util.Arrays;
+
 public class SecretStreamTest extends BaseTest {
 
     private String message1 = "Arbitrary data to encrypt";
@@ -52,7 +54,23 @@ public class SecretStreamTest extends BaseTest {
 
     }
 
+    @Test
+    public void pushWithinFrame() throws SodiumException {
+        Key key = lazySodium.cryptoSecretStreamKeygen();
+        byte[] header = new byte[SecretStream.HEADERBYTES];
+        SecretStream.State pushState = lazySodium.cryptoSecretStreamInitPush(header, key);
+        byte[] message = lazySodium.bytes(message1);
 
+        byte[] frame = new byte[4 + message.length + SecretStream.ABYTES];
+        System.arraycopy(message, 0, frame, 4, message.length);
+        TestCase.assertTrue(lazySodium.cryptoSecretStreamPush(pushState, frame, 4, frame, 4, message.length, SecretStream.TAG_FINAL));
 
+        SecretStream.State pullState = lazySodium.cryptoSecretStreamInitPull(header, key);
+        byte[] decrypted = new byte[message.length + 2];
+        byte[] tag = new byte[1];
+        TestCase.assertTrue(lazySodium.cryptoSecretStreamPull(pullState, decrypted, 2, tag, frame, 4, frame.length - 4));
+        TestCase.assertEquals(message1, lazySodium.str(Arrays.copyOfRange(decrypted, 2, decrypted.length)));
+        TestCase.assertEquals(SecretStream.TAG_FINAL, tag[0]);
+    }
 
 }
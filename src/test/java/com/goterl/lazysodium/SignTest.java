@@ -17,6 +17,11 @@ import junit.framework.TestCase;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import static junit.framework.TestCase.assertEquals;
 import static junit.framework.TestCase.assertTrue;
 import static org.junit.Assert.assertNotNull;
@@ -71,6 +76,20 @@ public class SignTest extends BaseTest {
         TestCase.assertNotNull(resultingMessage);
     }
 
+    @Test
+    public void signMessageRoundTrip() throws SodiumException {
+        String message = "Sign this – and this too ✓";
+        KeyPair keyPair = cryptoSignLazy.cryptoSignKeypair();
+
+        String signed = cryptoSignLazy.cryptoSign(message, keyPair.getSecretKey());
+        assertEquals(signed, cryptoSignLazy.cryptoSign(message, keyPair.getSecretKey().getAsHexString()));
+        assertEquals(message, cryptoSignLazy.cryptoSignOpen(signed, keyPair.getPublicKey()));
+
+        KeyPair other = cryptoSignLazy.cryptoSignKeypair();
+        TestCase.assertNull(cryptoSignLazy.cryptoSignOpen(signed, other.getPublicKey()));
+        TestCase.assertNull(cryptoSignLazy.cryptoSignOpen("00", keyPair.getPublicKey()));
+    }
+
 
     @Test
     public void signDetached() throws SodiumException {
@@ -158,4 +177,57 @@ public class SignTest extends BaseTest {
         assertTrue("cryptoSignFinalVerify did not work", verified);
     }
 
+    @Test
+    public void signWithinFrame() throws SodiumException {
+        KeyPair keyPair = lazySodium.cryptoSignKeypair();
+        byte[] message = lazySodium.bytes("Sign only part of this frame");
+
+        // The signature goes right after the message in the same frame.
+        byte[] frame = new byte[3 + message.length + Sign.BYTES];
+        System.arraycopy(message, 0, frame, 3, message.length);
+        int signatureOff = 3 + message.length;
+        assertTrue(lazySodium.cryptoSignDetached(frame, signatureOff, frame, 3, message.length, keyPair.getSecretKey().getAsBytes()));
+
+        byte[] expected = new byte[Sign.BYTES];
+        lazySodium.cryptoSignDetached(expected, message, message.length, keyPair.getSecretKey().getAsBytes());
+        assertTrue(Arrays.equals(expected, Arrays.copyOfRange(frame, signatureOff, frame.length)));
+        assertTrue(lazySodium.cryptoSignVerifyDetached(frame, signatureOff, frame, 3, message.length, keyPair.getPublicKey().getAsBytes()));
+
+        frame[3] ^= 1;
+        TestCase.assertFalse(lazySodium.cryptoSignVerifyDetached(frame, signatureOff, frame, 3, message.length, keyPair.getPublicKey().getAsBytes()));
+    }
+
+    @Test
+    public void verifyBatch() throws SodiumException {
+        KeyPair[] signers = {lazySodium.cryptoSignKeypair(), lazySodium.cryptoSignKeypair()};
+        int count = 600;
+        byte[][] signatures = new byte[count][];
+        byte[][] messages = new byte[count][];
+        byte[][] publicKeys = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            KeyPair signer = signers[i % signers.length];
+            messages[i] = lazySodium.bytes("Event " + i);
+            signatures[i] = new byte[Sign.BYTES];
+            lazySodium.cryptoSignDetached(signatures[i], messages[i], messages[i].length, signer.getSecretKey().getAsBytes());
+            publicKeys[i] = signer.getPublicKey().getAsBytes();
+        }
+        messages[3][0] ^= 1;
+        publicKeys[10] = signers[1].getPublicKey().getAsBytes();
+        signatures[599] = new byte[Sign.BYTES - 1];
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (BitSet valid : Arrays.asList(
+                    lazySodium.cryptoSignVerifyDetachedBatch(signatures, messages, publicKeys),
+                    lazySodium.cryptoSignVerifyDetachedBatch(signatures, messages, publicKeys, executor))) {
+                assertEquals(count - 3, valid.cardinality());
+                TestCase.assertFalse(valid.get(3));
+                TestCase.assertFalse(valid.get(10));
+                TestCase.assertFalse(valid.get(599));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
 }
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.streams;
+
+import com.goterl.lazysodium.BaseTest;
+import com.goterl.lazysodium.exceptions.SodiumException;
+import com.goterl.lazysodium.interfaces.AEAD;
+import com.goterl.lazysodium.utils.Key;
+import junit.framework.TestCase;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+public class ChunkedFileCipherTest extends BaseTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTrip() throws Exception {
+        Key key = lazySodium.keygen(AEAD.Method.XCHACHA20_POLY1305_IETF);
+        ChunkedFileCipher cipher = new ChunkedFileCipher(lazySodium, 1000, ForkJoinPool.commonPool());
+        for (int size : new int[] {0, 1, 999, 1000, 1001, 3000, 2_500_500}) {
+            byte[] contents = lazySodium.randomBytesBuf(size);
+            Path encrypted = folder.newFile().toPath();
+            Path decrypted = folder.newFile().toPath();
+
+            cipher.encrypt(write(contents), encrypted, key);
+            TestCase.assertEquals(cipher.encryptedSize(size), Files.size(encrypted));
+            // The chunk size comes from the header.
+            new ChunkedFileCipher(lazySodium).decrypt(encrypted, decrypted, key);
+            TestCase.assertTrue("size " + size, Arrays.equals(contents, Files.readAllBytes(decrypted)));
+        }
+    }
+
+    @Test
+    public void decryptSingleChunks() throws Exception {
+        Key key = lazySodium.keygen(AEAD.Method.XCHACHA20_POLY1305_IETF);
+        ChunkedFileCipher cipher = new ChunkedFileCipher(lazySodium, 100, ForkJoinPool.commonPool());
+        byte[] contents = lazySodium.randomBytesBuf(450);
+        Path encrypted = folder.newFile().toPath();
+        cipher.encrypt(write(contents), encrypted, key);
+
+        try (FileChannel in = FileChannel.open(encrypted, StandardOpenOption.READ)) {
+            TestCase.assertTrue(Arrays.equals(Arrays.copyOfRange(contents, 200, 300), cipher.decryptChunk(in, 2, key)));
+            TestCase.assertTrue(Arrays.equals(Arrays.copyOfRange(contents, 400, 450), cipher.decryptChunk(in, 4, key)));
+            try {
+                cipher.decryptChunk(in, 5, key);
+                TestCase.fail("Decrypted a chunk past the end.");
+            } catch (SodiumException e) {
+                // Expected.
+            }
+        }
+    }
+
+    @Test
+    public void channelsCutOffStaleContents() throws Exception {
+        Key key = lazySodium.keygen(AEAD.Method.XCHACHA20_POLY1305_IETF);
+        ChunkedFileCipher cipher = new ChunkedFileCipher(lazySodium, 100, ForkJoinPool.commonPool());
+        byte[] contents = lazySodium.randomBytesBuf(250);
+        Path source = write(contents);
+        // Both already hold more than will be written to them.
+        Path encrypted = write(new byte[1000]);
+        Path decrypted = write(new byte[1000]);
+
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(encrypted, StandardOpenOption.WRITE)) {
+            cipher.encrypt(in, out, key);
+        }
+        TestCase.assertEquals(cipher.encryptedSize(contents.length), Files.size(encrypted));
+
+        try (FileChannel in = FileChannel.open(encrypted, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(decrypted, StandardOpenOption.WRITE)) {
+            cipher.decrypt(in, out, key);
+        }
+        TestCase.assertTrue(Arrays.equals(contents, Files.readAllBytes(decrypted)));
+    }
+
+    @Test
+    public void damagedFilesAreRejected() throws Exception {
+        Key key = lazySodium.keygen(AEAD.Method.XCHACHA20_POLY1305_IETF);
+        ChunkedFileCipher cipher = new ChunkedFileCipher(lazySodium, 100, ForkJoinPool.commonPool());
+        Path encrypted = folder.newFile().toPath();
+        cipher.encrypt(write(lazySodium.randomBytesBuf(500)), encrypted, key);
+        byte[] file = Files.readAllBytes(encrypted);
+        int cipherChunk = 100 + AEAD.XCHACHA20POLY1305_IETF_ABYTES;
+
+        byte[] tampered = file.clone();
+        tampered[300] ^= 1;
+        assertDecryptFails(cipher, tampered, key);
+
+        // Swap the first two chunks.
+        byte[] swapped = file.clone();
+        System.arraycopy(file, ChunkedFileCipher.HEADERBYTES, swapped, ChunkedFileCipher.HEADERBYTES + cipherChunk, cipherChunk);
+        System.arraycopy(file, ChunkedFileCipher.HEADERBYTES + cipherChunk, swapped, ChunkedFileCipher.HEADERBYTES, cipherChunk);
+        assertDecryptFails(cipher, swapped, key);
+
+        // Drop the final chunk, and cut it short.
+        assertDecryptFails(cipher, Arrays.copyOf(file, ChunkedFileCipher.HEADERBYTES + 5 * cipherChunk), key);
+        assertDecryptFails(cipher, Arrays.copyOf(file, file.length - 1), key);
+        assertDecryptFails(cipher, Arrays.copyOf(file, ChunkedFileCipher.HEADERBYTES), key);
+        assertDecryptFails(cipher, file, lazySodium.keygen(AEAD.Method.XCHACHA20_POLY1305_IETF));
+    }
+
+    @Test
+    public void missingSourceLeavesTheTarget() throws Exception {
+        Key key = lazySodium.keygen(AEAD.Method.XCHACHA20_POLY1305_IETF);
+        ChunkedFileCipher cipher = new ChunkedFileCipher(lazySodium, 100, ForkJoinPool.commonPool());
+        byte[] contents = lazySodium.randomBytesBuf(50);
+        Path target = write(contents);
+        Path missing = folder.getRoot().toPath().resolve("missing");
+
+        for (boolean encrypt : new boolean[] {true, false}) {
+            try {
+                if (encrypt) {
+                    cipher.encrypt(missing, target, key);
+                } else {
+                    cipher.decrypt(missing, target, key);
+                }
+                TestCase.fail("Read a missing file.");
+            } catch (NoSuchFileException expected) {
+                // Expected.
+            }
+            TestCase.assertTrue(Arrays.equals(contents, Files.readAllBytes(target)));
+        }
+    }
+
+    @Test
+    public void sourceCannotBeTheTarget() throws Exception {
+        Key key = lazySodium.keygen(AEAD.Method.XCHACHA20_POLY1305_IETF);
+        ChunkedFileCipher cipher = new ChunkedFileCipher(lazySodium, 100, ForkJoinPool.commonPool());
+        byte[] contents = lazySodium.randomBytesBuf(500);
+        Path file = write(contents);
+        // Through another path to the same file.
+        Path alias = file.getParent().resolve(".").resolve(file.getFileName());
+
+        for (boolean encrypt : new boolean[] {true, false}) {
+            try {
+                if (encrypt) {
+                    cipher.encrypt(file, alias, key);
+                } else {
+                    cipher.decrypt(file, alias, key);
+                }
+                TestCase.fail("Wrote over the source.");
+            } catch (IllegalArgumentException expected) {
+                // Expected.
+            }
+            TestCase.assertTrue(Arrays.equals(contents, Files.readAllBytes(file)));
+        }
+    }
+
+    @Test
+    public void failedDecryptLeavesTheTarget() throws Exception {
+        Key key = lazySodium.keygen(AEAD.Method.XCHACHA20_POLY1305_IETF);
+        ChunkedFileCipher cipher = new ChunkedFileCipher(lazySodium, 100, ForkJoinPool.commonPool());
+        Path encrypted = folder.newFile().toPath();
+        cipher.encrypt(write(lazySodium.randomBytesBuf(500)), encrypted, key);
+        byte[] contents = lazySodium.randomBytesBuf(50);
+        Path target = write(contents);
+
+        try {
+            cipher.decrypt(encrypted, target, lazySodium.keygen(AEAD.Method.XCHACHA20_POLY1305_IETF));
+            TestCase.fail("Decrypted with the wrong key.");
+        } catch (SodiumException expected) {
+            // Expected.
+        }
+        TestCase.assertTrue(Arrays.equals(contents, Files.readAllBytes(target)));
+        // Nothing is left behind next to it either.
+        TestCase.assertEquals(3, folder.getRoot().list().length);
+    }
+
+    private void assertDecryptFails(ChunkedFileCipher cipher, byte[] file, Key key) throws Exception {
+        Path decrypted = folder.getRoot().toPath().resolve("damaged");
+        try {
+            cipher.decrypt(write(file), decrypted, key);
+            TestCase.fail("Decrypted a damaged file.");
+        } catch (SodiumException e) {
+            TestCase.assertFalse(Files.exists(decrypted));
+        }
+    }
+
+    private Path write(byte[] contents) throws Exception {
+        Path path = folder.newFile().toPath();
+        Files.write(path, contents);
+        return path;
+    }
+
+}
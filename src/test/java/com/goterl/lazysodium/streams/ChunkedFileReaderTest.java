@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.streams;
+
+import com.goterl.lazysodium.BaseTest;
+import com.goterl.lazysodium.exceptions.SodiumException;
+import com.goterl.lazysodium.interfaces.AEAD;
+import com.goterl.lazysodium.utils.Key;
+import junit.framework.TestCase;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+public class ChunkedFileReaderTest extends BaseTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readRanges() throws Exception {
+        Key key = lazySodium.keygen(AEAD.Method.XCHACHA20_POLY1305_IETF);
+        byte[] contents = lazySodium.randomBytesBuf(1050);
+        Path encrypted = encrypt(contents, key);
+
+        try (FileChannel in = FileChannel.open(encrypted, StandardOpenOption.READ);
+             ChunkedFileReader reader = new ChunkedFileReader(lazySodium, in, key)) {
+            TestCase.assertEquals(1050, reader.size());
+            int[][] ranges = {{0, 0}, {0, 1}, {0, 100}, {99, 2}, {150, 700}, {1000, 50}, {1049, 1}, {0, 1050}};
+            for (int[] range : ranges) {
+                TestCase.assertTrue(range[0] + "+" + range[1], Arrays.equals(
+                        Arrays.copyOfRange(contents, range[0], range[0] + range[1]),
+                        reader.read(range[0], range[1])));
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(100);
+            TestCase.assertEquals(50, reader.read(buffer, 1000));
+            TestCase.assertEquals(-1, reader.read(buffer, 1050));
+        }
+    }
+
+    @Test
+    public void onlyTheCoveredChunksAreAuthenticated() throws Exception {
+        Key key = lazySodium.keygen(AEAD.Method.XCHACHA20_POLY1305_IETF);
+        byte[] contents = lazySodium.randomBytesBuf(1050);
+        Path encrypted = encrypt(contents, key);
+        byte[] file = Files.readAllBytes(encrypted);
+        // Damage the third chunk.
+        file[ChunkedFileCipher.HEADERBYTES + 2 * (100 + AEAD.XCHACHA20POLY1305_IETF_ABYTES) + 10] ^= 1;
+        Files.write(encrypted, file);
+
+        try (FileChannel in = FileChannel.open(encrypted, StandardOpenOption.READ);
+             ChunkedFileReader reader = new ChunkedFileReader(lazySodium, in, key)) {
+            TestCase.assertTrue(Arrays.equals(Arrays.copyOfRange(contents, 0, 200), reader.read(0, 200)));
+            TestCase.assertTrue(Arrays.equals(Arrays.copyOfRange(contents, 300, 400), reader.read(300, 100)));
+            try {
+                reader.read(150, 100);
+                TestCase.fail("Read a damaged chunk.");
+            } catch (SodiumException e) {
+                // Expected.
+            }
+        }
+    }
+
+    @Test
+    public void truncatedFilesAreRejectedOnOpen() throws Exception {
+        Key key = lazySodium.keygen(AEAD.Method.XCHACHA20_POLY1305_IETF);
+        Path encrypted = encrypt(lazySodium.randomBytesBuf(1050), key);
+        byte[] file = Files.readAllBytes(encrypted);
+        Files.write(encrypted, Arrays.copyOf(file, file.length - 40));
+
+        try (FileChannel in = FileChannel.open(encrypted, StandardOpenOption.READ)) {
+            new ChunkedFileReader(lazySodium, in, key);
+            TestCase.fail("Opened a truncated file.");
+        } catch (SodiumException e) {
+            // Expected.
+        }
+    }
+
+    private Path encrypt(byte[] contents, Key key) throws Exception {
+        Path plain = folder.newFile().toPath();
+        Path encrypted = folder.newFile().toPath();
+        Files.write(plain, contents);
+        new ChunkedFileCipher(lazySodium, 100, ForkJoinPool.commonPool()).encrypt(plain, encrypted, key);
+        return encrypted;
+    }
+
+}
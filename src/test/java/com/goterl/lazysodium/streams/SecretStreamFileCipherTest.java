@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.streams;
+
+import com.goterl.lazysodium.BaseTest;
+import com.goterl.lazysodium.exceptions.SodiumException;
+import com.goterl.lazysodium.interfaces.SecretStream;
+import com.goterl.lazysodium.utils.Key;
+import junit.framework.TestCase;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class SecretStreamFileCipherTest extends BaseTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTrip() throws Exception {
+        Key key = lazySodium.cryptoSecretStreamKeygen();
+        // A small window so that the larger files are mapped in several parts.
+        SecretStreamFileCipher cipher = new SecretStreamFileCipher(lazySodium, 1000, 3000);
+        for (int size : new int[] {0, 1, 999, 1000, 1001, 3000, 10_500}) {
+            byte[] contents = lazySodium.randomBytesBuf(size);
+            Path plain = write(contents);
+            Path encrypted = folder.newFile().toPath();
+            Path decrypted = folder.newFile().toPath();
+
+            cipher.encrypt(plain, encrypted, key);
+            TestCase.assertEquals(cipher.encryptedSize(size), Files.size(encrypted));
+            cipher.decrypt(encrypted, decrypted, key);
+            TestCase.assertTrue("size " + size, Arrays.equals(contents, Files.readAllBytes(decrypted)));
+        }
+    }
+
+    @Test
+    public void readableByTheMessageApi() throws Exception {
+        Key key = lazySodium.cryptoSecretStreamKeygen();
+        byte[] contents = lazySodium.randomBytesBuf(150);
+        Path encrypted = folder.newFile().toPath();
+        new SecretStreamFileCipher(lazySodium, 100).encrypt(write(contents), encrypted, key);
+
+        byte[] file = Files.readAllBytes(encrypted);
+        SecretStream.State state = lazySodium.cryptoSecretStreamInitPull(
+                Arrays.copyOfRange(file, 0, SecretStream.HEADERBYTES), key);
+        byte[] chunk = new byte[100];
+        byte[] tag = new byte[1];
+        TestCase.assertTrue(lazySodium.cryptoSecretStreamPull(state, chunk, 0, tag,
+                file, SecretStream.HEADERBYTES, 100 + SecretStream.ABYTES));
+        TestCase.assertEquals(SecretStream.TAG_MESSAGE, tag[0]);
+        TestCase.assertTrue(Arrays.equals(Arrays.copyOfRange(contents, 0, 100), chunk));
+        TestCase.assertTrue(lazySodium.cryptoSecretStreamPull(state, chunk, 0, tag,
+                file, SecretStream.HEADERBYTES + 100 + SecretStream.ABYTES, 50 + SecretStream.ABYTES));
+        TestCase.assertEquals(SecretStream.TAG_FINAL, tag[0]);
+    }
+
+    @Test
+    public void tamperedFileIsRejected() throws Exception {
+        Key key = lazySodium.cryptoSecretStreamKeygen();
+        SecretStreamFileCipher cipher = new SecretStreamFileCipher(lazySodium, 100);
+        Path encrypted = folder.newFile().toPath();
+        cipher.encrypt(write(lazySodium.randomBytesBuf(500)), encrypted, key);
+        byte[] file = Files.readAllBytes(encrypted);
+        file[300] ^= 1;
+
+        Path decrypted = folder.getRoot().toPath().resolve("tampered");
+        assertDecryptFails(cipher, write(file), decrypted, key);
+        TestCase.assertFalse(Files.exists(decrypted));
+    }
+
+    @Test
+    public void truncatedFileIsRejected() throws Exception {
+        Key key = lazySodium.cryptoSecretStreamKeygen();
+        SecretStreamFileCipher cipher = new SecretStreamFileCipher(lazySodium, 100);
+        Path encrypted = folder.newFile().toPath();
+        cipher.encrypt(write(lazySodium.randomBytesBuf(500)), encrypted, key);
+        byte[] file = Files.readAllBytes(encrypted);
+
+        // Cut off after the second full chunk, so every chunk left is authentic.
+        int cut = SecretStream.HEADERBYTES + 2 * (100 + SecretStream.ABYTES);
+        assertDecryptFails(cipher, write(Arrays.copyOf(file, cut)), folder.newFile().toPath(), key);
+        assertDecryptFails(cipher, write(Arrays.copyOf(file, SecretStream.HEADERBYTES)), folder.newFile().toPath(), key);
+    }
+
+    @Test
+    public void missingSourceLeavesTheTarget() throws Exception {
+        Key key = lazySodium.cryptoSecretStreamKeygen();
+        SecretStreamFileCipher cipher = new SecretStreamFileCipher(lazySodium, 100);
+        byte[] contents = lazySodium.randomBytesBuf(50);
+        Path target = write(contents);
+        Path missing = folder.getRoot().toPath().resolve("missing");
+
+        for (boolean encrypt : new boolean[] {true, false}) {
+            try {
+                if (encrypt) {
+                    cipher.encrypt(missing, target, key);
+                } else {
+                    cipher.decrypt(missing, target, key);
+                }
+                TestCase.fail("Read a missing file.");
+            } catch (NoSuchFileException expected) {
+                // Expected.
+            }
+            TestCase.assertTrue(Arrays.equals(contents, Files.readAllBytes(target)));
+        }
+    }
+
+    @Test
+    public void sourceCannotBeTheTarget() throws Exception {
+        Key key = lazySodium.cryptoSecretStreamKeygen();
+        SecretStreamFileCipher cipher = new SecretStreamFileCipher(lazySodium, 100);
+        byte[] contents = lazySodium.randomBytesBuf(500);
+        Path file = write(contents);
+        // Through another path to the same file.
+        Path alias = file.getParent().resolve(".").resolve(file.getFileName());
+
+        for (boolean encrypt : new boolean[] {true, false}) {
+            try {
+                if (encrypt) {
+                    cipher.encrypt(file, alias, key);
+                } else {
+                    cipher.decrypt(file, alias, key);
+                }
+                TestCase.fail("Wrote over the source.");
+            } catch (IllegalArgumentException expected) {
+                // Expected.
+            }
+            TestCase.assertTrue(Arrays.equals(contents, Files.readAllBytes(file)));
+        }
+    }
+
+    @Test
+    public void failedDecryptLeavesTheTarget() throws Exception {
+        Key key = lazySodium.cryptoSecretStreamKeygen();
+        SecretStreamFileCipher cipher = new SecretStreamFileCipher(lazySodium, 100);
+        Path encrypted = folder.newFile().toPath();
+        cipher.encrypt(write(lazySodium.randomBytesBuf(500)), encrypted, key);
+        byte[] contents = lazySodium.randomBytesBuf(50);
+        Path target = write(contents);
+
+        assertDecryptFails(cipher, encrypted, target, lazySodium.cryptoSecretStreamKeygen());
+        TestCase.assertTrue(Arrays.equals(contents, Files.readAllBytes(target)));
+        // Nothing is left behind next to it either.
+        TestCase.assertEquals(3, folder.getRoot().list().length);
+    }
+
+    private Path write(byte[] contents) throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, contents);
+        return file;
+    }
+
+    private static void assertDecryptFails(SecretStreamFileCipher cipher, Path source, Path target, Key key) throws IOException {
+        try {
+            cipher.decrypt(source, target, key);
+            TestCase.fail("Decrypted a damaged file.");
+        } catch (SodiumException expected) {
+            // Expected.
+        }
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.streams;
+
+import com.goterl.lazysodium.BaseTest;
+import com.goterl.lazysodium.exceptions.SodiumException;
+import com.goterl.lazysodium.interfaces.SecretStream;
+import com.goterl.lazysodium.utils.Key;
+import junit.framework.TestCase;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class SecretStreamInputStreamTest extends BaseTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTrip() throws Exception {
+        Key key = lazySodium.cryptoSecretStreamKeygen();
+        for (int size : new int[] {0, 1, 99, 100, 101, 1000, 12_345}) {
+            byte[] contents = lazySodium.randomBytesBuf(size);
+            byte[] encrypted = encrypt(contents, key, 100);
+            TestCase.assertEquals(new SecretStreamFileCipher(lazySodium, 100).encryptedSize(size), encrypted.length);
+            TestCase.assertTrue("size " + size, Arrays.equals(contents, decrypt(encrypted, key, 100)));
+        }
+    }
+
+    @Test
+    public void singleByteWritesAndReads() throws Exception {
+        Key key = lazySodium.cryptoSecretStreamKeygen();
+        byte[] contents = lazySodium.randomBytesBuf(250);
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        try (OutputStream out = new SecretStreamOutputStream(lazySodium, sink, key, 64)) {
+            for (byte b : contents) {
+                out.write(b);
+            }
+        }
+
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        try (InputStream in = new SecretStreamInputStream(lazySodium, new ByteArrayInputStream(sink.toByteArray()), key, 64)) {
+            int b;
+            while ((b = in.read()) != -1) {
+                plain.write(b);
+            }
+        }
+        TestCase.assertTrue(Arrays.equals(contents, plain.toByteArray()));
+    }
+
+    @Test
+    public void interoperatesWithFileCipher() throws Exception {
+        Key key = lazySodium.cryptoSecretStreamKeygen();
+        byte[] contents = lazySodium.randomBytesBuf(5000);
+        Path plain = folder.newFile().toPath();
+        Path encrypted = folder.newFile().toPath();
+        Files.write(plain, contents);
+        new SecretStreamFileCipher(lazySodium, 1024).encrypt(plain, encrypted, key);
+        TestCase.assertTrue(Arrays.equals(contents, decrypt(Files.readAllBytes(encrypted), key, 1024)));
+
+        Path decrypted = folder.newFile().toPath();
+        Files.write(encrypted, encrypt(contents, key, 1024));
+        new SecretStreamFileCipher(lazySodium, 1024).decrypt(encrypted, decrypted, key);
+        TestCase.assertTrue(Arrays.equals(contents, Files.readAllBytes(decrypted)));
+    }
+
+    @Test
+    public void damagedStreamsAreRejected() throws Exception {
+        Key key = lazySodium.cryptoSecretStreamKeygen();
+        byte[] encrypted = encrypt(lazySodium.randomBytesBuf(300), key, 100);
+
+        byte[] tampered = encrypted.clone();
+        tampered[SecretStream.HEADERBYTES + 150] ^= 1;
+        assertDecryptFails(tampered, key);
+
+        // Cut off after the second full chunk, so every chunk left is authentic.
+        assertDecryptFails(Arrays.copyOf(encrypted, SecretStream.HEADERBYTES + 2 * (100 + SecretStream.ABYTES)), key);
+
+        byte[] extended = Arrays.copyOf(encrypted, encrypted.length + 1);
+        assertDecryptFails(extended, key);
+    }
+
+    private byte[] encrypt(byte[] contents, Key key, int chunkSize) throws IOException, SodiumException {
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        try (OutputStream out = new SecretStreamOutputStream(lazySodium, sink, key, chunkSize)) {
+            // Uneven writes, so that they don't line up with the chunks.
+            for (int off = 0; off < contents.length; off += 37) {
+                out.write(contents, off, Math.min(37, contents.length - off));
+            }
+        }
+        return sink.toByteArray();
+    }
+
+    private byte[] decrypt(byte[] encrypted, Key key, int chunkSize) throws IOException, SodiumException {
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        try (InputStream in = new SecretStreamInputStream(lazySodium, new ByteArrayInputStream(encrypted), key, chunkSize)) {
+            byte[] buffer = new byte[77];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                plain.write(buffer, 0, n);
+            }
+        }
+        return plain.toByteArray();
+    }
+
+    private void assertDecryptFails(byte[] encrypted, Key key) throws SodiumException {
+        try {
+            decrypt(encrypted, key, 100);
+            TestCase.fail("Decrypted a damaged stream.");
+        } catch (IOException e) {
+            TestCase.assertTrue(e.getCause() instanceof SodiumException);
+        }
+    }
+
+}
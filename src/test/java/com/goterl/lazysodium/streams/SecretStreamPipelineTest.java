@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.streams;
+
+import com.goterl.lazysodium.BaseTest;
+import com.goterl.lazysodium.exceptions.SodiumException;
+import com.goterl.lazysodium.interfaces.SecretStream;
+import com.goterl.lazysodium.utils.Key;
+import junit.framework.TestCase;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousByteChannel;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class SecretStreamPipelineTest extends BaseTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTrip() throws Exception {
+        Key key = lazySodium.cryptoSecretStreamKeygen();
+        SecretStreamPipeline pipeline = pipeline(100);
+        for (int size : new int[] {0, 1, 99, 100, 101, 1000, 12_345}) {
+            byte[] contents = lazySodium.randomBytesBuf(size);
+            Path encrypted = folder.newFile().toPath();
+            Path decrypted = folder.newFile().toPath();
+
+            TestCase.assertEquals(size, run(pipeline, true, write(contents), encrypted, key));
+            TestCase.assertEquals(new SecretStreamFileCipher(lazySodium, 100).encryptedSize(size), Files.size(encrypted));
+            TestCase.assertEquals(size, run(pipeline, false, encrypted, decrypted, key));
+            TestCase.assertTrue("size " + size, Arrays.equals(contents, Files.readAllBytes(decrypted)));
+        }
+    }
+
+    @Test
+    public void interoperatesWithTheFileCipher() throws Exception {
+        Key key = lazySodium.cryptoSecretStreamKeygen();
+        SecretStreamFileCipher cipher = new SecretStreamFileCipher(lazySodium, 64);
+        byte[] contents = lazySodium.randomBytesBuf(1000);
+        Path encrypted = folder.newFile().toPath();
+        Path decrypted = folder.newFile().toPath();
+
+        run(pipeline(64), true, write(contents), encrypted, key);
+        cipher.decrypt(encrypted, decrypted, key);
+        TestCase.assertTrue(Arrays.equals(contents, Files.readAllBytes(decrypted)));
+
+        cipher.encrypt(write(contents), encrypted, key);
+        run(pipeline(64), false, encrypted, decrypted, key);
+        TestCase.assertTrue(Arrays.equals(contents, Files.readAllBytes(decrypted)));
+    }
+
+    @Test
+    public void manySmallChunks() throws Exception {
+        Key key = lazySodium.cryptoSecretStreamKeygen();
+        byte[] contents = lazySodium.randomBytesBuf(200_000);
+        Path encrypted = folder.newFile().toPath();
+        Path decrypted = folder.newFile().toPath();
+
+        run(pipeline(16), true, write(contents), encrypted, key);
+        run(pipeline(16), false, encrypted, decrypted, key);
+        TestCase.assertTrue(Arrays.equals(contents, Files.readAllBytes(decrypted)));
+    }
+
+    @Test
+    public void damagedStreamsAreRejected() throws Exception {
+        Key key = lazySodium.cryptoSecretStreamKeygen();
+        Path encrypted = folder.newFile().toPath();
+        run(pipeline(100), true, write(lazySodium.randomBytesBuf(500)), encrypted, key);
+        byte[] file = Files.readAllBytes(encrypted);
+
+        byte[] tampered = file.clone();
+        tampered[300] ^= 1;
+        assertDecryptFails(tampered, key);
+        assertDecryptFails(Arrays.copyOf(file, file.length - 1), key);
+        assertDecryptFails(Arrays.copyOf(file, file.length - 50), key);
+        assertDecryptFails(Arrays.copyOf(file, file.length + 1), key);
+        assertDecryptFails(file, lazySodium.cryptoSecretStreamKeygen());
+    }
+
+    @Test
+    public void failureWaitsForThePendingRead() throws Exception {
+        Key key = lazySodium.cryptoSecretStreamKeygen();
+        Path encrypted = folder.newFile().toPath();
+        run(pipeline(100), true, write(lazySodium.randomBytesBuf(500)), encrypted, key);
+        byte[] file = Files.readAllBytes(encrypted);
+        file[SecretStream.HEADERBYTES + 10] ^= 1;
+
+        // Holds back the read of the second chunk, which starts
+        // before the first one is found not to be authentic.
+        HeldChannel source = new HeldChannel(file, SecretStream.HEADERBYTES + 100 + SecretStream.ABYTES);
+        CompletableFuture<Long> result = pipeline(100).decrypt(source, new HeldChannel(new byte[0], -1), key);
+        TestCase.assertTrue(source.reached.await(30, TimeUnit.SECONDS));
+        try {
+            result.get(200, TimeUnit.MILLISECONDS);
+            TestCase.fail("Finished while a read was still in flight.");
+        } catch (TimeoutException expected) {
+            // expected
+        }
+
+        source.release();
+        try {
+            result.get(30, TimeUnit.SECONDS);
+            TestCase.fail("Decrypted a damaged stream.");
+        } catch (ExecutionException e) {
+            TestCase.assertTrue(e.getCause() instanceof SodiumException);
+        }
+    }
+
+    private void assertDecryptFails(byte[] file, Key key) throws Exception {
+        try {
+            run(pipeline(100), false, write(file), folder.newFile().toPath(), key);
+            TestCase.fail("Decrypted a damaged stream.");
+        } catch (ExecutionException e) {
+            TestCase.assertTrue(e.getCause() instanceof SodiumException);
+        }
+    }
+
+    private SecretStreamPipeline pipeline(int chunkSize) {
+        return new SecretStreamPipeline(lazySodium, chunkSize, ForkJoinPool.commonPool());
+    }
+
+    private long run(SecretStreamPipeline pipeline, boolean encrypt, Path source, Path target, Key key) throws Exception {
+        try (AsynchronousFileChannel in = AsynchronousFileChannel.open(source, StandardOpenOption.READ);
+             AsynchronousFileChannel out = AsynchronousFileChannel.open(target, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            AsynchronousByteChannel from = SecretStreamPipeline.channel(in, 0);
+            AsynchronousByteChannel to = SecretStreamPipeline.channel(out, 0);
+            return (encrypt ? pipeline.encrypt(from, to, key) : pipeline.decrypt(from, to, key)).get(30, TimeUnit.SECONDS);
+        }
+    }
+
+    private Path write(byte[] contents) throws Exception {
+        Path path = folder.newFile().toPath();
+        Files.write(path, contents);
+        return path;
+    }
+
+    /**
+     * Reads from an array, holding back the first read that starts at
+     * {@code holdAt} until it is released. Writes are thrown away.
+     */
+    private static final class HeldChannel implements AsynchronousByteChannel {
+
+        final CountDownLatch reached = new CountDownLatch(1);
+        private final byte[] contents;
+        private final int holdAt;
+        private int position;
+        private ByteBuffer heldBuffer;
+        private CompletionHandler<Integer, Object> heldHandler;
+
+        HeldChannel(byte[] contents, int holdAt) {
+            this.contents = contents;
+            this.holdAt = holdAt;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <A> void read(ByteBuffer dst, A attachment, CompletionHandler<Integer, ? super A> handler) {
+            synchronized (this) {
+                if (position == holdAt && heldHandler == null) {
+                    heldBuffer = dst;
+                    heldHandler = (CompletionHandler<Integer, Object>) handler;
+                    reached.countDown();
+                    return;
+                }
+            }
+            handler.completed(copy(dst), attachment);
+        }
+
+        void release() {
+            heldHandler.completed(copy(heldBuffer), null);
+        }
+
+        private synchronized int copy(ByteBuffer dst) {
+            if (position == contents.length) {
+                return -1;
+            }
+            int n = Math.min(dst.remaining(), contents.length - position);
+            dst.put(contents, position, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public Future<Integer> read(ByteBuffer dst) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <A> void write(ByteBuffer src, A attachment, CompletionHandler<Integer, ? super A> handler) {
+            int n = src.remaining();
+            src.position(src.limit());
+            handler.completed(n, attachment);
+        }
+
+        @Override
+        public Future<Integer> write(ByteBuffer src) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+}
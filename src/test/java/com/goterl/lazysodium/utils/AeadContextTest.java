@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.utils;
+
+import com.goterl.lazysodium.BaseTest;
+import com.goterl.lazysodium.exceptions.SodiumException;
+import com.goterl.lazysodium.interfaces.AEAD;
+import org.junit.Test;
+
+import javax.crypto.AEADBadTagException;
+import java.util.Arrays;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+
+public class AeadContextTest extends BaseTest {
+
+    @Test
+    public void matchesLazyBytes() throws Exception {
+        byte[] message = lazySodium.bytes("A small record");
+        byte[] additionalData = lazySodium.bytes("header");
+        for (AEAD.Method method : AEAD.Method.values()) {
+            if (method == AEAD.Method.AES256GCM && !lazySodium.cryptoAeadAES256GCMIsAvailable()) {
+                continue;
+            }
+            Key key = lazySodium.keygen(method);
+            try (AeadContext context = new AeadContext(lazySodium, key, method);
+                 SecureKey secureKey = SecureKey.fromKey(lazySodium, key);
+                 AeadContext secureContext = new AeadContext(lazySodium, secureKey, method)) {
+                byte[] nPub = lazySodium.nonce(context.getNonceBytes());
+                byte[] expected = lazySodium.encrypt(message, additionalData, nPub, key, method);
+
+                byte[] cipher = context.encrypt(message, additionalData, nPub);
+                assertTrue(method.name(), Arrays.equals(expected, cipher));
+                assertTrue(method.name(), Arrays.equals(expected, secureContext.encrypt(message, additionalData, nPub)));
+                assertTrue(method.name(), Arrays.equals(message, context.decrypt(cipher, additionalData, nPub)));
+                assertTrue(method.name(), Arrays.equals(message, secureContext.decrypt(cipher, additionalData, nPub)));
+
+                byte[] noAdditionalData = context.encrypt(message, null, nPub);
+                assertTrue(method.name(), Arrays.equals(message, lazySodium.decrypt(noAdditionalData, null, nPub, key, method)));
+
+                cipher[0] ^= 1;
+                try {
+                    context.decrypt(cipher, additionalData, nPub);
+                    fail(method.name() + " decrypted a forged cipher text.");
+                } catch (AEADBadTagException expectedException) {
+                    // expected
+                }
+                assertFalse(context.encrypt(new byte[cipher.length], message, message.length, null, 0, new byte[nPub.length + 1]));
+            }
+        }
+    }
+
+    @Test
+    public void closedContextCannotBeUsed() throws Exception {
+        AeadContext context = new AeadContext(lazySodium, lazySodium.keygen(AEAD.Method.XCHACHA20_POLY1305_IETF),
+                AEAD.Method.XCHACHA20_POLY1305_IETF);
+        context.close();
+        context.close();
+        try {
+            context.encrypt(new byte[4], null, lazySodium.nonce(context.getNonceBytes()));
+            fail("Encrypted with a closed context.");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+    }
+
+    @Test(expected = SodiumException.class)
+    public void rejectsWrongKeySize() throws SodiumException {
+        new AeadContext(lazySodium, Key.fromBytes(new byte[16]), AEAD.Method.CHACHA20_POLY1305_IETF);
+    }
+
+}
@@ -12,6 +12,11 @@ import com.goterl.lazysodium.BaseTest;
 import junit.framework.TestCase;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
 public class Base64MessageEncoderTest extends BaseTest {
 
     @Test
@@ -23,4 +28,50 @@ public class Base64MessageEncoderTest extends BaseTest {
 
         TestCase.assertEquals(cipherText, encoder.encode(cipher));
     }
+
+    @Test
+    public void matchesJavaUtilBase64() {
+        Base64MessageEncoder encoder = new Base64MessageEncoder();
+        Random random = new Random(1);
+        for (int len = 0; len < 100; len++) {
+            byte[] bytes = new byte[len + 4];
+            random.nextBytes(bytes);
+            byte[] part = Arrays.copyOfRange(bytes, 2, 2 + len);
+            String expected = Base64.getEncoder().encodeToString(part);
+
+            TestCase.assertEquals(expected, encoder.encode(part));
+            TestCase.assertEquals(expected, encoder.encode(bytes, 2, len));
+            StringBuilder builder = new StringBuilder();
+            encoder.encodeTo(ByteBuffer.wrap(bytes, 2, len), builder);
+            TestCase.assertEquals(expected, builder.toString());
+
+            TestCase.assertTrue(Arrays.equals(part, encoder.decode(expected)));
+            TestCase.assertEquals(len, encoder.decodedLength(expected));
+            byte[] out = new byte[len + 1];
+            TestCase.assertEquals(len, encoder.decodeInto(expected, out, 1));
+            TestCase.assertTrue(Arrays.equals(part, Arrays.copyOfRange(out, 1, len + 1)));
+
+            String unpadded = expected.replace("=", "");
+            TestCase.assertTrue(Arrays.equals(Base64.getDecoder().decode(unpadded), encoder.decode(unpadded)));
+        }
+    }
+
+    @Test
+    public void rejectsWhatJavaUtilBase64Rejects() {
+        Base64MessageEncoder encoder = new Base64MessageEncoder();
+        for (String bad : new String[] {"A", "A===", "AB=", "AB=C", "AB-_", "ABCé", "=AAA"}) {
+            try {
+                Base64.getDecoder().decode(bad);
+                TestCase.fail("java.util.Base64 decoded " + bad);
+            } catch (IllegalArgumentException e) {
+                // Expected.
+            }
+            try {
+                encoder.decode(bad);
+                TestCase.fail("Decoded " + bad);
+            } catch (IllegalArgumentException e) {
+                // Expected.
+            }
+        }
+    }
 }
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.utils;
+
+import com.goterl.lazysodium.BaseTest;
+import com.goterl.lazysodium.interfaces.Box;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+
+public class BoxSessionCacheTest extends BaseTest {
+
+    private KeyPair sender;
+    private KeyPair receiver;
+    private byte[] nonce;
+    private byte[] message;
+
+    @Before
+    public void doBefore() throws Exception {
+        sender = lazySodium.cryptoBoxKeypair();
+        receiver = lazySodium.cryptoBoxKeypair();
+        nonce = lazySodium.nonce(Box.NONCEBYTES);
+        message = lazySodium.bytes("A message for a regular peer");
+    }
+
+    @Test
+    public void matchesCryptoBoxEasy() throws Exception {
+        byte[] expected = new byte[message.length + Box.MACBYTES];
+        lazySodium.cryptoBoxEasy(expected, message, message.length, nonce,
+                receiver.getPublicKey().getAsBytes(), sender.getSecretKey().getAsBytes());
+
+        try (BoxSessionCache cache = new BoxSessionCache(lazySodium)) {
+            for (int i = 0; i < 3; i++) {
+                byte[] cipher = encrypt(cache, sender, receiver);
+                assertTrue(Arrays.equals(expected, cipher));
+                assertEquals(lazySodium.str(message), lazySodium.str(decrypt(cache, receiver, sender, cipher)));
+            }
+            // One shared key for each direction.
+            assertEquals(2, cache.size());
+            assertEquals(2, cache.misses());
+            assertEquals(4, cache.hits());
+
+            byte[] forged = encrypt(cache, sender, receiver);
+            forged[0] ^= 1;
+            assertFalse(cache.cryptoBoxOpenEasy(new byte[message.length], forged, forged.length, nonce,
+                    sender.getPublicKey().getAsBytes(), receiver.getSecretKey().getAsBytes()));
+            assertFalse(cache.cryptoBoxEasy(new byte[message.length + Box.MACBYTES], message, message.length,
+                    new byte[Box.NONCEBYTES - 1], receiver.getPublicKey().getAsBytes(), sender.getSecretKey().getAsBytes()));
+        }
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws Exception {
+        KeyPair third = lazySodium.cryptoBoxKeypair();
+        try (BoxSessionCache cache = new BoxSessionCache(lazySodium, 2, 1, TimeUnit.HOURS)) {
+            encrypt(cache, sender, receiver);
+            encrypt(cache, sender, third);
+            encrypt(cache, sender, receiver);
+            // Evicts sender to third, which was used least recently.
+            encrypt(cache, receiver, third);
+            assertEquals(2, cache.size());
+            assertEquals(3, cache.misses());
+
+            encrypt(cache, sender, receiver);
+            assertEquals(3, cache.misses());
+            encrypt(cache, sender, third);
+            assertEquals(4, cache.misses());
+
+            cache.invalidate(third.getPublicKey().getAsBytes(), sender.getSecretKey().getAsBytes());
+            assertEquals(1, cache.size());
+            cache.clear();
+            assertEquals(0, cache.size());
+        }
+    }
+
+    @Test
+    public void expiresSharedKeys() throws Exception {
+        try (BoxSessionCache cache = new BoxSessionCache(lazySodium, 4, 1, TimeUnit.NANOSECONDS)) {
+            byte[] first = encrypt(cache, sender, receiver);
+            byte[] second = encrypt(cache, sender, receiver);
+            assertTrue(Arrays.equals(first, second));
+            assertEquals(0, cache.hits());
+            assertEquals(2, cache.misses());
+            cache.evictExpired();
+            assertEquals(0, cache.size());
+        }
+    }
+
+    @Test
+    public void closedCacheCannotBeUsed() throws Exception {
+        BoxSessionCache cache = new BoxSessionCache(lazySodium);
+        encrypt(cache, sender, receiver);
+        cache.close();
+        cache.close();
+        assertEquals(0, cache.size());
+        try {
+            encrypt(cache, sender, receiver);
+            fail("Encrypted with a closed cache.");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void usedByLazySodium() throws Exception {
+        KeyPair senderToReceiver = new KeyPair(receiver.getPublicKey(), sender.getSecretKey());
+        KeyPair receiverFromSender = new KeyPair(sender.getPublicKey(), receiver.getSecretKey());
+        String expected = lazySodium.cryptoBoxEasy("hello", nonce, senderToReceiver);
+
+        try (BoxSessionCache cache = new BoxSessionCache(lazySodium)) {
+            lazySodium.setBoxSessionCache(cache);
+            try {
+                assertEquals(expected, lazySodium.cryptoBoxEasy("hello", nonce, senderToReceiver));
+                assertEquals("hello", lazySodium.cryptoBoxOpenEasy(expected, nonce, receiverFromSender));
+                byte[] cipher = lazySodium.cryptoBoxEasy(message, nonce, senderToReceiver);
+                assertTrue(Arrays.equals(message, lazySodium.cryptoBoxOpenEasy(cipher, nonce, receiverFromSender)));
+                assertEquals(2, cache.misses());
+                assertEquals(2, cache.hits());
+            } finally {
+                lazySodium.setBoxSessionCache(null);
+            }
+        }
+    }
+
+    @Test
+    public void sharedBetweenThreads() throws Exception {
+        final List<KeyPair> peers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            peers.add(lazySodium.cryptoBoxKeypair());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        // Fewer slots than peers, so shared keys are evicted while in use.
+        try (final BoxSessionCache cache = new BoxSessionCache(lazySodium, 3, 1, TimeUnit.HOURS)) {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        for (int i = 0; i < 200; i++) {
+                            KeyPair peer = peers.get(i % peers.size());
+                            byte[] cipher = encrypt(cache, sender, peer);
+                            if (!Arrays.equals(message, decrypt(cache, peer, sender, cipher))) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+            assertTrue(cache.size() <= 3);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private byte[] encrypt(BoxSessionCache cache, KeyPair from, KeyPair to) {
+        byte[] cipher = new byte[message.length + Box.MACBYTES];
+        assertTrue(cache.cryptoBoxEasy(cipher, message, message.length, nonce,
+                to.getPublicKey().getAsBytes(), from.getSecretKey().getAsBytes()));
+        return cipher;
+    }
+
+    private byte[] decrypt(BoxSessionCache cache, KeyPair to, KeyPair from, byte[] cipher) {
+        byte[] decrypted = new byte[cipher.length - Box.MACBYTES];
+        assertTrue(cache.cryptoBoxOpenEasy(decrypted, cipher, cipher.length, nonce,
+                from.getPublicKey().getAsBytes(), to.getSecretKey().getAsBytes()));
+        return decrypted;
+    }
+
+}
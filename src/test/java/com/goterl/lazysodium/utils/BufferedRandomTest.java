@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.utils;
+
+import com.goterl.lazysodium.BaseTest;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+
+public class BufferedRandomTest extends BaseTest {
+
+    private BufferedRandom random;
+
+    @Before
+    public void doBefore() {
+        random = new BufferedRandom(lazySodium);
+    }
+
+    @Test
+    public void fillsPartsOfArrays() {
+        byte[] out = new byte[BufferedRandom.BLOCK_BYTES * 3 + 10];
+        random.nextBytes(out, 5, out.length - 10);
+        assertEquals(0, out[0] | out[1] | out[2] | out[3] | out[4]);
+        assertEquals(0, out[out.length - 5] | out[out.length - 1]);
+        // Across several blocks, every byte value turns up.
+        Set<Byte> values = new HashSet<>();
+        for (int i = 5; i < out.length - 5; i++) {
+            values.add(out[i]);
+        }
+        assertEquals(256, values.size());
+
+        try {
+            random.nextBytes(out, out.length - 2, 3);
+            fail("Wrote past the end of the array.");
+        } catch (IndexOutOfBoundsException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void neverRepeatsNonces() {
+        Set<String> nonces = new HashSet<>();
+        for (int i = 0; i < 2000; i++) {
+            nonces.add(Hex.encode(random.nonce(24)));
+            // Leaves blocks part used, so refills happen mid-request.
+            random.nextLong();
+        }
+        assertEquals(2000, nonces.size());
+    }
+
+    @Test
+    public void uniformStaysInBounds() {
+        int[] counts = new int[6];
+        for (int i = 0; i < 6000; i++) {
+            counts[(int) random.randomBytesUniform(6)]++;
+        }
+        for (int count : counts) {
+            assertTrue("Count " + count + " is far from 1000.", count > 800 && count < 1200);
+        }
+        assertEquals(0, random.randomBytesUniform(1));
+        assertEquals(0, random.randomBytesUniform(0));
+        // As in libsodium, the bound is unsigned.
+        assertTrue(random.randomBytesUniform(-1) < 0xFFFFFFFFL);
+        assertTrue(random.randomBytesRandom() <= 0xFFFFFFFFL);
+    }
+
+    @Test
+    public void separateGeneratorsPerThread() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<Long>>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                results.add(executor.submit(new Callable<List<Long>>() {
+                    @Override
+                    public List<Long> call() {
+                        List<Long> values = new ArrayList<>();
+                        for (int i = 0; i < 1000; i++) {
+                            values.add(random.nextLong());
+                        }
+                        return values;
+                    }
+                }));
+            }
+            Set<Long> unique = new HashSet<>();
+            for (Future<List<Long>> result : results) {
+                unique.addAll(result.get());
+            }
+            assertEquals(4000, unique.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -12,6 +12,8 @@ import com.goterl.lazysodium.BaseTest;
 import junit.framework.TestCase;
 import org.junit.Test;
 
+import java.util.Arrays;
+
 public class HexMessageEncoderTest extends BaseTest {
 
     @Test
@@ -23,4 +25,16 @@ public class HexMessageEncoderTest extends BaseTest {
 
         TestCase.assertEquals(cipherText, encoder.encode(cipher));
     }
+
+    @Test
+    public void decodeIntoMatchesDecode() {
+        HexMessageEncoder encoder = new HexMessageEncoder();
+
+        for (String cipherText : new String[] {"612d6865782D", "not hex!"}) {
+            byte[] expected = encoder.decode(cipherText);
+            byte[] out = new byte[encoder.decodedLength(cipherText)];
+            TestCase.assertEquals(out.length, encoder.decodeInto(cipherText, out, 0));
+            TestCase.assertTrue(Arrays.equals(expected, out));
+        }
+    }
 }
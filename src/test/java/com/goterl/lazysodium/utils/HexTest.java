@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.utils;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.fail;
+import static org.junit.Assert.assertArrayEquals;
+
+public class HexTest {
+
+    @Test
+    public void encodesEveryByte() {
+        byte[] all = new byte[256];
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < all.length; i++) {
+            all[i] = (byte) i;
+            expected.append(String.format("%02X", i));
+        }
+        assertEquals(expected.toString(), Hex.encode(all));
+        assertArrayEquals(all, Hex.decode(expected.toString()));
+        assertArrayEquals(all, Hex.decode(expected.toString().toLowerCase()));
+    }
+
+    @Test
+    public void encodesIntoAndDecodesIntoBuffers() {
+        byte[] bytes = new byte[100];
+        new Random(1).nextBytes(bytes);
+        String hex = Hex.encode(bytes, 10, 50);
+
+        StringBuilder builder = new StringBuilder("prefix");
+        Hex.encode(bytes, 10, 50, builder);
+        assertEquals("prefix" + hex, builder.toString());
+
+        builder.setLength(0);
+        ByteBuffer direct = ByteBuffer.allocateDirect(50);
+        direct.put(bytes, 10, 50).flip();
+        Hex.encode(direct, builder);
+        assertEquals(hex, builder.toString());
+        assertEquals(50, direct.position());
+
+        byte[] out = new byte[60];
+        assertEquals(50, Hex.decode(hex, out, 5));
+        for (int i = 0; i < 50; i++) {
+            assertEquals(bytes[10 + i], out[5 + i]);
+        }
+
+        direct.clear();
+        assertEquals(50, Hex.decode(hex, direct));
+        assertEquals(50, direct.position());
+        direct.flip();
+        assertEquals(ByteBuffer.wrap(bytes, 10, 50), direct);
+    }
+
+    @Test
+    public void rejectsWhatIsNotHexadecimal() {
+        for (String bad : new String[] {"0", "0G", "zz", "0 ", "٠١"}) {
+            try {
+                Hex.decode(bad);
+                fail("Decoded " + bad);
+            } catch (IllegalArgumentException e) {
+                // Expected.
+            }
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.utils;
+
+import com.goterl.lazysodium.BaseTest;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+
+public class NonceSequenceTest extends BaseTest {
+
+    @Test
+    public void countsLikeSodiumIncrement() {
+        byte[] start = new byte[24];
+        // Carries through the first two bytes after one nonce.
+        start[0] = (byte) 0xFF;
+        start[1] = (byte) 0xFF;
+        start[2] = 0x12;
+        NonceSequence nonces = new NonceSequence(start);
+        start[3] = 0x34;
+
+        byte[] expected = Arrays.copyOf(start, start.length);
+        expected[3] = 0;
+        for (int i = 0; i < 300; i++) {
+            assertTrue(Arrays.equals(expected, nonces.next()));
+            lazySodium.getSodium().sodium_increment(expected, expected.length);
+        }
+    }
+
+    @Test
+    public void startsFromZeroOrRandomBytes() {
+        NonceSequence zero = new NonceSequence(12);
+        assertEquals(12, zero.getSize());
+        assertTrue(Arrays.equals(new byte[12], zero.next()));
+
+        byte[] out = new byte[16];
+        zero.next(out, 4);
+        assertEquals(1, out[4]);
+
+        NonceSequence first = new NonceSequence(lazySodium, 24);
+        NonceSequence second = new NonceSequence(lazySodium, 24);
+        assertFalse(Arrays.equals(first.next(), second.next()));
+        assertTrue(first.isRandomStart());
+        assertFalse(zero.isRandomStart());
+        assertFalse(new NonceSequence(first.next()).isRandomStart());
+
+        try {
+            new NonceSequence(4);
+            fail("Made a sequence of nonces that are too small.");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+        try {
+            zero.next(out, 5);
+            fail("Wrote past the end of the array.");
+        } catch (IndexOutOfBoundsException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void neverRepeatsAcrossThreads() throws Exception {
+        final NonceSequence nonces = new NonceSequence(lazySodium, 24);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                results.add(executor.submit(new Callable<List<String>>() {
+                    @Override
+                    public List<String> call() {
+                        List<String> issued = new ArrayList<>();
+                        for (int i = 0; i < 1000; i++) {
+                            issued.add(Hex.encode(nonces.next()));
+                        }
+                        return issued;
+                    }
+                }));
+            }
+            Set<String> unique = new HashSet<>();
+            for (Future<List<String>> result : results) {
+                unique.addAll(result.get());
+            }
+            assertEquals(4000, unique.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
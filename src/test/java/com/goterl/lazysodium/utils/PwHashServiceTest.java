@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.utils;
+
+import com.goterl.lazysodium.BaseTest;
+import com.goterl.lazysodium.interfaces.PwHash;
+import com.sun.jna.NativeLong;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+
+public class PwHashServiceTest extends BaseTest {
+
+    private static final long OPS = PwHash.OPSLIMIT_MIN;
+    private static final NativeLong MEM = new NativeLong(1 << 20);
+
+    private byte[] password;
+
+    @Before
+    public void doBefore() {
+        password = lazySodium.bytes("correct horse battery staple");
+    }
+
+    @Test
+    public void hashesAndVerifies() throws Exception {
+        try (PwHashService service = new PwHashService(lazySodium, 4L << 20)) {
+            byte[] hash = service.hash(password, OPS, MEM).get();
+            assertEquals(PwHash.STR_BYTES, hash.length);
+            assertTrue(lazySodium.cryptoPwHashStrVerify(hash, password, password.length));
+
+            assertTrue(service.verify(hash, password).get());
+            assertFalse(service.verify(hash, lazySodium.bytes("wrong")).get());
+            // Without its null byte, as a hash is often stored.
+            String stored = lazySodium.str(hash).trim();
+            assertTrue(service.verify(lazySodium.bytes(stored), password).get());
+            assertFalse(service.verify(lazySodium.bytes("not a hash"), password).get());
+
+            assertEquals(4, service.completed());
+            assertEquals(0, service.active());
+            assertEquals(0, service.memoryInUse());
+        }
+    }
+
+    @Test
+    public void rejectsMoreMemoryThanTheBudget() throws Exception {
+        try (PwHashService service = new PwHashService(lazySodium, 1, 1 << 20, 1, 1, TimeUnit.SECONDS)) {
+            assertFailsWith(IllegalArgumentException.class, service.hash(password, OPS, new NativeLong(2 << 20)));
+        }
+    }
+
+    @Test
+    public void rejectsLimitsOutOfRange() throws Exception {
+        try (PwHashService service = new PwHashService(lazySodium, 1, 1 << 20, 1, 1, TimeUnit.SECONDS)) {
+            assertFailsWith(IllegalArgumentException.class, service.hash(password, OPS, new NativeLong(-(1 << 20))));
+            assertFailsWith(IllegalArgumentException.class, service.hash(password, OPS, new NativeLong(1024)));
+            assertFailsWith(IllegalArgumentException.class, service.hash(password, 0, MEM));
+            assertTrue(service.verify(service.hash(password, OPS, MEM).get(), password).get());
+        }
+    }
+
+    @Test
+    public void rejectsWhenTheQueueIsFull() throws Exception {
+        try (PwHashService service = new PwHashService(lazySodium, 1, 16L << 20, 1, 10, TimeUnit.SECONDS)) {
+            List<CompletableFuture<byte[]>> hashes = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                hashes.add(service.hash(password, OPS, new NativeLong(16 << 20)));
+            }
+            int rejected = 0;
+            for (CompletableFuture<byte[]> hash : hashes) {
+                try {
+                    hash.get();
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof RejectedExecutionException);
+                    rejected++;
+                }
+            }
+            assertTrue(rejected > 0);
+            assertEquals(rejected, service.rejected());
+            assertEquals(10 - rejected, service.completed());
+        }
+    }
+
+    @Test
+    public void timesOutWaitingForMemory() throws Exception {
+        // Room for one hash at a time, and no time to wait for it.
+        try (PwHashService service = new PwHashService(lazySodium, 2, 16L << 20, 4, 1, TimeUnit.MILLISECONDS)) {
+            List<CompletableFuture<byte[]>> hashes = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                hashes.add(service.hash(password, OPS, new NativeLong(16 << 20)));
+            }
+            int timedOut = 0;
+            for (CompletableFuture<byte[]> hash : hashes) {
+                try {
+                    hash.get();
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof TimeoutException);
+                    timedOut++;
+                }
+            }
+            assertTrue(timedOut > 0);
+            assertEquals(timedOut, service.timedOut());
+        }
+    }
+
+    @Test
+    public void closeCancelsWaitingRequests() throws Exception {
+        PwHashService service = new PwHashService(lazySodium, 1, 16L << 20, 8, 10, TimeUnit.SECONDS);
+        List<CompletableFuture<byte[]>> hashes = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            hashes.add(service.hash(password, OPS, new NativeLong(16 << 20)));
+        }
+        service.close();
+        for (CompletableFuture<byte[]> hash : hashes) {
+            assertTrue(hash.isDone());
+        }
+        assertTrue(hashes.get(hashes.size() - 1).isCancelled());
+        assertFailsWith(RejectedExecutionException.class, service.hash(password, OPS, MEM));
+    }
+
+    private static void assertFailsWith(Class<? extends Throwable> expected, CompletableFuture<?> future)
+            throws InterruptedException {
+        try {
+            future.get();
+            fail("Expected " + expected.getSimpleName());
+        } catch (ExecutionException e) {
+            assertTrue(expected.isInstance(e.getCause()));
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.utils;
+
+import com.goterl.lazysodium.BaseTest;
+import com.sun.jna.Pointer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+
+public class SecureBufferPoolTest extends BaseTest {
+
+    @Test
+    public void buffersAreReusedAndWiped() throws Exception {
+        try (SecureBufferPool pool = new SecureBufferPool(lazySodium, 1024, 4)) {
+            SecureBufferPool.Buffer buffer = pool.borrow(100);
+            assertEquals(128, buffer.capacity());
+            Pointer pointer = buffer.getPointer();
+            pointer.write(0, lazySodium.randomBytesBuf(128), 0, 128);
+            buffer.close();
+
+            try (SecureBufferPool.Buffer again = pool.borrow(128)) {
+                assertTrue(Pointer.nativeValue(pointer) == Pointer.nativeValue(again.getPointer()));
+                for (byte b : again.getPointer().getByteArray(0, 128)) {
+                    assertEquals(0, b);
+                }
+            }
+            assertEquals(1, pool.allocated());
+            try {
+                buffer.getPointer();
+                fail("Used a returned buffer.");
+            } catch (IllegalStateException e) {
+                // Expected.
+            }
+        }
+    }
+
+    @Test
+    public void sizesBeyondTheLargestAreNotPooled() throws Exception {
+        try (SecureBufferPool pool = new SecureBufferPool(lazySodium, 1000, 4)) {
+            assertEquals(1024, pool.getMaxBufferSize());
+            try (SecureBufferPool.Buffer buffer = pool.borrow(5000)) {
+                assertEquals(5000, buffer.capacity());
+                assertEquals(1, pool.allocated());
+            }
+            assertEquals(0, pool.allocated());
+        }
+    }
+
+    @Test
+    public void closingFreesIdleBuffersAndReturnedOnes() throws Exception {
+        SecureBufferPool pool = new SecureBufferPool(lazySodium, 1024, 4);
+        SecureBufferPool.Buffer borrowed = pool.borrow(64);
+        pool.borrow(64).close();
+        pool.borrow(64).close();
+        assertEquals(2, pool.allocated());
+
+        pool.close();
+        assertEquals(1, pool.allocated());
+        borrowed.close();
+        assertEquals(0, pool.allocated());
+        try {
+            pool.borrow(64);
+            fail("Borrowed from a closed pool.");
+        } catch (IllegalStateException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void sharedBetweenThreads() throws Exception {
+        final SecureBufferPool pool = new SecureBufferPool(lazySodium, 4096, 8);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Void>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int i = 0; i < 1000; i++) {
+                            try (SecureBufferPool.Buffer a = pool.borrow(i % 4096);
+                                 SecureBufferPool.Buffer b = pool.borrow(100)) {
+                                a.getPointer().setByte(0, (byte) 1);
+                                b.getPointer().setByte(0, (byte) 1);
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+            pool.close();
+        }
+        assertEquals(0, pool.allocated());
+    }
+
+}
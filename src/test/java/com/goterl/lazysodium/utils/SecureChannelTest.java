@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.utils;
+
+import com.goterl.lazysodium.BaseTest;
+import com.goterl.lazysodium.exceptions.SodiumException;
+import com.goterl.lazysodium.interfaces.AEAD;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.crypto.AEADBadTagException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+
+public class SecureChannelTest extends BaseTest {
+
+    private KeyPair clientKeys;
+    private KeyPair serverKeys;
+
+    @Before
+    public void doBefore() {
+        clientKeys = lazySodium.cryptoKxKeypair();
+        serverKeys = lazySodium.cryptoKxKeypair();
+    }
+
+    @Test
+    public void sealsWithSessionKeysAndCounterNonces() throws Exception {
+        SessionPair session = lazySodium.cryptoKxClientSessionKeys(clientKeys, serverKeys);
+        byte[] message = lazySodium.bytes("The first message");
+        byte[] expected = new byte[message.length + SecureChannel.ABYTES];
+        lazySodium.cryptoAeadXChaCha20Poly1305IetfEncrypt(expected, null, message, message.length,
+                null, 0, null, new byte[AEAD.XCHACHA20POLY1305_IETF_NPUBBYTES], session.getTx());
+
+        try (SecureChannel client = SecureChannel.client(lazySodium, clientKeys, serverKeys.getPublicKey());
+             SecureChannel server = SecureChannel.server(lazySodium, serverKeys, clientKeys.getPublicKey())) {
+            ByteBuffer buffer = ByteBuffer.allocate(64);
+            buffer.put(message).flip();
+            client.seal(buffer);
+            assertEquals(expected.length, buffer.remaining());
+            assertTrue(Arrays.equals(expected, Arrays.copyOf(buffer.array(), expected.length)));
+
+            server.open(buffer);
+            assertEquals(message.length, buffer.remaining());
+            assertTrue(Arrays.equals(message, Arrays.copyOf(buffer.array(), message.length)));
+        }
+    }
+
+    @Test
+    public void sealsAndOpensBothWays() throws Exception {
+        try (SecureChannel client = SecureChannel.client(lazySodium, clientKeys, serverKeys.getPublicKey());
+             SecureChannel server = SecureChannel.server(lazySodium, serverKeys, clientKeys.getPublicKey())) {
+            // The same buffers for every message, as a connection would use them.
+            ByteBuffer direct = ByteBuffer.allocateDirect(128);
+            ByteBuffer heap = ByteBuffer.allocate(128);
+            for (int i = 0; i < 20; i++) {
+                assertEquals("ping " + i, roundTrip(client, server, direct, "ping " + i));
+                assertEquals("pong " + i, roundTrip(server, client, heap, "pong " + i));
+            }
+        }
+    }
+
+    @Test
+    public void rekeysAfterMessagesAndBytes() throws Exception {
+        try (SecureChannel client = SecureChannel.client(lazySodium, clientKeys, serverKeys.getPublicKey(), 3, 64);
+             SecureChannel server = SecureChannel.server(lazySodium, serverKeys, clientKeys.getPublicKey(), 3, 64);
+             SecureChannel stale = SecureChannel.server(lazySodium, serverKeys, clientKeys.getPublicKey(), 4, 64)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(128);
+            for (int i = 0; i < 9; i++) {
+                roundTrip(client, server, buffer, "message " + i);
+            }
+            assertEquals(3, client.getSealEpoch());
+            assertEquals(3, server.getOpenEpoch());
+            assertEquals(0, client.getOpenEpoch());
+
+            // 80 bytes is over the limit on its own.
+            roundTrip(client, server, buffer, new String(new char[80]).replace('\0', 'x'));
+            assertEquals(4, client.getSealEpoch());
+            assertEquals(4, server.getOpenEpoch());
+
+            // An end with other limits stops opening once the keys differ.
+            SecureChannel sealer = SecureChannel.client(lazySodium, clientKeys, serverKeys.getPublicKey(), 3, 64);
+            try {
+                for (int i = 0; i < 3; i++) {
+                    roundTrip(sealer, stale, buffer, "message " + i);
+                }
+                roundTrip(sealer, stale, buffer, "message 3");
+                fail("Opened a message sealed with the next key.");
+            } catch (AEADBadTagException expected) {
+                // expected
+            } finally {
+                sealer.close();
+            }
+        }
+    }
+
+    @Test
+    public void rejectsTamperedAndReplayedMessages() throws Exception {
+        try (SecureChannel client = SecureChannel.client(lazySodium, clientKeys, serverKeys.getPublicKey());
+             SecureChannel server = SecureChannel.server(lazySodium, serverKeys, clientKeys.getPublicKey())) {
+            ByteBuffer buffer = ByteBuffer.allocate(64);
+            buffer.put(lazySodium.bytes("transfer 10")).flip();
+            client.seal(buffer);
+            byte[] cipher = Arrays.copyOf(buffer.array(), buffer.remaining());
+
+            byte[] tampered = cipher.clone();
+            tampered[0] ^= 1;
+            assertBadTag(server, ByteBuffer.wrap(tampered));
+            assertBadTag(server, ByteBuffer.wrap(new byte[SecureChannel.ABYTES - 1]));
+
+            // A message that didn't open doesn't move the counter on.
+            server.open(ByteBuffer.wrap(cipher.clone()));
+            assertBadTag(server, ByteBuffer.wrap(cipher.clone()));
+        }
+    }
+
+    @Test
+    public void rejectsFullBuffersAndClosedChannels() throws Exception {
+        SecureChannel client = SecureChannel.client(lazySodium, clientKeys, serverKeys.getPublicKey());
+        ByteBuffer full = ByteBuffer.allocate(SecureChannel.ABYTES + 4);
+        full.position(5);
+        try {
+            client.seal(full);
+            fail("Sealed without room for the tag.");
+        } catch (BufferOverflowException expected) {
+            // expected
+        }
+        client.close();
+        client.close();
+        try {
+            client.seal(ByteBuffer.wrap(new byte[SecureChannel.ABYTES], 0, 0));
+            fail("Sealed with a closed channel.");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+    }
+
+    private String roundTrip(SecureChannel from, SecureChannel to, ByteBuffer buffer, String message) throws Exception {
+        buffer.clear();
+        buffer.put(lazySodium.bytes(message)).flip();
+        from.seal(buffer);
+        to.open(buffer);
+        byte[] opened = new byte[buffer.remaining()];
+        buffer.get(opened);
+        return lazySodium.str(opened);
+    }
+
+    private static void assertBadTag(SecureChannel channel, ByteBuffer buffer) throws SodiumException {
+        try {
+            channel.open(buffer);
+            fail("Opened a message that isn't authentic.");
+        } catch (AEADBadTagException expected) {
+            // expected
+        }
+    }
+
+}
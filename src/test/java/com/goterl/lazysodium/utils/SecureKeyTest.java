@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.utils;
+
+import com.goterl.lazysodium.BaseTest;
+import com.goterl.lazysodium.exceptions.SodiumException;
+import com.goterl.lazysodium.interfaces.AEAD;
+import com.goterl.lazysodium.interfaces.Auth;
+import com.goterl.lazysodium.interfaces.Box;
+import com.goterl.lazysodium.interfaces.SecretBox;
+import com.goterl.lazysodium.interfaces.SecretStream;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+import static org.junit.Assert.assertArrayEquals;
+
+public class SecureKeyTest extends BaseTest {
+
+    @Test
+    public void interchangeableWithKey() throws Exception {
+        Key key = lazySodium.cryptoSecretBoxKeygen();
+        byte[] nonce = lazySodium.nonce(SecretBox.NONCEBYTES);
+        try (SecureKey secureKey = SecureKey.fromKey(lazySodium, key)) {
+            assertArrayEquals(key.getAsBytes(), secureKey.getAsBytes());
+            String cipher = lazySodium.cryptoSecretBoxEasy("A secret", nonce, secureKey);
+            assertEquals(lazySodium.cryptoSecretBoxEasy("A secret", nonce, key), cipher);
+            assertEquals("A secret", lazySodium.cryptoSecretBoxOpenEasy(cipher, nonce, key));
+            assertEquals("A secret", lazySodium.cryptoSecretBoxOpenEasy(cipher, nonce, secureKey));
+        }
+    }
+
+    @Test
+    public void aeadAndAuth() throws Exception {
+        byte[] nonce = lazySodium.nonce(AEAD.XCHACHA20POLY1305_IETF_NPUBBYTES);
+        try (SecureKey key = SecureKey.random(lazySodium, AEAD.XCHACHA20POLY1305_IETF_KEYBYTES)) {
+            String cipher = lazySodium.encrypt("A secret", "ad", nonce, key, AEAD.Method.XCHACHA20_POLY1305_IETF);
+            assertEquals(cipher, lazySodium.encrypt("A secret", "ad", nonce, Key.fromBytes(key.getAsBytes()),
+                    AEAD.Method.XCHACHA20_POLY1305_IETF));
+            assertEquals("A secret", lazySodium.decrypt(cipher, "ad", nonce, key, AEAD.Method.XCHACHA20_POLY1305_IETF));
+        }
+        try (SecureKey key = SecureKey.random(lazySodium, Auth.KEYBYTES)) {
+            String tag = lazySodium.cryptoAuth("A message", key);
+            assertTrue(lazySodium.cryptoAuthVerify(tag, "A message", key));
+            assertFalse(lazySodium.cryptoAuthVerify(tag, "Another message", key));
+        }
+    }
+
+    @Test
+    public void kdfBoxAndSecretStream() throws Exception {
+        Key master = lazySodium.cryptoKdfKeygen();
+        try (SecureKey secureMaster = SecureKey.fromKey(lazySodium, master)) {
+            assertEquals(lazySodium.cryptoKdfDeriveFromKey(32, 7, "contexts", master),
+                    lazySodium.cryptoKdfDeriveFromKey(32, 7, "contexts", secureMaster));
+        }
+
+        KeyPair client = lazySodium.cryptoBoxKeypair();
+        KeyPair server = lazySodium.cryptoBoxKeypair();
+        Key shared = lazySodium.cryptoBoxBeforeNmKey(new KeyPair(server.getPublicKey(), client.getSecretKey()));
+        byte[] nonce = lazySodium.nonce(Box.NONCEBYTES);
+        byte[] message = lazySodium.bytes("A secret");
+        try (SecureKey secureShared = SecureKey.fromKey(lazySodium, shared)) {
+            byte[] cipher = lazySodium.cryptoBoxEasyAfterNm(message, nonce, secureShared);
+            assertArrayEquals(lazySodium.cryptoBoxEasyAfterNm(message, nonce, shared), cipher);
+            assertArrayEquals(message, lazySodium.cryptoBoxOpenEasyAfterNm(cipher, nonce, secureShared));
+        }
+
+        byte[] header = new byte[SecretStream.HEADERBYTES];
+        try (SecureKey key = SecureKey.random(lazySodium, SecretStream.KEYBYTES)) {
+            SecretStream.State push = lazySodium.cryptoSecretStreamInitPush(header, key);
+            String cipher = lazySodium.cryptoSecretStreamPush(push, "A secret", SecretStream.TAG_FINAL);
+            byte[] tag = new byte[1];
+            SecretStream.State pull = lazySodium.cryptoSecretStreamInitPull(header, key);
+            assertEquals("A secret", lazySodium.cryptoSecretStreamPull(pull, cipher, tag));
+        }
+        try (SecureKey shortKey = SecureKey.random(lazySodium, 16)) {
+            lazySodium.cryptoSecretStreamInitPush(header, shortKey);
+            fail("Read past the end of a short key.");
+        } catch (SodiumException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void equality() throws SodiumException {
+        Key key = Key.generate(lazySodium, 32);
+        try (SecureKey a = SecureKey.fromKey(lazySodium, key);
+             SecureKey b = SecureKey.fromKey(lazySodium, a);
+             SecureKey other = SecureKey.random(lazySodium, 32)) {
+            assertTrue(a.equals(b));
+            assertTrue(a.equals(key));
+            assertTrue(key.equals(a));
+            assertEquals(key.hashCode(), a.hashCode());
+            assertFalse(a.equals(other));
+            assertFalse(a.equals(Key.generate(lazySodium, 16)));
+        }
+    }
+
+    @Test
+    public void noAccessAndClose() throws SodiumException {
+        SecureKey key = SecureKey.random(lazySodium, 32);
+        byte[] bytes = key.getAsBytes();
+        key.noAccess();
+        assertFalse(key.isAccessible());
+        try {
+            key.getPointer();
+            fail("Could get an inaccessible key.");
+        } catch (IllegalStateException e) {
+            // Expected.
+        }
+        key.readOnly();
+        assertArrayEquals(bytes, key.getAsBytes());
+
+        key.close();
+        key.close();
+        assertFalse(key.isAccessible());
+        try {
+            key.getAsBytes();
+            fail("Could read a closed key.");
+        } catch (IllegalStateException e) {
+            // Expected.
+        }
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) Terl Tech Ltd • 01/04/2021, 12:31 • goterl.com
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.goterl.lazysodium.utils;
+
+import com.goterl.lazysodium.BaseTest;
+import com.goterl.lazysodium.exceptions.SodiumException;
+import com.goterl.lazysodium.interfaces.Sign;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+import static org.junit.Assert.assertArrayEquals;
+
+public class SigningServiceTest extends BaseTest {
+
+    private KeyPair keyPair;
+
+    @Before
+    public void doBefore() throws SodiumException {
+        keyPair = lazySodium.cryptoSignKeypair();
+    }
+
+    @Test
+    public void signMatchesDetached() throws Exception {
+        byte[] message = lazySodium.bytes("An audit log entry");
+        byte[] expected = new byte[Sign.BYTES];
+        lazySodium.cryptoSignDetached(expected, message, message.length, keyPair.getSecretKey().getAsBytes());
+
+        try (SigningService service = new SigningService(lazySodium, keyPair.getSecretKey())) {
+            assertArrayEquals(expected, service.sign(message));
+            assertArrayEquals(expected, service.signAsync(message).get());
+        }
+    }
+
+    @Test
+    public void signAll() throws Exception {
+        byte[][] messages = new byte[1000][];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = lazySodium.bytes("Entry " + i);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (SigningService service = new SigningService(lazySodium, keyPair.getSecretKey(), executor)) {
+            byte[][] signatures = service.signAll(messages).get();
+            assertEquals(messages.length, signatures.length);
+            byte[] publicKey = keyPair.getPublicKey().getAsBytes();
+            for (int i = 0; i < messages.length; i++) {
+                assertTrue(lazySodium.cryptoSignVerifyDetached(signatures[i], messages[i], messages[i].length, publicKey));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void signAfterClose() throws Exception {
+        SigningService service = new SigningService(lazySodium, keyPair.getSecretKey());
+        service.close();
+        try {
+            service.signAsync(lazySodium.bytes("Too late")).get();
+            throw new AssertionError("Signed with a closed service.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test(expected = SodiumException.class)
+    public void wrongKeySize() throws SodiumException {
+        new SigningService(lazySodium, keyPair.getPublicKey());
+    }
+
+}